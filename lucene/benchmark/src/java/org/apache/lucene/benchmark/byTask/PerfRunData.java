@@ -44,6 +44,8 @@ import org.apache.lucene.facet.taxonomy.TaxonomyWriter;
 import org.apache.lucene.index.DirectoryReader;
 import org.apache.lucene.index.IndexWriter;
 import org.apache.lucene.search.IndexSearcher;
+import org.apache.lucene.search.LRUQueryCache;
+import org.apache.lucene.search.QueryCachingPolicy;
 import org.apache.lucene.store.Directory;
 import org.apache.lucene.store.FSDirectory;
 import org.apache.lucene.store.RAMDirectory;
@@ -349,6 +351,14 @@ public class PerfRunData implements Closeable {
       // Hold reference to new IR
       indexReader.incRef();
       indexSearcher = new IndexSearcher(indexReader);
+      // optionally use a dedicated query cache, eg. to compare the scalability of striped caches
+      final int queryCacheStripes = config.get("query.cache.stripes", 0);
+      if (queryCacheStripes > 0) {
+        final int queryCacheSize = config.get("query.cache.size", 1000);
+        final long queryCacheRamBytes = (long) (config.get("query.cache.ram.mb", 32.0) * 1024 * 1024);
+        indexSearcher.setQueryCache(new LRUQueryCache(queryCacheSize, queryCacheRamBytes, context -> true, queryCacheStripes));
+        indexSearcher.setQueryCachingPolicy(QueryCachingPolicy.ALWAYS_CACHE);
+      }
     } else {
       indexSearcher = null;
     }
@@ -561,6 +561,10 @@
  *     </li><li>file.query.maker.file
  *     </li><li>file.query.maker.default.field
  *     </li><li>search.num.hits
+ *     </li><li>query.cache.stripes - when greater than 0, searchers opened by OpenReader use a
+ *       dedicated LRUQueryCache with that many stripes that caches all queries (see query-cache.alg)
+ *     </li><li>query.cache.size
+ *     </li><li>query.cache.ram.mb
  *     </li></ul>
  *   </li>
  * 
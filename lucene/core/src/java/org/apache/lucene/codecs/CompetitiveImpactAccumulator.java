@@ -0,0 +1,110 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.lucene.codecs;
+
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+import org.apache.lucene.index.Impact;
+
+/**
+ * This class accumulates the (freq, norm) pairs that may produce competitive scores.
+ * Norms are compared as unsigned longs, the greater the norm, the more
+ * competitive the pair is assumed to be.
+ * @lucene.internal
+ */
+public final class CompetitiveImpactAccumulator {
+
+  private static final Comparator<Long> UNSIGNED_COMPARATOR = Long::compareUnsigned;
+
+  // We speed up accumulation for common norm values by first computing
+  // the max freq for all norms in -128..127
+  private final int[] maxFreqs;
+  private final TreeMap<Long, Integer> otherFreqNormPairs;
+
+  /** Sole constructor. */
+  public CompetitiveImpactAccumulator() {
+    maxFreqs = new int[256];
+    otherFreqNormPairs = new TreeMap<>(UNSIGNED_COMPARATOR);
+  }
+
+  /** Reset to the same state it was in after creation. */
+  public void clear() {
+    Arrays.fill(maxFreqs, 0);
+    otherFreqNormPairs.clear();
+  }
+
+  /** Accumulate a (freq,norm) pair, updating this structure if there is no
+   *  equivalent or more competitive entry already. */
+  public void add(int freq, long norm) {
+    if (norm >= Byte.MIN_VALUE && norm <= Byte.MAX_VALUE) {
+      int index = Byte.toUnsignedInt((byte) norm);
+      maxFreqs[index] = Math.max(maxFreqs[index], freq);
+    } else {
+      otherFreqNormPairs.merge(norm, freq, Math::max);
+    }
+  }
+
+  /** Merge {@code acc} into this. */
+  public void addAll(CompetitiveImpactAccumulator acc) {
+    for (int i = 0; i < maxFreqs.length; ++i) {
+      maxFreqs[i] = Math.max(maxFreqs[i], acc.maxFreqs[i]);
+    }
+    for (Map.Entry<Long, Integer> entry : acc.otherFreqNormPairs.entrySet()) {
+      otherFreqNormPairs.merge(entry.getKey(), entry.getValue(), Math::max);
+    }
+  }
+
+  /** Get the set of competitive freq and norm pairs, ordered by increasing freq
+   *  and decreasing norm. */
+  public List<Impact> getCompetitiveFreqNormPairs() {
+    List<Impact> impacts = new ArrayList<>();
+    // visit norms from the most to the least competitive one, and only keep
+    // pairs whose freq is greater than the freqs of all more competitive norms
+    int maxFreqForMoreCompetitiveNorms = 0;
+    // in unsigned order, norms -1..-128 are the greatest ones, then come the
+    // norms that are outside of the byte range, then norms 127..0
+    for (int norm = -1; norm >= Byte.MIN_VALUE; --norm) {
+      maxFreqForMoreCompetitiveNorms = maybeAdd(impacts, norm, maxFreqs[Byte.toUnsignedInt((byte) norm)], maxFreqForMoreCompetitiveNorms);
+    }
+    for (Map.Entry<Long, Integer> entry : otherFreqNormPairs.descendingMap().entrySet()) {
+      maxFreqForMoreCompetitiveNorms = maybeAdd(impacts, entry.getKey(), entry.getValue(), maxFreqForMoreCompetitiveNorms);
+    }
+    for (int norm = Byte.MAX_VALUE; norm >= 0; --norm) {
+      maxFreqForMoreCompetitiveNorms = maybeAdd(impacts, norm, maxFreqs[norm], maxFreqForMoreCompetitiveNorms);
+    }
+    return impacts;
+  }
+
+  private static int maybeAdd(List<Impact> impacts, long norm, int maxFreq, int maxFreqForMoreCompetitiveNorms) {
+    if (maxFreq > maxFreqForMoreCompetitiveNorms) {
+      impacts.add(new Impact(maxFreq, norm));
+      return maxFreq;
+    }
+    return maxFreqForMoreCompetitiveNorms;
+  }
+
+  @Override
+  public String toString() {
+    return getCompetitiveFreqNormPairs().toString();
+  }
+}
@@ -21,9 +21,13 @@ import java.io.Closeable;
 import java.io.IOException;
 
 import org.apache.lucene.index.BinaryDocValues;
+import org.apache.lucene.index.BinaryDocValuesIterator;
+import org.apache.lucene.index.DocValues;
 import org.apache.lucene.index.FieldInfo;
 import org.apache.lucene.index.NumericDocValues;
+import org.apache.lucene.index.NumericDocValuesIterator;
 import org.apache.lucene.index.SortedDocValues;
+import org.apache.lucene.index.SortedDocValuesIterator;
 import org.apache.lucene.index.SortedNumericDocValues;
 import org.apache.lucene.index.SortedSetDocValues;
 import org.apache.lucene.util.Accountable;
@@ -70,6 +74,31 @@ public abstract class DocValuesProducer implements Closeable, Accountable {
    *  The returned instance need not be thread-safe: it will only be
    *  used by a single thread. */
   public abstract Bits getDocsWithField(FieldInfo field) throws IOException;
+
+  /** Returns a forward-only {@link NumericDocValuesIterator} over the documents
+   *  that have a value for this field.
+   *  The default implementation checks {@link #getDocsWithField(FieldInfo)} for
+   *  every document, formats that know where their values are, e.g. because
+   *  they encode sparse fields as a list of doc IDs, should override it.
+   *  The returned instance need not be thread-safe: it will only be
+   *  used by a single thread. */
+  public NumericDocValuesIterator getNumericIterator(FieldInfo field) throws IOException {
+    return DocValues.iterator(getNumeric(field), getDocsWithField(field));
+  }
+
+  /** Returns a forward-only {@link BinaryDocValuesIterator} over the documents
+   *  that have a value for this field.
+   *  @see #getNumericIterator(FieldInfo) */
+  public BinaryDocValuesIterator getBinaryIterator(FieldInfo field) throws IOException {
+    return DocValues.iterator(getBinary(field), getDocsWithField(field));
+  }
+
+  /** Returns a forward-only {@link SortedDocValuesIterator} over the documents
+   *  that have a value for this field.
+   *  @see #getNumericIterator(FieldInfo) */
+  public SortedDocValuesIterator getSortedIterator(FieldInfo field) throws IOException {
+    return DocValues.iterator(getSorted(field), getDocsWithField(field).length());
+  }
   
   /** 
    * Checks consistency of this producer
@@ -77,13 +77,31 @@ public abstract class FieldsConsumer implements Closeable {
    *  </ul>
    */
   public abstract void write(Fields fields) throws IOException;
+
+  /** Write all fields, terms and postings, like {@link #write(Fields)},
+   *  with access to the norms of the segment, or {@code null} if norms are
+   *  not available. Postings formats may use norms in order to record
+   *  impacts. The default implementation ignores norms and calls
+   *  {@link #write(Fields)}. */
+  public void write(Fields fields, NormsProducer norms) throws IOException {
+    write(fields);
+  }
   
   /** Merges in the fields from the readers in 
-   *  <code>mergeState</code>. The default implementation skips
-   *  and maps around deleted documents, and calls {@link #write(Fields)}.
+   *  <code>mergeState</code>. The default implementation calls
+   *  {@link #merge(MergeState, NormsProducer)} without norms. */
+  public void merge(MergeState mergeState) throws IOException {
+    merge(mergeState, null);
+  }
+
+  /** Merges in the fields from the readers in 
+   *  <code>mergeState</code>, with access to the norms of the merged
+   *  segment, or {@code null} if they are not available. The default
+   *  implementation skips and maps around deleted documents, and calls
+   *  {@link #write(Fields, NormsProducer)}.
    *  Implementations can override this method for more sophisticated
    *  merging (bulk-byte copying, etc). */
-  public void merge(MergeState mergeState) throws IOException {
+  public void merge(MergeState mergeState, NormsProducer norms) throws IOException {
     final List<Fields> fields = new ArrayList<>();
     final List<ReaderSlice> slices = new ArrayList<>();
 
@@ -102,7 +120,7 @@ public abstract class FieldsConsumer implements Closeable {
     Fields mergedFields = new MappedMultiFields(mergeState, 
                                                 new MultiFields(fields.toArray(Fields.EMPTY_ARRAY),
                                                                 slices.toArray(ReaderSlice.EMPTY_ARRAY)));
-    write(mergedFields);
+    write(mergedFields, norms);
   }
 
   // NOTE: strange but necessary so javadocs linting is happy:
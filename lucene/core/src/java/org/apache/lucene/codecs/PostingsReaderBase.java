@@ -22,7 +22,9 @@ import java.io.IOException;
 
 import org.apache.lucene.index.PostingsEnum;
 import org.apache.lucene.index.FieldInfo;
+import org.apache.lucene.index.ImpactsEnum;
 import org.apache.lucene.index.SegmentReadState;
+import org.apache.lucene.index.SlowImpactsEnum;
 import org.apache.lucene.store.DataInput;
 import org.apache.lucene.store.IndexInput;
 import org.apache.lucene.util.Accountable;
@@ -65,6 +67,17 @@ public abstract class PostingsReaderBase implements Closeable, Accountable {
   /** Must fully consume state, since after this call that
    *  TermState may be reused. */
   public abstract PostingsEnum postings(FieldInfo fieldInfo, BlockTermState state, PostingsEnum reuse, int flags) throws IOException;
+
+  /**
+   * Return a {@link ImpactsEnum} for the given term, which also exposes
+   * information about upcoming impacts.
+   * The default implementation does not know about impacts and wraps the
+   * result of {@link #postings} into a {@link SlowImpactsEnum}.
+   * @see PostingsWriterBase#writeTerm(org.apache.lucene.util.BytesRef, org.apache.lucene.index.TermsEnum, org.apache.lucene.util.FixedBitSet, NormsProducer)
+   */
+  public ImpactsEnum impacts(FieldInfo fieldInfo, BlockTermState state, int flags) throws IOException {
+    return new SlowImpactsEnum(postings(fieldInfo, state, null, flags));
+  }
   
   /** 
    * Checks consistency of this reader.
@@ -62,6 +62,15 @@ public abstract class PostingsWriterBase implements Closeable {
    *  terms dict will skip the term. */
   public abstract BlockTermState writeTerm(BytesRef term, TermsEnum termsEnum, FixedBitSet docsSeen) throws IOException;
 
+  /** Write all postings for one term, like {@link #writeTerm(BytesRef, TermsEnum, FixedBitSet)},
+   *  with access to the norms of the field, or {@code null} if the field
+   *  doesn't have norms or if they are not available. Postings formats may
+   *  use them in order to record impacts.
+   *  The default implementation ignores norms. */
+  public BlockTermState writeTerm(BytesRef term, TermsEnum termsEnum, FixedBitSet docsSeen, NormsProducer norms) throws IOException {
+    return writeTerm(term, termsEnum, docsSeen);
+  }
+
   /**
    * Encode metadata as long[] and byte[]. {@code absolute} controls whether 
    * current term is delta encoded according to latest term. 
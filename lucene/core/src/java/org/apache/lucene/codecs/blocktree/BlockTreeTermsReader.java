@@ -36,7 +36,9 @@ import org.apache.lucene.index.SegmentReadState;
 import org.apache.lucene.index.Terms;
 import org.apache.lucene.search.PrefixQuery;  // javadocs
 import org.apache.lucene.search.TermRangeQuery;  // javadocs
+import org.apache.lucene.store.FilterDirectory;
 import org.apache.lucene.store.IndexInput;
+import org.apache.lucene.store.MMapDirectory;
 import org.apache.lucene.util.Accountable;
 import org.apache.lucene.util.Accountables;
 import org.apache.lucene.util.BytesRef;
@@ -117,9 +119,30 @@ public final class BlockTreeTermsReader extends FieldsProducer {
   static final String TERMS_INDEX_EXTENSION = "tip";
   final static String TERMS_INDEX_CODEC_NAME = "BlockTreeTermsIndex";
 
+  /**
+   * Controls how the terms index of each field, an FST, is loaded.
+   *
+   * @lucene.experimental
+   */
+  public enum FSTLoadMode {
+    /** Always load the terms index in heap memory. */
+    ON_HEAP,
+    /** Always read the terms index from the terms index file. The heap usage
+     *  of the terms index then does not depend on the number of terms, but
+     *  lookups are much slower unless the file is memory-mapped. */
+    OFF_HEAP,
+    /** Read the terms index from the terms index file if the directory is a
+     *  {@link MMapDirectory}, and load it in heap memory otherwise. */
+    AUTO
+  }
+
   // Open input to the main terms dict file (_X.tib)
   final IndexInput termsIn;
 
+  // Open input to the terms index file (_X.tip) if the terms index is read
+  // off-heap, null otherwise
+  private final IndexInput indexIn;
+
   //private static final boolean DEBUG = BlockTreeTermsWriter.DEBUG;
 
   // Reads the terms dict entries, to gather state to
@@ -140,8 +163,13 @@ public final class BlockTreeTermsReader extends FieldsProducer {
 
   final boolean anyAutoPrefixTerms;
 
-  /** Sole constructor. */
+  /** Create a new reader that loads terms indexes in heap memory. */
   public BlockTreeTermsReader(PostingsReaderBase postingsReader, SegmentReadState state) throws IOException {
+    this(postingsReader, state, FSTLoadMode.ON_HEAP);
+  }
+
+  /** Create a new reader that loads terms indexes according to the given {@link FSTLoadMode}. */
+  public BlockTreeTermsReader(PostingsReaderBase postingsReader, SegmentReadState state, FSTLoadMode fstLoadMode) throws IOException {
     boolean success = false;
     IndexInput indexIn = null;
     
@@ -175,7 +203,27 @@ public final class BlockTreeTermsReader extends FieldsProducer {
       String indexName = IndexFileNames.segmentFileName(segment, state.segmentSuffix, TERMS_INDEX_EXTENSION);
       indexIn = state.directory.openInput(indexName, state.context);
       CodecUtil.checkIndexHeader(indexIn, TERMS_INDEX_CODEC_NAME, version, version, state.segmentInfo.getId(), state.segmentSuffix);
-      CodecUtil.checksumEntireFile(indexIn);
+      final boolean indexOffHeap;
+      switch (fstLoadMode) {
+        case ON_HEAP:
+          indexOffHeap = false;
+          break;
+        case OFF_HEAP:
+          indexOffHeap = true;
+          break;
+        case AUTO:
+          indexOffHeap = FilterDirectory.unwrap(state.directory) instanceof MMapDirectory;
+          break;
+        default:
+          throw new AssertionError("unknown FST load mode: " + fstLoadMode);
+      }
+      if (indexOffHeap) {
+        // the file is kept open and only partially read: verify the structure of the
+        // footer now, and the checksum in checkIntegrity
+        CodecUtil.retrieveChecksum(indexIn);
+      } else {
+        CodecUtil.checksumEntireFile(indexIn);
+      }
 
       // Have PostingsReader init itself
       postingsReader.init(termsIn, state);
@@ -233,13 +281,18 @@ public final class BlockTreeTermsReader extends FieldsProducer {
         final long indexStartFP = indexIn.readVLong();
         FieldReader previous = fields.put(fieldInfo.name,       
                                           new FieldReader(this, fieldInfo, numTerms, rootCode, sumTotalTermFreq, sumDocFreq, docCount,
-                                                          indexStartFP, longsSize, indexIn, minTerm, maxTerm));
+                                                          indexStartFP, longsSize, indexIn, indexOffHeap, minTerm, maxTerm));
         if (previous != null) {
           throw new CorruptIndexException("duplicate field: " + fieldInfo.name, termsIn);
         }
       }
-      
-      indexIn.close();
+
+      if (indexOffHeap) {
+        this.indexIn = indexIn;
+      } else {
+        indexIn.close();
+        this.indexIn = null;
+      }
       success = true;
     } finally {
       if (!success) {
@@ -273,7 +326,7 @@ public final class BlockTreeTermsReader extends FieldsProducer {
   @Override
   public void close() throws IOException {
     try {
-      IOUtils.close(termsIn, postingsReader);
+      IOUtils.close(indexIn, termsIn, postingsReader);
     } finally { 
       // Clear so refs to terms index is GCable even if
       // app hangs onto us:
@@ -334,6 +387,11 @@ public final class BlockTreeTermsReader extends FieldsProducer {
   public void checkIntegrity() throws IOException { 
     // term dictionary
     CodecUtil.checksumEntireFile(termsIn);
+
+    // terms index, if it was not fully verified on open
+    if (indexIn != null) {
+      CodecUtil.checksumEntireFile(indexIn);
+    }
       
     // postings
     postingsReader.checkIntegrity();
@@ -19,6 +19,7 @@ package org.apache.lucene.codecs.blocktree;
 
 import java.io.IOException;
 
+import org.apache.lucene.index.ImpactsEnum;
 import org.apache.lucene.index.PostingsEnum;
 import org.apache.lucene.index.TermState;
 import org.apache.lucene.index.Terms;
@@ -235,6 +236,12 @@ final class IntersectTermsEnum extends TermsEnum {
     return fr.parent.postingsReader.postings(fr.fieldInfo, currentFrame.termState, reuse, flags);
   }
 
+  @Override
+  public ImpactsEnum impacts(int flags) throws IOException {
+    currentFrame.decodeMetaData();
+    return fr.parent.postingsReader.impacts(fr.fieldInfo, currentFrame.termState, flags);
+  }
+
   private int getState() {
     int state = currentFrame.state;
     for(int idx=0;idx<currentFrame.suffix;idx++) {
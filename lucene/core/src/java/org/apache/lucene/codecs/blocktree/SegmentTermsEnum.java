@@ -21,6 +21,7 @@ import java.io.IOException;
 import java.io.PrintStream;
 
 import org.apache.lucene.codecs.BlockTermState;
+import org.apache.lucene.index.ImpactsEnum;
 import org.apache.lucene.index.PostingsEnum;
 import org.apache.lucene.index.TermState;
 import org.apache.lucene.index.TermsEnum;
@@ -1002,6 +1003,13 @@ final class SegmentTermsEnum extends TermsEnum {
     return fr.parent.postingsReader.postings(fr.fieldInfo, currentFrame.state, reuse, flags);
   }
 
+  @Override
+  public ImpactsEnum impacts(int flags) throws IOException {
+    assert !eof;
+    currentFrame.decodeMetaData();
+    return fr.parent.postingsReader.impacts(fr.fieldInfo, currentFrame.state, flags);
+  }
+
   @Override
   public void seekExact(BytesRef target, TermState otherState) {
     // if (DEBUG) {
@@ -19,6 +19,7 @@ package org.apache.lucene.codecs.lucene50;
 
 
 import java.io.IOException;
+import java.util.Objects;
 
 import org.apache.lucene.codecs.BlockTermState;
 import org.apache.lucene.codecs.CodecUtil;
@@ -196,11 +197,14 @@ import org.apache.lucene.util.packed.PackedInts;
  *       <sup>NumSkipLevels-1</sup>, SkipLevel&gt;, SkipDatum?</li>
  *   <li>SkipLevel --&gt; &lt;SkipDatum&gt; <sup>TrimmedDocFreq/(PackedBlockSize^(Level + 1))</sup></li>
  *   <li>SkipDatum --&gt; DocSkip, DocFPSkip, &lt;PosFPSkip, PosBlockOffset, PayLength?, 
- *                        PayFPSkip?&gt;?, SkipChildLevelPointer?</li>
+ *                        PayFPSkip?&gt;?, ImpactLength, &lt;CompetitiveFreqDelta, CompetitiveNormDelta?&gt;
+ *                        <sup>ImpactCount</sup>, SkipChildLevelPointer?</li>
  *   <li>PackedDocDeltaBlock, PackedFreqBlock --&gt; {@link PackedInts PackedInts}</li>
- *   <li>DocDelta, Freq, DocSkip, DocFPSkip, PosFPSkip, PosBlockOffset, PayByteUpto, PayFPSkip 
+ *   <li>DocDelta, Freq, DocSkip, DocFPSkip, PosFPSkip, PosBlockOffset, PayByteUpto, PayFPSkip, ImpactLength
  *       --&gt; 
  *   {@link DataOutput#writeVInt VInt}</li>
+ *   <li>CompetitiveFreqDelta --&gt; {@link DataOutput#writeVLong VLong}</li>
+ *   <li>CompetitiveNormDelta --&gt; {@link DataOutput#writeZLong ZLong}</li>
  *   <li>SkipChildLevelPointer --&gt; {@link DataOutput#writeVLong VLong}</li>
  *   <li>Footer --&gt; {@link CodecUtil#writeFooter CodecFooter}</li>
  * </ul>
@@ -259,6 +263,18 @@ import org.apache.lucene.util.packed.PackedInts;
  *       current term's TermFreqs, and stored as a difference sequence.</li>
  *   <li>PayByteUpto indicates the start offset of the current payload. It is equivalent to
  *       the sum of the payload lengths in the current block up to PosBlockOffset</li>
+ *   <li>ImpactLength is the number of bytes of the impacts that follow it. Impacts are the
+ *       competitive (freq, norm) pairs of the documents that are between the previous SkipDatum of
+ *       the same level (exclusive) and DocSkip (inclusive): every document of this range has a
+ *       (freq, norm) pair that is equal to or dominated by one of them. They are sorted by
+ *       increasing freq and decreasing unsigned norm, and allow scorers to compute an upper bound
+ *       of the scores of the documents of a block without decoding it. CompetitiveFreqDelta is
+ *       the difference between the freq of the impact and the freq of the previous impact, minus
+ *       one, shifted left by one bit. The low bit is set when CompetitiveNormDelta follows, which
+ *       is the difference between the norm of the previous impact (or 0) and the norm of the
+ *       impact, minus one. It is omitted when it is 0.
+ *       The freq is 1 when frequencies are not indexed and the norm is -1 when the field doesn't
+ *       have norms.</li>
  * </ul>
  * </dd>
  * </dl>
@@ -384,10 +400,12 @@ public final class Lucene50PostingsFormat extends PostingsFormat {
 
   // Increment version to change it
   final static int VERSION_START = 0;
-  final static int VERSION_CURRENT = VERSION_START;
+  final static int VERSION_IMPACTS = 1;
+  final static int VERSION_CURRENT = VERSION_IMPACTS;
 
   private final int minTermBlockSize;
   private final int maxTermBlockSize;
+  private final BlockTreeTermsReader.FSTLoadMode fstLoadMode;
 
   /**
    * Fixed packed block size, number of integers encoded in 
@@ -396,8 +414,27 @@ public final class Lucene50PostingsFormat extends PostingsFormat {
   // NOTE: must be multiple of 64 because of PackedInts long-aligned encoding/decoding
   public final static int BLOCK_SIZE = 128;
 
+  /** System property that sets how instances created with the default
+   *  constructor, which are the ones that read segments, load terms indexes:
+   *  the name of a {@link BlockTreeTermsReader.FSTLoadMode}. Terms indexes
+   *  are loaded on heap if it is not set.
+   *  @lucene.experimental */
+  public static final String FST_LOAD_MODE_SYSPROP = Lucene50PostingsFormat.class.getName() + ".fstLoadMode";
+  static final BlockTreeTermsReader.FSTLoadMode DEFAULT_FST_LOAD_MODE;
+  static {
+    BlockTreeTermsReader.FSTLoadMode mode = BlockTreeTermsReader.FSTLoadMode.ON_HEAP;
+    try {
+      String value = System.getProperty(FST_LOAD_MODE_SYSPROP);
+      if (value != null) {
+        mode = BlockTreeTermsReader.FSTLoadMode.valueOf(value);
+      }
+    } catch (SecurityException | IllegalArgumentException ignored) {}
+    DEFAULT_FST_LOAD_MODE = mode;
+  }
+
   /** Creates {@code Lucene50PostingsFormat} with default
-   *  settings. */
+   *  settings.
+   *  @see #FST_LOAD_MODE_SYSPROP */
   public Lucene50PostingsFormat() {
     this(BlockTreeTermsWriter.DEFAULT_MIN_BLOCK_SIZE, BlockTreeTermsWriter.DEFAULT_MAX_BLOCK_SIZE);
   }
@@ -407,10 +444,20 @@ public final class Lucene50PostingsFormat extends PostingsFormat {
    *  maxBlockSize} passed to block terms dictionary.
    *  @see BlockTreeTermsWriter#BlockTreeTermsWriter(SegmentWriteState,PostingsWriterBase,int,int) */
   public Lucene50PostingsFormat(int minTermBlockSize, int maxTermBlockSize) {
+    this(minTermBlockSize, maxTermBlockSize, DEFAULT_FST_LOAD_MODE);
+  }
+
+  /** Creates {@code Lucene50PostingsFormat} with custom
+   *  values for {@code minBlockSize}, {@code maxBlockSize}
+   *  and the {@link BlockTreeTermsReader.FSTLoadMode} of the terms index.
+   *  @see BlockTreeTermsWriter#BlockTreeTermsWriter(SegmentWriteState,PostingsWriterBase,int,int)
+   *  @lucene.experimental */
+  public Lucene50PostingsFormat(int minTermBlockSize, int maxTermBlockSize, BlockTreeTermsReader.FSTLoadMode fstLoadMode) {
     super("Lucene50");
     BlockTreeTermsWriter.validateSettings(minTermBlockSize, maxTermBlockSize);
     this.minTermBlockSize = minTermBlockSize;
     this.maxTermBlockSize = maxTermBlockSize;
+    this.fstLoadMode = Objects.requireNonNull(fstLoadMode);
   }
 
   @Override
@@ -442,7 +489,7 @@ public final class Lucene50PostingsFormat extends PostingsFormat {
     PostingsReaderBase postingsReader = new Lucene50PostingsReader(state);
     boolean success = false;
     try {
-      FieldsProducer ret = new BlockTreeTermsReader(postingsReader, state);
+      FieldsProducer ret = new BlockTreeTermsReader(postingsReader, state, fstLoadMode);
       success = true;
       return ret;
     } finally {
@@ -19,12 +19,17 @@ package org.apache.lucene.codecs.lucene50;
 
 import java.io.IOException;
 import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
 
 import org.apache.lucene.codecs.BlockTermState;
 import org.apache.lucene.codecs.CodecUtil;
 import org.apache.lucene.codecs.PostingsReaderBase;
 import org.apache.lucene.codecs.lucene50.Lucene50PostingsFormat.IntBlockTermState;
 import org.apache.lucene.index.FieldInfo;
+import org.apache.lucene.index.Impact;
+import org.apache.lucene.index.Impacts;
+import org.apache.lucene.index.ImpactsEnum;
 import org.apache.lucene.index.IndexFileNames;
 import org.apache.lucene.index.IndexOptions;
 import org.apache.lucene.index.PostingsEnum;
@@ -234,7 +239,112 @@ public final class Lucene50PostingsReader extends PostingsReaderBase {
     }
   }
 
-  final class BlockDocsEnum extends PostingsEnum {
+  @Override
+  public ImpactsEnum impacts(FieldInfo fieldInfo, BlockTermState state, int flags) throws IOException {
+    // all enums of this reader know how to read impacts from skip data
+    return (ImpactsEnum) postings(fieldInfo, state, null, flags);
+  }
+
+  /**
+   * Exposes the impacts that are recorded in the skip data of a postings
+   * list, without moving the enum that iterates over its documents.
+   */
+  final class BlockImpacts extends Impacts {
+    private final boolean indexHasFreq;
+    private final boolean indexHasPos;
+    private final boolean indexHasOffsets;
+    private final boolean indexHasPayloads;
+
+    private Lucene50SkipReader skipper;
+    private boolean skipped;
+
+    private int docFreq;
+    private long docTermStartFP;
+    private long skipOffset;
+    // impact that applies to all docs of the postings list
+    private final Impact termImpact = new Impact(1, -1L);
+    private final List<Impact> termImpacts = Collections.singletonList(termImpact);
+    private int nextSkipDoc;
+    // number of levels, including the level of the whole postings list
+    private int numLevels;
+
+    BlockImpacts(boolean indexHasFreq, boolean indexHasPos, boolean indexHasOffsets, boolean indexHasPayloads) {
+      this.indexHasFreq = indexHasFreq;
+      this.indexHasPos = indexHasPos;
+      this.indexHasOffsets = indexHasOffsets;
+      this.indexHasPayloads = indexHasPayloads;
+    }
+
+    void reset(IntBlockTermState termState) {
+      docFreq = termState.docFreq;
+      docTermStartFP = termState.docStartFP;
+      skipOffset = termState.skipOffset;
+      if (indexHasFreq) {
+        // no doc can have a greater freq than if all other docs had a freq of 1
+        termImpact.freq = (int) Math.min(Integer.MAX_VALUE, termState.totalTermFreq - termState.docFreq + 1);
+      } else {
+        termImpact.freq = 1;
+      }
+      skipped = false;
+      nextSkipDoc = -1;
+      numLevels = 1;
+    }
+
+    void advanceShallow(int target) throws IOException {
+      if (docFreq <= BLOCK_SIZE) {
+        // no skip data: the impact of the term applies to all docs
+        return;
+      }
+      if (skipper == null) {
+        skipper = new Lucene50SkipReader(version,
+                                         docIn.clone(),
+                                         MAX_SKIP_LEVELS,
+                                         indexHasPos,
+                                         indexHasOffsets,
+                                         indexHasPayloads);
+      }
+      if (skipper.hasImpacts() == false) {
+        // older index that doesn't record impacts
+        return;
+      }
+      if (target > nextSkipDoc) {
+        if (skipped == false) {
+          assert skipOffset != -1;
+          skipper.init(docTermStartFP+skipOffset, docTermStartFP, 0, 0, docFreq);
+          skipped = true;
+        }
+        // skip entries are loaded lazily, even the one of the first block
+        // needs a target that is greater than 0
+        final int skipTarget = Math.max(target, 1);
+        skipper.skipTo(skipTarget);
+        nextSkipDoc = skipper.getNextSkipDoc();
+        numLevels = 1 + skipper.getNumCoveringLevels(skipTarget);
+      }
+    }
+
+    @Override
+    public int numLevels() {
+      return numLevels;
+    }
+
+    @Override
+    public int getDocIdUpTo(int level) {
+      if (level == numLevels - 1) {
+        return PostingsEnum.NO_MORE_DOCS;
+      }
+      return skipper.getSkipDoc(level);
+    }
+
+    @Override
+    public List<Impact> getImpacts(int level) {
+      if (level == numLevels - 1) {
+        return termImpacts;
+      }
+      return skipper.getImpacts(level);
+    }
+  }
+
+  final class BlockDocsEnum extends ImpactsEnum {
     private final byte[] encoded;
     
     private final int[] docDeltaBuffer = new int[MAX_DATA_SIZE];
@@ -275,6 +385,8 @@ public final class Lucene50PostingsReader extends PostingsReaderBase {
     private boolean needsFreq; // true if the caller actually needs frequencies
     private int singletonDocID; // docid when there is a single pulsed posting, otherwise -1
 
+    private final BlockImpacts impacts;
+
     public BlockDocsEnum(FieldInfo fieldInfo) throws IOException {
       this.startDocIn = Lucene50PostingsReader.this.docIn;
       this.docIn = null;
@@ -283,6 +395,7 @@ public final class Lucene50PostingsReader extends PostingsReaderBase {
       indexHasOffsets = fieldInfo.getIndexOptions().compareTo(IndexOptions.DOCS_AND_FREQS_AND_POSITIONS_AND_OFFSETS) >= 0;
       indexHasPayloads = fieldInfo.hasPayloads();
       encoded = new byte[MAX_ENCODED_SIZE];    
+      impacts = new BlockImpacts(indexHasFreq, indexHasPos, indexHasOffsets, indexHasPayloads);
     }
 
     public boolean canReuse(IndexInput docIn, FieldInfo fieldInfo) {
@@ -316,6 +429,7 @@ public final class Lucene50PostingsReader extends PostingsReaderBase {
       nextSkipDoc = BLOCK_SIZE - 1; // we won't skip if target is found in first block
       docBufferUpto = BLOCK_SIZE;
       skipped = false;
+      impacts.reset(termState);
       return this;
     }
     
@@ -324,6 +438,17 @@ public final class Lucene50PostingsReader extends PostingsReaderBase {
       return freq;
     }
 
+    @Override
+    public void advanceShallow(int target) throws IOException {
+      impacts.advanceShallow(target);
+    }
+
+    @Override
+    public Impacts getImpacts() throws IOException {
+      impacts.advanceShallow(Math.max(doc, 0));
+      return impacts;
+    }
+
     @Override
     public int nextPosition() throws IOException {
       return -1;
@@ -401,7 +526,8 @@ public final class Lucene50PostingsReader extends PostingsReaderBase {
 
         if (skipper == null) {
           // Lazy init: first time this enum has ever been used for skipping
-          skipper = new Lucene50SkipReader(docIn.clone(),
+          skipper = new Lucene50SkipReader(version,
+                                           docIn.clone(),
                                            MAX_SKIP_LEVELS,
                                            indexHasPos,
                                            indexHasOffsets,
@@ -468,7 +594,7 @@ public final class Lucene50PostingsReader extends PostingsReaderBase {
   }
 
 
-  final class BlockPostingsEnum extends PostingsEnum {
+  final class BlockPostingsEnum extends ImpactsEnum {
     
     private final byte[] encoded;
 
@@ -529,6 +655,8 @@ public final class Lucene50PostingsReader extends PostingsReaderBase {
     private int nextSkipDoc;
 
     private int singletonDocID; // docid when there is a single pulsed posting, otherwise -1
+
+    private final BlockImpacts impacts;
     
     public BlockPostingsEnum(FieldInfo fieldInfo) throws IOException {
       this.startDocIn = Lucene50PostingsReader.this.docIn;
@@ -537,6 +665,7 @@ public final class Lucene50PostingsReader extends PostingsReaderBase {
       encoded = new byte[MAX_ENCODED_SIZE];
       indexHasOffsets = fieldInfo.getIndexOptions().compareTo(IndexOptions.DOCS_AND_FREQS_AND_POSITIONS_AND_OFFSETS) >= 0;
       indexHasPayloads = fieldInfo.hasPayloads();
+      impacts = new BlockImpacts(true, true, indexHasOffsets, indexHasPayloads);
     }
 
     public boolean canReuse(IndexInput docIn, FieldInfo fieldInfo) {
@@ -580,6 +709,7 @@ public final class Lucene50PostingsReader extends PostingsReaderBase {
       }
       docBufferUpto = BLOCK_SIZE;
       skipped = false;
+      impacts.reset(termState);
       return this;
     }
     
@@ -588,6 +718,17 @@ public final class Lucene50PostingsReader extends PostingsReaderBase {
       return freq;
     }
 
+    @Override
+    public void advanceShallow(int target) throws IOException {
+      impacts.advanceShallow(target);
+    }
+
+    @Override
+    public Impacts getImpacts() throws IOException {
+      impacts.advanceShallow(Math.max(doc, 0));
+      return impacts;
+    }
+
     @Override
     public int docID() {
       return doc;
@@ -666,7 +807,8 @@ public final class Lucene50PostingsReader extends PostingsReaderBase {
       if (target > nextSkipDoc) {
         if (skipper == null) {
           // Lazy init: first time this enum has ever been used for skipping
-          skipper = new Lucene50SkipReader(docIn.clone(),
+          skipper = new Lucene50SkipReader(version,
+                                           docIn.clone(),
                                            MAX_SKIP_LEVELS,
                                            true,
                                            indexHasOffsets,
@@ -800,7 +942,7 @@ public final class Lucene50PostingsReader extends PostingsReaderBase {
   }
 
   // Also handles payloads + offsets
-  final class EverythingEnum extends PostingsEnum {
+  final class EverythingEnum extends ImpactsEnum {
     
     private final byte[] encoded;
 
@@ -881,6 +1023,8 @@ public final class Lucene50PostingsReader extends PostingsReaderBase {
     private boolean needsOffsets; // true if we actually need offsets
     private boolean needsPayloads; // true if we actually need payloads
     private int singletonDocID; // docid when there is a single pulsed posting, otherwise -1
+
+    private final BlockImpacts impacts;
     
     public EverythingEnum(FieldInfo fieldInfo) throws IOException {
       this.startDocIn = Lucene50PostingsReader.this.docIn;
@@ -909,6 +1053,7 @@ public final class Lucene50PostingsReader extends PostingsReaderBase {
         payloadBytes = null;
         payload = null;
       }
+      impacts = new BlockImpacts(true, true, indexHasOffsets, indexHasPayloads);
     }
 
     public boolean canReuse(IndexInput docIn, FieldInfo fieldInfo) {
@@ -956,6 +1101,7 @@ public final class Lucene50PostingsReader extends PostingsReaderBase {
       }
       docBufferUpto = BLOCK_SIZE;
       skipped = false;
+      impacts.reset(termState);
       return this;
     }
     
@@ -964,6 +1110,17 @@ public final class Lucene50PostingsReader extends PostingsReaderBase {
       return freq;
     }
 
+    @Override
+    public void advanceShallow(int target) throws IOException {
+      impacts.advanceShallow(target);
+    }
+
+    @Override
+    public Impacts getImpacts() throws IOException {
+      impacts.advanceShallow(Math.max(doc, 0));
+      return impacts;
+    }
+
     @Override
     public int docID() {
       return doc;
@@ -1082,7 +1239,8 @@ public final class Lucene50PostingsReader extends PostingsReaderBase {
       if (target > nextSkipDoc) {
         if (skipper == null) {
           // Lazy init: first time this enum has ever been used for skipping
-          skipper = new Lucene50SkipReader(docIn.clone(),
+          skipper = new Lucene50SkipReader(version,
+                                        docIn.clone(),
                                         MAX_SKIP_LEVELS,
                                         true,
                                         indexHasOffsets,
@@ -31,12 +31,14 @@ import java.io.IOException;
 
 import org.apache.lucene.codecs.BlockTermState;
 import org.apache.lucene.codecs.CodecUtil;
+import org.apache.lucene.codecs.CompetitiveImpactAccumulator;
 import org.apache.lucene.codecs.PushPostingsWriterBase;
 import org.apache.lucene.codecs.lucene50.Lucene50PostingsFormat.IntBlockTermState;
 import org.apache.lucene.index.CorruptIndexException;
 import org.apache.lucene.index.FieldInfo;
 import org.apache.lucene.index.IndexFileNames;
 import org.apache.lucene.index.IndexWriter;
+import org.apache.lucene.index.NumericDocValues;
 import org.apache.lucene.index.SegmentWriteState;
 import org.apache.lucene.store.DataOutput;
 import org.apache.lucene.store.IndexOutput;
@@ -87,6 +89,9 @@ public final class Lucene50PostingsWriter extends PushPostingsWriterBase {
   private int lastBlockPosBufferUpto;
   private int lastBlockPayloadByteUpto;
 
+  private NumericDocValues norms;
+  private final CompetitiveImpactAccumulator competitiveFreqNormAccumulator = new CompetitiveImpactAccumulator();
+
   private int lastDocID;
   private int lastPosition;
   private int lastStartOffset;
@@ -198,6 +203,11 @@ public final class Lucene50PostingsWriter extends PushPostingsWriterBase {
 
   @Override
   public void startTerm() {
+    startTerm(null);
+  }
+
+  @Override
+  public void startTerm(NumericDocValues norms) {
     docStartFP = docOut.getFilePointer();
     if (writePositions) {
       posStartFP = posOut.getFilePointer();
@@ -208,6 +218,8 @@ public final class Lucene50PostingsWriter extends PushPostingsWriterBase {
     lastDocID = 0;
     lastBlockDocID = -1;
     skipWriter.resetSkip();
+    this.norms = norms;
+    competitiveFreqNormAccumulator.clear();
   }
 
   @Override
@@ -216,7 +228,9 @@ public final class Lucene50PostingsWriter extends PushPostingsWriterBase {
     // Should write skip data as well as postings list for
     // current block.
     if (lastBlockDocID != -1 && docBufferUpto == 0) {
-      skipWriter.bufferSkip(lastBlockDocID, docCount, lastBlockPosFP, lastBlockPayFP, lastBlockPosBufferUpto, lastBlockPayloadByteUpto);
+      skipWriter.bufferSkip(lastBlockDocID, competitiveFreqNormAccumulator, docCount,
+          lastBlockPosFP, lastBlockPayFP, lastBlockPosBufferUpto, lastBlockPayloadByteUpto);
+      competitiveFreqNormAccumulator.clear();
     }
 
     final int docDelta = docID - lastDocID;
@@ -247,6 +261,10 @@ public final class Lucene50PostingsWriter extends PushPostingsWriterBase {
     lastDocID = docID;
     lastPosition = 0;
     lastStartOffset = 0;
+
+    // norms are compared as unsigned longs, so -1 is the most competitive norm
+    long norm = norms == null ? -1L : norms.get(docID);
+    competitiveFreqNormAccumulator.add(writeFreqs ? termDocFreq : 1, norm);
   }
 
   @Override
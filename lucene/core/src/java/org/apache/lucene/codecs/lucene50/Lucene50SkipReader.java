@@ -18,12 +18,19 @@ package org.apache.lucene.codecs.lucene50;
 
 
 import java.io.IOException;
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
 
 import org.apache.lucene.codecs.MultiLevelSkipListReader;
+import org.apache.lucene.index.Impact;
+import org.apache.lucene.store.ByteArrayDataInput;
 import org.apache.lucene.store.IndexInput;
+import org.apache.lucene.util.ArrayUtil;
 
 import static org.apache.lucene.codecs.lucene50.Lucene50PostingsFormat.BLOCK_SIZE;
+import static org.apache.lucene.codecs.lucene50.Lucene50PostingsFormat.VERSION_IMPACTS;
 
 /**
  * Implements the skip list reader for block postings format
@@ -58,6 +65,13 @@ final class Lucene50SkipReader extends MultiLevelSkipListReader {
   private long payPointer[];
   private int posBufferUpto[];
   private int payloadByteUpto[];
+  private final boolean hasImpacts;
+  // encoded impacts of the pending entry of each level
+  private final byte[][] impactData;
+  private final int[] impactDataLength;
+  // lazily decoded impacts of the pending entry of each level
+  private final List<List<Impact>> impacts;
+  private final ByteArrayDataInput badi = new ByteArrayDataInput();
 
   private long lastPosPointer;
   private long lastPayPointer;
@@ -65,9 +79,19 @@ final class Lucene50SkipReader extends MultiLevelSkipListReader {
   private long lastDocPointer;
   private int lastPosBufferUpto;
 
-  public Lucene50SkipReader(IndexInput skipStream, int maxSkipLevels, boolean hasPos, boolean hasOffsets, boolean hasPayloads) {
+  public Lucene50SkipReader(int version, IndexInput skipStream, int maxSkipLevels, boolean hasPos, boolean hasOffsets, boolean hasPayloads) {
     super(skipStream, maxSkipLevels, BLOCK_SIZE, 8);
     docPointer = new long[maxSkipLevels];
+    hasImpacts = version >= VERSION_IMPACTS;
+    if (hasImpacts) {
+      impactData = new byte[maxSkipLevels][];
+      Arrays.fill(impactData, new byte[0]);
+      impactDataLength = new int[maxSkipLevels];
+    } else {
+      impactData = null;
+      impactDataLength = null;
+    }
+    impacts = new ArrayList<>(Collections.nCopies(maxSkipLevels, null));
     if (hasPos) {
       posPointer = new long[maxSkipLevels];
       posBufferUpto = new int[maxSkipLevels];
@@ -142,6 +166,62 @@ final class Lucene50SkipReader extends MultiLevelSkipListReader {
     return skipDoc[0];
   }
 
+  /** Returns whether this skip data records impacts. */
+  public boolean hasImpacts() {
+    return hasImpacts;
+  }
+
+  /**
+   * Returns the number of levels, starting from level 0, whose pending skip
+   * entry covers {@code target}, which must be the last target that was passed
+   * to {@link #skipTo(int)}.
+   */
+  public int getNumCoveringLevels(int target) {
+    int level = 0;
+    while (level < maxNumberOfSkipLevels
+        && skipDoc[level] >= target
+        && skipDoc[level] != Integer.MAX_VALUE) {
+      level++;
+    }
+    return level;
+  }
+
+  /** Returns the last doc ID that is covered by the pending skip entry of the given level. */
+  public int getSkipDoc(int level) {
+    return skipDoc[level];
+  }
+
+  /**
+   * Returns the impacts of the documents that are covered by the pending skip
+   * entry of the given level. Only valid if {@link #hasImpacts()} returns true.
+   */
+  public List<Impact> getImpacts(int level) {
+    List<Impact> levelImpacts = impacts.get(level);
+    if (levelImpacts == null) {
+      badi.reset(impactData[level], 0, impactDataLength[level]);
+      levelImpacts = readImpacts(badi);
+      impacts.set(level, levelImpacts);
+    }
+    return levelImpacts;
+  }
+
+  static List<Impact> readImpacts(ByteArrayDataInput in) {
+    List<Impact> impacts = new ArrayList<>();
+    int freq = 0;
+    long norm = 0;
+    while (in.eof() == false) {
+      long freqDelta = in.readVLong();
+      freq += 1 + (int) (freqDelta >>> 1);
+      if ((freqDelta & 1) != 0) {
+        norm = norm - 1 - in.readZLong();
+      } else {
+        norm = norm - 1;
+      }
+      impacts.add(new Impact(freq, norm));
+    }
+    return impacts;
+  }
+
   @Override
   protected void seekChild(int level) throws IOException {
     super.seekChild(level);
@@ -192,6 +272,16 @@ final class Lucene50SkipReader extends MultiLevelSkipListReader {
         payPointer[level] += skipStream.readVLong();
       }
     }
+
+    if (hasImpacts) {
+      int length = skipStream.readVInt();
+      if (impactData[level].length < length) {
+        impactData[level] = new byte[ArrayUtil.oversize(length, Byte.BYTES)];
+      }
+      skipStream.readBytes(impactData[level], 0, length);
+      impactDataLength[level] = length;
+      impacts.set(level, null);
+    }
     return delta;
   }
 }
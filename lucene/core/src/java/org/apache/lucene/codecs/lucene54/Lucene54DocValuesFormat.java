@@ -48,7 +48,7 @@ import org.apache.lucene.util.packed.DirectWriter;
  *    <li>Const-compressed: when there is only one possible non-missing value, only the missing
  *        bitset is encoded.
  *    <li>Sparse-compressed: only documents with a value are stored, and lookups are performed
- *        using binary search.
+ *        using binary search. Iteration walks the list of doc IDs directly.
  * </ul>
  * <p>
  * {@link DocValuesType#BINARY BINARY}:
@@ -37,12 +37,15 @@ import org.apache.lucene.index.FieldInfo;
 import org.apache.lucene.index.FieldInfos;
 import org.apache.lucene.index.IndexFileNames;
 import org.apache.lucene.index.NumericDocValues;
+import org.apache.lucene.index.NumericDocValuesIterator;
 import org.apache.lucene.index.RandomAccessOrds;
 import org.apache.lucene.index.SegmentReadState;
 import org.apache.lucene.index.SortedDocValues;
+import org.apache.lucene.index.SortedDocValuesIterator;
 import org.apache.lucene.index.SortedNumericDocValues;
 import org.apache.lucene.index.SortedSetDocValues;
 import org.apache.lucene.index.TermsEnum;
+import org.apache.lucene.search.DocIdSetIterator;
 import org.apache.lucene.store.ChecksumIndexInput;
 import org.apache.lucene.store.IndexInput;
 import org.apache.lucene.store.RandomAccessInput;
@@ -681,6 +684,192 @@ final class Lucene54DocValuesProducer extends DocValuesProducer implements Close
 
   }
 
+  @Override
+  public NumericDocValuesIterator getNumericIterator(FieldInfo field) throws IOException {
+    NumericEntry entry = numerics.get(field.name);
+    return getNumericIterator(entry, false);
+  }
+
+  /** Returns an iterator over the documents that have a value in the given
+   *  entry. Sparse entries are iterated through their doc IDs directly, dense
+   *  entries through their docsWithField bitset. If {@code skipMissingOrds}
+   *  is true, documents whose value is -1 are skipped too, which is how dense
+   *  ordinals record missing values. */
+  private NumericDocValuesIterator getNumericIterator(NumericEntry entry, boolean skipMissingOrds) throws IOException {
+    if (entry.format == SPARSE_COMPRESSED) {
+      return new SparseNumericIterator(getSparseLiveBits(entry), getNumeric(entry.nonMissingValues));
+    }
+    final DocIdSetIterator docs = getLiveDocsIterator(entry.missingOffset, maxDoc);
+    return new DenseNumericIterator(docs, getNumeric(entry), skipMissingOrds);
+  }
+
+  private DocIdSetIterator getLiveDocsIterator(final long offset, final int count) throws IOException {
+    if (offset == ALL_MISSING) {
+      return DocIdSetIterator.empty();
+    } else if (offset == ALL_LIVE) {
+      return DocIdSetIterator.all(count);
+    } else {
+      int length = (int) ((count + 7L) >>> 3);
+      final RandomAccessInput in = data.randomAccessSlice(offset, length);
+      return new LiveBitsIterator(in, count);
+    }
+  }
+
+  /** Iterates over the set bits of a docsWithField bitset, skipping empty
+   *  bytes rather than checking documents one by one. */
+  static class LiveBitsIterator extends DocIdSetIterator {
+
+    final RandomAccessInput in;
+    final int maxDoc;
+    final int numBytes;
+    int doc = -1;
+
+    LiveBitsIterator(RandomAccessInput in, int maxDoc) {
+      this.in = in;
+      this.maxDoc = maxDoc;
+      this.numBytes = (int) ((maxDoc + 7L) >>> 3);
+    }
+
+    @Override
+    public int docID() {
+      return doc;
+    }
+
+    @Override
+    public int nextDoc() throws IOException {
+      return advance(doc + 1);
+    }
+
+    @Override
+    public int advance(int target) throws IOException {
+      if (target >= maxDoc) {
+        return doc = NO_MORE_DOCS;
+      }
+      int i = target >>> 3;
+      int bits = in.readByte(i) & (0xFF << (target & 7)) & 0xFF;
+      while (bits == 0) {
+        if (++i >= numBytes) {
+          return doc = NO_MORE_DOCS;
+        }
+        bits = in.readByte(i) & 0xFF;
+      }
+      doc = (i << 3) + Integer.numberOfTrailingZeros(bits);
+      if (doc >= maxDoc) {
+        doc = NO_MORE_DOCS;
+      }
+      return doc;
+    }
+
+    @Override
+    public long cost() {
+      return maxDoc;
+    }
+  }
+
+  /** Iterator over a dense entry: values are indexed by doc ID. */
+  static class DenseNumericIterator extends NumericDocValuesIterator {
+
+    final DocIdSetIterator docs;
+    final LongValues values;
+    final boolean skipMissingOrds;
+
+    DenseNumericIterator(DocIdSetIterator docs, LongValues values, boolean skipMissingOrds) {
+      this.docs = docs;
+      this.values = values;
+      this.skipMissingOrds = skipMissingOrds;
+    }
+
+    @Override
+    public int docID() {
+      return docs.docID();
+    }
+
+    @Override
+    public int nextDoc() throws IOException {
+      return skipMissing(docs.nextDoc());
+    }
+
+    @Override
+    public int advance(int target) throws IOException {
+      return skipMissing(docs.advance(target));
+    }
+
+    private int skipMissing(int doc) throws IOException {
+      if (skipMissingOrds) {
+        while (doc != NO_MORE_DOCS && values.get(doc) == -1L) {
+          doc = docs.nextDoc();
+        }
+      }
+      return doc;
+    }
+
+    @Override
+    public long cost() {
+      return docs.cost();
+    }
+
+    @Override
+    public long longValue() {
+      return values.get(docs.docID());
+    }
+  }
+
+  /** Iterator over a sparse entry: walks the list of doc IDs that have a
+   *  value, so that iteration is proportional to the number of values. */
+  static class SparseNumericIterator extends NumericDocValuesIterator {
+
+    final SparseBits docsWithField;
+    final LongValues values;
+    long index = -1;
+    int doc = -1;
+
+    SparseNumericIterator(SparseBits docsWithField, LongValues values) {
+      this.docsWithField = docsWithField;
+      this.values = values;
+    }
+
+    @Override
+    public int docID() {
+      return doc;
+    }
+
+    @Override
+    public int nextDoc() {
+      if (++index >= docsWithField.docIDsLength) {
+        return doc = NO_MORE_DOCS;
+      }
+      return doc = (int) docsWithField.docIds.get(index);
+    }
+
+    @Override
+    public int advance(int target) {
+      if (target >= docsWithField.maxDoc) {
+        index = docsWithField.docIDsLength;
+        return doc = NO_MORE_DOCS;
+      }
+      // gallops forward from the last position of the bits
+      if (docsWithField.get((long) target)) {
+        index = docsWithField.index;
+        return doc = target;
+      }
+      index = docsWithField.index + 1;
+      if (index >= docsWithField.docIDsLength) {
+        return doc = NO_MORE_DOCS;
+      }
+      return doc = (int) docsWithField.nextDocId;
+    }
+
+    @Override
+    public long cost() {
+      return docsWithField.docIDsLength;
+    }
+
+    @Override
+    public long longValue() {
+      return values.get(index);
+    }
+  }
+
   @Override
   public BinaryDocValues getBinary(FieldInfo field) throws IOException {
     BinaryEntry bytes = binaries.get(field.name);
@@ -829,6 +1018,50 @@ final class Lucene54DocValuesProducer extends DocValuesProducer implements Close
     };
   }
 
+  @Override
+  public SortedDocValuesIterator getSortedIterator(FieldInfo field) throws IOException {
+    final int valueCount = (int) binaries.get(field.name).count;
+    final BinaryDocValues binary = getBinary(field);
+    final NumericDocValuesIterator ordinals = getNumericIterator(ords.get(field.name), true);
+    return new SortedDocValuesIterator() {
+
+      @Override
+      public int docID() {
+        return ordinals.docID();
+      }
+
+      @Override
+      public int nextDoc() throws IOException {
+        return ordinals.nextDoc();
+      }
+
+      @Override
+      public int advance(int target) throws IOException {
+        return ordinals.advance(target);
+      }
+
+      @Override
+      public long cost() {
+        return ordinals.cost();
+      }
+
+      @Override
+      public int ordValue() throws IOException {
+        return (int) ordinals.longValue();
+      }
+
+      @Override
+      public BytesRef lookupOrd(int ord) {
+        return binary.get(ord);
+      }
+
+      @Override
+      public int getValueCount() {
+        return valueCount;
+      }
+    };
+  }
+
   /** returns an address instance for sortedset ordinal lists */
   private LongValues getOrdIndexInstance(FieldInfo field, NumericEntry entry) throws IOException {
     RandomAccessInput data = this.data.randomAccessSlice(entry.offset, entry.endOffset - entry.offset);
@@ -0,0 +1,44 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.lucene.index;
+
+
+import java.io.IOException;
+
+import org.apache.lucene.util.BytesRef;
+
+/**
+ * A forward-only iterator over per-document byte[] values.
+ *
+ * @see LeafReader#getBinaryDocValuesIterator(String)
+ * @lucene.experimental
+ */
+public abstract class BinaryDocValuesIterator extends DocValuesIterator {
+
+  /** Sole constructor. (For invocation by subclass 
+   * constructors, typically implicit.) */
+  protected BinaryDocValuesIterator() {}
+
+  /**
+   * Returns the binary value for the current document. The returned
+   * {@link BytesRef} may be re-used across calls so make sure to
+   * {@link BytesRef#deepCopyOf(BytesRef) copy it} if you want to keep it
+   * around. It is illegal to call this method when the iterator is not
+   * positioned on a document.
+   */
+  public abstract BytesRef binaryValue() throws IOException;
+}
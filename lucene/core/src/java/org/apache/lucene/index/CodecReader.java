@@ -187,6 +187,36 @@ public abstract class CodecReader extends LeafReader implements Accountable {
     }
   }
 
+  @Override
+  public final NumericDocValuesIterator getNumericDocValuesIterator(String field) throws IOException {
+    ensureOpen();
+    FieldInfo fi = getDVField(field, DocValuesType.NUMERIC);
+    if (fi == null) {
+      return null;
+    }
+    return getDocValuesReader().getNumericIterator(fi);
+  }
+
+  @Override
+  public final BinaryDocValuesIterator getBinaryDocValuesIterator(String field) throws IOException {
+    ensureOpen();
+    FieldInfo fi = getDVField(field, DocValuesType.BINARY);
+    if (fi == null) {
+      return null;
+    }
+    return getDocValuesReader().getBinaryIterator(fi);
+  }
+
+  @Override
+  public final SortedDocValuesIterator getSortedDocValuesIterator(String field) throws IOException {
+    ensureOpen();
+    FieldInfo fi = getDVField(field, DocValuesType.SORTED);
+    if (fi == null) {
+      return null;
+    }
+    return getDocValuesReader().getSortedIterator(fi);
+  }
+
   @Override
   public final BinaryDocValues getBinaryDocValues(String field) throws IOException {
     ensureOpen();
@@ -20,6 +20,7 @@ package org.apache.lucene.index;
 import java.io.IOException;
 import java.util.Arrays;
 
+import org.apache.lucene.search.DocIdSetIterator;
 import org.apache.lucene.util.Bits;
 import org.apache.lucene.util.BytesRef;
 
@@ -196,7 +197,145 @@ public final class DocValues {
       }
     };
   }
-  
+
+  /**
+   * Returns a {@link NumericDocValuesIterator} over the documents of
+   * <code>docsWithField</code> that have a value, reading values from
+   * <code>dv</code>. This checks every document, codecs that know where their
+   * values are should return a more efficient iterator.
+   */
+  public static NumericDocValuesIterator iterator(final NumericDocValues dv, final Bits docsWithField) {
+    final int maxDoc = docsWithField.length();
+    return new NumericDocValuesIterator() {
+      int doc = -1;
+
+      @Override
+      public int docID() {
+        return doc;
+      }
+
+      @Override
+      public int nextDoc() {
+        return advance(doc + 1);
+      }
+
+      @Override
+      public int advance(int target) {
+        return doc = nextDocWithValue(docsWithField, maxDoc, target);
+      }
+
+      @Override
+      public long cost() {
+        return maxDoc;
+      }
+
+      @Override
+      public long longValue() {
+        return dv.get(doc);
+      }
+    };
+  }
+
+  /**
+   * Returns a {@link BinaryDocValuesIterator} over the documents of
+   * <code>docsWithField</code> that have a value, reading values from
+   * <code>dv</code>. This checks every document, codecs that know where their
+   * values are should return a more efficient iterator.
+   */
+  public static BinaryDocValuesIterator iterator(final BinaryDocValues dv, final Bits docsWithField) {
+    final int maxDoc = docsWithField.length();
+    return new BinaryDocValuesIterator() {
+      int doc = -1;
+
+      @Override
+      public int docID() {
+        return doc;
+      }
+
+      @Override
+      public int nextDoc() {
+        return advance(doc + 1);
+      }
+
+      @Override
+      public int advance(int target) {
+        return doc = nextDocWithValue(docsWithField, maxDoc, target);
+      }
+
+      @Override
+      public long cost() {
+        return maxDoc;
+      }
+
+      @Override
+      public BytesRef binaryValue() {
+        return dv.get(doc);
+      }
+    };
+  }
+
+  /**
+   * Returns a {@link SortedDocValuesIterator} over the documents of
+   * <code>dv</code> that have an ordinal. This checks every document, codecs
+   * that know where their values are should return a more efficient iterator.
+   */
+  public static SortedDocValuesIterator iterator(final SortedDocValues dv, final int maxDoc) {
+    return new SortedDocValuesIterator() {
+      int doc = -1;
+      int ord = -1;
+
+      @Override
+      public int docID() {
+        return doc;
+      }
+
+      @Override
+      public int nextDoc() {
+        return advance(doc + 1);
+      }
+
+      @Override
+      public int advance(int target) {
+        for (doc = target; doc < maxDoc; ++doc) {
+          ord = dv.getOrd(doc);
+          if (ord >= 0) {
+            return doc;
+          }
+        }
+        return doc = NO_MORE_DOCS;
+      }
+
+      @Override
+      public long cost() {
+        return maxDoc;
+      }
+
+      @Override
+      public int ordValue() {
+        return ord;
+      }
+
+      @Override
+      public BytesRef lookupOrd(int ord) {
+        return dv.lookupOrd(ord);
+      }
+
+      @Override
+      public int getValueCount() {
+        return dv.getValueCount();
+      }
+    };
+  }
+
+  private static int nextDocWithValue(Bits docsWithField, int maxDoc, int target) {
+    for (int doc = target; doc < maxDoc; ++doc) {
+      if (docsWithField.get(doc)) {
+        return doc;
+      }
+    }
+    return DocIdSetIterator.NO_MORE_DOCS;
+  }
+
   // some helpers, for transition from fieldcache apis.
   // as opposed to the LeafReader apis (which must be strict for consistency), these are lenient
   
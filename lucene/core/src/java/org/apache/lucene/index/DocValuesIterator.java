@@ -0,0 +1,40 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.lucene.index;
+
+
+import org.apache.lucene.search.DocIdSetIterator;
+
+/**
+ * Forward-only iterator over the documents that have a doc value for a field.
+ * <p>
+ * Unlike the random-access doc values APIs, implementations only visit
+ * documents that actually have a value, so iterating a sparse field costs
+ * time in proportion to the number of documents that have a value rather
+ * than to {@code maxDoc}. The value of the current document is exposed by
+ * sub-classes and is only valid while the iterator is positioned on that
+ * document.
+ *
+ * @lucene.experimental
+ */
+public abstract class DocValuesIterator extends DocIdSetIterator {
+
+  /** Sole constructor. (For invocation by subclass 
+   * constructors, typically implicit.) */
+  protected DocValuesIterator() {}
+
+}
@@ -23,7 +23,10 @@ import java.util.Collection;
 import java.util.Locale;
 import java.util.Queue;
 import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
 import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
 
 import org.apache.lucene.analysis.Analyzer;
 import org.apache.lucene.index.DocumentsWriterFlushQueue.SegmentFlushTicket;
@@ -34,6 +37,7 @@ import org.apache.lucene.search.Query;
 import org.apache.lucene.store.AlreadyClosedException;
 import org.apache.lucene.store.Directory;
 import org.apache.lucene.util.Accountable;
+import org.apache.lucene.util.IOUtils;
 import org.apache.lucene.util.InfoStream;
 
 /**
@@ -123,6 +127,10 @@ final class DocumentsWriter implements Closeable, Accountable {
   private final IndexWriter writer;
   private final Queue<Event> events;
   private long lastSeqNo;
+  // null if segments are flushed by indexing threads
+  private final Executor flushExecutor;
+  // first exception hit by a flush on the flush executor, not yet reported to the user
+  private final AtomicReference<Throwable> flushExecutorException = new AtomicReference<>();
   
   DocumentsWriter(IndexWriter writer, LiveIndexWriterConfig config, Directory directoryOrig, Directory directory) {
     this.directoryOrig = directoryOrig;
@@ -133,6 +141,7 @@ final class DocumentsWriter implements Closeable, Accountable {
     flushPolicy = config.getFlushPolicy();
     this.writer = writer;
     this.events = new ConcurrentLinkedQueue<>();
+    this.flushExecutor = config.getFlushExecutor();
     flushControl = new DocumentsWriterFlushControl(this, config, writer.bufferedUpdatesStream);
   }
   
@@ -373,6 +382,7 @@ final class DocumentsWriter implements Closeable, Accountable {
 
   private boolean preUpdate() throws IOException, AbortingException {
     ensureOpen();
+    maybeRethrowFlushExecutorException();
     boolean hasEvents = false;
     if (flushControl.anyStalledThreads() || flushControl.numQueuedFlushes() > 0) {
       // Help out flushing any queued DWPTs so we can un-stall:
@@ -392,17 +402,49 @@ final class DocumentsWriter implements Closeable, Accountable {
 
   private boolean postUpdate(DocumentsWriterPerThread flushingDWPT, boolean hasEvents) throws IOException, AbortingException {
     hasEvents |= applyAllDeletes(deleteQueue);
+    if (flushingDWPT == null) {
+      flushingDWPT = flushControl.nextPendingFlush();
+    }
     if (flushingDWPT != null) {
-      hasEvents |= doFlush(flushingDWPT);
-    } else {
-      final DocumentsWriterPerThread nextPendingFlush = flushControl.nextPendingFlush();
-      if (nextPendingFlush != null) {
-        hasEvents |= doFlush(nextPendingFlush);
+      if (flushExecutor == null || flushOnExecutor(flushingDWPT) == false) {
+        hasEvents |= doFlush(flushingDWPT);
       }
     }
 
     return hasEvents;
   }
+
+  /**
+   * Hands the given checked out DWPT over to the flush executor. Returns
+   * <code>false</code> if the executor rejected it, in which case the caller
+   * must flush it.
+   */
+  private boolean flushOnExecutor(DocumentsWriterPerThread flushingDWPT) {
+    try {
+      flushExecutor.execute(() -> writer.flushOnExecutor(flushingDWPT));
+      return true;
+    } catch (RejectedExecutionException e) {
+      if (infoStream.isEnabled("DW")) {
+        infoStream.message("DW", "flush executor rejected flush of " + flushingDWPT.getSegmentInfo().name + ", flushing in the indexing thread");
+      }
+      return false;
+    }
+  }
+
+  /** Records an exception hit while flushing on the flush executor, so that it can be rethrown to the user. */
+  void onFlushExecutorException(Throwable t) {
+    if (infoStream.isEnabled("DW")) {
+      infoStream.message("DW", "hit exception while flushing on the flush executor: " + t);
+    }
+    flushExecutorException.compareAndSet(null, t);
+  }
+
+  private void maybeRethrowFlushExecutorException() throws IOException {
+    final Throwable t = flushExecutorException.getAndSet(null);
+    if (t != null) {
+      IOUtils.reThrow(t);
+    }
+  }
   
   private void ensureInitialized(ThreadState state) throws IOException {
     if (state.dwpt == null) {
@@ -503,7 +545,7 @@ final class DocumentsWriter implements Closeable, Accountable {
     return seqNo;
   }
 
-  private boolean doFlush(DocumentsWriterPerThread flushingDWPT) throws IOException, AbortingException {
+  boolean doFlush(DocumentsWriterPerThread flushingDWPT) throws IOException, AbortingException {
     boolean hasEvents = false;
     while (flushingDWPT != null) {
       hasEvents = true;
@@ -536,7 +578,9 @@ final class DocumentsWriter implements Closeable, Accountable {
           boolean dwptSuccess = false;
           try {
             // flush concurrently without locking
+            final long flushStartNS = System.nanoTime();
             final FlushedSegment newSegment = flushingDWPT.flush();
+            flushControl.doAfterSegmentWritten(System.nanoTime() - flushStartNS);
             ticketQueue.addSegment(ticket, newSegment);
             dwptSuccess = true;
           } finally {
@@ -654,6 +698,7 @@ final class DocumentsWriter implements Closeable, Accountable {
       }
       // If a concurrent flush is still in flight wait for it
       flushControl.waitForFlush();  
+      maybeRethrowFlushExecutorException();
       if (!anythingFlushed && flushingDeleteQueue.anyChanges()) { // apply deletes if we did not flush any document
         if (infoStream.isEnabled("DW")) {
           infoStream.message("DW", Thread.currentThread().getName() + ": flush naked frozen global deletes");
@@ -72,6 +72,9 @@ final class DocumentsWriterFlushControl implements Accountable {
   private final LiveIndexWriterConfig config;
   private final BufferedUpdatesStream bufferedUpdatesStream;
   private final InfoStream infoStream;
+  private long flushCount;
+  private long flushTimeNanos;
+  private long maxFlushTimeNanos;
 
   DocumentsWriterFlushControl(DocumentsWriter documentsWriter, LiveIndexWriterConfig config, BufferedUpdatesStream bufferedUpdatesStream) {
     this.infoStream = config.getInfoStream();
@@ -232,6 +235,18 @@ final class DocumentsWriterFlushControl implements Accountable {
     }
   }
 
+  /** Records that a segment has been written in the given amount of time. */
+  synchronized void doAfterSegmentWritten(long tookNanos) {
+    flushCount++;
+    flushTimeNanos += tookNanos;
+    maxFlushTimeNanos = Math.max(maxFlushTimeNanos, tookNanos);
+  }
+
+  synchronized IndexWriter.FlushStats getFlushStats() {
+    return new IndexWriter.FlushStats(flushCount, flushTimeNanos, maxFlushTimeNanos,
+        stallControl.getStallCount(), stallControl.getStallTimeNanos());
+  }
+
   private long stallStartNS;
 
   private boolean updateStallState() {
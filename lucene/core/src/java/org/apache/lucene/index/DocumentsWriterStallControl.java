@@ -43,6 +43,8 @@ final class DocumentsWriterStallControl {
   private int numWaiting; // only with assert
   private boolean wasStalled; // only with assert
   private final Map<Thread, Boolean> waiting = new IdentityHashMap<>(); // only with assert
+  private long stallCount;
+  private long stallTimeNanos;
 
   /**
    * Update the stalled flag status. This method will set the stalled flag to
@@ -73,9 +75,12 @@ final class DocumentsWriterStallControl {
           // don't loop here, higher level logic will re-stall!
           try {
             incWaiters();
+            final long startNS = System.nanoTime();
             // Defensive, in case we have a concurrency bug that fails to .notify/All our thread:
             // just wait for up to 1 second here, and let caller re-stall if it's still needed:
             wait(1000);
+            stallCount++;
+            stallTimeNanos += System.nanoTime() - startNS;
             decrWaiters();
           } catch (InterruptedException e) {
             throw new ThreadInterruptedException(e);
@@ -88,6 +93,16 @@ final class DocumentsWriterStallControl {
   boolean anyStalledThreads() {
     return stalled;
   }
+
+  /** Returns how many times an indexing thread has been blocked. */
+  synchronized long getStallCount() {
+    return stallCount;
+  }
+
+  /** Returns the total time indexing threads spent blocked, in nanoseconds. */
+  synchronized long getStallTimeNanos() {
+    return stallTimeNanos;
+  }
   
   private void incWaiters() {
     numWaiting++;
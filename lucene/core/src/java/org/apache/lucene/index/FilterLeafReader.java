@@ -221,6 +221,17 @@ public abstract class FilterLeafReader extends LeafReader {
       return in.postings(reuse, flags);
     }
 
+    /**
+     * Delegates to the wrapped {@link TermsEnum} so that scorers can skip
+     * non-competitive blocks of documents. Sub-classes that change postings
+     * need to override this method too, for instance to wrap
+     * {@link #postings(PostingsEnum, int)} into a {@link SlowImpactsEnum}.
+     */
+    @Override
+    public ImpactsEnum impacts(int flags) throws IOException {
+      return in.impacts(flags);
+    }
+
   }
 
   /** Base class for filtering {@link PostingsEnum} implementations. */
@@ -55,6 +55,10 @@ import org.apache.lucene.index.DocumentsWriterPerThreadPool.ThreadState;
  * largest ram consuming {@link DocumentsWriterPerThread} will be marked as
  * pending iff the global active RAM consumption is {@code >=} the configured max RAM
  * buffer.
+ * <p>
+ * If {@link IndexWriterConfig#setRAMPerThreadBufferSizeMB(double)} is enabled, a
+ * {@link DocumentsWriterPerThread} is also marked as pending once its own RAM
+ * consumption is {@code >=} the configured per-thread RAM buffer.
  */
 class FlushByRamOrCountsPolicy extends FlushPolicy {
 
@@ -84,6 +88,13 @@ class FlushByRamOrCountsPolicy extends FlushPolicy {
             .getMaxBufferedDocs()) {
       // Flush this state by num docs
       control.setFlushPending(state);
+    } else if (flushOnPerThreadRAM()
+        && state.bytesUsed >= (long) (indexWriterConfig.getRAMPerThreadBufferSizeMB() * 1024.d * 1024.d)) {
+      // Flush this state by its own RAM usage
+      if (infoStream.isEnabled("FP")) {
+        infoStream.message("FP", "trigger flush: bytesUsed=" + state.bytesUsed + " vs perThreadRAMBufferSizeMB=" + indexWriterConfig.getRAMPerThreadBufferSizeMB());
+      }
+      control.setFlushPending(state);
     } else if (flushOnRAM()) {// flush by RAM
       final long limit = (long) (indexWriterConfig.getRAMBufferSizeMB() * 1024.d * 1024.d);
       final long totalRam = control.activeBytes() + control.getDeleteBytesUsed();
@@ -131,4 +142,13 @@ class FlushByRamOrCountsPolicy extends FlushPolicy {
   protected boolean flushOnRAM() {
     return indexWriterConfig.getRAMBufferSizeMB() != IndexWriterConfig.DISABLE_AUTO_FLUSH;
   }
+
+  /**
+   * Returns <code>true</code> if this {@link FlushPolicy} flushes on
+   * {@link IndexWriterConfig#getRAMPerThreadBufferSizeMB()}, otherwise
+   * <code>false</code>.
+   */
+  protected boolean flushOnPerThreadRAM() {
+    return indexWriterConfig.getRAMPerThreadBufferSizeMB() != IndexWriterConfig.DISABLE_AUTO_FLUSH;
+  }
 }
@@ -501,6 +501,59 @@ public class IndexWriter implements Closeable, TwoPhaseCommit, Accountable {
     return docWriter.ramBytesUsed();
   }
 
+  /**
+   * Returns statistics about the segments that were flushed and the time
+   * indexing threads were blocked because flushing fell behind indexing,
+   * since this writer was opened.
+   *
+   * @lucene.experimental
+   */
+  public FlushStats getFlushStats() {
+    ensureOpen();
+    return docWriter.flushControl.getFlushStats();
+  }
+
+  /**
+   * Statistics about segment flushes and indexing stalls, see
+   * {@link IndexWriter#getFlushStats()}.
+   *
+   * @lucene.experimental
+   */
+  public static final class FlushStats {
+
+    /** Number of segments that were written by flushes. */
+    public final long flushCount;
+
+    /** Total time spent writing flushed segments, in nanoseconds. */
+    public final long flushTimeNanos;
+
+    /** Longest time it took to write a single flushed segment, in nanoseconds. */
+    public final long maxFlushTimeNanos;
+
+    /** Number of times an indexing thread was blocked because flushing fell
+     *  behind indexing. */
+    public final long stallCount;
+
+    /** Total time indexing threads spent blocked because flushing fell
+     *  behind indexing, in nanoseconds. */
+    public final long stallTimeNanos;
+
+    FlushStats(long flushCount, long flushTimeNanos, long maxFlushTimeNanos, long stallCount, long stallTimeNanos) {
+      this.flushCount = flushCount;
+      this.flushTimeNanos = flushTimeNanos;
+      this.maxFlushTimeNanos = maxFlushTimeNanos;
+      this.stallCount = stallCount;
+      this.stallTimeNanos = stallTimeNanos;
+    }
+
+    @Override
+    public String toString() {
+      return "FlushStats(flushCount=" + flushCount + ", flushTimeNanos=" + flushTimeNanos
+          + ", maxFlushTimeNanos=" + maxFlushTimeNanos + ", stallCount=" + stallCount
+          + ", stallTimeNanos=" + stallTimeNanos + ")";
+    }
+  }
+
   /** Holds shared SegmentReader instances. IndexWriter uses
    *  SegmentReaders for 1) applying deletes, 2) doing
    *  merges, 3) handing out a real-time reader.  This pool
@@ -1750,6 +1803,25 @@ public class IndexWriter implements Closeable, TwoPhaseCommit, Accountable {
     }
   }
 
+  /**
+   * Flushes the given checked out DWPT, and any other pending one, on the
+   * {@link IndexWriterConfig#getFlushExecutor() flush executor}.
+   */
+  void flushOnExecutor(DocumentsWriterPerThread flushingDWPT) {
+    try {
+      try {
+        if (docWriter.doFlush(flushingDWPT)) {
+          processEvents(true, false);
+        }
+      } catch (AbortingException | VirtualMachineError tragedy) {
+        tragicEvent(tragedy, "flushOnExecutor");
+      }
+    } catch (Throwable t) {
+      // there is no caller to report to: keep the exception for the next indexing call
+      docWriter.onFlushExecutorException(t);
+    }
+  }
+
   // for test purpose
   final int getFlushCount() {
     return flushCount.get();
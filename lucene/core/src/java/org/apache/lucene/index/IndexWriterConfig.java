@@ -19,6 +19,7 @@ package org.apache.lucene.index;
 
 import java.io.PrintStream;
 import java.util.EnumSet;
+import java.util.concurrent.Executor;
 
 import org.apache.lucene.analysis.Analyzer;
 import org.apache.lucene.analysis.standard.StandardAnalyzer;
@@ -89,6 +90,9 @@ public final class IndexWriterConfig extends LiveIndexWriterConfig {
    */
   public final static double DEFAULT_RAM_BUFFER_SIZE_MB = 16.0;
 
+  /** Disabled by default (because IndexWriter flushes by global RAM usage by default). */
+  public final static double DEFAULT_RAM_PER_THREAD_BUFFER_SIZE_MB = DISABLE_AUTO_FLUSH;
+
   /** Default setting for {@link #setReaderPooling}. */
   public final static boolean DEFAULT_READER_POOLING = false;
 
@@ -357,6 +361,29 @@ public final class IndexWriterConfig extends LiveIndexWriterConfig {
     return perThreadHardLimitMB;
   }
   
+  /**
+   * Expert: sets the {@link Executor} that flushes segments. By default
+   * (<code>null</code>) the indexing thread whose document triggered a flush
+   * writes the new segment itself, which blocks it for the duration of the
+   * flush. With an executor, flushes run on the executor's threads and
+   * indexing threads return immediately. They still help flushing if
+   * indexing gets stalled because flushes fall behind.
+   * <p>
+   * Exceptions hit while flushing on the executor are rethrown by the next
+   * call that adds or updates documents, or that flushes or commits the
+   * writer.
+   *
+   * <p>Only takes effect when IndexWriter is first created. */
+  public IndexWriterConfig setFlushExecutor(Executor flushExecutor) {
+    this.flushExecutor = flushExecutor;
+    return this;
+  }
+
+  @Override
+  public Executor getFlushExecutor() {
+    return flushExecutor;
+  }
+
   @Override
   FlushPolicy getFlushPolicy() {
     return flushPolicy;
@@ -391,6 +418,11 @@ public final class IndexWriterConfig extends LiveIndexWriterConfig {
   public double getRAMBufferSizeMB() {
     return super.getRAMBufferSizeMB();
   }
+
+  @Override
+  public double getRAMPerThreadBufferSizeMB() {
+    return super.getRAMPerThreadBufferSizeMB();
+  }
   
   /** 
    * Information about merges, deletes and a
@@ -442,6 +474,11 @@ public final class IndexWriterConfig extends LiveIndexWriterConfig {
     return (IndexWriterConfig) super.setRAMBufferSizeMB(ramBufferSizeMB);
   }
   
+  @Override
+  public IndexWriterConfig setRAMPerThreadBufferSizeMB(double perThreadRAMBufferSizeMB) {
+    return (IndexWriterConfig) super.setRAMPerThreadBufferSizeMB(perThreadRAMBufferSizeMB);
+  }
+
   @Override
   public IndexWriterConfig setUseCompoundFile(boolean useCompoundFile) {
     return (IndexWriterConfig) super.setUseCompoundFile(useCompoundFile);
@@ -276,6 +276,50 @@ public abstract class LeafReader extends IndexReader {
    *  returned instance should only be used by a single thread */
   public abstract Bits getDocsWithField(String field) throws IOException;
 
+  /** Returns a forward-only {@link NumericDocValuesIterator} over the
+   *  documents that have a value for this field, or null if no
+   *  {@link NumericDocValues} were indexed for this field. The default
+   *  implementation checks {@link #getDocsWithField(String)} for every
+   *  document, codec-backed readers iterate sparse fields in time proportional
+   *  to the number of documents that have a value. The returned instance
+   *  should only be used by a single thread.
+   *  @lucene.experimental */
+  public NumericDocValuesIterator getNumericDocValuesIterator(String field) throws IOException {
+    final NumericDocValues values = getNumericDocValues(field);
+    if (values == null) {
+      return null;
+    }
+    return DocValues.iterator(values, getDocsWithField(field));
+  }
+
+  /** Returns a forward-only {@link BinaryDocValuesIterator} over the
+   *  documents that have a value for this field, or null if no
+   *  {@link BinaryDocValues} were indexed for this field. The returned
+   *  instance should only be used by a single thread.
+   *  @see #getNumericDocValuesIterator(String)
+   *  @lucene.experimental */
+  public BinaryDocValuesIterator getBinaryDocValuesIterator(String field) throws IOException {
+    final BinaryDocValues values = getBinaryDocValues(field);
+    if (values == null) {
+      return null;
+    }
+    return DocValues.iterator(values, getDocsWithField(field));
+  }
+
+  /** Returns a forward-only {@link SortedDocValuesIterator} over the
+   *  documents that have a value for this field, or null if no
+   *  {@link SortedDocValues} were indexed for this field. The returned
+   *  instance should only be used by a single thread.
+   *  @see #getNumericDocValuesIterator(String)
+   *  @lucene.experimental */
+  public SortedDocValuesIterator getSortedDocValuesIterator(String field) throws IOException {
+    final SortedDocValues values = getSortedDocValues(field);
+    if (values == null) {
+      return null;
+    }
+    return DocValues.iterator(values, maxDoc());
+  }
+
   /** Returns {@link NumericDocValues} representing norms
    *  for this field, or null if no {@link NumericDocValues}
    *  were indexed. The returned instance should only be
@@ -16,6 +16,7 @@
  */
 package org.apache.lucene.index;
 
+import java.util.concurrent.Executor;
 
 import org.apache.lucene.analysis.Analyzer;
 import org.apache.lucene.codecs.Codec;
@@ -39,6 +40,7 @@ public class LiveIndexWriterConfig {
   
   private volatile int maxBufferedDocs;
   private volatile double ramBufferSizeMB;
+  private volatile double perThreadRAMBufferSizeMB;
   private volatile int maxBufferedDeleteTerms;
   private volatile IndexReaderWarmer mergedSegmentWarmer;
 
@@ -89,6 +91,10 @@ public class LiveIndexWriterConfig {
    *  segment, after which the segment is forced to flush. */
   protected volatile int perThreadHardLimitMB;
 
+  /** {@link Executor} that runs segment flushes, or null to
+   *  flush in the indexing threads. */
+  protected volatile Executor flushExecutor;
+
   /** True if segment flushes should use compound file format */
   protected volatile boolean useCompoundFile = IndexWriterConfig.DEFAULT_USE_COMPOUND_FILE_SYSTEM;
   
@@ -102,6 +108,7 @@ public class LiveIndexWriterConfig {
   LiveIndexWriterConfig(Analyzer analyzer) {
     this.analyzer = analyzer;
     ramBufferSizeMB = IndexWriterConfig.DEFAULT_RAM_BUFFER_SIZE_MB;
+    perThreadRAMBufferSizeMB = IndexWriterConfig.DEFAULT_RAM_PER_THREAD_BUFFER_SIZE_MB;
     maxBufferedDocs = IndexWriterConfig.DEFAULT_MAX_BUFFERED_DOCS;
     maxBufferedDeleteTerms = IndexWriterConfig.DEFAULT_MAX_BUFFERED_DELETE_TERMS;
     mergedSegmentWarmer = null;
@@ -122,6 +129,7 @@ public class LiveIndexWriterConfig {
     readerPooling = IndexWriterConfig.DEFAULT_READER_POOLING;
     indexerThreadPool = new DocumentsWriterPerThreadPool();
     perThreadHardLimitMB = IndexWriterConfig.DEFAULT_RAM_PER_THREAD_HARD_LIMIT_MB;
+    flushExecutor = null;
   }
   
   /** Returns the default analyzer to use for indexing documents. */
@@ -230,6 +238,42 @@ public class LiveIndexWriterConfig {
   public double getRAMBufferSizeMB() {
     return ramBufferSizeMB;
   }
+
+  /**
+   * Determines the amount of RAM that a single {@link DocumentsWriterPerThread}
+   * may use for buffering added documents before it is flushed as a new
+   * segment, independently of the global {@link #setRAMBufferSizeMB(double)
+   * RAM buffer}.
+   * <p>
+   * When the global RAM buffer is exceeded, only the largest thread is
+   * flushed, and all indexing threads are blocked once flushing falls behind
+   * by more than twice the RAM buffer. Giving each thread its own budget
+   * spreads flushes over time so that the global buffer is rarely exceeded.
+   * This keeps flushes small and reduces the likelihood of indexing threads
+   * being stalled. Pass in {@link IndexWriterConfig#DISABLE_AUTO_FLUSH} to
+   * only flush by the global RAM buffer and document count, which is the
+   * default.
+   * <p>
+   * Takes effect immediately, but only the next time a document is added,
+   * updated or deleted.
+   *
+   * @see IndexWriterConfig#DEFAULT_RAM_PER_THREAD_BUFFER_SIZE_MB
+   *
+   * @throws IllegalArgumentException
+   *           if perThreadRAMBufferSizeMB is enabled but non-positive
+   */
+  public LiveIndexWriterConfig setRAMPerThreadBufferSizeMB(double perThreadRAMBufferSizeMB) {
+    if (perThreadRAMBufferSizeMB != IndexWriterConfig.DISABLE_AUTO_FLUSH && perThreadRAMBufferSizeMB <= 0.0) {
+      throw new IllegalArgumentException("perThreadRAMBufferSizeMB should be > 0.0 MB when enabled");
+    }
+    this.perThreadRAMBufferSizeMB = perThreadRAMBufferSizeMB;
+    return this;
+  }
+
+  /** Returns the value set by {@link #setRAMPerThreadBufferSizeMB(double)} if enabled. */
+  public double getRAMPerThreadBufferSizeMB() {
+    return perThreadRAMBufferSizeMB;
+  }
   
   /**
    * Determines the minimal number of documents required before the buffered
@@ -399,6 +443,16 @@ public class LiveIndexWriterConfig {
   public int getRAMPerThreadHardLimitMB() {
     return perThreadHardLimitMB;
   }
+
+  /**
+   * Returns the {@link Executor} that runs segment flushes, or null if
+   * segments are flushed by the indexing threads.
+   *
+   * @see IndexWriterConfig#setFlushExecutor(Executor)
+   */
+  public Executor getFlushExecutor() {
+    return flushExecutor;
+  }
   
   /**
    * @see IndexWriterConfig#setFlushPolicy(FlushPolicy)
@@ -477,6 +531,8 @@ public class LiveIndexWriterConfig {
     sb.append("indexerThreadPool=").append(getIndexerThreadPool()).append("\n");
     sb.append("readerPooling=").append(getReaderPooling()).append("\n");
     sb.append("perThreadHardLimitMB=").append(getRAMPerThreadHardLimitMB()).append("\n");
+    sb.append("perThreadRAMBufferSizeMB=").append(getRAMPerThreadBufferSizeMB()).append("\n");
+    sb.append("flushExecutor=").append(getFlushExecutor()).append("\n");
     sb.append("useCompoundFile=").append(getUseCompoundFile()).append("\n");
     sb.append("commitOnClose=").append(getCommitOnClose()).append("\n");
     sb.append("indexSort=").append(getIndexSort()).append("\n");
@@ -135,6 +135,27 @@ class SegmentDocValuesProducer extends DocValuesProducer {
     return dvProducer.getDocsWithField(field);
   }
 
+  @Override
+  public NumericDocValuesIterator getNumericIterator(FieldInfo field) throws IOException {
+    DocValuesProducer dvProducer = dvProducersByField.get(field.name);
+    assert dvProducer != null;
+    return dvProducer.getNumericIterator(field);
+  }
+
+  @Override
+  public BinaryDocValuesIterator getBinaryIterator(FieldInfo field) throws IOException {
+    DocValuesProducer dvProducer = dvProducersByField.get(field.name);
+    assert dvProducer != null;
+    return dvProducer.getBinaryIterator(field);
+  }
+
+  @Override
+  public SortedDocValuesIterator getSortedIterator(FieldInfo field) throws IOException {
+    DocValuesProducer dvProducer = dvProducersByField.get(field.name);
+    assert dvProducer != null;
+    return dvProducer.getSortedIterator(field);
+  }
+
   @Override
   public void checkIntegrity() throws IOException {
     for (DocValuesProducer producer : dvProducers) {
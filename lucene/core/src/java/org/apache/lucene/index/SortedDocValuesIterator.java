@@ -0,0 +1,57 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.lucene.index;
+
+
+import java.io.IOException;
+
+import org.apache.lucene.util.BytesRef;
+
+/**
+ * A forward-only iterator over per-document ordinals into a sorted
+ * dictionary of unique byte[] values.
+ *
+ * @see SortedDocValues
+ * @see LeafReader#getSortedDocValuesIterator(String)
+ * @lucene.experimental
+ */
+public abstract class SortedDocValuesIterator extends DocValuesIterator {
+
+  /** Sole constructor. (For invocation by subclass 
+   * constructors, typically implicit.) */
+  protected SortedDocValuesIterator() {}
+
+  /**
+   * Returns the ordinal for the current document. It is always &gt;= 0 since
+   * documents that do not have a value are never visited. It is illegal to
+   * call this method when the iterator is not positioned on a document.
+   */
+  public abstract int ordValue() throws IOException;
+
+  /** Retrieves the value for the specified ordinal. The returned
+   * {@link BytesRef} may be re-used across calls to {@link #lookupOrd(int)}
+   * so make sure to {@link BytesRef#deepCopyOf(BytesRef) copy it} if you want
+   * to keep it around.
+   * @param ord ordinal to lookup (must be &gt;= 0 and &lt; {@link #getValueCount()})
+   */
+  public abstract BytesRef lookupOrd(int ord) throws IOException;
+
+  /**
+   * Returns the number of unique values.
+   */
+  public abstract int getValueCount();
+}
@@ -146,6 +146,12 @@ class SortingLeafReader extends FilterLeafReader {
       return new SortingDocsEnum(docMap.size(), wrapReuse, inDocs, withFreqs, docMap);
     }
 
+    @Override
+    public ImpactsEnum impacts(int flags) throws IOException {
+      // impacts of the wrapped enum describe blocks of unsorted doc IDs
+      return new SlowImpactsEnum(postings(null, flags));
+    }
+
   }
 
   private static class SortingBinaryDocValues extends BinaryDocValues {
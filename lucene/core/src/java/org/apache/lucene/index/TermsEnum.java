@@ -171,6 +171,22 @@ public abstract class TermsEnum implements BytesRefIterator {
    */
   public abstract PostingsEnum postings(PostingsEnum reuse, int flags) throws IOException;
 
+  /**
+   * Return a {@link ImpactsEnum} for the current term, with control over
+   * whether freqs, positions, offsets or payloads are required, like
+   * {@link #postings(PostingsEnum, int)}. The returned enum also gives
+   * information about upcoming impacts, ie. (freq, norm) pairs, which allow
+   * scorers to skip over blocks of documents that cannot be competitive.
+   * The default implementation wraps the result of
+   * {@link #postings(PostingsEnum, int)} into a {@link SlowImpactsEnum}.
+   * Do not call this when the enum is unpositioned.
+   * @see #postings(PostingsEnum, int)
+   * @lucene.experimental
+   */
+  public ImpactsEnum impacts(int flags) throws IOException {
+    return new SlowImpactsEnum(postings(null, flags));
+  }
+
   /**
    * Expert: Returns the TermsEnums internal state to position the TermsEnum
    * without re-seeking the term dictionary.
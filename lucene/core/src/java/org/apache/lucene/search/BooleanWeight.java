@@ -286,6 +286,42 @@ final class BooleanWeight extends Weight {
     }
   }
 
+  @Override
+  public BulkScorer topScoresBulkScorer(LeafReaderContext context) throws IOException {
+    // block-max WAND only applies to disjunctions of scoring clauses
+    if (needsScores == false
+        || query.getMinimumNumberShouldMatch() > 1
+        || query.getClauses(Occur.SHOULD).size() < 2
+        || query.getClauses(Occur.SHOULD).size() + query.getClauses(Occur.MUST_NOT).size() != query.clauses().size()) {
+      return bulkScorer(context);
+    }
+
+    List<Scorer> optional = new ArrayList<>();
+    List<Scorer> prohibited = new ArrayList<>();
+    Iterator<BooleanClause> cIter = query.iterator();
+    for (Weight w  : weights) {
+      BooleanClause c =  cIter.next();
+      Scorer subScorer = w.scorer(context);
+      if (subScorer == null) {
+        continue;
+      } else if (c.isProhibited()) {
+        prohibited.add(subScorer);
+      } else {
+        optional.add(subScorer);
+      }
+    }
+
+    final Scorer scorer;
+    if (optional.isEmpty()) {
+      return null;
+    } else if (optional.size() == 1) {
+      scorer = excl(optional.get(0), prohibited);
+    } else {
+      scorer = excl(new WANDScorer(this, optional), prohibited);
+    }
+    return new DefaultBulkScorer(scorer);
+  }
+
   @Override
   public Scorer scorer(LeafReaderContext context) throws IOException {
     // initially the user provided value,
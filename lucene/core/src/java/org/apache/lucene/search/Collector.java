@@ -79,4 +79,17 @@ public interface Collector {
    * @return {@code true} if scores are needed.
    */
   boolean needsScores();
+
+  /**
+   * Indicates whether this collector needs to see every matching document,
+   * for instance in order to count them. Collectors that return {@code false}
+   * may be given scorers that skip documents whose score is less than the
+   * value that was passed to {@link Scorer#setMinCompetitiveScore(float)}.
+   * The default implementation returns {@code true}.
+   *
+   * @lucene.experimental
+   */
+  default boolean needsTotalHits() {
+    return true;
+  }
 }
@@ -20,9 +20,11 @@ package org.apache.lucene.search;
 import java.io.IOException;
 import java.util.Objects;
 
+import org.apache.lucene.index.FieldInfo;
 import org.apache.lucene.index.LeafReader;
 import org.apache.lucene.index.LeafReaderContext;
 import org.apache.lucene.util.Bits;
+import org.apache.lucene.util.Bits.MatchNoBits;
 
 /**
  * A {@link Query} that matches documents that have a value for a given field
@@ -60,11 +62,58 @@ public final class FieldValueQuery extends Query {
 
   @Override
   public Weight createWeight(IndexSearcher searcher, boolean needsScores, float boost) throws IOException {
-    return new RandomAccessWeight(this, boost) {
+    return new ConstantScoreWeight(this, boost) {
 
       @Override
-      protected Bits getMatchingDocs(LeafReaderContext context) throws IOException {
-        return context.reader().getDocsWithField(field);
+      public Scorer scorer(LeafReaderContext context) throws IOException {
+        final LeafReader reader = context.reader();
+        final FieldInfo fieldInfo = reader.getFieldInfos().fieldInfo(field);
+        if (fieldInfo == null) {
+          return null;
+        }
+        // single-valued fields can be iterated directly, which only visits
+        // documents that have a value
+        final DocIdSetIterator iterator;
+        switch (fieldInfo.getDocValuesType()) {
+          case NUMERIC:
+            iterator = reader.getNumericDocValuesIterator(field);
+            break;
+          case BINARY:
+            iterator = reader.getBinaryDocValuesIterator(field);
+            break;
+          case SORTED:
+            iterator = reader.getSortedDocValuesIterator(field);
+            break;
+          case NONE:
+            return null;
+          default:
+            return randomAccessScorer(context);
+        }
+        if (iterator == null) {
+          return null;
+        }
+        return new ConstantScoreScorer(this, score(), iterator);
+      }
+
+      private Scorer randomAccessScorer(LeafReaderContext context) throws IOException {
+        final Bits docsWithField = context.reader().getDocsWithField(field);
+        if (docsWithField == null || docsWithField instanceof MatchNoBits) {
+          return null;
+        }
+        final DocIdSetIterator approximation = DocIdSetIterator.all(context.reader().maxDoc());
+        final TwoPhaseIterator twoPhase = new TwoPhaseIterator(approximation) {
+
+          @Override
+          public boolean matches() throws IOException {
+            return docsWithField.get(approximation.docID());
+          }
+
+          @Override
+          public float matchCost() {
+            return 1; // a single lookup in docsWithField
+          }
+        };
+        return new ConstantScoreScorer(this, score(), twoPhase);
       }
 
     };
@@ -302,6 +302,60 @@ public class IndexSearcher {
     }
     return slices;
   }
+
+  /**
+   * Expert: Creates up to {@code numSlices} slices that hold roughly the same
+   * number of documents. Leaves are assigned to slices in order, and leaves
+   * that hold more documents than a slice should are split into doc ID ranges
+   * that are searched by different slices, so that a single large segment can
+   * be searched by several threads. This is intended to be returned by
+   * {@link #slices(List)}:
+   * <pre class="prettyprint">
+   * IndexSearcher searcher = new IndexSearcher(reader, executor) {
+   *   protected LeafSlice[] slices(List&lt;LeafReaderContext&gt; leaves) {
+   *     return slicesByDocCount(leaves, numThreads);
+   *   }
+   * };
+   * </pre>
+   * @lucene.experimental
+   */
+  public static LeafSlice[] slicesByDocCount(List<LeafReaderContext> leaves, int numSlices) {
+    if (numSlices < 1) {
+      throw new IllegalArgumentException("numSlices must be >= 1, got " + numSlices);
+    }
+    long totalDocs = 0;
+    for (LeafReaderContext ctx : leaves) {
+      totalDocs += ctx.reader().maxDoc();
+    }
+    final long docsPerSlice = Math.max(1, (totalDocs + numSlices - 1) / numSlices);
+
+    final List<LeafSlice> slices = new ArrayList<>();
+    final List<LeafReaderContextPartition> current = new ArrayList<>();
+    long currentDocs = 0;
+    for (LeafReaderContext ctx : leaves) {
+      final int maxDoc = ctx.reader().maxDoc();
+      int minDoc = 0;
+      while (minDoc < maxDoc) {
+        final int upTo = (int) Math.min(maxDoc, minDoc + docsPerSlice - currentDocs);
+        current.add(new LeafReaderContextPartition(ctx, minDoc, upTo));
+        currentDocs += upTo - minDoc;
+        minDoc = upTo;
+        if (currentDocs >= docsPerSlice) {
+          slices.add(new LeafSlice(current.toArray(new LeafReaderContextPartition[current.size()])));
+          current.clear();
+          currentDocs = 0;
+        }
+      }
+    }
+    if (current.isEmpty() == false) {
+      slices.add(new LeafSlice(current.toArray(new LeafReaderContextPartition[current.size()])));
+    }
+    if (slices.isEmpty() && leaves.isEmpty() == false) {
+      // only empty leaves
+      slices.add(new LeafSlice(leaves.toArray(new LeafReaderContext[leaves.size()])));
+    }
+    return slices.toArray(new LeafSlice[slices.size()]);
+  }
   
   /** Return the {@link IndexReader} this searches. */
   public IndexReader getIndexReader() {
@@ -418,24 +472,7 @@ public class IndexSearcher {
 
     final int cappedNumHits = Math.min(numHits, limit);
 
-    final CollectorManager<TopScoreDocCollector, TopDocs> manager = new CollectorManager<TopScoreDocCollector, TopDocs>() {
-
-      @Override
-      public TopScoreDocCollector newCollector() throws IOException {
-        return TopScoreDocCollector.create(cappedNumHits, after);
-      }
-
-      @Override
-      public TopDocs reduce(Collection<TopScoreDocCollector> collectors) throws IOException {
-        final TopDocs[] topDocs = new TopDocs[collectors.size()];
-        int i = 0;
-        for (TopScoreDocCollector collector : collectors) {
-          topDocs[i++] = collector.topDocs();
-        }
-        return TopDocs.merge(cappedNumHits, topDocs);
-      }
-
-    };
+    final CollectorManager<TopScoreDocCollector, TopDocs> manager = TopScoreDocCollector.createSharedManager(cappedNumHits, after);
 
     return search(query, manager);
   }
@@ -593,12 +630,12 @@ public class IndexSearcher {
       final Weight weight = createNormalizedWeight(query, needsScores);
       final List<Future<C>> topDocsFutures = new ArrayList<>(leafSlices.length);
       for (int i = 0; i < leafSlices.length; ++i) {
-        final LeafReaderContext[] leaves = leafSlices[i].leaves;
+        final LeafSlice slice = leafSlices[i];
         final C collector = collectors.get(i);
         topDocsFutures.add(executor.submit(new Callable<C>() {
           @Override
           public C call() throws Exception {
-            search(Arrays.asList(leaves), weight, collector);
+            search(slice, weight, collector);
             return collector;
           }
         }));
@@ -653,7 +690,7 @@ public class IndexSearcher {
         // continue with the following leaf
         continue;
       }
-      BulkScorer scorer = weight.bulkScorer(ctx);
+      BulkScorer scorer = bulkScorer(weight, ctx, collector);
       if (scorer != null) {
         try {
           scorer.score(leafCollector, ctx.reader().getLiveDocs());
@@ -665,6 +702,50 @@ public class IndexSearcher {
     }
   }
 
+  /**
+   * Lower-level search API.
+   * Searches the documents of the given {@link LeafSlice}. Slices that only
+   * hold entire leaves are searched with
+   * {@link #search(List, Weight, Collector)}, otherwise each leaf's
+   * {@link BulkScorer} is only asked to score the doc ID range of the slice.
+   * @lucene.experimental
+   */
+  protected void search(LeafSlice slice, Weight weight, Collector collector) throws IOException {
+    if (slice.coversEntireLeaves()) {
+      search(Arrays.asList(slice.leaves), weight, collector);
+      return;
+    }
+    for (LeafReaderContextPartition partition : slice.partitions) {
+      final LeafReaderContext ctx = partition.ctx;
+      final LeafCollector leafCollector;
+      try {
+        leafCollector = collector.getLeafCollector(ctx);
+      } catch (CollectionTerminatedException e) {
+        // there is no doc of interest in this reader context
+        // continue with the following partition
+        continue;
+      }
+      BulkScorer scorer = bulkScorer(weight, ctx, collector);
+      if (scorer != null) {
+        try {
+          scorer.score(leafCollector, ctx.reader().getLiveDocs(), partition.minDoc, partition.maxDoc);
+        } catch (CollectionTerminatedException e) {
+          // collection was terminated prematurely
+          // continue with the following partition
+        }
+      }
+    }
+  }
+
+  /** Return a bulk scorer that may skip non-competitive documents if the
+   *  collector doesn't need to see all matches. */
+  private static BulkScorer bulkScorer(Weight weight, LeafReaderContext ctx, Collector collector) throws IOException {
+    if (collector.needsScores() && collector.needsTotalHits() == false) {
+      return weight.topScoresBulkScorer(ctx);
+    }
+    return weight.bulkScorer(ctx);
+  }
+
   /** Expert: called to re-write queries into primitive queries.
    * @throws BooleanQuery.TooManyClauses If a query would exceed 
    *         {@link BooleanQuery#getMaxClauseCount()} clauses.
@@ -756,9 +837,59 @@ public class IndexSearcher {
    */
   public static class LeafSlice {
     final LeafReaderContext[] leaves;
+    final LeafReaderContextPartition[] partitions;
     
     public LeafSlice(LeafReaderContext... leaves) {
       this.leaves = leaves;
+      this.partitions = new LeafReaderContextPartition[leaves.length];
+      for (int i = 0; i < leaves.length; ++i) {
+        partitions[i] = new LeafReaderContextPartition(leaves[i], 0, leaves[i].reader().maxDoc());
+      }
+    }
+
+    /** Creates a slice that holds the given doc ID ranges of the
+     *  {@link IndexSearcher}s leaf contexts. */
+    public LeafSlice(LeafReaderContextPartition... partitions) {
+      this.partitions = partitions;
+      this.leaves = new LeafReaderContext[partitions.length];
+      for (int i = 0; i < partitions.length; ++i) {
+        leaves[i] = partitions[i].ctx;
+      }
+    }
+
+    boolean coversEntireLeaves() {
+      for (LeafReaderContextPartition partition : partitions) {
+        if (partition.isEntireLeaf() == false) {
+          return false;
+        }
+      }
+      return true;
+    }
+  }
+
+  /**
+   * A range of doc IDs, from {@code minDoc} inclusive to {@code maxDoc}
+   * exclusive, of one of the {@link IndexSearcher}s leaf contexts.
+   *
+   * @lucene.experimental
+   */
+  public static class LeafReaderContextPartition {
+    final LeafReaderContext ctx;
+    final int minDoc;
+    final int maxDoc;
+
+    public LeafReaderContextPartition(LeafReaderContext ctx, int minDoc, int maxDoc) {
+      if (minDoc < 0 || minDoc > maxDoc || maxDoc > ctx.reader().maxDoc()) {
+        throw new IllegalArgumentException("Illegal doc ID range [" + minDoc + ", " + maxDoc
+            + ") for a leaf that has maxDoc=" + ctx.reader().maxDoc());
+      }
+      this.ctx = ctx;
+      this.minDoc = minDoc;
+      this.maxDoc = maxDoc;
+    }
+
+    boolean isEntireLeaf() {
+      return minDoc == 0 && maxDoc == ctx.reader().maxDoc();
     }
   }
 
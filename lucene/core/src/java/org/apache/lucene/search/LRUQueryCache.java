@@ -18,6 +18,7 @@ package org.apache.lucene.search;
 
 
 import java.io.IOException;
+import java.io.UncheckedIOException;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
@@ -28,16 +29,22 @@ import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
 import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAdder;
 import java.util.concurrent.locks.ReentrantLock;
 import java.util.function.Predicate;
 
+import org.apache.lucene.index.LeafReader;
 import org.apache.lucene.index.LeafReader.CoreClosedListener;
 import org.apache.lucene.index.IndexReaderContext;
 import org.apache.lucene.index.LeafReaderContext;
 import org.apache.lucene.index.ReaderUtil;
 import org.apache.lucene.index.Term;
 import org.apache.lucene.index.TieredMergePolicy;
+import org.apache.lucene.store.AlreadyClosedException;
 import org.apache.lucene.util.Accountable;
 import org.apache.lucene.util.Accountables;
 import org.apache.lucene.util.BitDocIdSet;
@@ -86,7 +93,16 @@ import org.apache.lucene.util.RoaringDocIdSet;
  * {@link #onQueryCache}, {@link #onQueryEviction},
  * {@link #onDocIdSetCache}, {@link #onDocIdSetEviction} and {@link #onClear}.
  * It is better to not perform heavy computations in these methods though since
- * they are called synchronously and under a lock.
+ * they are called synchronously and under a lock. Statistics are also
+ * available per segment through {@link #getSegmentStats()}.
+ * <p>
+ * By default, all operations are performed under a single lock, which may
+ * become a point of contention when many threads search concurrently. The
+ * cache can be split into several stripes that have their own lock through
+ * {@link #LRUQueryCache(int, long, Predicate, int)}, at the cost of
+ * evictions being only approximately LRU. Cache entries can also be computed
+ * on a background executor rather than by the search that decides to cache
+ * them, see {@link #LRUQueryCache(int, long, Predicate, int, Executor)}.
  *
  * @see QueryCachingPolicy
  * @lucene.experimental
@@ -107,39 +123,87 @@ public class LRUQueryCache implements QueryCache, Accountable {
   private final int maxSize;
   private final long maxRamBytesUsed;
   private final Predicate<LeafReaderContext> leavesToCache;
-  // maps queries that are contained in the cache to a singleton so that this
-  // cache does not store several copies of the same query
-  private final Map<Query, Query> uniqueQueries;
-  // The contract between this set and the per-leaf caches is that per-leaf caches
-  // are only allowed to store sub-sets of the queries that are contained in
-  // mostRecentlyUsedQueries. This is why write operations are performed under a lock
-  private final Set<Query> mostRecentlyUsedQueries;
-  private final Map<Object, LeafCache> cache;
-  private final ReentrantLock lock;
-
-  // these variables are volatile so that we do not need to sync reads
-  // but increments need to be performed under the lock
-  private volatile long ramBytesUsed;
-  private volatile long hitCount;
-  private volatile long missCount;
-  private volatile long cacheCount;
-  private volatile long cacheSize;
+  // queries are partitioned into stripes based on their hash code, each stripe
+  // has its own lock and evicts its own queries in LRU order
+  private final Stripe[] stripes;
+  // if not null, cache entries are computed asynchronously on this executor
+  private final Executor executor;
+  // (query, segment core) pairs that are being cached asynchronously
+  private final Set<AsyncLoad> inFlightAsyncLoads;
+
+  // these counters may be updated concurrently by threads that hold
+  // the locks of different stripes
+  private final LongAdder ramBytesUsed;
+  private final LongAdder hitCount;
+  private final LongAdder missCount;
+  private final LongAdder cacheCount;
+  private final LongAdder cacheSize;
 
   /**
    * Expert: Create a new instance that will cache at most <code>maxSize</code>
    * queries with at most <code>maxRamBytesUsed</code> bytes of memory, only on
-   * leaves that satisfy {@code leavesToCache};
+   * leaves that satisfy {@code leavesToCache}. The cache is split into
+   * <code>numStripes</code> stripes that each have their own lock, which
+   * reduces contention when many threads use the cache concurrently. Each
+   * stripe holds the queries whose hash code maps to it and evicts them in
+   * LRU order in order to remain under <code>maxSize/numStripes</code>
+   * queries and <code>maxRamBytesUsed/numStripes</code> bytes, so eviction
+   * is only approximately LRU with more than one stripe. The number of
+   * stripes is capped at <code>maxSize</code>.
+   * <p>
+   * If <code>executor</code> is not <code>null</code>, cache entries are
+   * computed asynchronously: the search that decides to cache a query on a
+   * segment submits a task that computes the {@link DocIdSet} on the
+   * executor and proceeds with the uncached scorer, so that it does not pay
+   * the cost of evaluating the query over the whole segment. Later searches
+   * use the cached entry once the task is done.
    */
   public LRUQueryCache(int maxSize, long maxRamBytesUsed,
-      Predicate<LeafReaderContext> leavesToCache) {
+      Predicate<LeafReaderContext> leavesToCache, int numStripes, Executor executor) {
+    if (numStripes < 1) {
+      throw new IllegalArgumentException("numStripes must be at least 1, got " + numStripes);
+    }
     this.maxSize = maxSize;
     this.maxRamBytesUsed = maxRamBytesUsed;
     this.leavesToCache = leavesToCache;
-    uniqueQueries = new LinkedHashMap<>(16, 0.75f, true);
-    mostRecentlyUsedQueries = uniqueQueries.keySet();
-    cache = new IdentityHashMap<>();
-    lock = new ReentrantLock();
-    ramBytesUsed = 0;
+    // every stripe must be able to hold at least one query
+    numStripes = Math.max(1, Math.min(numStripes, maxSize));
+    stripes = new Stripe[numStripes];
+    for (int i = 0; i < numStripes; ++i) {
+      // spread the remainder so that stripes hold maxSize queries in total
+      final int stripeMaxSize = maxSize / numStripes + (i < maxSize % numStripes ? 1 : 0);
+      stripes[i] = new Stripe(stripeMaxSize, maxRamBytesUsed / numStripes);
+    }
+    ramBytesUsed = new LongAdder();
+    hitCount = new LongAdder();
+    missCount = new LongAdder();
+    cacheCount = new LongAdder();
+    cacheSize = new LongAdder();
+    this.executor = executor;
+    inFlightAsyncLoads = ConcurrentHashMap.newKeySet();
+  }
+
+  /**
+   * Expert: Create a new instance that will cache at most <code>maxSize</code>
+   * queries with at most <code>maxRamBytesUsed</code> bytes of memory, only on
+   * leaves that satisfy {@code leavesToCache}, using <code>numStripes</code>
+   * stripes.
+   * @see #LRUQueryCache(int, long, Predicate, int, Executor)
+   */
+  public LRUQueryCache(int maxSize, long maxRamBytesUsed,
+      Predicate<LeafReaderContext> leavesToCache, int numStripes) {
+    this(maxSize, maxRamBytesUsed, leavesToCache, numStripes, null);
+  }
+
+  /**
+   * Expert: Create a new instance that will cache at most <code>maxSize</code>
+   * queries with at most <code>maxRamBytesUsed</code> bytes of memory, only on
+   * leaves that satisfy {@code leavesToCache}. All operations on this cache
+   * are performed under a single lock.
+   */
+  public LRUQueryCache(int maxSize, long maxRamBytesUsed,
+      Predicate<LeafReaderContext> leavesToCache) {
+    this(maxSize, maxRamBytesUsed, leavesToCache, 1);
   }
 
   /**
@@ -187,8 +251,8 @@ public class LRUQueryCache implements QueryCache, Accountable {
    * @lucene.experimental
    */
   protected void onHit(Object readerCoreKey, Query query) {
-    assert lock.isHeldByCurrentThread();
-    hitCount += 1;
+    assert holdsLock();
+    hitCount.increment();
   }
 
   /**
@@ -197,9 +261,9 @@ public class LRUQueryCache implements QueryCache, Accountable {
    * @lucene.experimental
    */
   protected void onMiss(Object readerCoreKey, Query query) {
-    assert lock.isHeldByCurrentThread();
+    assert holdsLock();
     assert query != null;
-    missCount += 1;
+    missCount.increment();
   }
 
   /**
@@ -210,8 +274,8 @@ public class LRUQueryCache implements QueryCache, Accountable {
    * @lucene.experimental
    */
   protected void onQueryCache(Query query, long ramBytesUsed) {
-    assert lock.isHeldByCurrentThread();
-    this.ramBytesUsed += ramBytesUsed;
+    assert holdsLock();
+    this.ramBytesUsed.add(ramBytesUsed);
   }
 
   /**
@@ -220,8 +284,8 @@ public class LRUQueryCache implements QueryCache, Accountable {
    * @lucene.experimental
    */
   protected void onQueryEviction(Query query, long ramBytesUsed) {
-    assert lock.isHeldByCurrentThread();
-    this.ramBytesUsed -= ramBytesUsed;
+    assert holdsLock();
+    this.ramBytesUsed.add(-ramBytesUsed);
   }
 
   /**
@@ -232,10 +296,10 @@ public class LRUQueryCache implements QueryCache, Accountable {
    * @lucene.experimental
    */
   protected void onDocIdSetCache(Object readerCoreKey, long ramBytesUsed) {
-    assert lock.isHeldByCurrentThread();
-    cacheSize += 1;
-    cacheCount += 1;
-    this.ramBytesUsed += ramBytesUsed;
+    assert holdsLock();
+    cacheSize.increment();
+    cacheCount.increment();
+    this.ramBytesUsed.add(ramBytesUsed);
   }
 
   /**
@@ -245,9 +309,9 @@ public class LRUQueryCache implements QueryCache, Accountable {
    * @lucene.experimental
    */
   protected void onDocIdSetEviction(Object readerCoreKey, int numEntries, long sumRamBytesUsed) {
-    assert lock.isHeldByCurrentThread();
-    this.ramBytesUsed -= sumRamBytesUsed;
-    cacheSize -= numEntries;
+    assert holdsLock();
+    this.ramBytesUsed.add(-sumRamBytesUsed);
+    cacheSize.add(-numEntries);
   }
 
   /**
@@ -255,42 +319,56 @@ public class LRUQueryCache implements QueryCache, Accountable {
    * @lucene.experimental
    */
   protected void onClear() {
-    assert lock.isHeldByCurrentThread();
-    ramBytesUsed = 0;
-    cacheSize = 0;
+    assert holdsLock();
+    ramBytesUsed.reset();
+    cacheSize.reset();
   }
 
-  /** Whether evictions are required. */
-  boolean requiresEviction() {
-    assert lock.isHeldByCurrentThread();
-    final int size = mostRecentlyUsedQueries.size();
-    if (size == 0) {
-      return false;
-    } else {
-      return size > maxSize || ramBytesUsed() > maxRamBytesUsed;
+  /** Whether the current thread holds the lock of at least one stripe. */
+  private boolean holdsLock() {
+    for (Stripe stripe : stripes) {
+      if (stripe.lock.isHeldByCurrentThread()) {
+        return true;
+      }
     }
+    return false;
+  }
+
+  /** Return the stripe that is responsible for the given query. */
+  private Stripe stripe(Query query) {
+    if (stripes.length == 1) {
+      return stripes[0];
+    }
+    // spread the bits of the hash code like HashMap does since the
+    // distribution of Query.hashCode() is not always good
+    final int h = query.hashCode();
+    return stripes[((h ^ (h >>> 16)) & 0x7FFFFFFF) % stripes.length];
   }
 
   DocIdSet get(Query key, LeafReaderContext context) {
-    assert lock.isHeldByCurrentThread();
     assert key instanceof BoostQuery == false;
     assert key instanceof ConstantScoreQuery == false;
+    final Stripe stripe = stripe(key);
+    assert stripe.lock.isHeldByCurrentThread();
     final Object readerKey = context.reader().getCoreCacheKey();
-    final LeafCache leafCache = cache.get(readerKey);
+    final LeafCache leafCache = stripe.cache.get(readerKey);
     if (leafCache == null) {
       onMiss(readerKey, key);
       return null;
     }
     // this get call moves the query to the most-recently-used position
-    final Query singleton = uniqueQueries.get(key);
+    final Query singleton = stripe.uniqueQueries.get(key);
     if (singleton == null) {
+      leafCache.missCount += 1;
       onMiss(readerKey, key);
       return null;
     }
     final DocIdSet cached = leafCache.get(singleton);
     if (cached == null) {
+      leafCache.missCount += 1;
       onMiss(readerKey, singleton);
     } else {
+      leafCache.hitCount += 1;
       onHit(readerKey, singleton);
     }
     return cached;
@@ -299,57 +377,24 @@ public class LRUQueryCache implements QueryCache, Accountable {
   void putIfAbsent(Query query, LeafReaderContext context, DocIdSet set) {
     assert query instanceof BoostQuery == false;
     assert query instanceof ConstantScoreQuery == false;
+    final Stripe stripe = stripe(query);
     // under a lock to make sure that mostRecentlyUsedQueries and cache remain sync'ed
-    lock.lock();
+    stripe.lock.lock();
     try {
-      Query singleton = uniqueQueries.putIfAbsent(query, query);
+      LeafCache leafCache = stripe.cache.get(context.reader().getCoreCacheKey());
+      if (leafCache == null) {
+        leafCache = stripe.newLeafCache(context);
+      }
+      Query singleton = stripe.uniqueQueries.putIfAbsent(query, query);
       if (singleton == null) {
-        onQueryCache(singleton, LINKED_HASHTABLE_RAM_BYTES_PER_ENTRY + ramBytesUsed(query));
+        stripe.onQueryCache(query, LINKED_HASHTABLE_RAM_BYTES_PER_ENTRY + ramBytesUsed(query));
       } else {
         query = singleton;
       }
-      final Object key = context.reader().getCoreCacheKey();
-      LeafCache leafCache = cache.get(key);
-      if (leafCache == null) {
-        leafCache = new LeafCache(key);
-        final LeafCache previous = cache.put(context.reader().getCoreCacheKey(), leafCache);
-        ramBytesUsed += HASHTABLE_RAM_BYTES_PER_ENTRY;
-        assert previous == null;
-        // we just created a new leaf cache, need to register a close listener
-        context.reader().addCoreClosedListener(new CoreClosedListener() {
-          @Override
-          public void onClose(Object ownerCoreCacheKey) {
-            clearCoreCacheKey(ownerCoreCacheKey);
-          }
-        });
-      }
       leafCache.putIfAbsent(query, set);
-      evictIfNecessary();
+      stripe.evictIfNecessary();
     } finally {
-      lock.unlock();
-    }
-  }
-
-  void evictIfNecessary() {
-    assert lock.isHeldByCurrentThread();
-    // under a lock to make sure that mostRecentlyUsedQueries and cache keep sync'ed
-    if (requiresEviction()) {
-
-      Iterator<Query> iterator = mostRecentlyUsedQueries.iterator();
-      do {
-        final Query query = iterator.next();
-        final int size = mostRecentlyUsedQueries.size();
-        iterator.remove();
-        if (size == mostRecentlyUsedQueries.size()) {
-          // size did not decrease, because the hash of the query changed since it has been
-          // put into the cache
-          throw new ConcurrentModificationException("Removal from the cache failed! This " +
-              "is probably due to a query which has been modified after having been put into " +
-              " the cache or a badly implemented clone(). Query class: [" + query.getClass() +
-              "], query: [" + query + "]");
-        }
-        onEviction(query);
-      } while (iterator.hasNext() && requiresEviction());
+      stripe.lock.unlock();
     }
   }
 
@@ -357,21 +402,24 @@ public class LRUQueryCache implements QueryCache, Accountable {
    * Remove all cache entries for the given core cache key.
    */
   public void clearCoreCacheKey(Object coreKey) {
-    lock.lock();
-    try {
-      final LeafCache leafCache = cache.remove(coreKey);
-      if (leafCache != null) {
-        ramBytesUsed -= HASHTABLE_RAM_BYTES_PER_ENTRY;
-        final int numEntries = leafCache.cache.size();
-        if (numEntries > 0) {
-          onDocIdSetEviction(coreKey, numEntries, leafCache.ramBytesUsed);
-        } else {
-          assert numEntries == 0;
-          assert leafCache.ramBytesUsed == 0;
+    for (Stripe stripe : stripes) {
+      stripe.lock.lock();
+      try {
+        final LeafCache leafCache = stripe.cache.remove(coreKey);
+        if (leafCache != null) {
+          stripe.addRamBytesUsed(-HASHTABLE_RAM_BYTES_PER_ENTRY);
+          ramBytesUsed.add(-HASHTABLE_RAM_BYTES_PER_ENTRY);
+          final int numEntries = leafCache.cache.size();
+          if (numEntries > 0) {
+            stripe.onDocIdSetEviction(coreKey, numEntries, leafCache.ramBytesUsed);
+          } else {
+            assert numEntries == 0;
+            assert leafCache.ramBytesUsed == 0;
+          }
         }
+      } finally {
+        stripe.lock.unlock();
       }
-    } finally {
-      lock.unlock();
     }
   }
 
@@ -379,22 +427,15 @@ public class LRUQueryCache implements QueryCache, Accountable {
    * Remove all cache entries for the given query.
    */
   public void clearQuery(Query query) {
-    lock.lock();
+    final Stripe stripe = stripe(query);
+    stripe.lock.lock();
     try {
-      final Query singleton = uniqueQueries.remove(query);
+      final Query singleton = stripe.uniqueQueries.remove(query);
       if (singleton != null) {
-        onEviction(singleton);
+        stripe.onEviction(singleton);
       }
     } finally {
-      lock.unlock();
-    }
-  }
-
-  private void onEviction(Query singleton) {
-    assert lock.isHeldByCurrentThread();
-    onQueryEviction(singleton, LINKED_HASHTABLE_RAM_BYTES_PER_ENTRY + ramBytesUsed(singleton));
-    for (LeafCache leafCache : cache.values()) {
-      leafCache.remove(singleton);
+      stripe.lock.unlock();
     }
   }
 
@@ -402,69 +443,61 @@ public class LRUQueryCache implements QueryCache, Accountable {
    * Clear the content of this cache.
    */
   public void clear() {
-    lock.lock();
+    // always lock stripes in the same order to avoid deadlocks
+    for (Stripe stripe : stripes) {
+      stripe.lock.lock();
+    }
     try {
-      cache.clear();
-      mostRecentlyUsedQueries.clear();
+      for (Stripe stripe : stripes) {
+        stripe.cache.clear();
+        stripe.mostRecentlyUsedQueries.clear();
+        stripe.ramBytesUsed = 0;
+      }
       onClear();
     } finally {
-      lock.unlock();
+      for (int i = stripes.length - 1; i >= 0; --i) {
+        stripes[i].lock.unlock();
+      }
     }
   }
 
   // pkg-private for testing
   void assertConsistent() {
-    lock.lock();
-    try {
-      if (requiresEviction()) {
-        throw new AssertionError("requires evictions: size=" + mostRecentlyUsedQueries.size()
-            + ", maxSize=" + maxSize + ", ramBytesUsed=" + ramBytesUsed() + ", maxRamBytesUsed=" + maxRamBytesUsed);
-      }
-      for (LeafCache leafCache : cache.values()) {
-        Set<Query> keys = Collections.newSetFromMap(new IdentityHashMap<>());
-        keys.addAll(leafCache.cache.keySet());
-        keys.removeAll(mostRecentlyUsedQueries);
-        if (!keys.isEmpty()) {
-          throw new AssertionError("One leaf cache contains more keys than the top-level cache: " + keys);
-        }
-      }
-      long recomputedRamBytesUsed =
-            HASHTABLE_RAM_BYTES_PER_ENTRY * cache.size()
-          + LINKED_HASHTABLE_RAM_BYTES_PER_ENTRY * uniqueQueries.size();
-      for (Query query : mostRecentlyUsedQueries) {
-        recomputedRamBytesUsed += ramBytesUsed(query);
-      }
-      for (LeafCache leafCache : cache.values()) {
-        recomputedRamBytesUsed += HASHTABLE_RAM_BYTES_PER_ENTRY * leafCache.cache.size();
-        for (DocIdSet set : leafCache.cache.values()) {
-          recomputedRamBytesUsed += set.ramBytesUsed();
+    long sumRamBytesUsed = 0;
+    long recomputedCacheSize = 0;
+    for (Stripe stripe : stripes) {
+      stripe.lock.lock();
+      try {
+        stripe.assertConsistent();
+        sumRamBytesUsed += stripe.ramBytesUsed;
+        for (LeafCache leafCache : stripe.cache.values()) {
+          recomputedCacheSize += leafCache.cache.size();
         }
+      } finally {
+        stripe.lock.unlock();
       }
-      if (recomputedRamBytesUsed != ramBytesUsed) {
-        throw new AssertionError("ramBytesUsed mismatch : " + ramBytesUsed + " != " + recomputedRamBytesUsed);
-      }
-
-      long recomputedCacheSize = 0;
-      for (LeafCache leafCache : cache.values()) {
-        recomputedCacheSize += leafCache.cache.size();
-      }
-      if (recomputedCacheSize != getCacheSize()) {
-        throw new AssertionError("cacheSize mismatch : " + getCacheSize() + " != " + recomputedCacheSize);
-      }
-    } finally {
-      lock.unlock();
+    }
+    if (sumRamBytesUsed != ramBytesUsed()) {
+      throw new AssertionError("ramBytesUsed mismatch : " + ramBytesUsed() + " != " + sumRamBytesUsed);
+    }
+    if (recomputedCacheSize != getCacheSize()) {
+      throw new AssertionError("cacheSize mismatch : " + getCacheSize() + " != " + recomputedCacheSize);
     }
   }
 
   // pkg-private for testing
-  // return the list of cached queries in LRU order
+  // return the list of cached queries in LRU order, stripe by stripe
   List<Query> cachedQueries() {
-    lock.lock();
-    try {
-      return new ArrayList<>(mostRecentlyUsedQueries);
-    } finally {
-      lock.unlock();
+    final List<Query> queries = new ArrayList<>();
+    for (Stripe stripe : stripes) {
+      stripe.lock.lock();
+      try {
+        queries.addAll(stripe.mostRecentlyUsedQueries);
+      } finally {
+        stripe.lock.unlock();
+      }
     }
+    return queries;
   }
 
   @Override
@@ -478,17 +511,32 @@ public class LRUQueryCache implements QueryCache, Accountable {
 
   @Override
   public long ramBytesUsed() {
-    return ramBytesUsed;
+    return ramBytesUsed.sum();
   }
 
   @Override
   public Collection<Accountable> getChildResources() {
-    lock.lock();
-    try {
-      return Accountables.namedAccountables("segment", cache);
-    } finally {
-      lock.unlock();
+    if (stripes.length == 1) {
+      final Stripe stripe = stripes[0];
+      stripe.lock.lock();
+      try {
+        return Accountables.namedAccountables("segment", stripe.cache);
+      } finally {
+        stripe.lock.unlock();
+      }
+    }
+    final List<Accountable> resources = new ArrayList<>();
+    for (int i = 0; i < stripes.length; ++i) {
+      final Stripe stripe = stripes[i];
+      stripe.lock.lock();
+      try {
+        resources.add(Accountables.namedAccountable("stripe " + i,
+            Accountables.namedAccountables("segment", stripe.cache), stripe.ramBytesUsed));
+      } finally {
+        stripe.lock.unlock();
+      }
     }
+    return Collections.unmodifiableList(resources);
   }
 
   /**
@@ -574,7 +622,7 @@ public class LRUQueryCache implements QueryCache, Accountable {
    * @see #getMissCount()
    */
   public final long getHitCount() {
-    return hitCount;
+    return hitCount.sum();
   }
 
   /**
@@ -585,7 +633,7 @@ public class LRUQueryCache implements QueryCache, Accountable {
    * @see #getHitCount()
    */
   public final long getMissCount() {
-    return missCount;
+    return missCount.sum();
   }
 
   /**
@@ -595,7 +643,7 @@ public class LRUQueryCache implements QueryCache, Accountable {
    * @see #getEvictionCount()
    */
   public final long getCacheSize() {
-    return cacheSize;
+    return cacheSize.sum();
   }
 
   /**
@@ -608,7 +656,7 @@ public class LRUQueryCache implements QueryCache, Accountable {
    * @see #getEvictionCount()
    */
   public final long getCacheCount() {
-    return cacheCount;
+    return cacheCount.sum();
   }
 
   /**
@@ -625,14 +673,257 @@ public class LRUQueryCache implements QueryCache, Accountable {
     return getCacheCount() - getCacheSize();
   }
 
-  // this class is not thread-safe, everything but ramBytesUsed needs to be called under a lock
+  /**
+   * Statistics about the usage of the cache on a single segment.
+   * @see LRUQueryCache#getSegmentStats()
+   */
+  public static final class SegmentStats {
+
+    private final long hitCount;
+    private final long missCount;
+    private final long cacheCount;
+    private final long cacheSize;
+
+    SegmentStats(long hitCount, long missCount, long cacheCount, long cacheSize) {
+      this.hitCount = hitCount;
+      this.missCount = missCount;
+      this.cacheCount = cacheCount;
+      this.cacheSize = cacheSize;
+    }
+
+    /** Return the number of times that a cached {@link DocIdSet} has been
+     *  found for this segment.
+     *  @see LRUQueryCache#getHitCount() */
+    public long getHitCount() {
+      return hitCount;
+    }
+
+    /** Return the number of times that a query was not cached for this segment.
+     *  @see LRUQueryCache#getMissCount() */
+    public long getMissCount() {
+      return missCount;
+    }
+
+    /** Return the number of {@link DocIdSet}s of this segment which are
+     *  currently stored in the cache.
+     *  @see LRUQueryCache#getCacheSize() */
+    public long getCacheSize() {
+      return cacheSize;
+    }
+
+    /** Return the number of {@link DocIdSet}s that have been cached for this segment.
+     *  @see LRUQueryCache#getCacheCount() */
+    public long getCacheCount() {
+      return cacheCount;
+    }
+
+    /** Return the number of {@link DocIdSet}s of this segment that have been
+     *  evicted from the cache.
+     *  @see LRUQueryCache#getEvictionCount() */
+    public long getEvictionCount() {
+      return cacheCount - cacheSize;
+    }
+
+    @Override
+    public String toString() {
+      return "SegmentStats(hitCount=" + hitCount + ", missCount=" + missCount
+          + ", cacheSize=" + cacheSize + ", evictionCount=" + getEvictionCount() + ")";
+    }
+  }
+
+  /**
+   * Return a snapshot of the statistics about the usage of this cache on each
+   * segment that has entries in the cache, keyed by
+   * {@link LeafReader#getCoreCacheKey() core cache key}. Statistics of a
+   * segment are discarded when the segment is closed or when the cache is
+   * {@link #clear() cleared}. Lookups that were skipped because the segment
+   * is not eligible for caching are not counted, and neither are misses on a
+   * segment that has no entries in the cache yet.
+   */
+  public Map<Object, SegmentStats> getSegmentStats() {
+    final Map<Object, long[]> counts = new IdentityHashMap<>();
+    for (Stripe stripe : stripes) {
+      stripe.lock.lock();
+      try {
+        for (LeafCache leafCache : stripe.cache.values()) {
+          long[] segmentCounts = counts.get(leafCache.key);
+          if (segmentCounts == null) {
+            segmentCounts = new long[4];
+            counts.put(leafCache.key, segmentCounts);
+          }
+          segmentCounts[0] += leafCache.hitCount;
+          segmentCounts[1] += leafCache.missCount;
+          segmentCounts[2] += leafCache.cacheCount;
+          segmentCounts[3] += leafCache.cache.size();
+        }
+      } finally {
+        stripe.lock.unlock();
+      }
+    }
+    final Map<Object, SegmentStats> segmentStats = new IdentityHashMap<>();
+    for (Map.Entry<Object, long[]> entry : counts.entrySet()) {
+      final long[] segmentCounts = entry.getValue();
+      segmentStats.put(entry.getKey(), new SegmentStats(segmentCounts[0], segmentCounts[1], segmentCounts[2], segmentCounts[3]));
+    }
+    return segmentStats;
+  }
+
+  // a partition of the cache: everything needs to be called under the lock of the stripe
+  private class Stripe {
+
+    private final int maxSize;
+    private final long maxRamBytesUsed;
+    private final ReentrantLock lock;
+    // maps queries that are contained in the cache to a singleton so that this
+    // cache does not store several copies of the same query
+    private final Map<Query, Query> uniqueQueries;
+    // The contract between this set and the per-leaf caches is that per-leaf caches
+    // are only allowed to store sub-sets of the queries that are contained in
+    // mostRecentlyUsedQueries. This is why write operations are performed under a lock
+    private final Set<Query> mostRecentlyUsedQueries;
+    private final Map<Object, LeafCache> cache;
+    // only updated under the lock, volatile so that it can be read without the lock
+    private volatile long ramBytesUsed;
+
+    Stripe(int maxSize, long maxRamBytesUsed) {
+      this.maxSize = maxSize;
+      this.maxRamBytesUsed = maxRamBytesUsed;
+      lock = new ReentrantLock();
+      uniqueQueries = new LinkedHashMap<>(16, 0.75f, true);
+      mostRecentlyUsedQueries = uniqueQueries.keySet();
+      cache = new IdentityHashMap<>();
+      ramBytesUsed = 0;
+    }
+
+    LeafCache newLeafCache(LeafReaderContext context) {
+      assert lock.isHeldByCurrentThread();
+      final Object key = context.reader().getCoreCacheKey();
+      // register the close listener first: this fails if the reader has been
+      // closed, which may happen when entries are cached asynchronously
+      context.reader().addCoreClosedListener(new CoreClosedListener() {
+        @Override
+        public void onClose(Object ownerCoreCacheKey) {
+          clearCoreCacheKey(ownerCoreCacheKey);
+        }
+      });
+      final LeafCache leafCache = new LeafCache(this, key);
+      final LeafCache previous = cache.put(key, leafCache);
+      assert previous == null;
+      addRamBytesUsed(HASHTABLE_RAM_BYTES_PER_ENTRY);
+      LRUQueryCache.this.ramBytesUsed.add(HASHTABLE_RAM_BYTES_PER_ENTRY);
+      return leafCache;
+    }
+
+    void addRamBytesUsed(long ramBytesUsed) {
+      assert lock.isHeldByCurrentThread();
+      this.ramBytesUsed += ramBytesUsed;
+    }
+
+    void onQueryCache(Query query, long ramBytesUsed) {
+      addRamBytesUsed(ramBytesUsed);
+      LRUQueryCache.this.onQueryCache(query, ramBytesUsed);
+    }
+
+    void onDocIdSetCache(Object readerCoreKey, long ramBytesUsed) {
+      addRamBytesUsed(ramBytesUsed);
+      LRUQueryCache.this.onDocIdSetCache(readerCoreKey, ramBytesUsed);
+    }
+
+    void onDocIdSetEviction(Object readerCoreKey, int numEntries, long sumRamBytesUsed) {
+      addRamBytesUsed(-sumRamBytesUsed);
+      LRUQueryCache.this.onDocIdSetEviction(readerCoreKey, numEntries, sumRamBytesUsed);
+    }
+
+    /** Whether evictions are required. */
+    boolean requiresEviction() {
+      assert lock.isHeldByCurrentThread();
+      final int size = mostRecentlyUsedQueries.size();
+      if (size == 0) {
+        return false;
+      } else {
+        return size > maxSize || ramBytesUsed > maxRamBytesUsed;
+      }
+    }
+
+    void evictIfNecessary() {
+      assert lock.isHeldByCurrentThread();
+      // under a lock to make sure that mostRecentlyUsedQueries and cache keep sync'ed
+      if (requiresEviction()) {
+
+        Iterator<Query> iterator = mostRecentlyUsedQueries.iterator();
+        do {
+          final Query query = iterator.next();
+          final int size = mostRecentlyUsedQueries.size();
+          iterator.remove();
+          if (size == mostRecentlyUsedQueries.size()) {
+            // size did not decrease, because the hash of the query changed since it has been
+            // put into the cache
+            throw new ConcurrentModificationException("Removal from the cache failed! This " +
+                "is probably due to a query which has been modified after having been put into " +
+                " the cache or a badly implemented clone(). Query class: [" + query.getClass() +
+                "], query: [" + query + "]");
+          }
+          onEviction(query);
+        } while (iterator.hasNext() && requiresEviction());
+      }
+    }
+
+    void onEviction(Query singleton) {
+      assert lock.isHeldByCurrentThread();
+      final long ramBytesUsed = LINKED_HASHTABLE_RAM_BYTES_PER_ENTRY + LRUQueryCache.this.ramBytesUsed(singleton);
+      addRamBytesUsed(-ramBytesUsed);
+      onQueryEviction(singleton, ramBytesUsed);
+      for (LeafCache leafCache : cache.values()) {
+        leafCache.remove(singleton);
+      }
+    }
+
+    void assertConsistent() {
+      assert lock.isHeldByCurrentThread();
+      if (requiresEviction()) {
+        throw new AssertionError("requires evictions: size=" + mostRecentlyUsedQueries.size()
+            + ", maxSize=" + maxSize + ", ramBytesUsed=" + ramBytesUsed + ", maxRamBytesUsed=" + maxRamBytesUsed);
+      }
+      for (LeafCache leafCache : cache.values()) {
+        Set<Query> keys = Collections.newSetFromMap(new IdentityHashMap<>());
+        keys.addAll(leafCache.cache.keySet());
+        keys.removeAll(mostRecentlyUsedQueries);
+        if (!keys.isEmpty()) {
+          throw new AssertionError("One leaf cache contains more keys than the top-level cache: " + keys);
+        }
+      }
+      long recomputedRamBytesUsed =
+            HASHTABLE_RAM_BYTES_PER_ENTRY * cache.size()
+          + LINKED_HASHTABLE_RAM_BYTES_PER_ENTRY * uniqueQueries.size();
+      for (Query query : mostRecentlyUsedQueries) {
+        recomputedRamBytesUsed += LRUQueryCache.this.ramBytesUsed(query);
+      }
+      for (LeafCache leafCache : cache.values()) {
+        recomputedRamBytesUsed += HASHTABLE_RAM_BYTES_PER_ENTRY * leafCache.cache.size();
+        for (DocIdSet set : leafCache.cache.values()) {
+          recomputedRamBytesUsed += set.ramBytesUsed();
+        }
+      }
+      if (recomputedRamBytesUsed != ramBytesUsed) {
+        throw new AssertionError("ramBytesUsed mismatch : " + ramBytesUsed + " != " + recomputedRamBytesUsed);
+      }
+    }
+  }
+
+  // this class is not thread-safe, everything but ramBytesUsed needs to be called under the lock of its stripe
   private class LeafCache implements Accountable {
 
+    private final Stripe stripe;
     private final Object key;
     private final Map<Query, DocIdSet> cache;
     private volatile long ramBytesUsed;
+    // per-segment statistics
+    private long hitCount;
+    private long missCount;
+    private long cacheCount;
 
-    LeafCache(Object key) {
+    LeafCache(Stripe stripe, Object key) {
+      this.stripe = stripe;
       this.key = key;
       cache = new IdentityHashMap<>();
       ramBytesUsed = 0;
@@ -640,12 +931,13 @@ public class LRUQueryCache implements QueryCache, Accountable {
 
     private void onDocIdSetCache(long ramBytesUsed) {
       this.ramBytesUsed += ramBytesUsed;
-      LRUQueryCache.this.onDocIdSetCache(key, ramBytesUsed);
+      cacheCount += 1;
+      stripe.onDocIdSetCache(key, ramBytesUsed);
     }
 
     private void onDocIdSetEviction(long ramBytesUsed) {
       this.ramBytesUsed -= ramBytesUsed;
-      LRUQueryCache.this.onDocIdSetEviction(key, 1, ramBytesUsed);
+      stripe.onDocIdSetEviction(key, 1, ramBytesUsed);
     }
 
     DocIdSet get(Query query) {
@@ -679,6 +971,32 @@ public class LRUQueryCache implements QueryCache, Accountable {
 
   }
 
+  // identifies a cache entry that is being computed asynchronously
+  private static final class AsyncLoad {
+
+    private final Query query;
+    private final Object readerCoreKey;
+
+    AsyncLoad(Query query, Object readerCoreKey) {
+      this.query = query;
+      this.readerCoreKey = readerCoreKey;
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+      if (obj == null || obj.getClass() != getClass()) {
+        return false;
+      }
+      final AsyncLoad that = (AsyncLoad) obj;
+      return query.equals(that.query) && readerCoreKey == that.readerCoreKey;
+    }
+
+    @Override
+    public int hashCode() {
+      return 31 * query.hashCode() + System.identityHashCode(readerCoreKey);
+    }
+  }
+
   private class CachingWrapperWeight extends ConstantScoreWeight {
 
     private final Weight in;
@@ -702,7 +1020,8 @@ public class LRUQueryCache implements QueryCache, Accountable {
     private boolean cacheEntryHasReasonableWorstCaseSize(int maxDoc) {
       // The worst-case (dense) is a bit set which needs one bit per document
       final long worstCaseRamUsage = maxDoc / 8;
-      final long totalRamAvailable = maxRamBytesUsed;
+      // entries compete with the other entries of their stripe
+      final long totalRamAvailable = maxRamBytesUsed / stripes.length;
       // Imagine the worst-case that a cache entry is large than the size of
       // the cache: not only will this entry be trashed immediately but it
       // will also evict all current entries from the cache. For this reason
@@ -720,6 +1039,32 @@ public class LRUQueryCache implements QueryCache, Accountable {
       }
     }
 
+    /** Compute the cache entry for the given segment on the executor, unless
+     *  it is already being computed. */
+    private void cacheAsynchronously(LeafReaderContext context) {
+      final Query query = in.getQuery();
+      final AsyncLoad load = new AsyncLoad(query, context.reader().getCoreCacheKey());
+      if (inFlightAsyncLoads.add(load) == false) {
+        return;
+      }
+      try {
+        executor.execute(() -> {
+          try {
+            putIfAbsent(query, context, cache(context));
+          } catch (AlreadyClosedException e) {
+            // the reader has been closed in the meantime, nothing to cache
+          } catch (IOException e) {
+            throw new UncheckedIOException(e);
+          } finally {
+            inFlightAsyncLoads.remove(load);
+          }
+        });
+      } catch (RejectedExecutionException e) {
+        // the executor is saturated or shut down, try again next time
+        inFlightAsyncLoads.remove(load);
+      }
+    }
+
     /** Check whether this segment is eligible for caching, regardless of the query. */
     private boolean shouldCache(LeafReaderContext context) throws IOException {
       return cacheEntryHasReasonableWorstCaseSize(ReaderUtil.getTopLevelContext(context).reader().maxDoc())
@@ -738,7 +1083,8 @@ public class LRUQueryCache implements QueryCache, Accountable {
       }
 
       // If the lock is already busy, prefer using the uncached version than waiting
-      if (lock.tryLock() == false) {
+      final Stripe stripe = stripe(in.getQuery());
+      if (stripe.lock.tryLock() == false) {
         return in.scorer(context);
       }
 
@@ -746,11 +1092,15 @@ public class LRUQueryCache implements QueryCache, Accountable {
       try {
         docIdSet = get(in.getQuery(), context);
       } finally {
-        lock.unlock();
+        stripe.lock.unlock();
       }
 
       if (docIdSet == null) {
         if (policy.shouldCache(in.getQuery())) {
+          if (executor != null) {
+            cacheAsynchronously(context);
+            return in.scorer(context);
+          }
           docIdSet = cache(context);
           putIfAbsent(in.getQuery(), context, docIdSet);
         } else {
@@ -782,7 +1132,8 @@ public class LRUQueryCache implements QueryCache, Accountable {
       }
 
       // If the lock is already busy, prefer using the uncached version than waiting
-      if (lock.tryLock() == false) {
+      final Stripe stripe = stripe(in.getQuery());
+      if (stripe.lock.tryLock() == false) {
         return in.bulkScorer(context);
       }
 
@@ -790,11 +1141,15 @@ public class LRUQueryCache implements QueryCache, Accountable {
       try {
         docIdSet = get(in.getQuery(), context);
       } finally {
-        lock.unlock();
+        stripe.lock.unlock();
       }
 
       if (docIdSet == null) {
         if (policy.shouldCache(in.getQuery())) {
+          if (executor != null) {
+            cacheAsynchronously(context);
+            return in.bulkScorer(context);
+          }
           docIdSet = cache(context);
           putIfAbsent(in.getQuery(), context, docIdSet);
         } else {
@@ -0,0 +1,71 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.lucene.search;
+
+
+import java.util.concurrent.atomic.LongAccumulator;
+
+import org.apache.lucene.util.NumericUtils;
+
+/**
+ * Maintains the best minimum competitive score that has been published by a
+ * set of top-k collectors that run concurrently, so that each of them can
+ * reject hits that cannot make it to the merged top-k. This is lock-free:
+ * publishing and reading the score never block.
+ */
+final class MaxScoreAccumulator {
+
+  /** Collectors refresh their view of the shared score every {@code DEFAULT_INTERVAL+1} hits. */
+  static final int DEFAULT_INTERVAL = 0x3ff;
+
+  // scores are encoded as sortable ints so that comparing the encoded values
+  // is the same as comparing the scores, including negative scores
+  private final LongAccumulator acc = new LongAccumulator(Math::max, Long.MIN_VALUE);
+
+  /** Mask on the number of collected hits that tells collectors when to
+   *  refresh their view of the shared minimum competitive score. */
+  final int modInterval;
+
+  MaxScoreAccumulator() {
+    this(DEFAULT_INTERVAL);
+  }
+
+  MaxScoreAccumulator(int modInterval) {
+    this.modInterval = modInterval;
+  }
+
+  /** Publish the minimum competitive score of a collector whose queue is full. */
+  void accumulate(float score) {
+    assert Float.isNaN(score) == false;
+    acc.accumulate(NumericUtils.floatToSortableInt(score));
+  }
+
+  /** Return the best published minimum competitive score, or
+   *  {@link Float#NEGATIVE_INFINITY} if no score has been published yet. */
+  float get() {
+    final long value = acc.get();
+    if (value == Long.MIN_VALUE) {
+      return Float.NEGATIVE_INFINITY;
+    }
+    return NumericUtils.sortableIntToFloat((int) value);
+  }
+
+  @Override
+  public String toString() {
+    return "MaxScoreAccumulator(score=" + get() + ")";
+  }
+}
@@ -20,6 +20,8 @@ package org.apache.lucene.search;
 import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.List;
 
 import org.apache.lucene.index.LeafReaderContext;
@@ -112,6 +114,22 @@ public class MultiCollector implements Collector {
     return false;
   }
 
+  /**
+   * Returns {@code true} unless none of the wrapped collectors needs to see
+   * every matching document. Since all collectors share the same scorer, a
+   * minimum competitive score is only passed on to it once every collector
+   * has set one, and then only the least of them.
+   */
+  @Override
+  public boolean needsTotalHits() {
+    for (Collector collector : collectors) {
+      if (collector.needsTotalHits()) {
+        return true;
+      }
+    }
+    return false;
+  }
+
   @Override
   public LeafCollector getLeafCollector(LeafReaderContext context) throws IOException {
     final List<LeafCollector> leafCollectors = new ArrayList<>();
@@ -152,9 +170,11 @@ public class MultiCollector implements Collector {
       if (cacheScores) {
         scorer = new ScoreCachingWrappingScorer(scorer);
       }
+      final float[] minScores = new float[numCollectors];
+      Arrays.fill(minScores, Float.NEGATIVE_INFINITY);
       for (int i = 0; i < numCollectors; ++i) {
         final LeafCollector c = collectors[i];
-        c.setScorer(scorer);
+        c.setScorer(new MinCompetitiveScoreAwareScorer(scorer, i, minScores));
       }
     }
 
@@ -185,4 +205,46 @@ public class MultiCollector implements Collector {
 
   }
 
+  /**
+   * Scorer given to one of the wrapped collectors, which only lets the shared
+   * scorer skip documents that are not competitive for any of the collectors.
+   */
+  private static class MinCompetitiveScoreAwareScorer extends FilterScorer {
+
+    private final int idx;
+    private final float[] minScores;
+
+    MinCompetitiveScoreAwareScorer(Scorer in, int idx, float[] minScores) {
+      super(in);
+      this.idx = idx;
+      this.minScores = minScores;
+    }
+
+    @Override
+    public void setMinCompetitiveScore(float minScore) throws IOException {
+      if (minScore > minScores[idx]) {
+        final float previousMinScore = minScore();
+        minScores[idx] = minScore;
+        final float newMinScore = minScore();
+        if (newMinScore > previousMinScore) {
+          in.setMinCompetitiveScore(newMinScore);
+        }
+      }
+    }
+
+    private float minScore() {
+      float min = Float.POSITIVE_INFINITY;
+      for (float score : minScores) {
+        min = Math.min(min, score);
+      }
+      return min;
+    }
+
+    @Override
+    public Collection<ChildScorer> getChildren() {
+      return Collections.singleton(new ChildScorer(in, "SHARED"));
+    }
+
+  }
+
 }
@@ -70,6 +70,44 @@ public abstract class Scorer {
   /** Returns the freq of this Scorer on the current document */
   public abstract int freq() throws IOException;
 
+  /**
+   * Optional method: Tell the scorer that its iterator may safely ignore all
+   * documents whose score is less than the given {@code minScore}. This is
+   * only called by collectors that don't need to see every matching document,
+   * see {@link Collector#needsTotalHits()}. The default implementation does
+   * nothing.
+   * @lucene.experimental
+   */
+  public void setMinCompetitiveScore(float minScore) throws IOException {
+    // no-op by default
+  }
+
+  /**
+   * Advance the shallow skipping state of this scorer to {@code target},
+   * which must be greater than or equal to the current {@link #docID() doc ID},
+   * so that {@link #getMaxScore(int)} may ignore documents that are before
+   * {@code target}. Unlike {@link DocIdSetIterator#advance(int)}, this does not
+   * move the {@link #iterator()}. Returns the last doc ID of the block of
+   * documents that contains {@code target}, or
+   * {@link DocIdSetIterator#NO_MORE_DOCS} if this scorer doesn't know about
+   * blocks, which is what the default implementation does.
+   * @lucene.experimental
+   */
+  public int advanceShallow(int target) throws IOException {
+    return DocIdSetIterator.NO_MORE_DOCS;
+  }
+
+  /**
+   * Return an upper bound of the score of documents that are between the last
+   * target of {@link #advanceShallow(int)} and {@code upTo}, both inclusive.
+   * The default implementation returns {@link Float#POSITIVE_INFINITY}, which
+   * means that scores are unbounded.
+   * @lucene.experimental
+   */
+  public float getMaxScore(int upTo) throws IOException {
+    return Float.POSITIVE_INFINITY;
+  }
+
   /** returns parent Weight
    * @lucene.experimental
    */
@@ -21,6 +21,7 @@ import java.io.IOException;
 import java.util.Objects;
 import java.util.Set;
 
+import org.apache.lucene.index.ImpactsEnum;
 import org.apache.lucene.index.IndexReaderContext;
 import org.apache.lucene.index.LeafReader;
 import org.apache.lucene.index.LeafReaderContext;
@@ -91,7 +92,13 @@ public class TermQuery extends Query {
       if (termsEnum == null) {
         return null;
       }
-      PostingsEnum docs = termsEnum.postings(null, needsScores ? PostingsEnum.FREQS : PostingsEnum.NONE);
+      if (needsScores) {
+        // impacts allow to skip over blocks of docs that can't be competitive
+        ImpactsEnum impacts = termsEnum.impacts(PostingsEnum.FREQS);
+        assert impacts != null;
+        return new TermScorer(this, impacts, similarity.simScorer(stats, context));
+      }
+      PostingsEnum docs = termsEnum.postings(null, PostingsEnum.NONE);
       assert docs != null;
       return new TermScorer(this, docs, similarity.simScorer(stats, context));
     }
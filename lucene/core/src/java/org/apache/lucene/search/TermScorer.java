@@ -19,14 +19,19 @@ package org.apache.lucene.search;
 
 import java.io.IOException;
 
+import org.apache.lucene.index.Impacts;
+import org.apache.lucene.index.ImpactsEnum;
 import org.apache.lucene.index.PostingsEnum;
+import org.apache.lucene.index.SlowImpactsEnum;
 import org.apache.lucene.search.similarities.Similarity;
 
 /** Expert: A <code>Scorer</code> for documents matching a <code>Term</code>.
  */
 final class TermScorer extends Scorer {
-  private final PostingsEnum postingsEnum;
+  private final ImpactsEnum impactsEnum;
+  private final DocIdSetIterator iterator;
   private final Similarity.SimScorer docScorer;
+  private float minCompetitiveScore = Float.NEGATIVE_INFINITY;
 
   /**
    * Construct a <code>TermScorer</code>.
@@ -40,33 +45,142 @@ final class TermScorer extends Scorer {
    *          to be used for score computations.
    */
   TermScorer(Weight weight, PostingsEnum td, Similarity.SimScorer docScorer) {
+    this(weight, new SlowImpactsEnum(td), docScorer);
+  }
+
+  /**
+   * Construct a <code>TermScorer</code> that may skip over blocks of
+   * documents whose impacts are not competitive.
+   *
+   * @param weight
+   *          The weight of the <code>Term</code> in the query.
+   * @param impactsEnum
+   *          An iterator over the documents matching the <code>Term</code>,
+   *          which also exposes impacts.
+   * @param docScorer
+   *          The <code>Similarity.SimScorer</code> implementation
+   *          to be used for score computations.
+   */
+  TermScorer(Weight weight, ImpactsEnum impactsEnum, Similarity.SimScorer docScorer) {
     super(weight);
     this.docScorer = docScorer;
-    this.postingsEnum = td;
+    this.impactsEnum = impactsEnum;
+    this.iterator = new ImpactsDISI();
   }
 
   @Override
   public int docID() {
-    return postingsEnum.docID();
+    return impactsEnum.docID();
   }
 
   @Override
   public int freq() throws IOException {
-    return postingsEnum.freq();
+    return impactsEnum.freq();
   }
 
   @Override
   public DocIdSetIterator iterator() {
-    return postingsEnum;
+    return iterator;
+  }
+
+  @Override
+  public void setMinCompetitiveScore(float minScore) {
+    assert minScore >= minCompetitiveScore;
+    this.minCompetitiveScore = minScore;
+  }
+
+  @Override
+  public int advanceShallow(int target) throws IOException {
+    impactsEnum.advanceShallow(target);
+    return impactsEnum.getImpacts().getDocIdUpTo(0);
+  }
+
+  @Override
+  public float getMaxScore(int upTo) throws IOException {
+    final Impacts impacts = impactsEnum.getImpacts();
+    final int numLevels = impacts.numLevels();
+    for (int level = 0; level < numLevels; ++level) {
+      if (impacts.getDocIdUpTo(level) >= upTo) {
+        return docScorer.maxScore(impacts.getImpacts(level));
+      }
+    }
+    throw new AssertionError("The last level must cover all doc IDs");
   }
 
   @Override
   public float score() throws IOException {
     assert docID() != DocIdSetIterator.NO_MORE_DOCS;
-    return docScorer.score(postingsEnum.docID(), postingsEnum.freq());
+    return docScorer.score(impactsEnum.docID(), impactsEnum.freq());
   }
 
   /** Returns a string representation of this <code>TermScorer</code>. */
   @Override
   public String toString() { return "scorer(" + weight + ")[" + super.toString() + "]"; }
+
+  /**
+   * Iterator over the postings that skips blocks of documents whose impacts
+   * can't produce competitive scores, once a minimum competitive score has
+   * been set.
+   */
+  private class ImpactsDISI extends DocIdSetIterator {
+
+    // last doc ID of the range of docs that is known to be competitive
+    private int upTo = -1;
+
+    /** Return the first target that is greater than or equal to {@code target}
+     *  and that may be competitive. */
+    private int advanceTarget(int target) throws IOException {
+      if (minCompetitiveScore == Float.NEGATIVE_INFINITY || target <= upTo) {
+        // no skipping, or the current range of docs is competitive
+        return target;
+      }
+
+      while (true) {
+        impactsEnum.advanceShallow(target);
+        final Impacts impacts = impactsEnum.getImpacts();
+        final int numLevels = impacts.numLevels();
+        if (docScorer.maxScore(impacts.getImpacts(0)) >= minCompetitiveScore) {
+          upTo = impacts.getDocIdUpTo(0);
+          return target;
+        }
+        // skip the largest range of docs that can't be competitive
+        int skipUpTo = impacts.getDocIdUpTo(0);
+        for (int level = 1; level < numLevels; ++level) {
+          if (docScorer.maxScore(impacts.getImpacts(level)) >= minCompetitiveScore) {
+            break;
+          }
+          skipUpTo = impacts.getDocIdUpTo(level);
+        }
+        if (skipUpTo == NO_MORE_DOCS) {
+          return NO_MORE_DOCS;
+        }
+        target = skipUpTo + 1;
+      }
+    }
+
+    @Override
+    public int docID() {
+      return impactsEnum.docID();
+    }
+
+    @Override
+    public int nextDoc() throws IOException {
+      final int target = impactsEnum.docID() + 1;
+      final int newTarget = advanceTarget(target);
+      if (newTarget == target) {
+        return impactsEnum.nextDoc();
+      }
+      return impactsEnum.advance(newTarget);
+    }
+
+    @Override
+    public int advance(int target) throws IOException {
+      return impactsEnum.advance(advanceTarget(target));
+    }
+
+    @Override
+    public long cost() {
+      return impactsEnum.cost();
+    }
+  }
 }
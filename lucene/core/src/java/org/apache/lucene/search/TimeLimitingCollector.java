@@ -166,6 +166,11 @@ public class TimeLimitingCollector implements Collector {
     return collector.needsScores();
   }
 
+  @Override
+  public boolean needsTotalHits() {
+    return collector.needsTotalHits();
+  }
+
   /**
    * This is so the same timer can be used with a multi-phase search process such as grouping. 
    * We don't want to create a new TimeLimitingCollector for each phase because that would 
@@ -28,6 +28,11 @@ public class TopDocs {
   /** The total number of hits for the query. */
   public int totalHits;
 
+  /** Whether {@link #totalHits} is the exact number of hits, or only a
+   *  lower bound of it.
+   *  @see TopScoreDocCollector#create(int, ScoreDoc, int) */
+  public boolean totalHitsExact;
+
   /** The top hits for the query. */
   public ScoreDoc[] scoreDocs;
 
@@ -53,7 +58,14 @@ public class TopDocs {
   }
 
   public TopDocs(int totalHits, ScoreDoc[] scoreDocs, float maxScore) {
+    this(totalHits, true, scoreDocs, maxScore);
+  }
+
+  /** Constructs a TopDocs whose total hit count may only be a lower bound
+   *  of the number of hits, if <code>totalHitsExact</code> is false. */
+  public TopDocs(int totalHits, boolean totalHitsExact, ScoreDoc[] scoreDocs, float maxScore) {
     this.totalHits = totalHits;
+    this.totalHitsExact = totalHitsExact;
     this.scoreDocs = scoreDocs;
     this.maxScore = maxScore;
   }
@@ -243,6 +255,7 @@ public class TopDocs {
     }
 
     int totalHitCount = 0;
+    boolean totalHitsExact = true;
     int availHitCount = 0;
     float maxScore = Float.MIN_VALUE;
     for(int shardIDX=0;shardIDX<shardHits.length;shardIDX++) {
@@ -250,6 +263,7 @@ public class TopDocs {
       // totalHits can be non-zero even if no hits were
       // collected, when searchAfter was used:
       totalHitCount += shard.totalHits;
+      totalHitsExact &= shard.totalHitsExact;
       if (shard.scoreDocs != null && shard.scoreDocs.length > 0) {
         availHitCount += shard.scoreDocs.length;
         queue.add(new ShardRef(shardIDX));
@@ -294,9 +308,11 @@ public class TopDocs {
     }
 
     if (sort == null) {
-      return new TopDocs(totalHitCount, hits, maxScore);
+      return new TopDocs(totalHitCount, totalHitsExact, hits, maxScore);
     } else {
-      return new TopFieldDocs(totalHitCount, hits, sort.getSort(), maxScore);
+      TopFieldDocs topFieldDocs = new TopFieldDocs(totalHitCount, hits, sort.getSort(), maxScore);
+      topFieldDocs.totalHitsExact = totalHitsExact;
+      return topFieldDocs;
     }
   }
 }
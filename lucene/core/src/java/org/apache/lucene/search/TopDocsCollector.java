@@ -47,6 +47,9 @@ public abstract class TopDocsCollector<T extends ScoreDoc> implements Collector
 
   /** The total number of documents that the collector encountered. */
   protected int totalHits;
+
+  /** Whether {@link #totalHits} is exact, or only a lower bound of the number of matches. */
+  protected boolean totalHitsExact = true;
   
   protected TopDocsCollector(PriorityQueue<T> pq) {
     this.pq = pq;
@@ -69,13 +72,22 @@ public abstract class TopDocsCollector<T extends ScoreDoc> implements Collector
    * topDocs were invalid.
    */
   protected TopDocs newTopDocs(ScoreDoc[] results, int start) {
-    return results == null ? EMPTY_TOPDOCS : new TopDocs(totalHits, results);
+    return results == null ? EMPTY_TOPDOCS : new TopDocs(totalHits, totalHitsExact, results, Float.NaN);
   }
   
   /** The total number of documents that matched this query. */
   public int getTotalHits() {
     return totalHits;
   }
+
+  /**
+   * Whether {@link #getTotalHits()} is the exact number of documents that
+   * matched the query, or only a lower bound if the collector allowed scorers
+   * to skip non-competitive documents.
+   */
+  public boolean isTotalHitsExact() {
+    return totalHitsExact;
+  }
   
   /** The number of valid PQ entries */
   protected int topDocsSize() {
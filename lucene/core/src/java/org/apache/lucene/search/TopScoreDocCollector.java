@@ -18,6 +18,7 @@ package org.apache.lucene.search;
 
 
 import java.io.IOException;
+import java.util.Collection;
 
 import org.apache.lucene.index.LeafReaderContext;
 
@@ -36,21 +37,42 @@ import org.apache.lucene.index.LeafReaderContext;
  */
 public abstract class TopScoreDocCollector extends TopDocsCollector<ScoreDoc> {
 
-  abstract static class ScorerLeafCollector implements LeafCollector {
+  abstract class ScorerLeafCollector implements LeafCollector {
 
     Scorer scorer;
+    // the minimum competitive score that was last given to the scorer
+    float minCompetitiveScore;
 
     @Override
     public void setScorer(Scorer scorer) throws IOException {
       this.scorer = scorer;
+      minCompetitiveScore = Float.NEGATIVE_INFINITY;
+      updateMinCompetitiveScore();
+    }
+
+    /** Let the scorer skip hits that can't compete, once more than
+     *  {@link #totalHitsThreshold} hits have been counted. */
+    void updateMinCompetitiveScore() throws IOException {
+      if (totalHits <= totalHitsThreshold) {
+        return;
+      }
+      // Since docs are collected in order, hits that score the same as
+      // pqTop can't compete either.
+      float minScore = pqTop.score == Float.NEGATIVE_INFINITY ? Float.NEGATIVE_INFINITY : Math.nextUp(pqTop.score);
+      minScore = Math.max(minScore, globalMinCompetitiveScore);
+      if (minScore > minCompetitiveScore) {
+        scorer.setMinCompetitiveScore(minScore);
+        minCompetitiveScore = minScore;
+        totalHitsExact = false;
+      }
     }
 
   }
 
   private static class SimpleTopScoreDocCollector extends TopScoreDocCollector {
 
-    SimpleTopScoreDocCollector(int numHits) {
-      super(numHits);
+    SimpleTopScoreDocCollector(int numHits, int totalHitsThreshold, MaxScoreAccumulator minScoreAcc) {
+      super(numHits, totalHitsThreshold, minScoreAcc);
     }
 
     @Override
@@ -68,15 +90,28 @@ public abstract class TopScoreDocCollector extends TopDocsCollector<ScoreDoc> {
           assert !Float.isNaN(score);
 
           totalHits++;
+          if (minScoreAcc != null && (totalHits & minScoreAcc.modInterval) == 0) {
+            updateGlobalMinCompetitiveScore();
+            updateMinCompetitiveScore();
+          } else if (totalHits == totalHitsThreshold + 1) {
+            updateMinCompetitiveScore();
+          }
+
           if (score <= pqTop.score) {
             // Since docs are returned in-order (i.e., increasing doc Id), a document
             // with equal score to pqTop.score cannot compete since HitQueue favors
             // documents with lower doc Ids. Therefore reject those docs too.
             return;
           }
+          if (score < globalMinCompetitiveScore) {
+            // another collector already has numHits hits that score better
+            return;
+          }
           pqTop.doc = doc + docBase;
           pqTop.score = score;
           pqTop = pq.updateTop();
+          publishMinCompetitiveScore();
+          updateMinCompetitiveScore();
         }
 
       };
@@ -89,8 +124,8 @@ public abstract class TopScoreDocCollector extends TopDocsCollector<ScoreDoc> {
     private final ScoreDoc after;
     private int collectedHits;
 
-    PagingTopScoreDocCollector(int numHits, ScoreDoc after) {
-      super(numHits);
+    PagingTopScoreDocCollector(int numHits, ScoreDoc after, int totalHitsThreshold, MaxScoreAccumulator minScoreAcc) {
+      super(numHits, totalHitsThreshold, minScoreAcc);
       this.after = after;
       this.collectedHits = 0;
     }
@@ -102,7 +137,7 @@ public abstract class TopScoreDocCollector extends TopDocsCollector<ScoreDoc> {
 
     @Override
     protected TopDocs newTopDocs(ScoreDoc[] results, int start) {
-      return results == null ? new TopDocs(totalHits, new ScoreDoc[0], Float.NaN) : new TopDocs(totalHits, results);
+      return new TopDocs(totalHits, totalHitsExact, results == null ? new ScoreDoc[0] : results, Float.NaN);
     }
 
     @Override
@@ -119,22 +154,36 @@ public abstract class TopScoreDocCollector extends TopDocsCollector<ScoreDoc> {
           assert !Float.isNaN(score);
 
           totalHits++;
+          if (totalHits == totalHitsThreshold + 1) {
+            updateMinCompetitiveScore();
+          }
 
           if (score > after.score || (score == after.score && doc <= afterDoc)) {
             // hit was collected on a previous page
             return;
           }
 
+          if (minScoreAcc != null && (totalHits & minScoreAcc.modInterval) == 0) {
+            updateGlobalMinCompetitiveScore();
+            updateMinCompetitiveScore();
+          }
+
           if (score <= pqTop.score) {
             // Since docs are returned in-order (i.e., increasing doc Id), a document
             // with equal score to pqTop.score cannot compete since HitQueue favors
             // documents with lower doc Ids. Therefore reject those docs too.
             return;
           }
+          if (score < globalMinCompetitiveScore) {
+            // another collector already has numHits hits that score better
+            return;
+          }
           collectedHits++;
           pqTop.doc = doc + docBase;
           pqTop.score = score;
           pqTop = pq.updateTop();
+          publishMinCompetitiveScore();
+          updateMinCompetitiveScore();
         }
       };
     }
@@ -165,26 +214,123 @@ public abstract class TopScoreDocCollector extends TopDocsCollector<ScoreDoc> {
    * objects.
    */
   public static TopScoreDocCollector create(int numHits, ScoreDoc after) {
+    return create(numHits, after, Integer.MAX_VALUE);
+  }
+
+  /**
+   * Creates a new {@link TopScoreDocCollector} given the number of hits to
+   * collect, the bottom of the previous page, and the number of hits to count
+   * accurately.
+   *
+   * <p>Once more than {@code totalHitsThreshold} hits have been collected,
+   * scorers are allowed to skip documents that can't make it to the top hits,
+   * which can make collection much faster, for instance on disjunctions. The
+   * total hit count is then only a lower bound of the number of matches, which
+   * is reported by {@link TopDocs#totalHitsExact}. Pass
+   * {@link Integer#MAX_VALUE} to always count hits accurately, or {@code 0} if
+   * the total hit count is not needed at all.
+   *
+   * <p><b>NOTE</b>: The instances returned by this method
+   * pre-allocate a full array of length
+   * <code>numHits</code>, and fill the array with sentinel
+   * objects.
+   */
+  public static TopScoreDocCollector create(int numHits, ScoreDoc after, int totalHitsThreshold) {
+    return create(numHits, after, totalHitsThreshold, null);
+  }
+
+  static TopScoreDocCollector create(int numHits, ScoreDoc after, int totalHitsThreshold, MaxScoreAccumulator minScoreAcc) {
 
     if (numHits <= 0) {
       throw new IllegalArgumentException("numHits must be > 0; please use TotalHitCountCollector if you just need the total hit count");
     }
 
+    if (totalHitsThreshold < 0) {
+      throw new IllegalArgumentException("totalHitsThreshold must be >= 0, got " + totalHitsThreshold);
+    }
+
     if (after == null) {
-      return new SimpleTopScoreDocCollector(numHits);
+      return new SimpleTopScoreDocCollector(numHits, totalHitsThreshold, minScoreAcc);
     } else {
-      return new PagingTopScoreDocCollector(numHits, after);
+      return new PagingTopScoreDocCollector(numHits, after, totalHitsThreshold, minScoreAcc);
     }
   }
 
+  /**
+   * Creates a {@link CollectorManager} whose collectors share the minimum
+   * score that a hit needs to make it to the top <code>numHits</code>: as soon
+   * as one collector has collected <code>numHits</code> hits, the other ones
+   * reject hits that score below its worst hit without adding them to their
+   * priority queue. This is useful when collectors run concurrently, as in
+   * {@link IndexSearcher#search(Query, CollectorManager)} with an executor.
+   * The returned manager must only be used for a single search.
+   */
+  public static CollectorManager<TopScoreDocCollector, TopDocs> createSharedManager(int numHits, ScoreDoc after) {
+    return createSharedManager(numHits, after, Integer.MAX_VALUE);
+  }
+
+  /**
+   * Same as {@link #createSharedManager(int, ScoreDoc)}, but scorers are
+   * allowed to skip non-competitive hits once a collector has collected more
+   * than {@code totalHitsThreshold} hits, see
+   * {@link #create(int, ScoreDoc, int)}.
+   */
+  public static CollectorManager<TopScoreDocCollector, TopDocs> createSharedManager(int numHits, ScoreDoc after, int totalHitsThreshold) {
+    if (numHits <= 0) {
+      throw new IllegalArgumentException("numHits must be > 0; please use TotalHitCountCollector if you just need the total hit count");
+    }
+
+    return new CollectorManager<TopScoreDocCollector, TopDocs>() {
+
+      private final MaxScoreAccumulator minScoreAcc = new MaxScoreAccumulator();
+
+      @Override
+      public TopScoreDocCollector newCollector() throws IOException {
+        return TopScoreDocCollector.create(numHits, after, totalHitsThreshold, minScoreAcc);
+      }
+
+      @Override
+      public TopDocs reduce(Collection<TopScoreDocCollector> collectors) throws IOException {
+        final TopDocs[] topDocs = new TopDocs[collectors.size()];
+        int i = 0;
+        for (TopScoreDocCollector collector : collectors) {
+          topDocs[i++] = collector.topDocs();
+        }
+        return TopDocs.merge(numHits, topDocs);
+      }
+
+    };
+  }
+
   ScoreDoc pqTop;
+  /** number of hits to count accurately before non-competitive hits may be skipped */
+  final int totalHitsThreshold;
+  /** shared with other collectors of the same search, or null */
+  final MaxScoreAccumulator minScoreAcc;
+  /** the best minimum competitive score that other collectors published */
+  float globalMinCompetitiveScore = Float.NEGATIVE_INFINITY;
 
   // prevents instantiation
-  TopScoreDocCollector(int numHits) {
+  TopScoreDocCollector(int numHits, int totalHitsThreshold, MaxScoreAccumulator minScoreAcc) {
     super(new HitQueue(numHits, true));
+    this.totalHitsThreshold = totalHitsThreshold;
     // HitQueue implements getSentinelObject to return a ScoreDoc, so we know
     // that at this point top() is already initialized.
     pqTop = pq.top();
+    this.minScoreAcc = minScoreAcc;
+  }
+
+  void updateGlobalMinCompetitiveScore() {
+    assert minScoreAcc != null;
+    globalMinCompetitiveScore = minScoreAcc.get();
+  }
+
+  void publishMinCompetitiveScore() {
+    // the queue is pre-populated with sentinels that score -Infinity, which
+    // can't be published until they have all been replaced
+    if (minScoreAcc != null && pqTop.score != Float.NEGATIVE_INFINITY) {
+      minScoreAcc.accumulate(pqTop.score);
+    }
   }
 
   @Override
@@ -205,11 +351,16 @@ public abstract class TopScoreDocCollector extends TopDocsCollector<ScoreDoc> {
       maxScore = pq.pop().score;
     }
 
-    return new TopDocs(totalHits, results, maxScore);
+    return new TopDocs(totalHits, totalHitsExact, results, maxScore);
   }
 
   @Override
   public boolean needsScores() {
     return true;
   }
+
+  @Override
+  public boolean needsTotalHits() {
+    return totalHitsThreshold == Integer.MAX_VALUE;
+  }
 }
@@ -0,0 +1,220 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.lucene.search;
+
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * A {@link Scorer} for pure disjunctions that skips documents that can't
+ * make it to the top hits, using the block-max WAND algorithm. Sub scorers
+ * are sorted by their current doc ID, and the upper bounds of their scores
+ * are summed in this order in order to find the first document, called the
+ * pivot, whose score may be greater than or equal to the minimum competitive
+ * score. Before advancing to the pivot, the upper bounds of the scores over
+ * the current blocks of postings are used to skip entire blocks at once.
+ *
+ * Until {@link #setMinCompetitiveScore(float)} is called, this scorer matches
+ * the same documents as a {@link DisjunctionSumScorer} and produces the same
+ * scores.
+ *
+ * @see "Ding, Shuai, and Torsten Suel. Faster top-k document retrieval using
+ *       block-max indexes."
+ */
+final class WANDScorer extends Scorer {
+
+  // sub scorers, sorted by doc ID when looking for the next candidate
+  private final DisiWrapper[] subs;
+  private final long cost;
+
+  private float minCompetitiveScore = Float.NEGATIVE_INFINITY;
+  private int doc = -1;
+
+  WANDScorer(Weight weight, List<Scorer> scorers) throws IOException {
+    super(weight);
+    if (scorers.size() <= 1) {
+      throw new IllegalArgumentException("There must be at least 2 subScorers");
+    }
+    subs = new DisiWrapper[scorers.size()];
+    long cost = 0;
+    for (int i = 0; i < subs.length; ++i) {
+      final Scorer scorer = scorers.get(i);
+      final DisiWrapper w = new DisiWrapper(scorer);
+      w.maxScore = scorer.getMaxScore(DocIdSetIterator.NO_MORE_DOCS);
+      cost += w.cost;
+      subs[i] = w;
+    }
+    this.cost = cost;
+  }
+
+  @Override
+  public void setMinCompetitiveScore(float minScore) {
+    assert minScore >= minCompetitiveScore : "minimum competitive scores must not decrease";
+    minCompetitiveScore = minScore;
+  }
+
+  @Override
+  public int docID() {
+    return doc;
+  }
+
+  @Override
+  public float score() throws IOException {
+    double score = 0;
+    for (DisiWrapper w : subs) {
+      if (w.doc == doc) {
+        score += w.scorer.score();
+      }
+    }
+    return (float) score;
+  }
+
+  @Override
+  public int freq() throws IOException {
+    int freq = 0;
+    for (DisiWrapper w : subs) {
+      if (w.doc == doc) {
+        freq++;
+      }
+    }
+    return freq;
+  }
+
+  @Override
+  public Collection<ChildScorer> getChildren() {
+    List<ChildScorer> children = new ArrayList<>();
+    for (DisiWrapper w : subs) {
+      children.add(new ChildScorer(w.scorer, "SHOULD"));
+    }
+    return children;
+  }
+
+  @Override
+  public DocIdSetIterator iterator() {
+    return new DocIdSetIterator() {
+
+      @Override
+      public int docID() {
+        return doc;
+      }
+
+      @Override
+      public int nextDoc() throws IOException {
+        return advance(doc + 1);
+      }
+
+      @Override
+      public int advance(int target) throws IOException {
+        for (DisiWrapper w : subs) {
+          if (w.doc < target) {
+            w.doc = w.iterator.advance(target);
+          }
+        }
+        return doc = nextCandidate();
+      }
+
+      @Override
+      public long cost() {
+        return cost;
+      }
+    };
+  }
+
+  /** Sort sub scorers by doc ID. They are often almost sorted already. */
+  private void sortByDoc() {
+    for (int i = 1; i < subs.length; ++i) {
+      final DisiWrapper w = subs[i];
+      int j = i - 1;
+      while (j >= 0 && subs[j].doc > w.doc) {
+        subs[j + 1] = subs[j];
+        j--;
+      }
+      subs[j + 1] = w;
+    }
+  }
+
+  /** Find the first doc ID that sub scorers are on or after and that may be
+   *  competitive, and position all sub scorers that match it on it. */
+  private int nextCandidate() throws IOException {
+    while (true) {
+      sortByDoc();
+
+      // Find the pivot: docs before it only match sub scorers whose
+      // upper bounds of the score sum up to less than the minimum competitive
+      // score, so they can be skipped
+      double maxScoreSum = 0;
+      int pivotIndex = -1;
+      for (int i = 0; i < subs.length; ++i) {
+        maxScoreSum += subs[i].maxScore;
+        if ((float) maxScoreSum >= minCompetitiveScore) {
+          pivotIndex = i;
+          break;
+        }
+      }
+      if (pivotIndex == -1) {
+        return DocIdSetIterator.NO_MORE_DOCS;
+      }
+      final int pivot = subs[pivotIndex].doc;
+      if (pivot == DocIdSetIterator.NO_MORE_DOCS) {
+        return DocIdSetIterator.NO_MORE_DOCS;
+      }
+
+      // Sub scorers that are on or before the pivot
+      int numLeading = pivotIndex + 1;
+      while (numLeading < subs.length && subs[numLeading].doc == pivot) {
+        numLeading++;
+      }
+
+      if (minCompetitiveScore != Float.NEGATIVE_INFINITY) {
+        // Docs from the pivot up to the next doc of the other sub scorers
+        // only match the leading sub scorers: check whether the upper bounds
+        // of their scores over their current blocks can be competitive
+        int upTo = numLeading < subs.length ? subs[numLeading].doc - 1 : DocIdSetIterator.NO_MORE_DOCS;
+        for (int i = 0; i < numLeading; ++i) {
+          upTo = Math.min(upTo, subs[i].scorer.advanceShallow(pivot));
+        }
+        double blockMaxScoreSum = 0;
+        for (int i = 0; i < numLeading; ++i) {
+          blockMaxScoreSum += subs[i].scorer.getMaxScore(upTo);
+        }
+        if ((float) blockMaxScoreSum < minCompetitiveScore) {
+          // no doc between the pivot and upTo can be competitive
+          if (upTo == DocIdSetIterator.NO_MORE_DOCS) {
+            return DocIdSetIterator.NO_MORE_DOCS;
+          }
+          for (int i = 0; i < numLeading; ++i) {
+            subs[i].doc = subs[i].iterator.advance(upTo + 1);
+          }
+          continue;
+        }
+      }
+
+      if (subs[0].doc == pivot) {
+        // all leading sub scorers are on the pivot
+        return pivot;
+      }
+
+      // advance leading sub scorers that are behind the pivot
+      for (int i = 0; i < numLeading && subs[i].doc < pivot; ++i) {
+        subs[i].doc = subs[i].iterator.advance(pivot);
+      }
+    }
+  }
+}
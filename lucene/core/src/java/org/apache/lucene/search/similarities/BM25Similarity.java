@@ -22,6 +22,7 @@ import java.util.ArrayList;
 import java.util.List;
 
 import org.apache.lucene.index.FieldInvertState;
+import org.apache.lucene.index.Impact;
 import org.apache.lucene.index.LeafReaderContext;
 import org.apache.lucene.index.NumericDocValues;
 import org.apache.lucene.search.CollectionStatistics;
@@ -243,6 +244,22 @@ public class BM25Similarity extends Similarity {
       float norm = norms == null ? k1 : cache[(byte)norms.get(doc) & 0xFF];
       return weightValue * freq / (freq + norm);
     }
+
+    @Override
+    public float maxScore(List<Impact> impacts) {
+      if (weightValue <= 0) {
+        return 0f;
+      }
+      double maxScore = 0;
+      for (Impact impact : impacts) {
+        // norms encode the length of the doc in a byte, the greater the byte,
+        // the shorter the doc
+        float norm = norms == null ? k1 : cache[(byte) impact.norm & 0xFF];
+        maxScore = Math.max(maxScore, (double) weightValue * impact.freq / (impact.freq + norm));
+      }
+      // leave room for the rounding errors of the float computation in score()
+      return Math.nextUp((float) (maxScore * (1 + 1e-6)));
+    }
     
     @Override
     public Explanation explain(int doc, Explanation freq) {
@@ -18,6 +18,7 @@ package org.apache.lucene.search.similarities;
 
 
 import org.apache.lucene.index.FieldInvertState;
+import org.apache.lucene.index.Impact;
 import org.apache.lucene.index.LeafReaderContext;
 import org.apache.lucene.search.CollectionStatistics;
 import org.apache.lucene.search.Explanation;
@@ -31,6 +32,7 @@ import org.apache.lucene.util.SmallFloat;
 
 import java.io.IOException;
 import java.util.Collections;
+import java.util.List;
 
 /** 
  * Similarity defines the components of Lucene scoring.
@@ -163,6 +165,25 @@ public abstract class Similarity {
      */
     public abstract float score(int doc, float freq);
 
+    /**
+     * Return an upper bound of the score that {@link #score(int, float)} may
+     * return for any document whose (freq, norm) pair is equal to or dominated
+     * by one of the given {@link Impact impacts}, ie. that has a freq that is
+     * less than or equal to the freq of the impact and a norm that is less than
+     * or equal to the norm of the impact, comparing norms as unsigned longs.
+     * This assumes that scores do not decrease when the freq increases or when
+     * the unsigned norm increases, and is used by scorers in order to skip over
+     * documents that can't compete. A norm of {@code -1} means that the norm is
+     * unknown.
+     * The default implementation returns {@link Float#POSITIVE_INFINITY},
+     * which means that scores are unbounded.
+     * @param impacts the competitive (freq, norm) pairs, never empty
+     * @lucene.experimental
+     */
+    public float maxScore(List<Impact> impacts) {
+      return Float.POSITIVE_INFINITY;
+    }
+
     /** Computes the amount of a sloppy phrase match, based on an edit distance. */
     public abstract float computeSlopFactor(int distance);
     
@@ -17,6 +17,7 @@
 package org.apache.lucene.store;
 
 
+import org.apache.lucene.util.BitUtil;
 import org.apache.lucene.util.BytesRef;
 
 /** 
@@ -123,6 +124,15 @@ public final class ByteArrayDataInput extends DataInput {
  
   @Override
   public long readVLong() {
+    return readVLong(false);
+  }
+
+  @Override
+  public long readZLong() {
+    return BitUtil.zigZagDecode(readVLong(true));
+  }
+
+  private long readVLong(boolean allowNegative) {
     byte b = bytes[pos++];
     if (b >= 0) return b;
     long i = b & 0x7FL;
@@ -150,7 +160,14 @@ public final class ByteArrayDataInput extends DataInput {
     b = bytes[pos++];
     i |= (b & 0x7FL) << 56;
     if (b >= 0) return i;
-    throw new RuntimeException("Invalid vLong detected (negative values disallowed)");
+    if (allowNegative) {
+      b = bytes[pos++];
+      i |= (b & 0x7FL) << 63;
+      if (b == 0 || b == 1) return i;
+      throw new RuntimeException("Invalid vLong detected (more than 64 bits)");
+    } else {
+      throw new RuntimeException("Invalid vLong detected (negative values disallowed)");
+    }
   }
 
   // NOTE: AIOOBE not EOF if you read too much
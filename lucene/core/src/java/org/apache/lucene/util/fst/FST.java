@@ -34,6 +34,7 @@ import org.apache.lucene.codecs.CodecUtil;
 import org.apache.lucene.store.ByteArrayDataOutput;
 import org.apache.lucene.store.DataInput;
 import org.apache.lucene.store.DataOutput;
+import org.apache.lucene.store.IndexInput;
 import org.apache.lucene.store.InputStreamDataInput;
 import org.apache.lucene.store.OutputStreamDataOutput;
 import org.apache.lucene.store.RAMOutputStream;
@@ -164,6 +165,10 @@ public final class FST<T> implements Accountable {
   /** Used at read time when the FST fits into a single byte[]. */
   final byte[] bytesArray;
 
+  /** Used at read time when the FST is read off-heap: a slice of the file
+   *  that the FST was saved to. */
+  private final IndexInput offHeapBytes;
+
   private long startNode = -1;
 
   public final Outputs<T> outputs;
@@ -289,6 +294,7 @@ public final class FST<T> implements Accountable {
     this.outputs = outputs;
     version = VERSION_CURRENT;
     bytesArray = null;
+    offHeapBytes = null;
     bytes = new BytesStore(bytesPageBits);
     // pad: ensure no node gets address 0 which is reserved to mean
     // the stop state w/ no arcs
@@ -316,6 +322,10 @@ public final class FST<T> implements Accountable {
   /** Load a previously saved FST; maxBlockBits allows you to
    *  control the size of the byte[] pages used to hold the FST bytes. */
   public FST(DataInput in, Outputs<T> outputs, int maxBlockBits) throws IOException {
+    this(in, outputs, maxBlockBits, false);
+  }
+
+  private FST(DataInput in, Outputs<T> outputs, int maxBlockBits, boolean offHeap) throws IOException {
     this.outputs = outputs;
 
     if (maxBlockBits < 1 || maxBlockBits > 30) {
@@ -377,15 +387,25 @@ public final class FST<T> implements Accountable {
     }
 
     long numBytes = in.readVLong();
-    if (numBytes > 1 << maxBlockBits) {
+    if (offHeap && packed == false) {
+      // leave the bytes where they are, readers get their own clone of the slice
+      final IndexInput indexInput = (IndexInput) in;
+      final long startFP = indexInput.getFilePointer();
+      offHeapBytes = indexInput.slice("fst", startFP, numBytes);
+      indexInput.seek(startFP + numBytes);
+      bytes = null;
+      bytesArray = null;
+    } else if (numBytes > 1 << maxBlockBits) {
       // FST is big: we need multiple pages
       bytes = new BytesStore(in, numBytes, 1<<maxBlockBits);
       bytesArray = null;
+      offHeapBytes = null;
     } else {
       // FST fits into a single block: use ByteArrayBytesStoreReader for less overhead
       bytes = null;
       bytesArray = new byte[(int) numBytes];
       in.readBytes(bytesArray, 0, bytesArray.length);
+      offHeapBytes = null;
     }
     
     cacheRootArcs();
@@ -421,7 +441,7 @@ public final class FST<T> implements Accountable {
     long size = BASE_RAM_BYTES_USED;
     if (bytesArray != null) {
       size += bytesArray.length;
-    } else {
+    } else if (bytes != null) {
       size += bytes.ramBytesUsed();
     }
     if (packed) {
@@ -585,6 +605,11 @@ public final class FST<T> implements Accountable {
       long numBytes = bytes.getPosition();
       out.writeVLong(numBytes);
       bytes.writeTo(out);
+    } else if (offHeapBytes != null) {
+      final IndexInput clone = offHeapBytes.clone();
+      clone.seek(0);
+      out.writeVLong(clone.length());
+      out.copyBytes(clone, clone.length());
     } else {
       assert bytesArray != null;
       out.writeVLong(bytesArray.length);
@@ -610,6 +635,22 @@ public final class FST<T> implements Accountable {
     }
   }
 
+  /**
+   * Load a previously saved FST without copying its arcs to the heap: they
+   * are read from a slice of {@code in} instead, so that the heap usage of the
+   * returned FST does not depend on its size. {@code in} must not be closed
+   * for as long as the FST is in use. This is best used with inputs that are
+   * memory-mapped: reading arcs is much slower with buffered inputs, which
+   * are optimized for forward reads. Packed FSTs are always loaded on heap.
+   * <p>
+   * On return, {@code in} is positioned after the FST.
+   *
+   * @lucene.experimental
+   */
+  public static <T> FST<T> readOffHeap(IndexInput in, Outputs<T> outputs) throws IOException {
+    return new FST<>(in, outputs, DEFAULT_MAX_BLOCK_BITS, true);
+  }
+
   private void writeLabel(DataOutput out, int v) throws IOException {
     assert v >= 0: "v=" + v;
     if (inputType == INPUT_TYPE.BYTE1) {
@@ -1349,6 +1390,8 @@ public final class FST<T> implements Accountable {
     } else {
       if (bytesArray != null) {
         return new ReverseBytesReader(bytesArray);
+      } else if (offHeapBytes != null) {
+        return new ReverseIndexInputReader(offHeapBytes.clone());
       } else {
         return bytes.getReverseReader();
       }
@@ -1482,6 +1525,7 @@ public final class FST<T> implements Accountable {
     packed = true;
     this.inputType = inputType;
     bytesArray = null;
+    offHeapBytes = null;
     bytes = new BytesStore(bytesPageBits);
     this.outputs = outputs;
   }
@@ -0,0 +1,94 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.lucene.util.fst;
+
+
+import java.io.IOException;
+
+import org.apache.lucene.store.IndexInput;
+
+/** Reads in reverse from an {@link IndexInput}, used by FSTs that are read off-heap. */
+final class ReverseIndexInputReader extends FST.BytesReader {
+
+  // arcs are read backwards, so the buffer holds the bytes that precede the
+  // position it was filled at
+  private static final int BUFFER_SIZE = 1024;
+
+  private final IndexInput in;
+  private final byte[] buffer;
+  // file pointer of the first byte of the buffer
+  private long bufferStart;
+  private int bufferLength;
+  private long pos;
+
+  public ReverseIndexInputReader(IndexInput in) {
+    this.in = in;
+    this.buffer = new byte[(int) Math.min(BUFFER_SIZE, in.length())];
+  }
+
+  private void refill() throws IOException {
+    bufferStart = Math.max(0, pos - buffer.length + 1);
+    bufferLength = (int) (pos - bufferStart + 1);
+    in.seek(bufferStart);
+    in.readBytes(buffer, 0, bufferLength);
+  }
+
+  @Override
+  public byte readByte() throws IOException {
+    if (pos < bufferStart || pos >= bufferStart + bufferLength) {
+      refill();
+    }
+    return buffer[(int) (pos-- - bufferStart)];
+  }
+
+  @Override
+  public void readBytes(byte[] b, int offset, int len) throws IOException {
+    while (len > 0) {
+      if (pos < bufferStart || pos >= bufferStart + bufferLength) {
+        refill();
+      }
+      final int upto = (int) (pos - bufferStart);
+      final int chunk = Math.min(len, upto + 1);
+      for (int i = 0; i < chunk; i++) {
+        b[offset + i] = buffer[upto - i];
+      }
+      offset += chunk;
+      len -= chunk;
+      pos -= chunk;
+    }
+  }
+
+  @Override
+  public void skipBytes(long count) {
+    pos -= count;
+  }
+
+  @Override
+  public long getPosition() {
+    return pos;
+  }
+
+  @Override
+  public void setPosition(long pos) {
+    this.pos = pos;
+  }
+
+  @Override
+  public boolean reversed() {
+    return true;
+  }
+}
@@ -0,0 +1,120 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.lucene.codecs;
+
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import org.apache.lucene.index.Impact;
+import org.apache.lucene.util.LuceneTestCase;
+
+public class TestCompetitiveImpactAccumulator extends LuceneTestCase {
+
+  public void testBasics() {
+    CompetitiveImpactAccumulator acc = new CompetitiveImpactAccumulator();
+
+    acc.add(3, 5);
+    assertEquals(Collections.singletonList(new Impact(3, 5)), acc.getCompetitiveFreqNormPairs());
+
+    // same norm, lower freq: not competitive
+    acc.add(2, 5);
+    assertEquals(Collections.singletonList(new Impact(3, 5)), acc.getCompetitiveFreqNormPairs());
+
+    // lower norm and freq: not competitive
+    acc.add(1, 4);
+    assertEquals(Collections.singletonList(new Impact(3, 5)), acc.getCompetitiveFreqNormPairs());
+
+    // greater freq, lower norm
+    acc.add(4, 2);
+    assertEquals(Arrays.asList(new Impact(3, 5), new Impact(4, 2)), acc.getCompetitiveFreqNormPairs());
+
+    // dominates both pairs
+    acc.add(10, 6);
+    assertEquals(Collections.singletonList(new Impact(10, 6)), acc.getCompetitiveFreqNormPairs());
+
+    acc.clear();
+    assertEquals(Collections.emptyList(), acc.getCompetitiveFreqNormPairs());
+  }
+
+  public void testUnsignedNorms() {
+    CompetitiveImpactAccumulator acc = new CompetitiveImpactAccumulator();
+    // negative norms are greater than positive norms when compared as unsigned longs
+    acc.add(2, -1);
+    acc.add(5, 100);
+    acc.add(3, Long.MIN_VALUE);
+    acc.add(4, 1000);
+    acc.add(6, 3);
+    assertEquals(Arrays.asList(new Impact(2, -1), new Impact(3, Long.MIN_VALUE), new Impact(4, 1000),
+        new Impact(5, 100), new Impact(6, 3)), acc.getCompetitiveFreqNormPairs());
+
+    // -1 is the greatest norm
+    acc.add(7, -1);
+    assertEquals(Collections.singletonList(new Impact(7, -1)), acc.getCompetitiveFreqNormPairs());
+  }
+
+  public void testAddAll() {
+    CompetitiveImpactAccumulator acc1 = new CompetitiveImpactAccumulator();
+    CompetitiveImpactAccumulator acc2 = new CompetitiveImpactAccumulator();
+    CompetitiveImpactAccumulator mergedAcc = new CompetitiveImpactAccumulator();
+
+    final int iters = atLeast(100);
+    for (int i = 0; i < iters; ++i) {
+      final int freq = 1 + random().nextInt(100);
+      final long norm = random().nextBoolean() ? random().nextInt(256) - 128 : random().nextLong();
+      if (random().nextBoolean()) {
+        acc1.add(freq, norm);
+      } else {
+        acc2.add(freq, norm);
+      }
+      mergedAcc.add(freq, norm);
+    }
+
+    acc1.addAll(acc2);
+    assertEquals(mergedAcc.getCompetitiveFreqNormPairs(), acc1.getCompetitiveFreqNormPairs());
+  }
+
+  public void testDomination() {
+    CompetitiveImpactAccumulator acc = new CompetitiveImpactAccumulator();
+    final int numPairs = atLeast(1000);
+    final int[] freqs = new int[numPairs];
+    final long[] norms = new long[numPairs];
+    for (int i = 0; i < numPairs; ++i) {
+      freqs[i] = 1 + random().nextInt(1000);
+      norms[i] = random().nextBoolean() ? random().nextInt(256) - 128 : random().nextLong();
+      acc.add(freqs[i], norms[i]);
+    }
+
+    List<Impact> impacts = acc.getCompetitiveFreqNormPairs();
+    for (int i = 1; i < impacts.size(); ++i) {
+      assertTrue(impacts.get(i).freq > impacts.get(i - 1).freq);
+      assertTrue(Long.compareUnsigned(impacts.get(i).norm, impacts.get(i - 1).norm) < 0);
+    }
+    // every pair is dominated by a competitive pair
+    for (int i = 0; i < numPairs; ++i) {
+      boolean dominated = false;
+      for (Impact impact : impacts) {
+        if (freqs[i] <= impact.freq && Long.compareUnsigned(norms[i], impact.norm) <= 0) {
+          dominated = true;
+          break;
+        }
+      }
+      assertTrue(dominated);
+    }
+  }
+}
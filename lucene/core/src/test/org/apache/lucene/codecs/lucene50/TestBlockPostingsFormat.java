@@ -17,17 +17,50 @@
 package org.apache.lucene.codecs.lucene50;
 
 
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
 import org.apache.lucene.analysis.MockAnalyzer;
 import org.apache.lucene.codecs.Codec;
+import org.apache.lucene.codecs.CompetitiveImpactAccumulator;
+import org.apache.lucene.codecs.FieldsProducer;
+import org.apache.lucene.codecs.PostingsFormat;
+import org.apache.lucene.codecs.blocktree.BlockTreeTermsReader.FSTLoadMode;
+import org.apache.lucene.codecs.blocktree.BlockTreeTermsWriter;
 import org.apache.lucene.codecs.blocktree.FieldReader;
 import org.apache.lucene.codecs.blocktree.Stats;
+import org.apache.lucene.codecs.perfield.PerFieldPostingsFormat;
 import org.apache.lucene.document.Document;
 import org.apache.lucene.document.Field;
+import org.apache.lucene.document.FieldType;
+import org.apache.lucene.document.StringField;
+import org.apache.lucene.document.TextField;
 import org.apache.lucene.index.BasePostingsFormatTestCase;
 import org.apache.lucene.index.DirectoryReader;
+import org.apache.lucene.index.FieldInfo;
+import org.apache.lucene.index.Impact;
+import org.apache.lucene.index.Impacts;
+import org.apache.lucene.index.ImpactsEnum;
+import org.apache.lucene.index.IndexOptions;
 import org.apache.lucene.index.IndexWriter;
 import org.apache.lucene.index.IndexWriterConfig;
+import org.apache.lucene.index.LeafReader;
+import org.apache.lucene.index.NumericDocValues;
+import org.apache.lucene.index.PostingsEnum;
+import org.apache.lucene.index.SegmentReadState;
+import org.apache.lucene.index.SegmentReader;
+import org.apache.lucene.index.TermsEnum;
+import org.apache.lucene.search.DocIdSetIterator;
+import org.apache.lucene.store.ByteArrayDataInput;
 import org.apache.lucene.store.Directory;
+import org.apache.lucene.store.IOContext;
+import org.apache.lucene.store.IndexInput;
+import org.apache.lucene.store.IndexOutput;
+import org.apache.lucene.store.MMapDirectory;
+import org.apache.lucene.util.BytesRef;
+import org.apache.lucene.util.IOUtils;
 import org.apache.lucene.util.TestUtil;
 
 /**
@@ -65,6 +98,185 @@ public class TestBlockPostingsFormat extends BasePostingsFormatTestCase {
     d.close();
   }
 
+  /** Make sure terms indexes are read off-heap from memory-mapped files. */
+  public void testOffHeapTermsIndex() throws Exception {
+    MMapDirectory d = new MMapDirectory(createTempDir());
+    IndexWriterConfig iwc = new IndexWriterConfig(new MockAnalyzer(random()));
+    iwc.setCodec(codec);
+    iwc.setUseCompoundFile(false);
+    IndexWriter w = new IndexWriter(d, iwc);
+    final int numDocs = atLeast(10000);
+    for(int i=0;i<numDocs;i++) {
+      Document doc = new Document();
+      doc.add(new StringField("id", Integer.toString(i), Field.Store.NO));
+      w.addDocument(doc);
+    }
+    w.forceMerge(1);
+    w.close();
+
+    // segments are read with the default instance, which loads terms indexes on heap
+    DirectoryReader reader = DirectoryReader.open(d);
+    SegmentReader segmentReader = (SegmentReader) getOnlyLeafReader(reader);
+    FieldReader onHeapField = (FieldReader) segmentReader.fields().terms("id");
+
+    FieldInfo fieldInfo = segmentReader.getFieldInfos().fieldInfo("id");
+    String segmentSuffix = fieldInfo.getAttribute(PerFieldPostingsFormat.PER_FIELD_FORMAT_KEY)
+        + "_" + fieldInfo.getAttribute(PerFieldPostingsFormat.PER_FIELD_SUFFIX_KEY);
+    SegmentReadState state = new SegmentReadState(d, segmentReader.getSegmentInfo().info,
+        segmentReader.getFieldInfos(), IOContext.READ, segmentSuffix);
+    PostingsFormat autoFormat = new Lucene50PostingsFormat(
+        BlockTreeTermsWriter.DEFAULT_MIN_BLOCK_SIZE, BlockTreeTermsWriter.DEFAULT_MAX_BLOCK_SIZE, FSTLoadMode.AUTO);
+    FieldsProducer offHeapFields = autoFormat.fieldsProducer(state);
+    FieldReader offHeapField = (FieldReader) offHeapFields.terms("id");
+    TermsEnum termsEnum = offHeapField.iterator();
+    for(int i=0;i<numDocs;i++) {
+      assertTrue(termsEnum.seekExact(new BytesRef(Integer.toString(i))));
+    }
+    assertFalse(termsEnum.seekExact(new BytesRef(Integer.toString(numDocs))));
+    assertTrue(offHeapField.ramBytesUsed() < onHeapField.ramBytesUsed());
+
+    // the checksum of the terms index is verified lazily
+    offHeapFields.checkIntegrity();
+    IOUtils.close(offHeapFields, reader, d);
+  }
+
+  /** Make sure that the impacts of the skip data dominate the actual (freq, norm) pairs. */
+  public void testImpacts() throws Exception {
+    Directory dir = newDirectory();
+    IndexWriterConfig iwc = newIndexWriterConfig(new MockAnalyzer(random()));
+    iwc.setCodec(getCodec());
+    // keep doc IDs in order
+    iwc.setMergePolicy(newLogMergePolicy());
+    IndexWriter w = new IndexWriter(dir, iwc);
+    FieldType ft = new FieldType(TextField.TYPE_NOT_STORED);
+    ft.setIndexOptions(IndexOptions.DOCS_AND_FREQS_AND_POSITIONS_AND_OFFSETS);
+    ft.freeze();
+    final int numDocs = atLeast(3000);
+    final int[] freqs = new int[numDocs];
+    for (int i = 0; i < numDocs; ++i) {
+      Document doc = new Document();
+      if (random().nextInt(5) != 0) {
+        // only the first docs have high freqs
+        final int freq = i < numDocs / 10 && random().nextInt(10) == 0 ? TestUtil.nextInt(random(), 4, 50) : TestUtil.nextInt(random(), 1, 3);
+        freqs[i] = freq;
+        StringBuilder value = new StringBuilder();
+        for (int j = 0; j < freq; ++j) {
+          value.append("a ");
+        }
+        // vary doc lengths independently of freqs
+        final int numOtherTerms = random().nextInt(20);
+        for (int j = 0; j < numOtherTerms; ++j) {
+          value.append("b ");
+        }
+        doc.add(new Field("field", value.toString(), ft));
+      }
+      w.addDocument(doc);
+    }
+    w.forceMerge(1);
+    DirectoryReader r = DirectoryReader.open(w);
+    w.close();
+
+    LeafReader leafReader = getOnlyLeafReader(r);
+    NumericDocValues norms = leafReader.getNormValues("field");
+    TermsEnum termsEnum = leafReader.terms("field").iterator();
+    assertTrue(termsEnum.seekExact(new BytesRef("a")));
+    for (int flags : new int[] { PostingsEnum.FREQS, PostingsEnum.POSITIONS, PostingsEnum.ALL }) {
+      ImpactsEnum impactsEnum = termsEnum.impacts(flags);
+      int target = 0;
+      while (target < numDocs) {
+        impactsEnum.advanceShallow(target);
+        Impacts impacts = impactsEnum.getImpacts();
+        for (int level = 0; level < impacts.numLevels(); ++level) {
+          final int docIdUpTo = impacts.getDocIdUpTo(level);
+          assertTrue(docIdUpTo >= target);
+          final List<Impact> levelImpacts = impacts.getImpacts(level);
+          for (int doc = target; doc <= Math.min(docIdUpTo, numDocs - 1); ++doc) {
+            if (freqs[doc] != 0) {
+              assertDominated(freqs[doc], norms.get(doc), levelImpacts);
+            }
+          }
+          if (level == 0 && target >= numDocs / 5 && docIdUpTo != DocIdSetIterator.NO_MORE_DOCS) {
+            // the impacts only depend on the block
+            for (Impact impact : levelImpacts) {
+              assertTrue(impact.freq <= 3);
+            }
+          }
+        }
+
+        // shallow advancing is independent from regular advancing
+        final int doc = impactsEnum.advance(target);
+        if (doc == DocIdSetIterator.NO_MORE_DOCS) {
+          break;
+        }
+        assertEquals(freqs[doc], impactsEnum.freq());
+        target = doc + 1 + (random().nextBoolean() ? 0 : random().nextInt(500));
+      }
+    }
+
+    r.close();
+    dir.close();
+  }
+
+  private static void assertDominated(int freq, long norm, List<Impact> impacts) {
+    for (Impact impact : impacts) {
+      if (freq <= impact.freq && Long.compareUnsigned(norm, impact.norm) <= 0) {
+        return;
+      }
+    }
+    fail("(freq=" + freq + ",norm=" + norm + ") is not dominated by " + impacts);
+  }
+
+  public void testImpactSerialization() throws IOException {
+    // omit norms and omit freqs
+    doTestImpactSerialization(Collections.singletonList(new Impact(1, -1L)));
+
+    // omit freqs
+    doTestImpactSerialization(Collections.singletonList(new Impact(1, 42L)));
+    // omit freqs with very large norms
+    doTestImpactSerialization(Collections.singletonList(new Impact(1, Long.MIN_VALUE + 3)));
+
+    // omit norms
+    doTestImpactSerialization(Collections.singletonList(new Impact(30, -1L)));
+    // omit norms with large freq
+    doTestImpactSerialization(Collections.singletonList(new Impact(500, -1L)));
+
+    // freqs and norms, basic
+    doTestImpactSerialization(
+        Arrays.asList(
+            new Impact(1, 127L),
+            new Impact(3, 9L),
+            new Impact(7, 8L),
+            new Impact(15, 5L),
+            new Impact(16, 2L)));
+
+    // freqs and norms, high values
+    doTestImpactSerialization(
+        Arrays.asList(
+            new Impact(2, -2L),
+            new Impact(10, -20L),
+            new Impact(12, 127L),
+            new Impact(200, 100L),
+            new Impact(2000, 0L)));
+  }
+
+  private void doTestImpactSerialization(List<Impact> impacts) throws IOException {
+    CompetitiveImpactAccumulator acc = new CompetitiveImpactAccumulator();
+    for (Impact impact : impacts) {
+      acc.add(impact.freq, impact.norm);
+    }
+    try(Directory dir = newDirectory()) {
+      try (IndexOutput out = dir.createOutput("foo", IOContext.DEFAULT)) {
+        Lucene50SkipWriter.writeImpacts(acc, out);
+      }
+      try (IndexInput in = dir.openInput("foo", IOContext.DEFAULT)) {
+        byte[] b = new byte[Math.toIntExact(in.length())];
+        in.readBytes(b, 0, b.length);
+        List<Impact> impacts2 = Lucene50SkipReader.readImpacts(new ByteArrayDataInput(b));
+        assertEquals(impacts, impacts2);
+      }
+    }
+  }
+
   private void shouldFail(int minItemsInBlock, int maxItemsInBlock) {
     expectThrows(IllegalArgumentException.class, () -> {
       new Lucene50PostingsFormat(minItemsInBlock, maxItemsInBlock);
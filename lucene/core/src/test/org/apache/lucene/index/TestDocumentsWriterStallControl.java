@@ -40,6 +40,8 @@ public class TestDocumentsWriterStallControl extends LuceneTestCase {
     assertFalse(ctrl.hasBlocked());
     assertFalse(ctrl.anyStalledThreads());
     join(waitThreads);
+    assertEquals(0, ctrl.getStallCount());
+    assertEquals(0, ctrl.getStallTimeNanos());
     
     // now stall threads and wake them up again
     ctrl.updateStalled(true);
@@ -51,6 +53,8 @@ public class TestDocumentsWriterStallControl extends LuceneTestCase {
     ctrl.updateStalled(false);
     assertFalse(ctrl.anyStalledThreads());
     join(waitThreads);
+    assertEquals(waitThreads.length, ctrl.getStallCount());
+    assertTrue(ctrl.getStallTimeNanos() > 0);
   }
   
   public void testRandom() throws InterruptedException {
@@ -30,6 +30,7 @@ import org.apache.lucene.store.BaseDirectoryWrapper;
 import org.apache.lucene.store.Directory;
 import org.apache.lucene.util.BytesRef;
 import org.apache.lucene.util.LuceneTestCase;
+import org.apache.lucene.util.TestUtil;
 
 public class TestFilterLeafReader extends LuceneTestCase {
 
@@ -78,6 +79,11 @@ public class TestFilterLeafReader extends LuceneTestCase {
       public PostingsEnum postings(PostingsEnum reuse, int flags) throws IOException {
         return new TestPositions(super.postings(reuse == null ? null : ((FilterPostingsEnum) reuse).in, flags));
       }
+
+      @Override
+      public ImpactsEnum impacts(int flags) throws IOException {
+        return new SlowImpactsEnum(postings(null, flags));
+      }
     }
 
     /** Filter that only returns odd numbered documents. */
@@ -168,6 +174,10 @@ public class TestFilterLeafReader extends LuceneTestCase {
           || m.getName().equals("attributes") || m.getName().equals("getStats")) {
         continue;
       }
+      if (m.getName().equals("impacts") && clazz == FilterLeafReader.FilterTermsEnum.class) {
+        // delegated so that wrapped readers keep the impacts of their codec
+        continue;
+      }
       // The point of these checks is to ensure that methods that have a default
       // impl through other methods are not overridden. This makes the number of
       // methods to override to have a working impl minimal and prevents from some
@@ -203,4 +213,39 @@ public class TestFilterLeafReader extends LuceneTestCase {
     dr.close();
     dir.close();
   }
+
+  public void testImpacts() throws IOException {
+    Directory dir = newDirectory();
+    IndexWriterConfig iwc = newIndexWriterConfig(new MockAnalyzer(random()));
+    iwc.setCodec(TestUtil.getDefaultCodec());
+    RandomIndexWriter w = new RandomIndexWriter(random(), dir, iwc);
+    Document doc = new Document();
+    doc.add(newTextField("field", "a b c", Field.Store.NO));
+    w.addDocument(doc);
+    w.forceMerge(1);
+    DirectoryReader dr = w.getReader();
+    w.close();
+    FilterLeafReader r = new FilterLeafReader(getOnlyLeafReader(dr)) {
+      @Override
+      public Fields fields() throws IOException {
+        return new FilterFields(super.fields()) {
+          @Override
+          public Terms terms(String field) throws IOException {
+            return new FilterTerms(super.terms(field)) {
+              @Override
+              public TermsEnum iterator() throws IOException {
+                return new FilterTermsEnum(super.iterator()) {};
+              }
+            };
+          }
+        };
+      }
+    };
+    TermsEnum te = r.terms("field").iterator();
+    assertTrue(te.seekExact(new BytesRef("b")));
+    // the impacts of the codec are not lost by wrapping
+    assertFalse(te.impacts(PostingsEnum.FREQS) instanceof SlowImpactsEnum);
+    dr.close();
+    dir.close();
+  }
 }
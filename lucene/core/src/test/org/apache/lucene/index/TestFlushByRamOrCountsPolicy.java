@@ -20,6 +20,10 @@ package org.apache.lucene.index;
 import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Iterator;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicInteger;
 
 import org.apache.lucene.analysis.MockAnalyzer;
@@ -29,6 +33,7 @@ import org.apache.lucene.store.Directory;
 import org.apache.lucene.store.MockDirectoryWrapper;
 import org.apache.lucene.util.LineFileDocs;
 import org.apache.lucene.util.LuceneTestCase;
+import org.apache.lucene.util.NamedThreadFactory;
 import org.apache.lucene.util.TestUtil;
 import org.junit.AfterClass;
 import org.junit.BeforeClass;
@@ -278,6 +283,104 @@ public class TestFlushByRamOrCountsPolicy extends LuceneTestCase {
     }
   }
 
+  public void testFlushByPerThreadRam() throws IOException, InterruptedException {
+    final int numThreads = 1 + random().nextInt(TEST_NIGHTLY ? 5 : 2);
+    final int numDocumentsToIndex = 10 + atLeast(30);
+    AtomicInteger numDocs = new AtomicInteger(numDocumentsToIndex);
+    Directory dir = newDirectory();
+    MockAnalyzer analyzer = new MockAnalyzer(random());
+    analyzer.setMaxTokenLength(TestUtil.nextInt(random(), 1, IndexWriter.MAX_TERM_LENGTH));
+    IndexWriterConfig iwc = newIndexWriterConfig(analyzer);
+    iwc.setFlushPolicy(new FlushByRamOrCountsPolicy());
+    iwc.setIndexerThreadPool(new DocumentsWriterPerThreadPool());
+    // the global buffer is never exceeded, only per-thread budgets trigger flushes
+    iwc.setRAMBufferSizeMB(256.d);
+    final double perThreadRamMB = 0.1d + random().nextDouble();
+    iwc.setRAMPerThreadBufferSizeMB(perThreadRamMB);
+    iwc.setMaxBufferedDocs(IndexWriterConfig.DISABLE_AUTO_FLUSH);
+    iwc.setMaxBufferedDeleteTerms(IndexWriterConfig.DISABLE_AUTO_FLUSH);
+    IndexWriter writer = new IndexWriter(dir, iwc);
+    DocumentsWriterFlushControl flushControl = writer.getDocsWriter().flushControl;
+
+    IndexThread[] threads = new IndexThread[numThreads];
+    for (int x = 0; x < threads.length; x++) {
+      threads[x] = new IndexThread(numDocs, numThreads, writer, lineDocFile, false);
+      threads[x].start();
+    }
+    for (int x = 0; x < threads.length; x++) {
+      threads[x].join();
+    }
+
+    assertEquals(" all flushes must be due", 0, flushControl.flushBytes());
+    assertEquals(numDocumentsToIndex, writer.numDocs());
+    final long perThreadRAMBytes = (long) (perThreadRamMB * 1024. * 1024.);
+    Iterator<ThreadState> allActiveThreads = flushControl.allActiveThreadStates();
+    while (allActiveThreads.hasNext()) {
+      ThreadState next = allActiveThreads.next();
+      assertTrue("thread state exceeds its budget: " + next.bytesUsed, next.bytesUsed < perThreadRAMBytes);
+    }
+    assertActiveBytesAfter(flushControl);
+    assertFalse(flushControl.stallControl.wasStalled());
+    IndexWriter.FlushStats stats = writer.getFlushStats();
+    assertTrue(stats.flushCount > 0);
+    assertTrue(stats.maxFlushTimeNanos <= stats.flushTimeNanos);
+    assertEquals(0, stats.stallCount);
+    writer.close();
+    dir.close();
+  }
+
+  public void testFlushExecutor() throws IOException, InterruptedException {
+    final int numThreads = 1 + random().nextInt(TEST_NIGHTLY ? 5 : 2);
+    final int numDocumentsToIndex = 50 + random().nextInt(50);
+    AtomicInteger numDocs = new AtomicInteger(numDocumentsToIndex);
+    MockDirectoryWrapper dir = newMockDirectory();
+    // slow down flushes sometimes so that they pile up on the executor
+    dir.setThrottling(MockDirectoryWrapper.Throttling.SOMETIMES);
+    MockAnalyzer analyzer = new MockAnalyzer(random());
+    analyzer.setMaxTokenLength(TestUtil.nextInt(random(), 1, IndexWriter.MAX_TERM_LENGTH));
+    ExecutorService executor = Executors.newFixedThreadPool(1 + random().nextInt(3), new NamedThreadFactory("TestFlushExecutor"));
+    AtomicInteger numExecutedFlushes = new AtomicInteger();
+    Executor countingExecutor = command -> {
+      numExecutedFlushes.incrementAndGet();
+      executor.execute(command);
+    };
+    IndexWriterConfig iwc = newIndexWriterConfig(analyzer);
+    iwc.setFlushPolicy(new FlushByRamOrCountsPolicy());
+    iwc.setIndexerThreadPool(new DocumentsWriterPerThreadPool());
+    iwc.setRAMBufferSizeMB(0.5d + random().nextDouble());
+    // a tiny budget makes every document trigger a flush
+    iwc.setRAMPerThreadBufferSizeMB(0.01d);
+    iwc.setMaxBufferedDocs(IndexWriterConfig.DISABLE_AUTO_FLUSH);
+    iwc.setMaxBufferedDeleteTerms(IndexWriterConfig.DISABLE_AUTO_FLUSH);
+    iwc.setFlushExecutor(countingExecutor);
+    IndexWriter writer = new IndexWriter(dir, iwc);
+    assertSame(countingExecutor, writer.getConfig().getFlushExecutor());
+
+    IndexThread[] threads = new IndexThread[numThreads];
+    for (int x = 0; x < threads.length; x++) {
+      threads[x] = new IndexThread(numDocs, numThreads, writer, lineDocFile, random().nextBoolean());
+      threads[x].start();
+    }
+    for (int x = 0; x < threads.length; x++) {
+      threads[x].join();
+    }
+
+    writer.commit();
+    DocumentsWriterFlushControl flushControl = writer.getDocsWriter().flushControl;
+    assertEquals(" all flushes must be due", 0, flushControl.flushBytes());
+    assertEquals(numDocumentsToIndex, writer.numDocs());
+    assertEquals(numDocumentsToIndex, writer.maxDoc());
+    assertTrue(numExecutedFlushes.get() > 0);
+    assertTrue(writer.getFlushStats().flushCount > 0);
+    writer.close();
+    executor.shutdown();
+    assertTrue(executor.awaitTermination(10, TimeUnit.SECONDS));
+    try (IndexReader reader = DirectoryReader.open(dir)) {
+      assertEquals(numDocumentsToIndex, reader.numDocs());
+    }
+    dir.close();
+  }
+
   protected void assertActiveBytesAfter(DocumentsWriterFlushControl flushControl) {
     Iterator<ThreadState> allActiveThreads = flushControl.allActiveThreadStates();
     long bytesUsed = 0;
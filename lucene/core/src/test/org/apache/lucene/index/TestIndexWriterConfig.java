@@ -72,6 +72,8 @@ public class TestIndexWriterConfig extends LuceneTestCase {
     assertEquals(DocumentsWriterPerThreadPool.class, conf.getIndexerThreadPool().getClass());
     assertEquals(FlushByRamOrCountsPolicy.class, conf.getFlushPolicy().getClass());
     assertEquals(IndexWriterConfig.DEFAULT_RAM_PER_THREAD_HARD_LIMIT_MB, conf.getRAMPerThreadHardLimitMB());
+    assertEquals(IndexWriterConfig.DEFAULT_RAM_PER_THREAD_BUFFER_SIZE_MB, conf.getRAMPerThreadBufferSizeMB(), 0.0);
+    assertNull(conf.getFlushExecutor());
     assertEquals(Codec.getDefault(), conf.getCodec());
     assertEquals(InfoStream.getDefault(), conf.getInfoStream());
     assertEquals(IndexWriterConfig.DEFAULT_USE_COMPOUND_FILE_SYSTEM, conf.getUseCompoundFile());
@@ -96,6 +98,8 @@ public class TestIndexWriterConfig extends LuceneTestCase {
     getters.add("getIndexerThreadPool");
     getters.add("getFlushPolicy");
     getters.add("getRAMPerThreadHardLimitMB");
+    getters.add("getRAMPerThreadBufferSizeMB");
+    getters.add("getFlushExecutor");
     getters.add("getCodec");
     getters.add("getInfoStream");
     getters.add("getUseCompoundFile");
@@ -178,6 +182,7 @@ public class TestIndexWriterConfig extends LuceneTestCase {
     assertEquals(16.0, IndexWriterConfig.DEFAULT_RAM_BUFFER_SIZE_MB, 0.0);
     assertEquals(false, IndexWriterConfig.DEFAULT_READER_POOLING);
     assertEquals(true, IndexWriterConfig.DEFAULT_USE_COMPOUND_FILE_SYSTEM);
+    assertEquals(IndexWriterConfig.DISABLE_AUTO_FLUSH, IndexWriterConfig.DEFAULT_RAM_PER_THREAD_BUFFER_SIZE_MB, 0.0);
   }
 
   @Test
@@ -260,6 +265,11 @@ public class TestIndexWriterConfig extends LuceneTestCase {
     expectThrows(IllegalArgumentException.class, () -> {
       conf.setRAMPerThreadHardLimitMB(0);
     });
+
+    expectThrows(IllegalArgumentException.class, () -> {
+      conf.setRAMPerThreadBufferSizeMB(0.0);
+    });
+    conf.setRAMPerThreadBufferSizeMB(IndexWriterConfig.DISABLE_AUTO_FLUSH);
     
     // Test MergePolicy
     assertEquals(TieredMergePolicy.class, conf.getMergePolicy().getClass());
@@ -35,7 +35,8 @@ public class TestFilterWeight extends LuceneTestCase {
       final int modifiers = superClassMethod.getModifiers();
       if (Modifier.isFinal(modifiers)) continue;
       if (Modifier.isStatic(modifiers)) continue;
-      if (superClassMethod.getName().equals("bulkScorer")) {
+      if (superClassMethod.getName().equals("bulkScorer")
+          || superClassMethod.getName().equals("topScoresBulkScorer")) {
         try {
           final Method subClassMethod = subClass.getDeclaredMethod(
               superClassMethod.getName(),
@@ -47,6 +48,8 @@ public class TestFilterWeight extends LuceneTestCase {
            * since as of July 2016 not all deriving classes use the
            * {code}return in.bulkScorer(content);{code}
            * implementation that FilterWeight.bulkScorer would use.
+           * The same applies to topScoresBulkScorer, which defaults
+           * to bulkScorer.
            */
           continue;
         }
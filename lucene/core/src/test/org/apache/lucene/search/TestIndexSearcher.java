@@ -19,6 +19,7 @@ package org.apache.lucene.search;
 
 import java.io.IOException;
 import java.util.Arrays;
+import java.util.List;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.LinkedBlockingQueue;
 import java.util.concurrent.ThreadPoolExecutor;
@@ -30,6 +31,7 @@ import org.apache.lucene.document.Field.Store;
 import org.apache.lucene.document.SortedDocValuesField;
 import org.apache.lucene.document.StringField;
 import org.apache.lucene.index.IndexReader;
+import org.apache.lucene.index.LeafReaderContext;
 import org.apache.lucene.index.MultiReader;
 import org.apache.lucene.index.RandomIndexWriter;
 import org.apache.lucene.index.Term;
@@ -219,4 +221,102 @@ public class TestIndexSearcher extends LuceneTestCase {
     searcher = new IndexSearcher(new MultiReader());
     assertEquals(dummyPolicy, searcher.getQueryCachingPolicy());
   }
+
+  public void testSlicesByDocCount() throws IOException {
+    Directory dir = newDirectory();
+    RandomIndexWriter w = new RandomIndexWriter(random(), dir);
+    final int numDocs = atLeast(200);
+    for (int i = 0; i < numDocs; ++i) {
+      w.addDocument(new Document());
+      if (rarely()) {
+        w.commit();
+      }
+    }
+    IndexReader reader = w.getReader();
+    w.close();
+
+    final List<LeafReaderContext> leaves = reader.leaves();
+    final int numSlices = TestUtil.nextInt(random(), 1, 10);
+    final IndexSearcher.LeafSlice[] slices = IndexSearcher.slicesByDocCount(leaves, numSlices);
+    assertTrue(slices.length <= numSlices);
+
+    final int docsPerSlice = (reader.maxDoc() + numSlices - 1) / numSlices;
+    // partitions must cover all docs in order, exactly once
+    int leaf = 0;
+    int nextDoc = 0;
+    for (IndexSearcher.LeafSlice slice : slices) {
+      int sliceDocs = 0;
+      for (IndexSearcher.LeafReaderContextPartition partition : slice.partitions) {
+        if (nextDoc == leaves.get(leaf).reader().maxDoc()) {
+          leaf++;
+          nextDoc = 0;
+        }
+        assertSame(leaves.get(leaf), partition.ctx);
+        assertEquals(nextDoc, partition.minDoc);
+        nextDoc = partition.maxDoc;
+        sliceDocs += partition.maxDoc - partition.minDoc;
+      }
+      assertTrue(sliceDocs <= docsPerSlice);
+    }
+    assertEquals(leaves.size() - 1, leaf);
+    assertEquals(leaves.get(leaf).reader().maxDoc(), nextDoc);
+
+    reader.close();
+    dir.close();
+  }
+
+  public void testIntraSegmentSlices() throws Exception {
+    Directory dir = newDirectory();
+    RandomIndexWriter w = new RandomIndexWriter(random(), dir);
+    final int numDocs = atLeast(500);
+    for (int i = 0; i < numDocs; ++i) {
+      Document doc = new Document();
+      doc.add(new StringField("foo", random().nextBoolean() ? "bar" : "baz", Store.NO));
+      doc.add(new SortedDocValuesField("sort", new BytesRef(TestUtil.randomSimpleString(random(), 2))));
+      w.addDocument(doc);
+    }
+    if (random().nextBoolean()) {
+      w.forceMerge(1);
+    }
+    IndexReader reader = w.getReader();
+    w.close();
+
+    ExecutorService service = new ThreadPoolExecutor(4, 4, 0L, TimeUnit.MILLISECONDS,
+                                   new LinkedBlockingQueue<Runnable>(),
+                                   new NamedThreadFactory("TestIndexSearcher"));
+    final int numSlices = TestUtil.nextInt(random(), 2, 8);
+    IndexSearcher slicedSearcher = new IndexSearcher(reader, service) {
+      @Override
+      protected LeafSlice[] slices(List<LeafReaderContext> leaves) {
+        return slicesByDocCount(leaves, numSlices);
+      }
+    };
+    IndexSearcher searcher = new IndexSearcher(reader);
+
+    for (Query query : Arrays.asList(
+        new MatchAllDocsQuery(),
+        new TermQuery(new Term("foo", "bar")),
+        new BooleanQuery.Builder()
+          .add(new TermQuery(new Term("foo", "bar")), Occur.SHOULD)
+          .add(new TermQuery(new Term("foo", "baz")), Occur.SHOULD)
+          .build())) {
+      TopDocs expected = searcher.search(query, 10);
+      TopDocs actual = slicedSearcher.search(query, 10);
+      CheckHits.checkEqual(query, expected.scoreDocs, actual.scoreDocs);
+      assertEquals(expected.totalHits, actual.totalHits);
+
+      Sort sort = new Sort(new SortField("sort", SortField.Type.STRING));
+      expected = searcher.search(query, 10, sort);
+      actual = slicedSearcher.search(query, 10, sort);
+      assertEquals(expected.totalHits, actual.totalHits);
+      assertEquals(expected.scoreDocs.length, actual.scoreDocs.length);
+      for (int i = 0; i < expected.scoreDocs.length; ++i) {
+        assertEquals(expected.scoreDocs[i].doc, actual.scoreDocs[i].doc);
+      }
+    }
+
+    TestUtil.shutdownExecutorService(service);
+    reader.close();
+    dir.close();
+  }
 }
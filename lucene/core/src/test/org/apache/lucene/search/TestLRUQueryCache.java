@@ -30,6 +30,9 @@ import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.atomic.AtomicLong;
@@ -53,6 +56,7 @@ import org.apache.lucene.search.BooleanClause.Occur;
 import org.apache.lucene.store.Directory;
 import org.apache.lucene.util.IOUtils;
 import org.apache.lucene.util.LuceneTestCase;
+import org.apache.lucene.util.NamedThreadFactory;
 import org.apache.lucene.util.RamUsageTester;
 import org.apache.lucene.util.TestUtil;
 
@@ -80,7 +84,10 @@ public class TestLRUQueryCache extends LuceneTestCase {
   }
 
   public void testConcurrency() throws Throwable {
-    final LRUQueryCache queryCache = new LRUQueryCache(1 + random().nextInt(20), 1 + random().nextInt(10000), context -> random().nextBoolean());
+    final ExecutorService executor = random().nextBoolean()
+        ? null
+        : Executors.newFixedThreadPool(2, new NamedThreadFactory("TestLRUQueryCache"));
+    final LRUQueryCache queryCache = new LRUQueryCache(1 + random().nextInt(20), 1 + random().nextInt(10000), context -> random().nextBoolean(), TestUtil.nextInt(random(), 1, 8), executor);
     Directory dir = newDirectory();
     final RandomIndexWriter w = new RandomIndexWriter(random(), dir);
     final SearcherFactory searcherFactory = new SearcherFactory() {
@@ -159,6 +166,10 @@ public class TestLRUQueryCache extends LuceneTestCase {
       thread.join();
     }
 
+    if (executor != null) {
+      executor.shutdown();
+      assertTrue(executor.awaitTermination(1, TimeUnit.MINUTES));
+    }
     if (error.get() != null) {
       throw error.get();
     }
@@ -573,6 +584,155 @@ public class TestLRUQueryCache extends LuceneTestCase {
     dir.close();
   }
 
+  public void testSegmentStats() throws IOException {
+    final LRUQueryCache queryCache = new LRUQueryCache(10, 10000000, context -> true, TestUtil.nextInt(random(), 1, 4));
+
+    Directory dir = newDirectory();
+    final RandomIndexWriter w = new RandomIndexWriter(random(), dir);
+    Document doc = new Document();
+    StringField f = new StringField("color", "", Store.NO);
+    doc.add(f);
+    for (int i = 0; i < 10; ++i) {
+      f.setStringValue(RandomPicks.randomFrom(random(), Arrays.asList("blue", "red")));
+      w.addDocument(doc);
+      if (random().nextBoolean()) {
+        w.getReader().close();
+      }
+    }
+
+    final DirectoryReader reader = w.getReader();
+    final IndexSearcher searcher = new IndexSearcher(reader);
+    searcher.setQueryCache(queryCache);
+    searcher.setQueryCachingPolicy(QueryCachingPolicy.ALWAYS_CACHE);
+    final Query query = new TermQuery(new Term("color", "red"));
+    for (int i = 0; i < 10; ++i) {
+      searcher.search(new ConstantScoreQuery(query), 1);
+    }
+
+    Map<Object, LRUQueryCache.SegmentStats> segmentStats = queryCache.getSegmentStats();
+    assertEquals(reader.leaves().size(), segmentStats.size());
+    for (LeafReaderContext ctx : reader.leaves()) {
+      final LRUQueryCache.SegmentStats stats = segmentStats.get(ctx.reader().getCoreCacheKey());
+      assertNotNull(stats);
+      assertEquals(9, stats.getHitCount());
+      // the first lookup happened before the segment had entries in the cache
+      assertEquals(0, stats.getMissCount());
+      assertEquals(1, stats.getCacheCount());
+      assertEquals(1, stats.getCacheSize());
+      assertEquals(0, stats.getEvictionCount());
+    }
+
+    queryCache.clearQuery(query);
+    segmentStats = queryCache.getSegmentStats();
+    assertEquals(reader.leaves().size(), segmentStats.size());
+    for (LRUQueryCache.SegmentStats stats : segmentStats.values()) {
+      assertEquals(0, stats.getCacheSize());
+      assertEquals(1, stats.getEvictionCount());
+    }
+
+    // stats are removed when segments are closed
+    reader.close();
+    w.close();
+    assertTrue(queryCache.getSegmentStats().isEmpty());
+    dir.close();
+  }
+
+  public void testAsyncCaching() throws IOException {
+    final List<Runnable> tasks = new ArrayList<>();
+    final LRUQueryCache queryCache = new LRUQueryCache(10, 10000000, context -> true, 1, tasks::add);
+
+    Directory dir = newDirectory();
+    final RandomIndexWriter w = new RandomIndexWriter(random(), dir);
+    Document doc = new Document();
+    StringField f = new StringField("color", "", Store.NO);
+    doc.add(f);
+    for (int i = 0; i < 10; ++i) {
+      f.setStringValue(RandomPicks.randomFrom(random(), Arrays.asList("blue", "red")));
+      w.addDocument(doc);
+      if (random().nextBoolean()) {
+        w.getReader().close();
+      }
+    }
+    final DirectoryReader reader = w.getReader();
+    final int segmentCount = reader.leaves().size();
+    final IndexSearcher searcher = new IndexSearcher(reader);
+    searcher.setQueryCache(queryCache);
+    searcher.setQueryCachingPolicy(QueryCachingPolicy.ALWAYS_CACHE);
+    final Query query = new TermQuery(new Term("color", "red"));
+    final int expectedCount = searcher.search(new ConstantScoreQuery(query), 1).totalHits;
+
+    // entries are not computed by the search thread, and only once per segment
+    assertEquals(expectedCount, searcher.search(new ConstantScoreQuery(query), 1).totalHits);
+    assertEquals(segmentCount, tasks.size());
+    assertEquals(0, queryCache.getCacheCount());
+    assertEquals(Collections.emptyList(), queryCache.cachedQueries());
+
+    for (Runnable task : tasks) {
+      task.run();
+    }
+    tasks.clear();
+    assertEquals(segmentCount, queryCache.getCacheCount());
+    assertEquals(Collections.singletonList(query), queryCache.cachedQueries());
+    queryCache.assertConsistent();
+
+    // now served from the cache
+    final long hitCount = queryCache.getHitCount();
+    assertEquals(expectedCount, searcher.search(new ConstantScoreQuery(query), 1).totalHits);
+    assertEquals(hitCount + segmentCount, queryCache.getHitCount());
+    assertTrue(tasks.isEmpty());
+
+    // tasks that run after the reader is closed do not cache anything
+    final Query query2 = new TermQuery(new Term("color", "blue"));
+    searcher.search(new ConstantScoreQuery(query2), 1);
+    assertEquals(segmentCount, tasks.size());
+    reader.close();
+    w.close();
+    for (Runnable task : tasks) {
+      task.run();
+    }
+    assertEquals(0, queryCache.getCacheSize());
+    assertEquals(Collections.singletonList(query), queryCache.cachedQueries());
+    queryCache.assertConsistent();
+    dir.close();
+  }
+
+  public void testInvalidNumStripes() {
+    IllegalArgumentException expected = expectThrows(IllegalArgumentException.class, () -> {
+      new LRUQueryCache(10, 10000, context -> true, 0);
+    });
+    assertEquals("numStripes must be at least 1, got 0", expected.getMessage());
+  }
+
+  public void testMoreStripesThanMaxSize() throws IOException {
+    final LRUQueryCache queryCache = new LRUQueryCache(3, 10000000, context -> true, TestUtil.nextInt(random(), 4, 16));
+
+    Directory dir = newDirectory();
+    final RandomIndexWriter w = new RandomIndexWriter(random(), dir);
+    Document doc = new Document();
+    StringField f = new StringField("id", "", Store.NO);
+    doc.add(f);
+    for (int i = 0; i < 20; ++i) {
+      f.setStringValue(Integer.toString(i));
+      w.addDocument(doc);
+    }
+    w.forceMerge(1);
+    final DirectoryReader reader = w.getReader();
+    final IndexSearcher searcher = new IndexSearcher(reader);
+    searcher.setQueryCache(queryCache);
+    searcher.setQueryCachingPolicy(QueryCachingPolicy.ALWAYS_CACHE);
+
+    for (int i = 0; i < 20; ++i) {
+      searcher.search(new ConstantScoreQuery(new TermQuery(new Term("id", Integer.toString(i)))), 1);
+      assertTrue(queryCache.getCacheSize() <= 3);
+    }
+    assertEquals(3, queryCache.getCacheSize());
+    queryCache.assertConsistent();
+
+    reader.close();
+    w.close();
+    dir.close();
+  }
+
   public void testFineGrainedStats() throws IOException {
     Directory dir1 = newDirectory();
     final RandomIndexWriter w1 = new RandomIndexWriter(random(), dir1);
@@ -894,7 +1054,7 @@ public class TestLRUQueryCache extends LuceneTestCase {
       iters = atLeast(2000);
     }
 
-    final LRUQueryCache queryCache = new LRUQueryCache(maxSize, maxRamBytesUsed, context -> random().nextBoolean());
+    final LRUQueryCache queryCache = new LRUQueryCache(maxSize, maxRamBytesUsed, context -> random().nextBoolean(), TestUtil.nextInt(random(), 1, 8));
     IndexSearcher uncachedSearcher = null;
     IndexSearcher cachedSearcher = null;
 
@@ -0,0 +1,144 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.lucene.search;
+
+
+import java.util.Arrays;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.lucene.document.Document;
+import org.apache.lucene.document.Field.Store;
+import org.apache.lucene.document.TextField;
+import org.apache.lucene.index.IndexReader;
+import org.apache.lucene.index.RandomIndexWriter;
+import org.apache.lucene.index.Term;
+import org.apache.lucene.search.BooleanClause.Occur;
+import org.apache.lucene.store.Directory;
+import org.apache.lucene.util.LuceneTestCase;
+import org.apache.lucene.util.NamedThreadFactory;
+import org.apache.lucene.util.TestUtil;
+
+public class TestMaxScoreAccumulator extends LuceneTestCase {
+
+  public void testSimple() {
+    MaxScoreAccumulator acc = new MaxScoreAccumulator();
+    assertEquals(Float.NEGATIVE_INFINITY, acc.get(), 0f);
+    acc.accumulate(-1f);
+    assertEquals(-1f, acc.get(), 0f);
+    acc.accumulate(0.5f);
+    assertEquals(0.5f, acc.get(), 0f);
+    acc.accumulate(-2f);
+    assertEquals(0.5f, acc.get(), 0f);
+    acc.accumulate(3f);
+    assertEquals(3f, acc.get(), 0f);
+  }
+
+  public void testRandomConcurrent() throws Exception {
+    MaxScoreAccumulator acc = new MaxScoreAccumulator();
+    Thread[] threads = new Thread[TestUtil.nextInt(random(), 2, 5)];
+    float[] maxPerThread = new float[threads.length];
+    for (int i = 0; i < threads.length; ++i) {
+      final int t = i;
+      final float[] scores = new float[atLeast(1000)];
+      maxPerThread[t] = Float.NEGATIVE_INFINITY;
+      for (int j = 0; j < scores.length; ++j) {
+        scores[j] = random().nextFloat() * 100 - 50;
+        maxPerThread[t] = Math.max(maxPerThread[t], scores[j]);
+      }
+      threads[i] = new Thread() {
+        @Override
+        public void run() {
+          for (float score : scores) {
+            acc.accumulate(score);
+          }
+        }
+      };
+    }
+    for (Thread thread : threads) {
+      thread.start();
+    }
+    for (Thread thread : threads) {
+      thread.join();
+    }
+    float expected = Float.NEGATIVE_INFINITY;
+    for (float max : maxPerThread) {
+      expected = Math.max(expected, max);
+    }
+    assertEquals(expected, acc.get(), 0f);
+  }
+
+  public void testSharedManagerSameResults() throws Exception {
+    Directory dir = newDirectory();
+    RandomIndexWriter w = new RandomIndexWriter(random(), dir);
+    final String[] terms = new String[] { "a", "b", "c", "d" };
+    final int numDocs = atLeast(2000);
+    for (int i = 0; i < numDocs; ++i) {
+      Document doc = new Document();
+      StringBuilder text = new StringBuilder();
+      for (int j = random().nextInt(10); j >= 0; --j) {
+        text.append(terms[random().nextInt(terms.length)]).append(' ');
+      }
+      doc.add(new TextField("f", text.toString(), Store.NO));
+      w.addDocument(doc);
+      if (rarely()) {
+        w.commit();
+      }
+    }
+    IndexReader reader = w.getReader();
+    w.close();
+
+    ExecutorService service = new ThreadPoolExecutor(4, 4, 0L, TimeUnit.MILLISECONDS,
+                                   new LinkedBlockingQueue<Runnable>(),
+                                   new NamedThreadFactory("TestMaxScoreAccumulator"));
+    IndexSearcher searcher = new IndexSearcher(reader);
+    IndexSearcher concurrentSearcher = new IndexSearcher(reader, service);
+
+    for (Query query : Arrays.asList(
+        new TermQuery(new Term("f", "a")),
+        new BooleanQuery.Builder()
+          .add(new TermQuery(new Term("f", "a")), Occur.SHOULD)
+          .add(new TermQuery(new Term("f", "b")), Occur.SHOULD)
+          .add(new TermQuery(new Term("f", "c")), Occur.SHOULD)
+          .build())) {
+      final int numHits = TestUtil.nextInt(random(), 1, 20);
+      TopScoreDocCollector collector = TopScoreDocCollector.create(numHits);
+      searcher.search(query, collector);
+      TopDocs expected = collector.topDocs();
+
+      TopDocs actual = concurrentSearcher.search(query, TopScoreDocCollector.createSharedManager(numHits, null));
+      assertEquals(expected.totalHits, actual.totalHits);
+      CheckHits.checkEqual(query, expected.scoreDocs, actual.scoreDocs);
+
+      if (expected.scoreDocs.length > 0) {
+        ScoreDoc after = expected.scoreDocs[expected.scoreDocs.length - 1];
+        collector = TopScoreDocCollector.create(numHits, after);
+        searcher.search(query, collector);
+        expected = collector.topDocs();
+        actual = concurrentSearcher.search(query, TopScoreDocCollector.createSharedManager(numHits, after));
+        assertEquals(expected.totalHits, actual.totalHits);
+        CheckHits.checkEqual(query, expected.scoreDocs, actual.scoreDocs);
+      }
+    }
+
+    TestUtil.shutdownExecutorService(service);
+    reader.close();
+    dir.close();
+  }
+}
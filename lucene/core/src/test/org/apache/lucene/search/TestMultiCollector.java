@@ -26,10 +26,16 @@ import java.util.List;
 import java.util.Map;
 import java.util.concurrent.atomic.AtomicBoolean;
 
+import org.apache.lucene.analysis.MockAnalyzer;
 import org.apache.lucene.document.Document;
+import org.apache.lucene.document.Field.Store;
+import org.apache.lucene.document.TextField;
 import org.apache.lucene.index.IndexReader;
+import org.apache.lucene.index.IndexWriterConfig;
 import org.apache.lucene.index.LeafReaderContext;
 import org.apache.lucene.index.RandomIndexWriter;
+import org.apache.lucene.index.Term;
+import org.apache.lucene.search.similarities.BM25Similarity;
 import org.apache.lucene.store.Directory;
 import org.apache.lucene.util.LuceneTestCase;
 import org.apache.lucene.util.TestUtil;
@@ -163,4 +169,107 @@ public class TestMultiCollector extends LuceneTestCase {
     assertFalse(setScorerCalled2.get());
   }
 
+  public void testMinCompetitiveScoreRequiresAllCollectors() throws IOException {
+    final List<Float> minScores = new ArrayList<>();
+    Scorer scorer = new Scorer(null) {
+      @Override
+      public int docID() {
+        return -1;
+      }
+
+      @Override
+      public float score() {
+        return 0;
+      }
+
+      @Override
+      public int freq() {
+        return 1;
+      }
+
+      @Override
+      public DocIdSetIterator iterator() {
+        throw new UnsupportedOperationException();
+      }
+
+      @Override
+      public void setMinCompetitiveScore(float minScore) {
+        minScores.add(minScore);
+      }
+    };
+
+    final Scorer[] scorers = new Scorer[2];
+    Collector[] collectors = new Collector[2];
+    for (int i = 0; i < collectors.length; ++i) {
+      final int idx = i;
+      collectors[i] = new SimpleCollector() {
+        @Override
+        public void setScorer(Scorer scorer) {
+          scorers[idx] = scorer;
+        }
+
+        @Override
+        public void collect(int doc) {}
+
+        @Override
+        public boolean needsScores() {
+          return true;
+        }
+      };
+    }
+    LeafCollector leafCollector = MultiCollector.wrap(collectors).getLeafCollector(null);
+    leafCollector.setScorer(scorer);
+
+    scorers[0].setMinCompetitiveScore(2f);
+    assertEquals(Collections.emptyList(), minScores);
+    scorers[1].setMinCompetitiveScore(1f);
+    assertEquals(Arrays.asList(1f), minScores);
+    scorers[1].setMinCompetitiveScore(3f);
+    assertEquals(Arrays.asList(1f, 2f), minScores);
+    scorers[1].setMinCompetitiveScore(4f);
+    assertEquals(Arrays.asList(1f, 2f), minScores);
+    scorers[0].setMinCompetitiveScore(5f);
+    assertEquals(Arrays.asList(1f, 2f, 4f), minScores);
+  }
+
+  public void testTopScoresWithTotalHitCount() throws IOException {
+    Directory dir = newDirectory();
+    IndexWriterConfig iwc = newIndexWriterConfig(new MockAnalyzer(random()));
+    iwc.setCodec(TestUtil.getDefaultCodec());
+    iwc.setSimilarity(new BM25Similarity());
+    RandomIndexWriter w = new RandomIndexWriter(random(), dir, iwc);
+    final int numDocs = atLeast(10000);
+    for (int i = 0; i < numDocs; ++i) {
+      Document doc = new Document();
+      doc.add(new TextField("foo", i % 1000 == 0 ? "common common common common" : "common other", Store.NO));
+      w.addDocument(doc);
+    }
+    IndexReader reader = w.getReader();
+    w.close();
+    IndexSearcher searcher = newSearcher(reader);
+    searcher.setSimilarity(new BM25Similarity());
+
+    // the term scorer can skip blocks that don't contain a doc with a high freq
+    Query query = new TermQuery(new Term("foo", "common"));
+
+    TopScoreDocCollector expected = TopScoreDocCollector.create(10, null, Integer.MAX_VALUE);
+    searcher.search(query, expected);
+
+    // the top-scores collector alone is allowed to skip non-competitive hits,
+    // but not when it shares its scorer with a collector that counts hits
+    TopScoreDocCollector topCollector = TopScoreDocCollector.create(10, null, 0);
+    TotalHitCountCollector countCollector = new TotalHitCountCollector();
+    Collector collector = random().nextBoolean()
+        ? MultiCollector.wrap(topCollector, countCollector)
+        : MultiCollector.wrap(countCollector, topCollector);
+    assertTrue(collector.needsTotalHits());
+    searcher.search(query, collector);
+
+    assertEquals(numDocs, countCollector.getTotalHits());
+    CheckHits.checkEqual(query, expected.topDocs().scoreDocs, topCollector.topDocs().scoreDocs);
+
+    reader.close();
+    dir.close();
+  }
+
 }
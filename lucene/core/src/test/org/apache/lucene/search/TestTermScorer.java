@@ -24,15 +24,21 @@ import java.util.List;
 import org.apache.lucene.analysis.MockAnalyzer;
 import org.apache.lucene.document.Document;
 import org.apache.lucene.document.Field;
+import org.apache.lucene.document.Field.Store;
+import org.apache.lucene.document.TextField;
 import org.apache.lucene.index.FilterLeafReader;
+import org.apache.lucene.index.IndexReader;
+import org.apache.lucene.index.IndexWriterConfig;
 import org.apache.lucene.index.LeafReader;
 import org.apache.lucene.index.LeafReaderContext;
 import org.apache.lucene.index.NumericDocValues;
 import org.apache.lucene.index.RandomIndexWriter;
 import org.apache.lucene.index.Term;
+import org.apache.lucene.search.similarities.BM25Similarity;
 import org.apache.lucene.search.similarities.ClassicSimilarity;
 import org.apache.lucene.store.Directory;
 import org.apache.lucene.util.LuceneTestCase;
+import org.apache.lucene.util.TestUtil;
 
 public class TestTermScorer extends LuceneTestCase {
   protected Directory directory;
@@ -192,4 +198,79 @@ public class TestTermScorer extends LuceneTestCase {
     // should not fail this time since norms are not necessary
     weight2.scorer(forbiddenNorms.getContext()).iterator().nextDoc();
   }
+
+  public void testRandomTopDocs() throws IOException {
+    Directory dir = newDirectory();
+    IndexWriterConfig iwc = newIndexWriterConfig(new MockAnalyzer(random()));
+    iwc.setSimilarity(new BM25Similarity());
+    RandomIndexWriter w = new RandomIndexWriter(random(), dir, iwc);
+    final int numDocs = atLeast(3000);
+    for (int i = 0; i < numDocs; ++i) {
+      Document doc = new Document();
+      StringBuilder value = new StringBuilder();
+      final int numTerms = random().nextInt(1 << random().nextInt(6));
+      for (int j = 0; j < numTerms; ++j) {
+        value.append(random().nextInt(5)).append(' ');
+      }
+      doc.add(new TextField("foo", value.toString(), Store.NO));
+      w.addDocument(doc);
+    }
+    IndexReader reader = w.getReader();
+    w.close();
+    IndexSearcher searcher = newSearcher(reader);
+    searcher.setSimilarity(new BM25Similarity());
+
+    for (int iter = 0; iter < 15; ++iter) {
+      Query query = new TermQuery(new Term("foo", Integer.toString(iter % 5)));
+      final int numHits = TestUtil.nextInt(random(), 1, 20);
+
+      TopScoreDocCollector expected = TopScoreDocCollector.create(numHits, null, Integer.MAX_VALUE);
+      searcher.search(query, expected);
+      TopScoreDocCollector actual = TopScoreDocCollector.create(numHits, null, 0);
+      searcher.search(query, actual);
+
+      CheckHits.checkEqual(query, expected.topDocs().scoreDocs, actual.topDocs().scoreDocs);
+      assertTrue(actual.getTotalHits() <= expected.getTotalHits());
+    }
+
+    reader.close();
+    dir.close();
+  }
+
+  public void testSkipsNonCompetitiveBlocks() throws IOException {
+    Directory dir = newDirectory();
+    IndexWriterConfig iwc = newIndexWriterConfig(new MockAnalyzer(random()));
+    iwc.setCodec(TestUtil.getDefaultCodec());
+    iwc.setSimilarity(new BM25Similarity());
+    // keep doc IDs in order
+    iwc.setMergePolicy(newLogMergePolicy());
+    RandomIndexWriter w = new RandomIndexWriter(random(), dir, iwc);
+    final int numDocs = 10000;
+    for (int i = 0; i < numDocs; ++i) {
+      Document doc = new Document();
+      // the first docs are the shortest ones, so they have the best scores
+      doc.add(new TextField("foo", i < 10 ? "common" : "common a b c d e f g h i j", Store.NO));
+      w.addDocument(doc);
+    }
+    w.forceMerge(1);
+    IndexReader reader = w.getReader();
+    w.close();
+    IndexSearcher searcher = newSearcher(reader);
+    searcher.setSimilarity(new BM25Similarity());
+
+    Query query = new TermQuery(new Term("foo", "common"));
+
+    TopScoreDocCollector expected = TopScoreDocCollector.create(10, null, Integer.MAX_VALUE);
+    searcher.search(query, expected);
+    assertEquals(numDocs, expected.getTotalHits());
+
+    TopScoreDocCollector actual = TopScoreDocCollector.create(10, null, 0);
+    searcher.search(query, actual);
+    CheckHits.checkEqual(query, expected.topDocs().scoreDocs, actual.topDocs().scoreDocs);
+    // the impacts of the blocks of long docs are not competitive
+    assertTrue(actual.getTotalHits() < numDocs / 2);
+
+    reader.close();
+    dir.close();
+  }
 }
@@ -0,0 +1,176 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.lucene.search;
+
+
+import java.io.IOException;
+
+import org.apache.lucene.analysis.MockAnalyzer;
+import org.apache.lucene.document.Document;
+import org.apache.lucene.document.Field.Store;
+import org.apache.lucene.document.TextField;
+import org.apache.lucene.index.IndexReader;
+import org.apache.lucene.index.IndexWriterConfig;
+import org.apache.lucene.index.RandomIndexWriter;
+import org.apache.lucene.index.Term;
+import org.apache.lucene.search.BooleanClause.Occur;
+import org.apache.lucene.search.similarities.BM25Similarity;
+import org.apache.lucene.store.Directory;
+import org.apache.lucene.util.LuceneTestCase;
+import org.apache.lucene.util.TestUtil;
+
+public class TestWANDScorer extends LuceneTestCase {
+
+  public void testSameTopHits() throws IOException {
+    Directory dir = newDirectory();
+    RandomIndexWriter w = new RandomIndexWriter(random(), dir);
+    final int numDocs = atLeast(1000);
+    for (int i = 0; i < numDocs; ++i) {
+      Document doc = new Document();
+      StringBuilder value = new StringBuilder();
+      final int numTerms = random().nextInt(1 << random().nextInt(5));
+      for (int j = 0; j < numTerms; ++j) {
+        value.append(random().nextInt(10)).append(' ');
+      }
+      doc.add(new TextField("foo", value.toString(), Store.NO));
+      w.addDocument(doc);
+    }
+    IndexReader reader = w.getReader();
+    w.close();
+    IndexSearcher searcher = newSearcher(reader);
+
+    final int iters = atLeast(50);
+    for (int iter = 0; iter < iters; ++iter) {
+      BooleanQuery.Builder builder = new BooleanQuery.Builder();
+      final int numClauses = TestUtil.nextInt(random(), 2, 6);
+      for (int i = 0; i < numClauses; ++i) {
+        Query query = new TermQuery(new Term("foo", Integer.toString(random().nextInt(10))));
+        if (random().nextBoolean()) {
+          query = new BoostQuery(query, TestUtil.nextInt(random(), 1, 10));
+        }
+        builder.add(query, Occur.SHOULD);
+      }
+      if (random().nextInt(5) == 0) {
+        builder.add(new TermQuery(new Term("foo", Integer.toString(random().nextInt(10)))), Occur.MUST_NOT);
+      }
+      Query query = builder.build();
+      final int numHits = TestUtil.nextInt(random(), 1, 20);
+
+      TopScoreDocCollector expected = TopScoreDocCollector.create(numHits, null, Integer.MAX_VALUE);
+      searcher.search(query, expected);
+      TopScoreDocCollector actual = TopScoreDocCollector.create(numHits, null, 0);
+      searcher.search(query, actual);
+
+      CheckHits.checkEqual(query, expected.topDocs().scoreDocs, actual.topDocs().scoreDocs);
+      assertTrue(actual.getTotalHits() <= expected.getTotalHits());
+    }
+
+    reader.close();
+    dir.close();
+  }
+
+  public void testSkipsNonCompetitiveDocs() throws IOException {
+    Directory dir = newDirectory();
+    IndexWriterConfig iwc = newIndexWriterConfig(new MockAnalyzer(random()));
+    iwc.setCodec(TestUtil.getDefaultCodec());
+    iwc.setSimilarity(new BM25Similarity());
+    RandomIndexWriter w = new RandomIndexWriter(random(), dir, iwc);
+    final int numDocs = 10000;
+    for (int i = 0; i < numDocs; ++i) {
+      Document doc = new Document();
+      doc.add(new TextField("foo", i % 100 == 0 ? "common rare" : "common other", Store.NO));
+      w.addDocument(doc);
+    }
+    IndexReader reader = w.getReader();
+    w.close();
+    IndexSearcher searcher = newSearcher(reader);
+    searcher.setSimilarity(new BM25Similarity());
+
+    Query query = new BooleanQuery.Builder()
+        .add(new TermQuery(new Term("foo", "common")), Occur.SHOULD)
+        .add(new TermQuery(new Term("foo", "rare")), Occur.SHOULD)
+        .build();
+
+    TopScoreDocCollector expected = TopScoreDocCollector.create(10, null, Integer.MAX_VALUE);
+    searcher.search(query, expected);
+    assertEquals(numDocs, expected.getTotalHits());
+
+    TopScoreDocCollector actual = TopScoreDocCollector.create(10, null, 0);
+    searcher.search(query, actual);
+    CheckHits.checkEqual(query, expected.topDocs().scoreDocs, actual.topDocs().scoreDocs);
+    // once the top hits all contain "rare", docs that only contain "common" are skipped
+    assertTrue(actual.getTotalHits() < numDocs / 2);
+
+    reader.close();
+    dir.close();
+  }
+
+  public void testTotalHitsThreshold() throws IOException {
+    Directory dir = newDirectory();
+    IndexWriterConfig iwc = newIndexWriterConfig(new MockAnalyzer(random()));
+    iwc.setCodec(TestUtil.getDefaultCodec());
+    iwc.setSimilarity(new BM25Similarity());
+    RandomIndexWriter w = new RandomIndexWriter(random(), dir, iwc);
+    final int numDocs = atLeast(3000);
+    for (int i = 0; i < numDocs; ++i) {
+      Document doc = new Document();
+      doc.add(new TextField("foo", i % 100 == 0 ? "common rare" : "common other", Store.NO));
+      w.addDocument(doc);
+    }
+    IndexReader reader = w.getReader();
+    w.close();
+    IndexSearcher searcher = newSearcher(reader);
+    searcher.setSimilarity(new BM25Similarity());
+
+    Query query = new BooleanQuery.Builder()
+        .add(new TermQuery(new Term("foo", "common")), Occur.SHOULD)
+        .add(new TermQuery(new Term("foo", "rare")), Occur.SHOULD)
+        .build();
+
+    TopScoreDocCollector expected = TopScoreDocCollector.create(10, null, Integer.MAX_VALUE);
+    searcher.search(query, expected);
+    TopDocs expectedTopDocs = expected.topDocs();
+    assertTrue(expectedTopDocs.totalHitsExact);
+    assertEquals(numDocs, expectedTopDocs.totalHits);
+
+    final int iters = atLeast(10);
+    for (int iter = 0; iter < iters; ++iter) {
+      final int threshold = random().nextInt(numDocs * 2);
+      TopScoreDocCollector actual = TopScoreDocCollector.create(10, null, threshold);
+      searcher.search(query, actual);
+      TopDocs actualTopDocs = actual.topDocs();
+      CheckHits.checkEqual(query, expectedTopDocs.scoreDocs, actualTopDocs.scoreDocs);
+      assertEquals(actual.isTotalHitsExact(), actualTopDocs.totalHitsExact);
+      if (threshold >= numDocs) {
+        assertTrue(actualTopDocs.totalHitsExact);
+      }
+      if (actualTopDocs.totalHitsExact) {
+        assertEquals(numDocs, actualTopDocs.totalHits);
+      } else {
+        // hits are counted accurately up to the threshold
+        assertTrue(actualTopDocs.totalHits > threshold);
+        assertTrue(actualTopDocs.totalHits <= numDocs);
+      }
+
+      TopDocs merged = TopDocs.merge(10, new TopDocs[] { expectedTopDocs, actualTopDocs });
+      assertEquals(actualTopDocs.totalHitsExact, merged.totalHitsExact);
+    }
+
+    reader.close();
+    dir.close();
+  }
+}
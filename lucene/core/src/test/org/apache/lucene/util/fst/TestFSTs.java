@@ -1207,6 +1207,60 @@ public class TestFSTs extends LuceneTestCase {
     dir.close();
   }
 
+  public void testOffHeap() throws Exception {
+    final PositiveIntOutputs outputs = PositiveIntOutputs.getSingleton();
+    final Builder<Long> b = new Builder<>(FST.INPUT_TYPE.BYTE1, outputs);
+    final TreeMap<BytesRef,Long> terms = new TreeMap<>();
+    final int numTerms = atLeast(1000);
+    while (terms.size() < numTerms) {
+      terms.put(new BytesRef(TestUtil.randomSimpleString(random(), 1, 20)), (long) random().nextInt(1000));
+    }
+    final IntsRefBuilder scratch = new IntsRefBuilder();
+    for (Map.Entry<BytesRef,Long> ent : terms.entrySet()) {
+      b.add(Util.toIntsRef(ent.getKey(), scratch), ent.getValue());
+    }
+    final FST<Long> fst = b.finish();
+
+    Directory dir = newDirectory();
+    IndexOutput out = dir.createOutput("fst", IOContext.DEFAULT);
+    out.writeVInt(42);
+    fst.save(out);
+    out.writeVInt(43);
+    out.close();
+
+    IndexInput in = dir.openInput("fst", IOContext.DEFAULT);
+    assertEquals(42, in.readVInt());
+    final FST<Long> offHeap = FST.readOffHeap(in, outputs);
+    // the input is positioned after the FST
+    assertEquals(43, in.readVInt());
+    assertTrue(offHeap.ramBytesUsed() < fst.ramBytesUsed());
+
+    for (Map.Entry<BytesRef,Long> ent : terms.entrySet()) {
+      assertEquals(ent.getValue(), Util.get(offHeap, ent.getKey()));
+    }
+    final BytesRefFSTEnum<Long> fstEnum = new BytesRefFSTEnum<>(offHeap);
+    for (Map.Entry<BytesRef,Long> ent : terms.entrySet()) {
+      InputOutput<Long> next = fstEnum.next();
+      assertEquals(ent.getKey(), next.input);
+      assertEquals(ent.getValue(), next.output);
+    }
+    assertNull(fstEnum.next());
+
+    // saving an off-heap FST copies its bytes
+    out = dir.createOutput("fst2", IOContext.DEFAULT);
+    offHeap.save(out);
+    out.close();
+    in.close();
+
+    in = dir.openInput("fst2", IOContext.DEFAULT);
+    final FST<Long> fst2 = new FST<>(in, outputs);
+    in.close();
+    for (Map.Entry<BytesRef,Long> ent : terms.entrySet()) {
+      assertEquals(ent.getValue(), Util.get(fst2, ent.getKey()));
+    }
+    dir.close();
+  }
+
   private void checkStopNodes(FST<Long> fst, PositiveIntOutputs outputs) throws Exception {
     final Long nothing = outputs.getNoOutput();
     FST.Arc<Long> startArc = fst.getFirstArc(new FST.Arc<Long>());
@@ -22,6 +22,7 @@ import java.util.Iterator;
 
 import org.apache.lucene.codecs.FieldsConsumer;
 import org.apache.lucene.codecs.FieldsProducer;
+import org.apache.lucene.codecs.NormsProducer;
 import org.apache.lucene.codecs.PostingsFormat;
 import org.apache.lucene.index.AssertingLeafReader;
 import org.apache.lucene.index.FieldInfo;
@@ -134,7 +135,12 @@ public final class AssertingPostingsFormat extends PostingsFormat {
     
     @Override
     public void write(Fields fields) throws IOException {
-      in.write(fields);
+      write(fields, null);
+    }
+
+    @Override
+    public void write(Fields fields, NormsProducer norms) throws IOException {
+      in.write(fields, norms);
 
       // TODO: more asserts?  can we somehow run a
       // "limited" CheckIndex here???  Or ... can we improve
@@ -21,6 +21,7 @@ import java.util.Random;
 
 import org.apache.lucene.codecs.FieldsConsumer;
 import org.apache.lucene.codecs.FieldsProducer;
+import org.apache.lucene.codecs.NormsProducer;
 import org.apache.lucene.codecs.PostingsFormat;
 import org.apache.lucene.index.Fields;
 import org.apache.lucene.index.SegmentReadState;
@@ -62,10 +63,15 @@ class CrankyPostingsFormat extends PostingsFormat {
     
     @Override
     public void write(Fields fields) throws IOException {
+      write(fields, null);
+    }
+
+    @Override
+    public void write(Fields fields, NormsProducer norms) throws IOException {
       if (random.nextInt(100) == 0) {
         throw new IOException("Fake IOException from FieldsConsumer.write()");
       }  
-      delegate.write(fields);
+      delegate.write(fields, norms);
     }
 
     @Override
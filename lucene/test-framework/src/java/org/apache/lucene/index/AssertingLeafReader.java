@@ -18,6 +18,7 @@ package org.apache.lucene.index;
 
 import java.io.IOException;
 import java.util.Iterator;
+import java.util.List;
 
 import org.apache.lucene.search.DocIdSetIterator;
 import org.apache.lucene.util.Bits;
@@ -164,6 +165,15 @@ public class AssertingLeafReader extends FilterLeafReader {
       }
     }
 
+    @Override
+    public ImpactsEnum impacts(int flags) throws IOException {
+      assertThread("Terms enums", creationThread);
+      assert state == State.POSITIONED: "impacts(...) called on unpositioned TermsEnum";
+      ImpactsEnum impacts = super.impacts(flags);
+      assert impacts != null;
+      return new AssertingImpactsEnum(impacts);
+    }
+
     // TODO: we should separately track if we are 'at the end' ?
     // someone should not call next() after it returns null!!!!
     @Override
@@ -386,6 +396,102 @@ public class AssertingLeafReader extends FilterLeafReader {
     }
   }
 
+  /** Wraps an {@link ImpactsEnum} with additional checks */
+  public static class AssertingImpactsEnum extends ImpactsEnum {
+
+    private final ImpactsEnum in;
+    private final AssertingPostingsEnum assertingPostings;
+    private int lastShallowTarget = -1;
+
+    AssertingImpactsEnum(ImpactsEnum impacts) {
+      in = impacts;
+      // inherit checks from AssertingPostingsEnum
+      assertingPostings = new AssertingPostingsEnum(impacts);
+    }
+
+    @Override
+    public void advanceShallow(int target) throws IOException {
+      assert target >= lastShallowTarget : "called on decreasing targets: target = " + target + " < last target = " + lastShallowTarget;
+      assert target >= docID() : "target = " + target + " < docID = " + docID();
+      lastShallowTarget = target;
+      in.advanceShallow(target);
+    }
+
+    @Override
+    public Impacts getImpacts() throws IOException {
+      Impacts impacts = in.getImpacts();
+      final int numLevels = impacts.numLevels();
+      assert numLevels > 0 : "numLevels = " + numLevels;
+      int lastDocIdUpTo = -1;
+      for (int level = 0; level < numLevels; ++level) {
+        final int docIdUpTo = impacts.getDocIdUpTo(level);
+        assert docIdUpTo >= Math.max(docID(), lastShallowTarget) : "level " + level + " only covers docs up to " + docIdUpTo;
+        assert docIdUpTo >= lastDocIdUpTo : "docIdUpTo must be non-decreasing, got " + docIdUpTo + " after " + lastDocIdUpTo;
+        lastDocIdUpTo = docIdUpTo;
+        List<Impact> levelImpacts = impacts.getImpacts(level);
+        assert levelImpacts.isEmpty() == false : "impacts of level " + level + " are empty";
+        Impact previous = null;
+        for (Impact impact : levelImpacts) {
+          assert impact.freq > 0 : "freq must be positive, got " + impact;
+          if (previous != null) {
+            assert impact.freq > previous.freq : "impacts must be sorted by increasing freq: " + levelImpacts;
+            assert Long.compareUnsigned(impact.norm, previous.norm) < 0 : "impacts must be sorted by decreasing unsigned norm: " + levelImpacts;
+          }
+          previous = impact;
+        }
+      }
+      assert lastDocIdUpTo == DocIdSetIterator.NO_MORE_DOCS : "the last level must cover all docs, got " + lastDocIdUpTo;
+      return impacts;
+    }
+
+    @Override
+    public int freq() throws IOException {
+      return assertingPostings.freq();
+    }
+
+    @Override
+    public int nextPosition() throws IOException {
+      return assertingPostings.nextPosition();
+    }
+
+    @Override
+    public int startOffset() throws IOException {
+      return assertingPostings.startOffset();
+    }
+
+    @Override
+    public int endOffset() throws IOException {
+      return assertingPostings.endOffset();
+    }
+
+    @Override
+    public BytesRef getPayload() throws IOException {
+      return assertingPostings.getPayload();
+    }
+
+    @Override
+    public int docID() {
+      return assertingPostings.docID();
+    }
+
+    @Override
+    public int nextDoc() throws IOException {
+      assert docID() + 1 >= lastShallowTarget : "target = " + (docID() + 1) + " < last shallow target = " + lastShallowTarget;
+      return assertingPostings.nextDoc();
+    }
+
+    @Override
+    public int advance(int target) throws IOException {
+      assert target >= lastShallowTarget : "target = " + target + " < last shallow target = " + lastShallowTarget;
+      return assertingPostings.advance(target);
+    }
+
+    @Override
+    public long cost() {
+      return assertingPostings.cost();
+    }
+  }
+
   /** Wraps a NumericDocValues but with additional asserts */
   public static class AssertingNumericDocValues extends NumericDocValues {
     private final Thread creationThread = Thread.currentThread();
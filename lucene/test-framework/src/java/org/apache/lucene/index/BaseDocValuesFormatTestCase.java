@@ -49,6 +49,7 @@ import org.apache.lucene.index.CheckIndex.Status.DocValuesStatus;
 import org.apache.lucene.index.TermsEnum.SeekStatus;
 import org.apache.lucene.search.BooleanClause;
 import org.apache.lucene.search.BooleanQuery;
+import org.apache.lucene.search.DocIdSetIterator;
 import org.apache.lucene.search.IndexSearcher;
 import org.apache.lucene.search.Query;
 import org.apache.lucene.search.ScoreDoc;
@@ -3210,6 +3211,94 @@ public abstract class BaseDocValuesFormatTestCase extends BaseIndexFileFormatTes
     directory.close();
   }
 
+  public void testIteratorsVsRandomAccess() throws IOException {
+    assumeTrue("Codec does not support getDocsWithField", codecSupportsDocsWithField());
+    Directory directory = newDirectory();
+    IndexWriterConfig conf = newIndexWriterConfig(new MockAnalyzer(random()));
+    RandomIndexWriter iw = new RandomIndexWriter(random(), directory, conf);
+    // cover both sparse and dense fields
+    final double density = random().nextBoolean() ? random().nextDouble() / 20 : random().nextDouble();
+    final int numDocs = atLeast(3000);
+    for (int i = 0; i < numDocs; ++i) {
+      Document doc = new Document();
+      if (random().nextDouble() < density) {
+        doc.add(new NumericDocValuesField("numeric", random().nextInt(100) - 50));
+        doc.add(new BinaryDocValuesField("binary", new BytesRef(TestUtil.randomSimpleString(random(), 1, 5))));
+        doc.add(new SortedDocValuesField("sorted", new BytesRef(TestUtil.randomSimpleString(random(), 1, 3))));
+      }
+      iw.addDocument(doc);
+    }
+    if (random().nextBoolean()) {
+      iw.forceMerge(1);
+    }
+    DirectoryReader ir = iw.getReader();
+    iw.close();
+
+    for (LeafReaderContext context : ir.leaves()) {
+      LeafReader reader = context.reader();
+      final int maxDoc = reader.maxDoc();
+      final boolean useAdvance = random().nextBoolean();
+
+      NumericDocValuesIterator numericIt = reader.getNumericDocValuesIterator("numeric");
+      NumericDocValues numeric = reader.getNumericDocValues("numeric");
+      Bits numericDocs = reader.getDocsWithField("numeric");
+      if (numeric == null) {
+        assertNull(numericIt);
+      } else {
+        for (int doc = nextDocWithValue(numericIt, useAdvance); doc < maxDoc; doc = nextDocWithValue(numericIt, useAdvance)) {
+          assertTrue(numericDocs.get(doc));
+          assertEquals(numeric.get(doc), numericIt.longValue());
+        }
+        assertIteratorCoversAllDocs(numericDocs, reader.getNumericDocValuesIterator("numeric"));
+      }
+
+      BinaryDocValuesIterator binaryIt = reader.getBinaryDocValuesIterator("binary");
+      BinaryDocValues binary = reader.getBinaryDocValues("binary");
+      Bits binaryDocs = reader.getDocsWithField("binary");
+      if (binary == null) {
+        assertNull(binaryIt);
+      } else {
+        for (int doc = nextDocWithValue(binaryIt, useAdvance); doc < maxDoc; doc = nextDocWithValue(binaryIt, useAdvance)) {
+          assertTrue(binaryDocs.get(doc));
+          assertEquals(binary.get(doc), binaryIt.binaryValue());
+        }
+        assertIteratorCoversAllDocs(binaryDocs, reader.getBinaryDocValuesIterator("binary"));
+      }
+
+      SortedDocValuesIterator sortedIt = reader.getSortedDocValuesIterator("sorted");
+      SortedDocValues sorted = reader.getSortedDocValues("sorted");
+      if (sorted == null) {
+        assertNull(sortedIt);
+      } else {
+        assertEquals(sorted.getValueCount(), sortedIt.getValueCount());
+        for (int doc = nextDocWithValue(sortedIt, useAdvance); doc < maxDoc; doc = nextDocWithValue(sortedIt, useAdvance)) {
+          assertEquals(sorted.getOrd(doc), sortedIt.ordValue());
+          assertEquals(sorted.lookupOrd(sorted.getOrd(doc)), sortedIt.lookupOrd(sortedIt.ordValue()));
+        }
+        assertIteratorCoversAllDocs(reader.getDocsWithField("sorted"), reader.getSortedDocValuesIterator("sorted"));
+      }
+    }
+
+    ir.close();
+    directory.close();
+  }
+
+  private static int nextDocWithValue(DocValuesIterator it, boolean useAdvance) throws IOException {
+    if (useAdvance && random().nextBoolean()) {
+      return it.advance(it.docID() + 1 + random().nextInt(10));
+    }
+    return it.nextDoc();
+  }
+
+  private static void assertIteratorCoversAllDocs(Bits docsWithField, DocValuesIterator it) throws IOException {
+    for (int doc = 0; doc < docsWithField.length(); ++doc) {
+      if (docsWithField.get(doc)) {
+        assertEquals(doc, it.nextDoc());
+      }
+    }
+    assertEquals(DocIdSetIterator.NO_MORE_DOCS, it.nextDoc());
+  }
+
   // same as testNumericMergeAwayAllValues but on more than 1024 docs to have sparse encoding on
   public void testNumericMergeAwayAllValuesLargeSegment() throws IOException {
     Directory directory = newDirectory();
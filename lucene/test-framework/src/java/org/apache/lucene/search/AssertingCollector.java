@@ -42,6 +42,11 @@ class AssertingCollector extends FilterCollector {
     this.random = random;
   }
 
+  @Override
+  public boolean needsTotalHits() {
+    return in.needsTotalHits();
+  }
+
   @Override
   public LeafCollector getLeafCollector(LeafReaderContext context) throws IOException {
     final LeafCollector in = super.getLeafCollector(context);
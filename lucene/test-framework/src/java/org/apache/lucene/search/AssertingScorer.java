@@ -39,6 +39,8 @@ public class AssertingScorer extends Scorer {
 
   IteratorState state = IteratorState.START;
   int doc;
+  float minCompetitiveScore = Float.NEGATIVE_INFINITY;
+  int lastShallowTarget = -1;
 
   private AssertingScorer(Random random, Scorer in, boolean needsScores) {
     super(in.weight);
@@ -88,6 +90,32 @@ public class AssertingScorer extends Scorer {
     return in.freq();
   }
 
+  @Override
+  public void setMinCompetitiveScore(float minScore) throws IOException {
+    assert needsScores;
+    assert Float.isNaN(minScore) == false;
+    assert minScore >= minCompetitiveScore : "minimum competitive score decreased from " + minCompetitiveScore + " to " + minScore;
+    minCompetitiveScore = minScore;
+    in.setMinCompetitiveScore(minScore);
+  }
+
+  @Override
+  public int advanceShallow(int target) throws IOException {
+    assert target >= docID() : "target must be >= docID(), got " + target + " < " + docID();
+    final int upTo = in.advanceShallow(target);
+    assert upTo >= target : "advanceShallow(" + target + ") returned " + upTo;
+    lastShallowTarget = target;
+    return upTo;
+  }
+
+  @Override
+  public float getMaxScore(int upTo) throws IOException {
+    assert upTo >= lastShallowTarget : "upTo=" + upTo + " < last shallow target=" + lastShallowTarget;
+    final float maxScore = in.getMaxScore(upTo);
+    assert Float.isNaN(maxScore) == false;
+    return maxScore;
+  }
+
   @Override
   public int docID() {
     return in.docID();
@@ -47,4 +47,14 @@ class AssertingWeight extends FilterWeight {
 
     return AssertingBulkScorer.wrap(new Random(random.nextLong()), inScorer, context.reader().maxDoc());
   }
+
+  @Override
+  public BulkScorer topScoresBulkScorer(LeafReaderContext context) throws IOException {
+    assert needsScores;
+    BulkScorer inScorer = in.topScoresBulkScorer(context);
+    if (inScorer == null) {
+      return null;
+    }
+    return AssertingBulkScorer.wrap(new Random(random.nextLong()), inScorer, context.reader().maxDoc());
+  }
 }
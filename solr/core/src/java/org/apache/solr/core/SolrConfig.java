@@ -274,6 +274,12 @@ public class SolrConfig extends Config implements MapSerializable {
       jmxConfig = new JmxConfiguration(false, null, null, null);
     }
     maxWarmingSearchers = getInt("query/maxWarmingSearchers", Integer.MAX_VALUE);
+    autowarmThreads = Math.max(1, getInt("query/autowarmThreads", 1));
+    autowarmTimeBudgetMillis = getInt("query/autowarmTimeBudgetMillis", -1);
+    segmentFilterCacheSize = getInt("query/segmentFilterCache/@size", 0);
+    offHeapFilterCache = getBool("query/filterCache/@offHeap", false);
+    compressFilterCache = getBool("query/filterCache/@compress", false);
+    segmentFilterCacheMaxRamMB = getInt("query/segmentFilterCache/@maxRamMB", -1);
     slowQueryThresholdMillis = getInt("query/slowQueryThresholdMillis", -1);
     for (SolrPluginInfo plugin : plugins) loadPluginInfo(plugin);
     updateHandlerInfo = loadUpdatehandlerInfo();
@@ -477,6 +483,12 @@ public class SolrConfig extends Config implements MapSerializable {
   private Map<String, List<PluginInfo>> pluginStore = new LinkedHashMap<>();
 
   public final int maxWarmingSearchers;
+  public final int autowarmThreads;  // number of threads that autowarm the caches of a new searcher
+  public final int autowarmTimeBudgetMillis;  // time after which autowarming skips remaining entries, -1 for no limit
+  public final boolean offHeapFilterCache;  // whether the filterCache stores bit sets off-heap
+  public final boolean compressFilterCache;  // whether the filterCache compresses mid-density bit sets
+  public final int segmentFilterCacheSize;  // max entries of the per-segment filter cache, 0 to disable it
+  public final int segmentFilterCacheMaxRamMB;  // max memory of the per-segment filter cache, -1 for no limit
   public final boolean useColdSearcher;
   public final Version luceneMatchVersion;
   protected String dataDir;
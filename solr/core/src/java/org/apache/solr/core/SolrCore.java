@@ -117,6 +117,7 @@ import org.apache.solr.schema.ManagedIndexSchema;
 import org.apache.solr.schema.SchemaManager;
 import org.apache.solr.schema.SimilarityFactory;
 import org.apache.solr.search.QParserPlugin;
+import org.apache.solr.search.SegmentFilterCache;
 import org.apache.solr.search.SolrFieldCacheMBean;
 import org.apache.solr.search.SolrIndexSearcher;
 import org.apache.solr.search.ValueSourceParser;
@@ -743,6 +744,12 @@ public final class SolrCore implements SolrInfoMBean, Closeable {
     initSchema(config, schema);
 
     this.maxWarmingSearchers = config.maxWarmingSearchers;
+    if (config.segmentFilterCacheSize > 0) {
+      this.segmentFilterCache = new SegmentFilterCache(config.segmentFilterCacheSize, config.segmentFilterCacheMaxRamMB);
+      infoRegistry.put("segmentFilterCache", segmentFilterCache);
+    } else {
+      this.segmentFilterCache = null;
+    }
     this.slowQueryThresholdMillis = config.slowQueryThresholdMillis;
 
     booleanQueryMaxClauseCount();
@@ -1248,6 +1255,11 @@ public final class SolrCore implements SolrInfoMBean, Closeable {
       }
     }
 
+    if (segmentFilterCache != null) {
+      // segments may be shared with a reloaded core and outlive this one
+      segmentFilterCache.clear();
+    }
+
     try {
       infoRegistry.clear();
     } catch (Throwable e) {
@@ -1436,6 +1448,14 @@ public final class SolrCore implements SolrInfoMBean, Closeable {
     return updateHandler;
   }
 
+  /**
+   * Returns the per-segment filter cache shared by the searchers of this core, or null if it
+   * is not configured.
+   */
+  public SegmentFilterCache getSegmentFilterCache() {
+    return segmentFilterCache;
+  }
+
   ////////////////////////////////////////////////////////////////////////////////
   // Searcher Control
   ////////////////////////////////////////////////////////////////////////////////
@@ -1458,6 +1478,7 @@ public final class SolrCore implements SolrInfoMBean, Closeable {
   private Object searcherLock = new Object();  // the sync object for the searcher
   private ReentrantLock openSearcherLock = new ReentrantLock(true);     // used to serialize opens/reopens for absolute ordering
   private final int maxWarmingSearchers;  // max number of on-deck searchers allowed
+  private final SegmentFilterCache segmentFilterCache;  // shared by all searchers of this core, may be null
   private final int slowQueryThresholdMillis;  // threshold above which a query is considered slow
 
   private RefCounted<SolrIndexSearcher> realtimeSearcher;
@@ -17,19 +17,21 @@
 package org.apache.solr.handler.component;
 import java.lang.invoke.MethodHandles;
 import java.net.ConnectException;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.HashMap;
-import java.util.HashSet;
 import java.util.List;
 import java.util.ListIterator;
 import java.util.Map;
-import java.util.Set;
 import java.util.concurrent.Callable;
 import java.util.concurrent.CompletionService;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import org.apache.http.client.HttpClient;
 import org.apache.solr.client.solrj.SolrClient;
@@ -63,7 +65,7 @@ public class HttpShardHandler extends ShardHandler {
 
   private HttpShardHandlerFactory httpShardHandlerFactory;
   private CompletionService<ShardResponse> completionService;
-  private Set<Future<ShardResponse>> pending;
+  private Map<Future<ShardResponse>,PendingRequest> pending;  // the attempts that have not been taken yet
   private Map<String,List<String>> shardToURLs;
   private HttpClient httpClient;
 
@@ -73,7 +75,7 @@ public class HttpShardHandler extends ShardHandler {
     this.httpClient = httpClient;
     this.httpShardHandlerFactory = httpShardHandlerFactory;
     completionService = httpShardHandlerFactory.newCompletionService();
-    pending = new HashSet<>();
+    pending = new HashMap<>();
 
     // maps "localhost:8983|localhost:7574" to a shuffled List("http://localhost:8983","http://localhost:7574")
     // This is primarily to keep track of what order we should use to query the replicas of a shard
@@ -83,6 +85,26 @@ public class HttpShardHandler extends ShardHandler {
   }
 
 
+  /** A submitted request, which is also sent to the next replica if the first one is slow to respond. */
+  private static final class PendingRequest {
+    final ShardRequest sreq;
+    final String shard;
+    final ModifiableSolrParams params;
+    final List<String> urls;
+    final long startNanos = System.nanoTime();
+    final AtomicInteger running = new AtomicInteger(1);  // the attempts that did not respond yet
+    volatile boolean succeeded;  // whether an attempt responded without an exception
+    final List<Future<ShardResponse>> attempts = new ArrayList<>(2);  // only accessed by the submitting thread
+    boolean hedged;  // only accessed by the submitting thread
+
+    PendingRequest(ShardRequest sreq, String shard, ModifiableSolrParams params, List<String> urls) {
+      this.sreq = sreq;
+      this.shard = shard;
+      this.params = params;
+      this.urls = urls;
+    }
+  }
+
   private static class SimpleSolrResponse extends SolrResponse {
 
     long elapsedTime;
@@ -158,78 +180,114 @@ public class HttpShardHandler extends ShardHandler {
   public void submit(final ShardRequest sreq, final String shard, final ModifiableSolrParams params, String preferredHostAddress) {
     // do this outside of the callable for thread safety reasons
     final List<String> urls = getURLs(shard, preferredHostAddress);
+    params.remove(CommonParams.WT); // use default (currently javabin)
+    params.remove(CommonParams.VERSION);
 
+    submitAttempt(new PendingRequest(sreq, shard, params, urls), urls);
+  }
+
+  /** Sends the request to the given replicas, in order, from a thread of the executor. */
+  private void submitAttempt(final PendingRequest request, final List<String> urls) {
     Callable<ShardResponse> task = () -> {
+      ShardResponse rsp = transfomResponse(request.sreq, sendRequest(request, urls), request.shard);
+      if (rsp.getException() == null) {
+        request.succeeded = true;
+      }
+      request.running.decrementAndGet();
+      return rsp;
+    };
 
-      ShardResponse srsp = new ShardResponse();
-      if (sreq.nodeName != null) {
-        srsp.setNodeName(sreq.nodeName);
+    try {
+      if (request.shard != null)  {
+        MDC.put("ShardRequest.shards", request.shard);
+      }
+      if (urls != null && !urls.isEmpty())  {
+        MDC.put("ShardRequest.urlList", urls.toString());
       }
-      srsp.setShardRequest(sreq);
-      srsp.setShard(shard);
-      SimpleSolrResponse ssr = new SimpleSolrResponse();
-      srsp.setSolrResponse(ssr);
-      long startTime = System.nanoTime();
+      Future<ShardResponse> future = completionService.submit(task);
+      request.attempts.add(future);
+      pending.put(future, request);
+    } finally {
+      MDC.remove("ShardRequest.shards");
+      MDC.remove("ShardRequest.urlList");
+    }
+  }
 
-      try {
-        params.remove(CommonParams.WT); // use default (currently javabin)
-        params.remove(CommonParams.VERSION);
+  private ShardResponse sendRequest(PendingRequest request, List<String> urls) {
+    final ShardRequest sreq = request.sreq;
+    final String shard = request.shard;
+    ShardResponse srsp = new ShardResponse();
+    if (sreq.nodeName != null) {
+      srsp.setNodeName(sreq.nodeName);
+    }
+    srsp.setShardRequest(sreq);
+    srsp.setShard(shard);
+    SimpleSolrResponse ssr = new SimpleSolrResponse();
+    srsp.setSolrResponse(ssr);
+    long startTime = System.nanoTime();
 
-        QueryRequest req = makeQueryRequest(sreq, params, shard);
-        req.setMethod(SolrRequest.METHOD.POST);
+    try {
+      QueryRequest req = makeQueryRequest(sreq, request.params, shard);
+      req.setMethod(SolrRequest.METHOD.POST);
 
-        // no need to set the response parser as binary is the default
-        // req.setResponseParser(new BinaryResponseParser());
+      // no need to set the response parser as binary is the default
+      // req.setResponseParser(new BinaryResponseParser());
 
-        // if there are no shards available for a slice, urls.size()==0
-        if (urls.size()==0) {
-          // TODO: what's the right error code here? We should use the same thing when
-          // all of the servers for a shard are down.
-          throw new SolrException(SolrException.ErrorCode.SERVICE_UNAVAILABLE, "no servers hosting shard: " + shard);
-        }
+      // if there are no shards available for a slice, urls.size()==0
+      if (urls.size()==0) {
+        // TODO: what's the right error code here? We should use the same thing when
+        // all of the servers for a shard are down.
+        throw new SolrException(SolrException.ErrorCode.SERVICE_UNAVAILABLE, "no servers hosting shard: " + shard);
+      }
 
-        if (urls.size() <= 1) {
-          String url = urls.get(0);
-          srsp.setShardAddress(url);
-          try (SolrClient client = new Builder(url).withHttpClient(httpClient).build()) {
-            ssr.nl = client.request(req);
-          }
-        } else {
-          LBHttpSolrClient.Rsp rsp = httpShardHandlerFactory.makeLoadBalancedRequest(req, urls);
-          ssr.nl = rsp.getResponse();
-          srsp.setShardAddress(rsp.getServer());
+      if (urls.size() <= 1) {
+        String url = urls.get(0);
+        srsp.setShardAddress(url);
+        try (SolrClient client = new Builder(url).withHttpClient(httpClient).build()) {
+          ssr.nl = client.request(req);
         }
+      } else {
+        LBHttpSolrClient.Rsp rsp = httpShardHandlerFactory.makeLoadBalancedRequest(req, urls);
+        ssr.nl = rsp.getResponse();
+        srsp.setShardAddress(rsp.getServer());
       }
-      catch( ConnectException cex ) {
-        srsp.setException(cex); //????
-      } catch (Exception th) {
-        srsp.setException(th);
-        if (th instanceof SolrException) {
-          srsp.setResponseCode(((SolrException)th).code());
-        } else {
-          srsp.setResponseCode(-1);
-        }
+    }
+    catch( ConnectException cex ) {
+      srsp.setException(cex); //????
+    } catch (Exception th) {
+      srsp.setException(th);
+      if (th instanceof SolrException) {
+        srsp.setResponseCode(((SolrException)th).code());
+      } else {
+        srsp.setResponseCode(-1);
       }
+    }
 
-      ssr.elapsedTime = TimeUnit.MILLISECONDS.convert(System.nanoTime() - startTime, TimeUnit.NANOSECONDS);
-
-      return transfomResponse(sreq, srsp, shard);
-    };
+    ssr.elapsedTime = TimeUnit.MILLISECONDS.convert(System.nanoTime() - startTime, TimeUnit.NANOSECONDS);
+    return srsp;
+  }
 
+  /**
+   * Also sends a request that is slow to respond to the next replica of its shard. Nothing is sent if the
+   * request already responded, or if the executor is saturated, so as not to make things worse.
+   */
+  private void hedge(PendingRequest request) {
+    request.hedged = true;
+    int running;
+    do {
+      running = request.running.get();
+      if (running == 0 || request.succeeded) return;
+    } while (!request.running.compareAndSet(running, running + 1));
+
+    List<String> backupUrls = new ArrayList<>(request.urls);
+    Collections.rotate(backupUrls, -1);
     try {
-      if (shard != null)  {
-        MDC.put("ShardRequest.shards", shard);
-      }
-      if (urls != null && !urls.isEmpty())  {
-        MDC.put("ShardRequest.urlList", urls.toString());
-      }
-      pending.add( completionService.submit(task) );
-    } finally {
-      MDC.remove("ShardRequest.shards");
-      MDC.remove("ShardRequest.urlList");
+      submitAttempt(request, backupUrls);
+    } catch (RejectedExecutionException e) {
+      request.running.decrementAndGet();
     }
   }
-  
+
   /**
    * Subclasses could modify the request based on the shard
    */
@@ -268,9 +326,19 @@ public class HttpShardHandler extends ShardHandler {
     
     while (pending.size() > 0) {
       try {
-        Future<ShardResponse> future = completionService.take();
-        pending.remove(future);
+        Future<ShardResponse> future = takeAttempt();
+        PendingRequest request = pending.remove(future);
+        if (request == null) continue;  // the slower attempt of a request that was sent twice
         ShardResponse rsp = future.get();
+        if (rsp.getException() != null && request.attempts.stream().anyMatch(pending::containsKey)) {
+          continue; // the other replica may still respond
+        }
+        for (Future<ShardResponse> attempt : request.attempts) {
+          // the slower attempt is not needed anymore, if it is already running it completes in the background
+          if (pending.remove(attempt) != null) {
+            attempt.cancel(false);
+          }
+        }
         if (bailOnError && rsp.getException() != null) return rsp; // if exception, return immediately
         // add response to the response list... we do this after the take() and
         // not after the completion of "call" so we know when the last response
@@ -291,10 +359,41 @@ public class HttpShardHandler extends ShardHandler {
     return null;
   }
 
+  /**
+   * Waits for an attempt to complete. Requests that do not respond within the hedge delay of the factory are
+   * sent to the next replica in the meantime, so the wait is timed until no more requests can be hedged.
+   */
+  private Future<ShardResponse> takeAttempt() throws InterruptedException {
+    long hedgeDelayMillis = httpShardHandlerFactory.getHedgeDelayMillis();
+    if (hedgeDelayMillis < 0) {
+      return completionService.take();
+    }
+    long hedgeDelayNanos = TimeUnit.MILLISECONDS.toNanos(hedgeDelayMillis);
+    while (true) {
+      long now = System.nanoTime();
+      long nextHedgeNanos = Long.MAX_VALUE;
+      for (PendingRequest request : new ArrayList<>(pending.values())) {
+        if (request.hedged || request.urls.size() < 2) continue;
+        long waitNanos = request.startNanos + hedgeDelayNanos - now;
+        if (waitNanos <= 0) {
+          hedge(request);
+        } else {
+          nextHedgeNanos = Math.min(nextHedgeNanos, waitNanos);
+        }
+      }
+      if (nextHedgeNanos == Long.MAX_VALUE) {
+        return completionService.take();
+      }
+      Future<ShardResponse> future = completionService.poll(nextHedgeNanos, TimeUnit.NANOSECONDS);
+      if (future != null) {
+        return future;
+      }
+    }
+  }
 
   @Override
   public void cancelAll() {
-    for (Future<ShardResponse> future : pending) {
+    for (Future<ShardResponse> future : pending.keySet()) {
       future.cancel(false);
     }
   }
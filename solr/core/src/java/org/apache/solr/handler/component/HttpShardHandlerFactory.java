@@ -79,6 +79,10 @@ public class HttpShardHandlerFactory extends ShardHandlerFactory implements org.
   int keepAliveTime = 5;
   int queueSize = -1;
   boolean accessPolicy = false;
+  volatile boolean adaptiveReplicaSelection = false;
+  volatile int hedgePercentile = 0;
+
+  final ReplicaLatencyTracker replicaLatencies = new ReplicaLatencyTracker();
 
   private String scheme = null;
 
@@ -106,6 +110,13 @@ public class HttpShardHandlerFactory extends ShardHandlerFactory implements org.
   // due to connection pooling limitations / races
   static final String USE_RETRIES = "useRetries";
 
+  // Send requests to the replicas with the lowest latency and queue depth rather than to random ones
+  static final String INIT_ADAPTIVE_REPLICA_SELECTION = "adaptiveReplicaSelection";
+
+  // Send a backup request to another replica when a replica did not respond within this percentile
+  // of the latencies of shard requests (0 to disable)
+  static final String INIT_HEDGE_PERCENTILE = "hedgePercentile";
+
   /**
    * Get {@link ShardHandler} that uses the default http client.
    */
@@ -139,6 +150,8 @@ public class HttpShardHandlerFactory extends ShardHandlerFactory implements org.
     this.keepAliveTime = getParameter(args, MAX_THREAD_IDLE_TIME, keepAliveTime,sb);
     this.queueSize = getParameter(args, INIT_SIZE_OF_QUEUE, queueSize,sb);
     this.accessPolicy = getParameter(args, INIT_FAIRNESS_POLICY, accessPolicy,sb);
+    this.adaptiveReplicaSelection = getParameter(args, INIT_ADAPTIVE_REPLICA_SELECTION, adaptiveReplicaSelection,sb);
+    this.hedgePercentile = getParameter(args, INIT_HEDGE_PERCENTILE, hedgePercentile,sb);
     log.info("created with {}",sb);
     
     // magic sysprop to make tests reproducible: set by SolrTestCaseJ4.
@@ -223,7 +236,30 @@ public class HttpShardHandlerFactory extends ShardHandlerFactory implements org.
    */
   public LBHttpSolrClient.Rsp makeLoadBalancedRequest(final QueryRequest req, List<String> urls)
     throws SolrServerException, IOException {
-    return loadbalancer.request(new LBHttpSolrClient.Req(req, urls));
+    if (!adaptiveReplicaSelection && hedgePercentile <= 0) {
+      return loadbalancer.request(new LBHttpSolrClient.Req(req, urls));
+    }
+    // the request is accounted to the first replica, and counts as failed if another one had to respond
+    String url = urls.get(0);
+    replicaLatencies.requestStarted(url);
+    long startTime = System.nanoTime();
+    boolean failed = true;
+    try {
+      LBHttpSolrClient.Rsp rsp = loadbalancer.request(new LBHttpSolrClient.Req(req, urls));
+      failed = !url.equals(rsp.getServer());
+      return rsp;
+    } finally {
+      replicaLatencies.requestFinished(url, TimeUnit.MILLISECONDS.convert(System.nanoTime() - startTime, TimeUnit.NANOSECONDS), failed);
+    }
+  }
+
+  /**
+   * Returns how long to wait for a replica before also sending the request to the next one, in milliseconds:
+   * the configured percentile of the latencies of shard requests, or -1 if backup requests are disabled or
+   * too few requests completed yet to know what a slow response is.
+   */
+  public long getHedgeDelayMillis() {
+    return hedgePercentile > 0 ? replicaLatencies.getLatencyPercentile(hedgePercentile) : -1;
   }
 
   /**
@@ -248,6 +284,11 @@ public class HttpShardHandlerFactory extends ShardHandlerFactory implements org.
     if (urls.size() > 1)
       Collections.shuffle(urls, r);
 
+    // prefer the replicas that are expected to respond first, replicas that are as good as each other stay shuffled
+    if (adaptiveReplicaSelection && urls.size() > 1) {
+      replicaLatencies.sort(urls);
+    }
+
     return urls;
   }
 
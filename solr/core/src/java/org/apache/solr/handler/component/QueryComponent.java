@@ -26,11 +26,13 @@ import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.Iterator;
 import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Locale;
 import java.util.Map;
+import java.util.Set;
 
 import org.apache.lucene.index.IndexReaderContext;
 import org.apache.lucene.index.LeafReaderContext;
@@ -366,6 +368,11 @@ public class QueryComponent extends SearchComponent
 
     QueryCommand cmd = rb.getQueryCommand();
     cmd.setTimeAllowed(timeAllowed);
+    final int minExactCount = params.getInt(CommonParams.MIN_EXACT_COUNT, Integer.MAX_VALUE);
+    if (minExactCount < 0) {
+      throw new SolrException(SolrException.ErrorCode.BAD_REQUEST, CommonParams.MIN_EXACT_COUNT + " must be >= 0");
+    }
+    cmd.setMinExactCount(minExactCount);
 
     req.getContext().put(SolrIndexSearcher.STATS_SOURCE, statsCache.get(req));
     
@@ -757,6 +764,10 @@ public class QueryComponent extends SearchComponent
       mergeIds(rb, sreq);
     }
 
+    if ((sreq.purpose & ShardRequest.PURPOSE_REFINE_TOP_IDS) != 0) {
+      mergeRefinedIds(rb, sreq);
+    }
+
     if ((sreq.purpose & ShardRequest.PURPOSE_GET_TERM_STATS) != 0) {
       updateStats(rb, sreq);
     }
@@ -854,7 +865,8 @@ public class QueryComponent extends SearchComponent
     ReturnFields fields = rb.rsp.getReturnFields();
 
     // distrib.singlePass=true forces a one-pass query regardless of requested fields
-    boolean distribSinglePass = rb.req.getParams().getBool(ShardParams.DISTRIB_SINGLE_PASS, false);
+    Boolean forceSinglePass = rb.req.getParams().getBool(ShardParams.DISTRIB_SINGLE_PASS);
+    boolean distribSinglePass = forceSinglePass != null ? forceSinglePass : fetchesFewDocs(rb);
 
     if(distribSinglePass || (fields != null && fields.wantsField(keyFieldName)
         && fields.getRequestedFieldNames() != null  
@@ -885,7 +897,9 @@ public class QueryComponent extends SearchComponent
       // if the client set shards.rows set this explicity
       sreq.params.set(CommonParams.ROWS,rb.shards_rows);
     } else {
-      sreq.params.set(CommonParams.ROWS, rb.getSortSpec().getOffset() + rb.getSortSpec().getCount());
+      int rows = rb.getSortSpec().getOffset() + rb.getSortSpec().getCount();
+      rb.shards_rows_estimate = estimateShardRows(rb, rows);
+      sreq.params.set(CommonParams.ROWS, rb.shards_rows_estimate > -1 ? rb.shards_rows_estimate : rows);
     }
 
     sreq.params.set(ResponseBuilder.FIELD_SORT_VALUES,"true");
@@ -929,6 +943,89 @@ public class QueryComponent extends SearchComponent
     rb.addRequest(this, sreq);
   }
   
+  /**
+   * Whether fetching the stored fields of every document a shard returns is cheaper than an extra
+   * round trip to retrieve only the final page, see {@link ShardParams#DISTRIB_SINGLE_PASS_MAX_DOCS}.
+   */
+  protected boolean fetchesFewDocs(ResponseBuilder rb) {
+    int maxDocs = rb.req.getParams().getInt(ShardParams.DISTRIB_SINGLE_PASS_MAX_DOCS, 0);
+    if (maxDocs <= 0 || rb.shards == null) {
+      return false;
+    }
+    long docsPerShard = rb.shards_rows > -1 ? rb.shards_rows : (long) rb.getSortSpec().getOffset() + rb.getSortSpec().getCount();
+    return docsPerShard * rb.shards.length <= maxDocs;
+  }
+
+  /**
+   * Returns how many top documents each shard needs to return for the page to most likely be merged from
+   * them alone if {@link ShardParams#SHARDS_ROWS_ESTIMATE} is set, or -1 to ask each shard for all of them.
+   */
+  protected int estimateShardRows(ResponseBuilder rb, int rows) {
+    if (!rb.req.getParams().getBool(ShardParams.SHARDS_ROWS_ESTIMATE, false) || rb.onePassDistributedQuery
+        || rb.shards_start > -1 || rb.getMergeStrategies() != null || rb.shards == null || rb.shards.length < 2) {
+      return -1;
+    }
+    // if documents are spread randomly across shards, the number of top documents in one shard is
+    // binomially distributed; three standard deviations above its mean are rarely exceeded
+    double p = 1.0 / rb.shards.length;
+    double estimate = Math.ceil(rows * p + 3 * Math.sqrt(rows * p * (1 - p)));
+    return estimate < rows ? (int) estimate : -1;
+  }
+
+  /**
+   * Asks the shards whose last returned document is among the top start+rows for the rest of their top
+   * documents.
+   */
+  protected void createRefineTopIds(ResponseBuilder rb, ShardRequest topIdsRequest, Collection<String> shards) {
+    ShardRequest sreq = new ShardRequest();
+    sreq.purpose = ShardRequest.PURPOSE_REFINE_TOP_IDS;
+    sreq.shards = shards.toArray(new String[shards.size()]);
+    sreq.params = new ModifiableSolrParams(topIdsRequest.params);
+    sreq.params.set(CommonParams.START, rb.shards_rows_estimate);
+    sreq.params.set(CommonParams.ROWS, rb.getSortSpec().getOffset() + rb.getSortSpec().getCount() - rb.shards_rows_estimate);
+    rb.addRequest(this, sreq);
+  }
+
+  /**
+   * Appends the documents of the refine request to those the shards returned first, and merges them again.
+   */
+  @SuppressWarnings("unchecked")
+  protected void mergeRefinedIds(ResponseBuilder rb, ShardRequest sreq) {
+    ShardRequest topIdsRequest = null;
+    for (ShardRequest finished : rb.finished) {
+      if ((finished.purpose & ShardRequest.PURPOSE_GET_TOP_IDS) != 0) {
+        topIdsRequest = finished;
+      }
+    }
+    for (ShardResponse refined : sreq.responses) {
+      if (refined.getException() != null) {
+        // only with shards.tolerant=true, keep the documents the shard already returned, which may miss
+        // some of the top documents
+        if (rb.rsp.getResponseHeader().get(SolrQueryResponse.RESPONSE_HEADER_PARTIAL_RESULTS_KEY) == null) {
+          rb.rsp.getResponseHeader().add(SolrQueryResponse.RESPONSE_HEADER_PARTIAL_RESULTS_KEY, Boolean.TRUE);
+        }
+        continue;
+      }
+      for (ShardResponse srsp : topIdsRequest.responses) {
+        if (srsp.getException() != null || !srsp.getShard().equals(refined.getShard())) {
+          continue;
+        }
+        NamedList<Object> top = srsp.getSolrResponse().getResponse();
+        NamedList<Object> more = refined.getSolrResponse().getResponse();
+        ((SolrDocumentList) top.get("response")).addAll((SolrDocumentList) more.get("response"));
+        NamedList sortFieldValues = (NamedList) top.get("sort_values");
+        NamedList moreSortFieldValues = (NamedList) more.get("sort_values");
+        for (int i = 0; i < sortFieldValues.size(); i++) {
+          List<Object> values = new ArrayList<>((List<Object>) sortFieldValues.getVal(i));
+          values.addAll((List<Object>) moreSortFieldValues.get(sortFieldValues.getName(i)));
+          sortFieldValues.setVal(i, values);
+        }
+      }
+    }
+    rb.shards_rows_estimate = -1;
+    mergeIds(rb, topIdsRequest);
+  }
+
   protected boolean addFL(StringBuilder fl, String field, boolean additionalAdded) {
     if (additionalAdded) fl.append(",");
     fl.append(field);
@@ -976,12 +1073,18 @@ public class QueryComponent extends SearchComponent
       NamedList<Object> shardInfo = null;
       if(rb.req.getParams().getBool(ShardParams.SHARDS_INFO, false)) {
         shardInfo = new SimpleOrderedMap<>();
+        // ids are merged again after refining them
+        rb.rsp.getValues().remove(ShardParams.SHARDS_INFO);
         rb.rsp.getValues().add(ShardParams.SHARDS_INFO,shardInfo);
       }
+
+      // the index of the last document of each shard that has more, if it was asked for fewer than start+rows
+      Map<String,Integer> lastInShard = rb.shards_rows_estimate > -1 ? new HashMap<>() : null;
       
       long numFound = 0;
       Float maxScore=null;
       boolean partialResults = false;
+      boolean numFoundExact = true;
       Boolean segmentTerminatedEarly = null;
       for (ShardResponse srsp : sreq.responses) {
         SolrDocumentList docs = null;
@@ -1038,6 +1141,9 @@ public class QueryComponent extends SearchComponent
           if (Boolean.TRUE.equals(responseHeader.get(SolrQueryResponse.RESPONSE_HEADER_PARTIAL_RESULTS_KEY))) {
             partialResults = true;
           }
+          if (Boolean.FALSE.equals(responseHeader.get(SolrQueryResponse.RESPONSE_HEADER_NUM_FOUND_EXACT_KEY))) {
+            numFoundExact = false;
+          }
           if (!Boolean.TRUE.equals(segmentTerminatedEarly)) {
             final Object ste = responseHeader.get(SolrQueryResponse.RESPONSE_HEADER_SEGMENT_TERMINATED_EARLY_KEY);
             if (Boolean.TRUE.equals(ste)) {
@@ -1053,6 +1159,9 @@ public class QueryComponent extends SearchComponent
           maxScore = maxScore==null ? docs.getMaxScore() : Math.max(maxScore, docs.getMaxScore());
         }
         numFound += docs.getNumFound();
+        if (lastInShard != null && docs.size() > 0 && docs.size() < docs.getNumFound()) {
+          lastInShard.put(srsp.getShard(), docs.size() - 1);
+        }
 
         NamedList sortFieldValues = (NamedList)(srsp.getSolrResponse().getResponse().get("sort_values"));
         NamedList unmarshalledSortFieldValues = unmarshalSortValues(ss, sortFieldValues, schema);
@@ -1113,8 +1222,27 @@ public class QueryComponent extends SearchComponent
         resultIds.put(shardDoc.id.toString(), shardDoc);
       }
 
+      if (lastInShard != null) {
+        // a shard whose last document is among the top start+rows may have more that are
+        List<ShardDoc> topDocs = new ArrayList<>(resultIds.values());
+        while (queue.size() > 0) {
+          topDocs.add(queue.pop());
+        }
+        Set<String> refineShards = new HashSet<>();
+        for (ShardDoc shardDoc : topDocs) {
+          Integer last = lastInShard.get(shardDoc.shard);
+          if (last != null && last == shardDoc.orderInShard) {
+            refineShards.add(shardDoc.shard);
+          }
+        }
+        if (!refineShards.isEmpty()) {
+          createRefineTopIds(rb, sreq, refineShards);
+        }
+      }
+
       // Add hits for distributed requests
       // https://issues.apache.org/jira/browse/SOLR-3518
+      rb.rsp.getToLog().remove("hits");
       rb.rsp.addToLog("hits", numFound);
 
       SolrDocumentList responseDocs = new SolrDocumentList();
@@ -1137,6 +1265,11 @@ public class QueryComponent extends SearchComponent
           rb.rsp.getResponseHeader().add(SolrQueryResponse.RESPONSE_HEADER_PARTIAL_RESULTS_KEY, Boolean.TRUE);
         }
       }
+      if (!numFoundExact) {
+        if (rb.rsp.getResponseHeader().get(SolrQueryResponse.RESPONSE_HEADER_NUM_FOUND_EXACT_KEY) == null) {
+          rb.rsp.getResponseHeader().add(SolrQueryResponse.RESPONSE_HEADER_NUM_FOUND_EXACT_KEY, Boolean.FALSE);
+        }
+      }
       if (segmentTerminatedEarly != null) {
         final Object existingSegmentTerminatedEarly = rb.rsp.getResponseHeader().get(SolrQueryResponse.RESPONSE_HEADER_SEGMENT_TERMINATED_EARLY_KEY);
         if (existingSegmentTerminatedEarly == null) {
@@ -0,0 +1,161 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.solr.handler.component;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Tracks the latency and the number of outstanding requests of the replicas that shard requests are
+ * sent to, so that requests can be sent to the replicas that are expected to respond the fastest.
+ * <p>
+ * The latency of a replica is an exponentially weighted moving average of its response times. Replicas are
+ * ranked by their latency multiplied by the cube of their queue depth, so that a replica that responded
+ * fast in the past does not get all the requests and becomes slow in turn. Replicas that have not responded
+ * yet rank first, which lets new replicas get requests.
+ * <p>
+ * The latest response times of all replicas are also kept to compute percentiles, which tell how long to
+ * wait for a replica before sending a backup request to another one.
+ * <p>
+ * Replicas that were not sent any request for a while are forgotten, so that the stats of replicas that
+ * were moved or deleted do not pile up.
+ */
+class ReplicaLatencyTracker {
+  // the weight of the latest response in the moving average
+  static final double ALPHA = 0.2;
+  // a failed request counts as a response that took at least this long
+  static final long FAILURE_PENALTY_MILLIS = 1000;
+  static final int NUM_SAMPLES = 1024;
+  // percentiles are not reliable with fewer samples
+  static final int MIN_SAMPLES = 100;
+  // percentiles are recomputed after this many samples
+  private static final int PERCENTILE_REFRESH_INTERVAL = 64;
+  // replicas without requests in flight are forgotten once they were not sent requests for this long
+  static final long IDLE_EXPIRY_NANOS = TimeUnit.MINUTES.toNanos(10);
+  // how often idle replicas are looked for
+  private static final long PRUNE_INTERVAL_NANOS = TimeUnit.MINUTES.toNanos(1);
+
+  private static final class ReplicaStats {
+    final AtomicInteger outstanding = new AtomicInteger();
+    double ewmaMillis = -1;  // guarded by this
+    long lastStartedNanos;  // only accessed while the entry of the replica is locked by the map
+  }
+
+  private final Map<String,ReplicaStats> replicas = new ConcurrentHashMap<>();
+  private final AtomicLong nextPruneNanos = new AtomicLong(System.nanoTime() + PRUNE_INTERVAL_NANOS);
+
+  // ring of the latest response times, guarded by this
+  private final long[] samples = new long[NUM_SAMPLES];
+  private long numSamples;
+  private int percentile = -1;
+  private long percentileMillis;
+  private long percentileNumSamples;
+
+  private ReplicaStats stats(String url) {
+    return replicas.computeIfAbsent(url, k -> new ReplicaStats());
+  }
+
+  /** Records that a request is being sent to the replica with the given url. */
+  void requestStarted(String url) {
+    long now = System.nanoTime();
+    // atomically with respect to removeIdleReplicas, so that a replica with a request in flight is never removed
+    replicas.compute(url, (k, stats) -> {
+      if (stats == null) {
+        stats = new ReplicaStats();
+      }
+      stats.outstanding.incrementAndGet();
+      stats.lastStartedNanos = now;
+      return stats;
+    });
+    long nextPrune = nextPruneNanos.get();
+    if (now - nextPrune >= 0 && nextPruneNanos.compareAndSet(nextPrune, now + PRUNE_INTERVAL_NANOS)) {
+      removeIdleReplicas(now - IDLE_EXPIRY_NANOS);
+    }
+  }
+
+  /** Forgets the replicas that have no requests in flight and were last sent one before the given time. */
+  void removeIdleReplicas(long beforeNanos) {
+    for (String url : replicas.keySet()) {
+      replicas.computeIfPresent(url, (k, stats) ->
+          stats.outstanding.get() == 0 && stats.lastStartedNanos - beforeNanos < 0 ? null : stats);
+    }
+  }
+
+  /** Returns the number of replicas that are tracked. */
+  int numReplicas() {
+    return replicas.size();
+  }
+
+  /** Records that a request to the replica with the given url completed, or failed, in the given time. */
+  void requestFinished(String url, long elapsedMillis, boolean failed) {
+    ReplicaStats stats = stats(url);
+    stats.outstanding.decrementAndGet();
+    long latency = failed ? Math.max(elapsedMillis, FAILURE_PENALTY_MILLIS) : elapsedMillis;
+    synchronized (stats) {
+      stats.ewmaMillis = stats.ewmaMillis < 0 ? latency : ALPHA * latency + (1 - ALPHA) * stats.ewmaMillis;
+    }
+    if (!failed) {
+      synchronized (this) {
+        samples[(int) (numSamples++ % NUM_SAMPLES)] = elapsedMillis;
+      }
+    }
+  }
+
+  /** Returns the expected cost of sending a request to the given replica, the lower the better. */
+  double score(String url) {
+    ReplicaStats stats = replicas.get(url);
+    if (stats == null) return 0;
+    double ewmaMillis;
+    synchronized (stats) {
+      ewmaMillis = Math.max(stats.ewmaMillis, 0);
+    }
+    int queueDepth = 1 + Math.max(stats.outstanding.get(), 0);
+    return (ewmaMillis + 1) * queueDepth * queueDepth * queueDepth;
+  }
+
+  /** Sorts the urls of the replicas of a shard by increasing score. The order of replicas with equal scores is kept. */
+  void sort(List<String> urls) {
+    Map<String,Double> scores = new HashMap<>(urls.size() * 2);
+    for (String url : urls) {
+      scores.put(url, score(url));
+    }
+    urls.sort((a, b) -> Double.compare(scores.get(a), scores.get(b)));
+  }
+
+  /**
+   * Returns the given percentile of the latest response times of all replicas, in milliseconds,
+   * or -1 if too few requests completed yet.
+   */
+  synchronized long getLatencyPercentile(int percentile) {
+    if (numSamples < MIN_SAMPLES) return -1;
+    if (percentile != this.percentile || numSamples - percentileNumSamples >= PERCENTILE_REFRESH_INTERVAL) {
+      long[] sorted = Arrays.copyOf(samples, (int) Math.min(numSamples, NUM_SAMPLES));
+      Arrays.sort(sorted);
+      int index = (int) Math.ceil(percentile / 100.0 * sorted.length) - 1;
+      this.percentileMillis = sorted[Math.max(0, Math.min(index, sorted.length - 1))];
+      this.percentile = percentile;
+      this.percentileNumSamples = numSamples;
+    }
+    return percentileMillis;
+  }
+}
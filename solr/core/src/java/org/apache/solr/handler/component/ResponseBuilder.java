@@ -134,6 +134,8 @@ public class ResponseBuilder
   public String[] slices; // the optional logical ids of the shards
   public int shards_rows = -1;
   public int shards_start = -1;
+  // the number of top documents asked from each shard if fewer than start+rows, see ShardParams.SHARDS_ROWS_ESTIMATE
+  public int shards_rows_estimate = -1;
   public List<ShardRequest> outgoing;  // requests to be sent
   public List<ShardRequest> finished;  // requests that have received responses from all shards
   public String preferredHostAddress = null;
@@ -453,6 +455,9 @@ public class ResponseBuilder
     if (result.isPartialResults()) {
       rsp.getResponseHeader().add(SolrQueryResponse.RESPONSE_HEADER_PARTIAL_RESULTS_KEY, Boolean.TRUE);
     }
+    if (!result.isNumFoundExact()) {
+      rsp.getResponseHeader().add(SolrQueryResponse.RESPONSE_HEADER_NUM_FOUND_EXACT_KEY, Boolean.FALSE);
+    }
     final Boolean segmentTerminatedEarly = result.getSegmentTerminatedEarly();
     if (segmentTerminatedEarly != null) {
       rsp.getResponseHeader().add(SolrQueryResponse.RESPONSE_HEADER_SEGMENT_TERMINATED_EARLY_KEY, segmentTerminatedEarly);
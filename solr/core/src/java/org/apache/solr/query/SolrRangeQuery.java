@@ -406,7 +406,7 @@ public final class SolrRangeQuery extends ExtendedQueryBase implements DocSetPro
 
       if (doCheck) {
         DocSet answer = createDocSet(solrSearcher, count);
-        solrSearcher.getFilterCache().put(SolrRangeQuery.this, answer);
+        solrSearcher.cacheDocSet(SolrRangeQuery.this, answer, true);
         filter = answer.getTopFilter();
         return segStates[context.ord] = new SegState(filter.getDocIdSet(context, null));
       }
@@ -121,6 +121,17 @@ public class BinaryResponseWriter implements BinaryQueryResponseWriter {
     protected void writeResultsBody( ResultContext res, JavaBinCodec codec ) throws IOException {
       codec.writeTag(JavaBinCodec.ARR, res.getDocList().size());
       Iterator<SolrDocument> docStreamer = res.getProcessedDocuments();
+      // write documents straight from their stored fields unless they need to be transformed, or a
+      // subclass of the codec may want to see them as SolrDocuments
+      if (codec.getClass() == JavaBinCodec.class && docStreamer instanceof DocsStreamer
+          && ((DocsStreamer) docStreamer).onlyRealFields()) {
+        DocsStreamer docs = (DocsStreamer) docStreamer;
+        JavaBinStoredFieldsWriter writer = new JavaBinStoredFieldsWriter(this, res.getSearcher(), returnFields);
+        while (docs.hasNext()) {
+          writer.writeDocument(codec, docs.nextDocId(), docs.getDocValueFieldsToReturn());
+        }
+        return;
+      }
       while (docStreamer.hasNext()) {
         SolrDocument doc = docStreamer.next();
         codec.writeSolrDocument(doc);
@@ -114,6 +114,25 @@ public class DocsStreamer implements Iterator<SolrDocument> {
     return idx;
   }
 
+  /**
+   * Whether the documents consist of nothing but their stored and docValues fields, so that they can be
+   * written without a {@link SolrDocument}, see {@link #nextDocId()}.
+   */
+  boolean onlyRealFields() {
+    return transformer == null && !onlyPseudoFields;
+  }
+
+  /** Advances to the next document like {@link #next()}, but only returns its id. */
+  int nextDocId() {
+    idx++;
+    return docIterator.nextDoc();
+  }
+
+  /** The non-stored docValues fields to return, or null */
+  Set<String> getDocValueFieldsToReturn() {
+    return dvFieldsToReturn;
+  }
+
   public boolean hasNext() {
     return docIterator.hasNext();
   }
@@ -0,0 +1,260 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.solr.response;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+
+import org.apache.lucene.document.Document;
+import org.apache.lucene.document.StoredField;
+import org.apache.lucene.index.FieldInfo;
+import org.apache.lucene.index.StoredFieldVisitor;
+import org.apache.solr.common.SolrDocument;
+import org.apache.solr.common.util.FastOutputStream;
+import org.apache.solr.common.util.JavaBinCodec;
+import org.apache.solr.schema.IndexSchema;
+import org.apache.solr.schema.SchemaField;
+import org.apache.solr.schema.StrField;
+import org.apache.solr.schema.TextField;
+import org.apache.solr.schema.TrieDoubleField;
+import org.apache.solr.schema.TrieFloatField;
+import org.apache.solr.schema.TrieIntField;
+import org.apache.solr.schema.TrieLongField;
+import org.apache.solr.search.ReturnFields;
+import org.apache.solr.search.SolrIndexSearcher;
+
+/**
+ * Writes documents in JavaBin as their stored fields are read, without building a {@link Document} and a
+ * {@link SolrDocument} first. Strings and trie numbers are written as they come out of the stored fields,
+ * other values are converted like {@link DocsStreamer#getValue} does.
+ * <p>
+ * Since JavaBin writes the number of fields of a document and of values of a multi-valued field ahead of
+ * them, the values of a document are encoded into a buffer first that is reused for all documents.
+ * <p>
+ * Documents that are in the documentCache are written from there. Others are read without being added
+ * to the cache, which would take building a {@link Document} with all their stored fields.
+ */
+final class JavaBinStoredFieldsWriter extends StoredFieldVisitor {
+
+  private final SolrIndexSearcher searcher;
+  private final IndexSchema schema;
+  private final ReturnFields returnFields;
+
+  private final EncodedValues encoded = new EncodedValues();
+  private final FastOutputStream out = new FastOutputStream(encoded);
+  // values never refer to extern strings, so they can be encoded by another codec than the document
+  private final JavaBinCodec values;
+  private long docStart;
+
+  // the fields of the current document in the order they are first seen
+  private final Map<String,Integer> slots = new HashMap<>();
+  private String[] names = new String[16];
+  private SchemaField[] schemaFields = new SchemaField[16];
+  private int[] valueCounts = new int[16];
+  private int numFields;
+
+  // the field of each value of the current document, and where its encoding ends
+  private int[] valueSlots = new int[64];
+  private int[] valueEnds = new int[64];
+  private int numValues;
+  // whether values of different fields alternate, so that a field's values are not next to each other
+  private boolean interleaved;
+
+  JavaBinStoredFieldsWriter(JavaBinCodec.ObjectResolver resolver, SolrIndexSearcher searcher, ReturnFields returnFields) {
+    this.searcher = searcher;
+    this.schema = searcher.getSchema();
+    this.returnFields = returnFields;
+    values = new JavaBinCodec(resolver);
+    values.init(out);
+  }
+
+  /**
+   * Writes a document like {@link JavaBinCodec#writeSolrDocument} would write it after reading its stored
+   * fields and decorating it with the given docValues fields.
+   */
+  void writeDocument(JavaBinCodec codec, int docId, Set<String> dvFields) throws IOException {
+    slots.clear();
+    numFields = 0;
+    numValues = 0;
+    interleaved = false;
+    encoded.reset();
+    docStart = out.size();
+
+    // cached documents are visited, others are read without adding them to the documentCache
+    searcher.doc(docId, this);
+    out.flushBuffer();
+
+    SolrDocument dvDoc = null;
+    if (dvFields != null && !dvFields.isEmpty()) {
+      dvDoc = new SolrDocument();
+      searcher.decorateDocValueFields(dvDoc, docId, dvFields);
+    }
+
+    codec.writeTag(JavaBinCodec.SOLRDOC);
+    codec.writeTag(JavaBinCodec.ORDERED_MAP, numFields + (dvDoc == null ? 0 : dvDoc.size()));
+    byte[] bytes = encoded.bytes();
+    if (interleaved) {
+      for (int slot = 0; slot < numFields; slot++) {
+        writeName(codec, slot);
+        for (int i = 0; i < numValues; i++) {
+          if (valueSlots[i] == slot) {
+            int start = i == 0 ? 0 : valueEnds[i - 1];
+            codec.writeEncoded(bytes, start, valueEnds[i] - start);
+          }
+        }
+      }
+    } else {
+      // the values are ordered by field, so each field's values are written at once
+      int start = 0;
+      int i = 0;
+      for (int slot = 0; slot < numFields; slot++) {
+        writeName(codec, slot);
+        i += valueCounts[slot];
+        int end = valueEnds[i - 1];
+        codec.writeEncoded(bytes, start, end - start);
+        start = end;
+      }
+    }
+    if (dvDoc != null) {
+      for (Map.Entry<String,Object> entry : dvDoc) {
+        codec.writeExternString(entry.getKey());
+        codec.writeVal(entry.getValue());
+      }
+    }
+  }
+
+  private void writeName(JavaBinCodec codec, int slot) throws IOException {
+    codec.writeExternString(names[slot]);
+    // like DocsStreamer.getDoc, multi-valued fields and repeated fields are lists
+    if (valueCounts[slot] > 1 || (schemaFields[slot] != null && schemaFields[slot].multiValued())) {
+      codec.writeTag(JavaBinCodec.ARR, valueCounts[slot]);
+    }
+  }
+
+  @Override
+  public Status needsField(FieldInfo fieldInfo) throws IOException {
+    return returnFields.wantsField(fieldInfo.name) ? Status.YES : Status.NO;
+  }
+
+  @Override
+  public void stringField(FieldInfo fieldInfo, byte[] value) throws IOException {
+    SchemaField sf = startValue(fieldInfo);
+    Class<?> type = sf == null ? null : sf.getType().getClass();
+    if (type == null || type == StrField.class || type == TextField.class) {
+      // these are written as they are stored, in UTF-8
+      values.writeTag(JavaBinCodec.STR, value.length);
+      out.write(value);
+    } else {
+      values.writeVal(new StoredField(fieldInfo.name, new String(value, StandardCharsets.UTF_8)));
+    }
+    endValue();
+  }
+
+  @Override
+  public void binaryField(FieldInfo fieldInfo, byte[] value) throws IOException {
+    startValue(fieldInfo);
+    values.writeVal(new StoredField(fieldInfo.name, value));
+    endValue();
+  }
+
+  @Override
+  public void intField(FieldInfo fieldInfo, int value) throws IOException {
+    SchemaField sf = startValue(fieldInfo);
+    if (sf != null && sf.getType().getClass() == TrieIntField.class) {
+      values.writeInt(value);
+    } else {
+      values.writeVal(new StoredField(fieldInfo.name, value));
+    }
+    endValue();
+  }
+
+  @Override
+  public void longField(FieldInfo fieldInfo, long value) throws IOException {
+    SchemaField sf = startValue(fieldInfo);
+    if (sf != null && sf.getType().getClass() == TrieLongField.class) {
+      values.writeLong(value);
+    } else {
+      values.writeVal(new StoredField(fieldInfo.name, value));
+    }
+    endValue();
+  }
+
+  @Override
+  public void floatField(FieldInfo fieldInfo, float value) throws IOException {
+    SchemaField sf = startValue(fieldInfo);
+    if (sf != null && sf.getType().getClass() == TrieFloatField.class) {
+      values.writeFloat(value);
+    } else {
+      values.writeVal(new StoredField(fieldInfo.name, value));
+    }
+    endValue();
+  }
+
+  @Override
+  public void doubleField(FieldInfo fieldInfo, double value) throws IOException {
+    SchemaField sf = startValue(fieldInfo);
+    if (sf != null && sf.getType().getClass() == TrieDoubleField.class) {
+      values.writeTag(JavaBinCodec.DOUBLE);
+      out.writeDouble(value);
+    } else {
+      values.writeVal(new StoredField(fieldInfo.name, value));
+    }
+    endValue();
+  }
+
+  /** Records that a value of the field follows, and returns the field's schema field if any. */
+  private SchemaField startValue(FieldInfo fieldInfo) {
+    Integer slot = slots.get(fieldInfo.name);
+    if (slot == null) {
+      slot = numFields++;
+      if (slot == names.length) {
+        names = Arrays.copyOf(names, slot * 2);
+        schemaFields = Arrays.copyOf(schemaFields, slot * 2);
+        valueCounts = Arrays.copyOf(valueCounts, slot * 2);
+      }
+      slots.put(fieldInfo.name, slot);
+      names[slot] = fieldInfo.name;
+      schemaFields[slot] = schema.getFieldOrNull(fieldInfo.name);
+      valueCounts[slot] = 0;
+    } else if (valueSlots[numValues - 1] != slot) {
+      interleaved = true;
+    }
+    if (numValues == valueSlots.length) {
+      valueSlots = Arrays.copyOf(valueSlots, numValues * 2);
+      valueEnds = Arrays.copyOf(valueEnds, numValues * 2);
+    }
+    valueSlots[numValues] = slot;
+    valueCounts[slot]++;
+    return schemaFields[slot];
+  }
+
+  private void endValue() {
+    valueEnds[numValues++] = (int) (out.size() - docStart);
+  }
+
+  /** The encoded values of a document, which are read straight from the buffer. */
+  private static final class EncodedValues extends ByteArrayOutputStream {
+    byte[] bytes() {
+      return buf;
+    }
+  }
+}
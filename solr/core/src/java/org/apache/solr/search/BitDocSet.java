@@ -228,36 +228,13 @@ public class BitDocSet extends DocSetBase {
   @Override
   public DocSet andNot(DocSet other) {
     FixedBitSet newbits = bits.clone();
-    if (other instanceof BitDocSet) {
-      newbits.andNot(((BitDocSet) other).bits);
-    } else {
-      DocIterator iter = other.iterator();
-      while (iter.hasNext()) {
-        int doc = iter.nextDoc();
-        if (doc < newbits.length()) {
-          newbits.clear(doc);
-        }
-      }
-    }
+    DocSetUtil.andNot(newbits, other);
     return new BitDocSet(newbits);
   }
   
   @Override
   public DocSet union(DocSet other) {
-    FixedBitSet newbits = bits.clone();
-    if (other instanceof BitDocSet) {
-      BitDocSet otherDocSet = (BitDocSet) other;
-      newbits = FixedBitSet.ensureCapacity(newbits, otherDocSet.bits.length());
-      newbits.or(otherDocSet.bits);
-    } else {
-      DocIterator iter = other.iterator();
-      while (iter.hasNext()) {
-        int doc = iter.nextDoc();
-        newbits = FixedBitSet.ensureCapacity(newbits, doc);
-        newbits.set(doc);
-      }
-    }
-    return new BitDocSet(newbits);
+    return new BitDocSet(DocSetUtil.or(bits.clone(), other));
   }
   
   @Override
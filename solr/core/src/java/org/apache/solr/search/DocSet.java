@@ -131,5 +131,13 @@ public interface DocSet extends Closeable, Accountable /* extends Collection<Int
    */
   public void addAllTo(DocSet target);
 
+  /**
+   * Returns the number of bytes this set uses outside of the Java heap. They are included in
+   * {@link #ramBytesUsed()} so that caches that are bounded by memory usage account for them.
+   */
+  public default long offHeapBytesUsed() {
+    return 0;
+  }
+
   public static DocSet EMPTY = new SortedIntDocSet(new int[0], 0);
 }
@@ -18,6 +18,7 @@ package org.apache.solr.search;
 
 import java.io.IOException;
 import java.util.List;
+import java.util.function.Supplier;
 
 import org.apache.lucene.index.DirectoryReader;
 import org.apache.lucene.index.Fields;
@@ -29,6 +30,7 @@ import org.apache.lucene.index.Terms;
 import org.apache.lucene.index.TermsEnum;
 import org.apache.lucene.search.BooleanClause;
 import org.apache.lucene.search.BooleanQuery;
+import org.apache.lucene.search.DocIdSet;
 import org.apache.lucene.search.DocIdSetIterator;
 import org.apache.lucene.search.Query;
 import org.apache.lucene.search.TermQuery;
@@ -44,6 +46,31 @@ public class DocSetUtil {
     return (maxDoc>>6)+5;  // The +5 is for better test coverage for small sets
   }
 
+  /** The cut-off point for mid-density sets that may be cached as a {@link RoaringDocSet} */
+  public static int roaringSetSize(int maxDoc) {
+    return maxDoc>>3;
+  }
+
+  /**
+   * Returns the most compact representation of a set that is about to be cached. Bit sets
+   * that match fewer than {@link #roaringSetSize} documents are compressed to a
+   * {@link RoaringDocSet} if that saves at least a quarter of their memory, other sets are
+   * returned as-is.
+   */
+  public static DocSet compact(DocSet set) {
+    if (!(set instanceof BitDocSet)) {
+      return set;
+    }
+    BitDocSet bitSet = (BitDocSet) set;
+    int maxDoc = bitSet.getBits().length();
+    int size = bitSet.size();
+    if (size <= smallSetSize(maxDoc) || size > roaringSetSize(maxDoc)) {
+      return set;
+    }
+    RoaringDocSet roaringSet = new RoaringDocSet(bitSet);
+    return roaringSet.ramBytesUsed() <= bitSet.ramBytesUsed() * 3 / 4 ? roaringSet : set;
+  }
+
   /**
    * Iterates DocSets to test for equality - slow and for testing purposes only.
    * @lucene.internal
@@ -142,11 +169,12 @@ public class DocSetUtil {
     return createBigSet(leaves, postList, maxDoc, firstReader);
   }
 
-  private static DocSet createSmallSet(List<LeafReaderContext> leaves, PostingsEnum[] postList, int maxPossible, int firstReader) throws IOException {
+  /** Collects the live documents of per-segment iterators, there must be at most <code>maxPossible</code> of them. */
+  static DocSet createSmallSet(List<LeafReaderContext> leaves, DocIdSetIterator[] postList, int maxPossible, int firstReader) throws IOException {
     int[] docs = new int[maxPossible];
     int sz = 0;
     for (int i = firstReader; i < postList.length; i++) {
-      PostingsEnum postings = postList[i];
+      DocIdSetIterator postings = postList[i];
       if (postings == null) continue;
       LeafReaderContext ctx = leaves.get(i);
       Bits liveDocs = ctx.reader().getLiveDocs();
@@ -164,11 +192,12 @@ public class DocSetUtil {
   }
 
 
-  private static DocSet createBigSet(List<LeafReaderContext> leaves, PostingsEnum[] postList, int maxDoc, int firstReader) throws IOException {
+  /** Collects the live documents of per-segment iterators into a bit set, or a small set if there are few of them. */
+  static DocSet createBigSet(List<LeafReaderContext> leaves, DocIdSetIterator[] postList, int maxDoc, int firstReader) throws IOException {
     long[] bits = new long[FixedBitSet.bits2words(maxDoc)];
     int sz = 0;
     for (int i = firstReader; i < postList.length; i++) {
-      PostingsEnum postings = postList[i];
+      DocIdSetIterator postings = postList[i];
       if (postings == null) continue;
       LeafReaderContext ctx = leaves.get(i);
       Bits liveDocs = ctx.reader().getLiveDocs();
@@ -196,6 +225,162 @@ public class DocSetUtil {
     return docSet;
   }
 
+  /** Clears the docs of <code>other</code> in <code>bits</code>, word by word if <code>other</code> is a bit set. */
+  static void andNot(FixedBitSet bits, DocSet other) {
+    if (other instanceof BitDocSet) {
+      bits.andNot(((BitDocSet) other).bits);
+    } else if (other instanceof OffHeapBitDocSet) {
+      ((OffHeapBitDocSet) other).andNotFrom(bits);
+    } else if (other instanceof RoaringDocSet) {
+      ((RoaringDocSet) other).andNotFrom(bits);
+    } else {
+      DocIterator iter = other.iterator();
+      while (iter.hasNext()) {
+        int doc = iter.nextDoc();
+        if (doc < bits.length()) {
+          bits.clear(doc);
+        }
+      }
+    }
+  }
+
+  /**
+   * Sets the docs of <code>other</code> in <code>bits</code>, word by word if <code>other</code>
+   * is a bit set. Returns <code>bits</code>, or a larger copy of it if it was too small.
+   */
+  static FixedBitSet or(FixedBitSet bits, DocSet other) {
+    if (other instanceof BitDocSet) {
+      BitDocSet otherDocSet = (BitDocSet) other;
+      bits = FixedBitSet.ensureCapacity(bits, otherDocSet.bits.length());
+      bits.or(otherDocSet.bits);
+    } else if (other instanceof OffHeapBitDocSet) {
+      OffHeapBitDocSet otherDocSet = (OffHeapBitDocSet) other;
+      bits = FixedBitSet.ensureCapacity(bits, otherDocSet.getBitsLength());
+      otherDocSet.orInto(bits);
+    } else if (other instanceof RoaringDocSet) {
+      RoaringDocSet otherDocSet = (RoaringDocSet) other;
+      bits = FixedBitSet.ensureCapacity(bits, otherDocSet.getBitsLength());
+      otherDocSet.orInto(bits);
+    } else {
+      DocIterator iter = other.iterator();
+      while (iter.hasNext()) {
+        int doc = iter.nextDoc();
+        bits = FixedBitSet.ensureCapacity(bits, doc);
+        bits.set(doc);
+      }
+    }
+    return bits;
+  }
+
+  /**
+   * Returns the top filter of an immutable set that is not backed by a {@link FixedBitSet}.
+   * <code>iterators</code> supplies iterators over the top-level doc ids of the set, which are
+   * narrowed down to the docs of each segment.
+   */
+  static Filter getTopFilter(DocSet set, String name, int numBits, Supplier<DocIdSetIterator> iterators) {
+    return new DocSetTopFilter(set, name, numBits, iterators);
+  }
+
+  private static final class DocSetTopFilter extends Filter {
+    private final DocSet set;
+    private final String name;
+    private final int numBits;
+    private final Supplier<DocIdSetIterator> iterators;
+
+    DocSetTopFilter(DocSet set, String name, int numBits, Supplier<DocIdSetIterator> iterators) {
+      this.set = set;
+      this.name = name;
+      this.numBits = numBits;
+      this.iterators = iterators;
+    }
+
+    @Override
+    public DocIdSet getDocIdSet(final LeafReaderContext context, final Bits acceptDocs) {
+      LeafReader reader = context.reader();
+      // all Solr DocSets that are used as filters only include live docs
+      final Bits acceptDocs2 = acceptDocs == null ? null : (reader.getLiveDocs() == acceptDocs ? null : acceptDocs);
+
+      final int base = context.isTopLevel ? 0 : context.docBase;
+      final int max = base + reader.maxDoc();   // one past the max doc in this segment.
+
+      return BitsFilteredDocIdSet.wrap(new DocIdSet() {
+        @Override
+        public DocIdSetIterator iterator() {
+          return new DocIdSetIterator() {
+            final DocIdSetIterator in = iterators.get();
+            int adjustedDoc = -1;
+
+            @Override
+            public int docID() {
+              return adjustedDoc;
+            }
+
+            @Override
+            public int nextDoc() throws IOException {
+              if (adjustedDoc == -1) {
+                return advance(0);
+              } else if (adjustedDoc == NO_MORE_DOCS) {
+                return NO_MORE_DOCS;
+              }
+              int pos = in.nextDoc();
+              return adjustedDoc = pos < max ? pos - base : NO_MORE_DOCS;
+            }
+
+            @Override
+            public int advance(int target) throws IOException {
+              if (target == NO_MORE_DOCS || target + base >= max) return adjustedDoc = NO_MORE_DOCS;
+              int pos = in.advance(target + base);
+              return adjustedDoc = pos < max ? pos - base : NO_MORE_DOCS;
+            }
+
+            @Override
+            public long cost() {
+              // pro-rated for the segment
+              return (long) (set.size() * ((max - base) / (float) Math.max(1, numBits)));
+            }
+          };
+        }
+
+        @Override
+        public long ramBytesUsed() {
+          // the docs are owned by the set
+          return 0L;
+        }
+
+        @Override
+        public Bits bits() {
+          return new Bits() {
+            @Override
+            public boolean get(int index) {
+              return set.exists(index + base);
+            }
+
+            @Override
+            public int length() {
+              return max - base;
+            }
+          };
+        }
+
+      }, context.isTopLevel ? acceptDocs : acceptDocs2);
+    }
+
+    @Override
+    public String toString(String field) {
+      return name;
+    }
+
+    @Override
+    public boolean equals(Object other) {
+      return sameClassAs(other) && set == ((DocSetTopFilter) other).set;
+    }
+
+    @Override
+    public int hashCode() {
+      return classHash() * 31 + System.identityHashCode(set);
+    }
+  }
+
   public static DocSet toSmallSet(BitDocSet bitSet) {
     int sz = bitSet.size();
     int[] docs = new int[sz];
@@ -15,6 +15,8 @@
  * limitations under the License.
  */
 package org.apache.solr.search;
+import org.apache.lucene.util.Accountable;
+import org.apache.lucene.util.RamUsageEstimator;
 import org.apache.solr.common.SolrException;
 import org.apache.solr.util.ConcurrentLRUCache;
 import org.slf4j.Logger;
@@ -24,6 +26,8 @@ import org.apache.solr.common.util.SimpleOrderedMap;
 
 import java.io.Serializable;
 import java.lang.invoke.MethodHandles;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
@@ -36,6 +40,11 @@ import java.util.concurrent.TimeUnit;
  * This implementation does not use a separate cleanup thread. Instead it uses the calling thread
  * itself to do the cleanup when the size of the cache exceeds certain limits.
  * <p>
+ * With <code>maxRamMB</code>, the cache is bounded by the memory used by its entries rather than
+ * only by their number, which suits caches whose values vary a lot in size such as the filterCache.
+ * With <code>tinyLfuAdmission="true"</code>, new entries only replace entries of a full cache if
+ * they are estimated to be used at least as often.
+ * <p>
  * Also see <a href="http://wiki.apache.org/solr/SolrCaching">SolrCaching</a>
  *
  *
@@ -43,23 +52,32 @@ import java.util.concurrent.TimeUnit;
  * @see org.apache.solr.search.SolrCache
  * @since solr 1.4
  */
-public class FastLRUCache<K,V> extends SolrCacheBase implements SolrCache<K,V> {
+public class FastLRUCache<K,V> extends SolrCacheBase implements SolrCache<K,V>, Accountable {
   private static final Logger log = LoggerFactory.getLogger(MethodHandles.lookup().lookupClass());
 
+  private static final long BASE_RAM_BYTES_USED = RamUsageEstimator.shallowSizeOfInstance(FastLRUCache.class);
+
   // contains the statistics objects for all open caches of the same type
   private List<ConcurrentLRUCache.Stats> statsList;
 
   private long warmupTime = 0;
+  private WarmResult warmResult = WarmResult.EMPTY;
 
   private String description = "Concurrent LRU Cache";
   private ConcurrentLRUCache<K,V> cache;
   private int showItems = 0;
 
+  private long maxRamBytes = Long.MAX_VALUE;
+  private boolean tinyLfuAdmission;
+
   @Override
   public Object init(Map args, Object persistence, CacheRegenerator regenerator) {
     super.init(args, regenerator);
-    String str = (String) args.get("size");
-    int limit = str == null ? 1024 : Integer.parseInt(str);
+    String str = (String) args.get("maxRamMB");
+    final long maxRamBytes = this.maxRamBytes = str == null ? Long.MAX_VALUE : (long) (Double.parseDouble(str) * 1024L * 1024L);
+    str = (String) args.get("size");
+    // a cache that is bounded by memory usage is not bounded by size unless asked to
+    int limit = str == null ? (maxRamBytes == Long.MAX_VALUE ? 1024 : Integer.MAX_VALUE) : Integer.parseInt(str);
     int minLimit;
     str = (String) args.get("minSize");
     if (str == null) {
@@ -81,14 +99,20 @@ public class FastLRUCache<K,V> extends SolrCacheBase implements SolrCache<K,V> {
     acceptableLimit = Math.max(minLimit, acceptableLimit);
 
     str = (String) args.get("initialSize");
-    final int initialSize = str == null ? limit : Integer.parseInt(str);
+    // a cache that is only bounded by memory usage has no size to presize the map to
+    final int initialSize = str == null ? (limit == Integer.MAX_VALUE ? 1024 : limit) : Integer.parseInt(str);
     str = (String) args.get("cleanupThread");
     boolean newThread = str == null ? false : Boolean.parseBoolean(str);
 
     str = (String) args.get("showItems");
     showItems = str == null ? 0 : Integer.parseInt(str);
+    str = (String) args.get("tinyLfuAdmission");
+    tinyLfuAdmission = str == null ? false : Boolean.parseBoolean(str);
     description = generateDescription(limit, initialSize, minLimit, acceptableLimit, newThread);
-    cache = new ConcurrentLRUCache<>(limit, minLimit, acceptableLimit, initialSize, newThread, false, null);
+    // like the size, evict down to 90% of the limit to not clean up on every put
+    final long minRamBytes = maxRamBytes == Long.MAX_VALUE ? Long.MAX_VALUE : (long) (maxRamBytes * 0.9);
+    cache = new ConcurrentLRUCache<>(limit, minLimit, acceptableLimit, initialSize, maxRamBytes, minRamBytes,
+        tinyLfuAdmission, newThread, false, null);
     cache.setAlive(false);
 
     statsList = (List<ConcurrentLRUCache.Stats>) persistence;
@@ -114,6 +138,12 @@ public class FastLRUCache<K,V> extends SolrCacheBase implements SolrCache<K,V> {
     if (isAutowarmingOn()) {
       description += ", " + getAutowarmDescription();
     }
+    if (maxRamBytes != Long.MAX_VALUE)  {
+      description += ", maxRamMB=" + (maxRamBytes / 1024L / 1024L);
+    }
+    if (tinyLfuAdmission) {
+      description += ", tinyLfuAdmission=true";
+    }
     description += ')';
     return description;
   }
@@ -125,6 +155,11 @@ public class FastLRUCache<K,V> extends SolrCacheBase implements SolrCache<K,V> {
 
   @Override
   public V put(K key, V value) {
+    if (maxRamBytes != Long.MAX_VALUE && value != null && !(value instanceof Accountable)) {
+      throw new SolrException(SolrException.ErrorCode.SERVER_ERROR, "Cache: "
+          + getName() + " is configured with maxRamBytes=" + RamUsageEstimator.humanReadableUnits(maxRamBytes)
+          + " but its values do not implement org.apache.lucene.util.Accountable");
+    }
     return cache.put(key, value);
   }
 
@@ -148,26 +183,22 @@ public class FastLRUCache<K,V> extends SolrCacheBase implements SolrCache<K,V> {
   public void warm(SolrIndexSearcher searcher, SolrCache old) {
     if (regenerator == null) return;
     long warmingStartTime = System.nanoTime();
+    warmResult = WarmResult.EMPTY;
     FastLRUCache other = (FastLRUCache) old;
     // warm entries
     if (isAutowarmingOn()) {
       int sz = autowarm.getWarmCount(other.size());
       Map items = other.cache.getLatestAccessedItems(sz);
-      Map.Entry[] itemsArr = new Map.Entry[items.size()];
-      int counter = 0;
+      // order the entries from the least to the most recently accessed one, see warmItems
+      Object[] keys = new Object[items.size()];
+      Object[] vals = new Object[items.size()];
+      int counter = keys.length;
       for (Object mapEntry : items.entrySet()) {
-        itemsArr[counter++] = (Map.Entry) mapEntry;
-      }
-      for (int i = itemsArr.length - 1; i >= 0; i--) {
-        try {
-          boolean continueRegen = regenerator.regenerateItem(searcher,
-                  this, old, itemsArr[i].getKey(), itemsArr[i].getValue());
-          if (!continueRegen) break;
-        }
-        catch (Exception e) {
-          SolrException.log(log, "Error during auto-warming of key:" + itemsArr[i].getKey(), e);
-        }
+        counter--;
+        keys[counter] = ((Map.Entry) mapEntry).getKey();
+        vals[counter] = ((Map.Entry) mapEntry).getValue();
       }
+      warmResult = warmItems(regenerator, searcher, this, old, keys, vals);
     }
     warmupTime = TimeUnit.MILLISECONDS.convert(System.nanoTime() - warmingStartTime, TimeUnit.NANOSECONDS);
   }
@@ -179,6 +210,9 @@ public class FastLRUCache<K,V> extends SolrCacheBase implements SolrCache<K,V> {
     statsList.get(0).add(cache.getStats());
     statsList.remove(cache.getStats());
     cache.destroy();
+    for (ConcurrentLRUCache.CacheEntry<K,V> entry : cache.getMap().values()) {
+      release(entry.getValue());
+    }
   }
 
   //////////////////////// SolrInfoMBeans methods //////////////////////
@@ -212,6 +246,8 @@ public class FastLRUCache<K,V> extends SolrCacheBase implements SolrCache<K,V> {
     long chits = 0;
     long cinserts = 0;
     long cevictions = 0;
+    long cramEvictions = 0;
+    long crejections = 0;
 
     // NOTE: It is safe to iterate on a CopyOnWriteArrayList
     for (ConcurrentLRUCache.Stats statistiscs : statsList) {
@@ -219,6 +255,8 @@ public class FastLRUCache<K,V> extends SolrCacheBase implements SolrCache<K,V> {
       chits += statistiscs.getCumulativeHits();
       cinserts += statistiscs.getCumulativePuts();
       cevictions += statistiscs.getCumulativeEvictions();
+      cramEvictions += statistiscs.getCumulativeRamEvictions();
+      crejections += statistiscs.getCumulativeRejections();
     }
 
     lst.add("lookups", lookups);
@@ -227,13 +265,34 @@ public class FastLRUCache<K,V> extends SolrCacheBase implements SolrCache<K,V> {
     lst.add("inserts", inserts);
     lst.add("evictions", evictions);
     lst.add("size", size);
+    long offHeapBytesUsed = 0;
+    for (ConcurrentLRUCache.CacheEntry<K,V> entry : cache.getMap().values()) {
+      offHeapBytesUsed += offHeapBytesUsed(entry.getValue());
+    }
+    lst.add("offHeapBytesUsed", offHeapBytesUsed);
+    if (maxRamBytes != Long.MAX_VALUE)  {
+      lst.add("maxRamMB", maxRamBytes / 1024L / 1024L);
+      lst.add("ramBytesUsed", ramBytesUsed());
+      lst.add("evictionsRamUsage", stats.getCumulativeRamEvictions());
+    }
+    if (tinyLfuAdmission) {
+      lst.add("rejections", stats.getCumulativeRejections());
+    }
 
     lst.add("warmupTime", warmupTime);
+    lst.add("warmupItems", warmResult.warmed);
+    lst.add("warmupSkippedItems", warmResult.skipped);
     lst.add("cumulative_lookups", clookups);
     lst.add("cumulative_hits", chits);
     lst.add("cumulative_hitratio", calcHitRatio(clookups, chits));
     lst.add("cumulative_inserts", cinserts);
     lst.add("cumulative_evictions", cevictions);
+    if (maxRamBytes != Long.MAX_VALUE)  {
+      lst.add("cumulative_evictionsRamUsage", cramEvictions);
+    }
+    if (tinyLfuAdmission) {
+      lst.add("cumulative_rejections", crejections);
+    }
 
     if (showItems != 0) {
       Map items = cache.getLatestAccessedItems( showItems == -1 ? Integer.MAX_VALUE : showItems );
@@ -255,6 +314,16 @@ public class FastLRUCache<K,V> extends SolrCacheBase implements SolrCache<K,V> {
   public String toString() {
     return name() + getStatistics().toString();
   }
+
+  @Override
+  public long ramBytesUsed() {
+    return BASE_RAM_BYTES_USED + (cache == null ? 0 : cache.ramBytesUsed());
+  }
+
+  @Override
+  public Collection<Accountable> getChildResources() {
+    return Collections.emptyList();
+  }
 }
 
 
@@ -24,7 +24,6 @@ import java.util.Set;
 import java.util.concurrent.CopyOnWriteArrayList;
 import java.util.concurrent.TimeUnit;
 
-import org.apache.solr.common.SolrException;
 import org.apache.solr.common.util.NamedList;
 import org.apache.solr.common.util.SimpleOrderedMap;
 import org.apache.solr.core.SolrCore;
@@ -55,6 +54,7 @@ public class LFUCache<K, V> implements SolrCache<K, V> {
   private List<ConcurrentLFUCache.Stats> statsList;
 
   private long warmupTime = 0;
+  private SolrCacheBase.WarmResult warmResult = SolrCacheBase.WarmResult.EMPTY;
 
   private String name;
   private int autowarmCount;
@@ -172,26 +172,23 @@ public class LFUCache<K, V> implements SolrCache<K, V> {
   public void warm(SolrIndexSearcher searcher, SolrCache old) {
     if (regenerator == null) return;
     long warmingStartTime = System.nanoTime();
+    warmResult = SolrCacheBase.WarmResult.EMPTY;
     LFUCache other = (LFUCache) old;
     // warm entries
     if (autowarmCount != 0) {
       int sz = other.size();
       if (autowarmCount != -1) sz = Math.min(sz, autowarmCount);
       Map items = other.cache.getMostUsedItems(sz);
-      Map.Entry[] itemsArr = new Map.Entry[items.size()];
-      int counter = 0;
+      // order the entries from the least to the most frequently used one, see warmItems
+      Object[] keys = new Object[items.size()];
+      Object[] vals = new Object[items.size()];
+      int counter = keys.length;
       for (Object mapEntry : items.entrySet()) {
-        itemsArr[counter++] = (Map.Entry) mapEntry;
-      }
-      for (int i = itemsArr.length - 1; i >= 0; i--) {
-        try {
-          boolean continueRegen = regenerator.regenerateItem(searcher,
-              this, old, itemsArr[i].getKey(), itemsArr[i].getValue());
-          if (!continueRegen) break;
-        } catch (Exception e) {
-          SolrException.log(log, "Error during auto-warming of key:" + itemsArr[i].getKey(), e);
-        }
+        counter--;
+        keys[counter] = ((Map.Entry) mapEntry).getKey();
+        vals[counter] = ((Map.Entry) mapEntry).getValue();
       }
+      warmResult = SolrCacheBase.warmItems(regenerator, searcher, this, old, keys, vals);
     }
     warmupTime = TimeUnit.MILLISECONDS.convert(System.nanoTime() - warmingStartTime, TimeUnit.NANOSECONDS);
   }
@@ -264,6 +261,8 @@ public class LFUCache<K, V> implements SolrCache<K, V> {
     lst.add("size", size);
 
     lst.add("warmupTime", warmupTime);
+    lst.add("warmupItems", warmResult.warmed);
+    lst.add("warmupSkippedItems", warmResult.skipped);
     lst.add("timeDecay", timeDecay);
 
     long clookups = 0;
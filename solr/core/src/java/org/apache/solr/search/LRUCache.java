@@ -79,6 +79,7 @@ public class LRUCache<K,V> extends SolrCacheBase implements SolrCache<K,V>, Acco
   private long evictionsRamUsage;
 
   private long warmupTime = 0;
+  private WarmResult warmResult = WarmResult.EMPTY;
 
   private Map<K,V> map;
   private String description="LRU Cache";
@@ -254,6 +255,7 @@ public class LRUCache<K,V> extends SolrCacheBase implements SolrCache<K,V>, Acco
   public void warm(SolrIndexSearcher searcher, SolrCache<K,V> old) {
     if (regenerator==null) return;
     long warmingStartTime = System.nanoTime();
+    warmResult = WarmResult.EMPTY;
     LRUCache<K,V> other = (LRUCache<K,V>)old;
 
     // warm entries
@@ -284,16 +286,8 @@ public class LRUCache<K,V> extends SolrCacheBase implements SolrCache<K,V>, Acco
       }
 
       // autowarm from the oldest to the newest entries so that the ordering will be
-      // correct in the new cache.
-      for (int i=0; i<keys.length; i++) {
-        try {
-          boolean continueRegen = regenerator.regenerateItem(searcher, this, old, keys[i], vals[i]);
-          if (!continueRegen) break;
-        }
-        catch (Exception e) {
-          SolrException.log(log,"Error during auto-warming of key:" + keys[i], e);
-        }
-      }
+      // correct in the new cache, unless there is a time budget (see warmItems).
+      warmResult = warmItems(regenerator, searcher, this, old, keys, vals);
     }
 
     warmupTime = TimeUnit.MILLISECONDS.convert(System.nanoTime() - warmingStartTime, TimeUnit.NANOSECONDS);
@@ -302,6 +296,11 @@ public class LRUCache<K,V> extends SolrCacheBase implements SolrCache<K,V>, Acco
 
   @Override
   public void close() {
+    synchronized (map) {
+      for (V value : map.values()) {
+        release(value);
+      }
+    }
   }
 
 
@@ -333,6 +332,11 @@ public class LRUCache<K,V> extends SolrCacheBase implements SolrCache<K,V>, Acco
       lst.add("inserts", inserts);
       lst.add("evictions", evictions);
       lst.add("size", map.size());
+      long offHeapBytesUsed = 0;
+      for (V value : map.values()) {
+        offHeapBytesUsed += offHeapBytesUsed(value);
+      }
+      lst.add("offHeapBytesUsed", offHeapBytesUsed);
       if (maxRamBytes != Long.MAX_VALUE)  {
         lst.add("maxRamMB", maxRamBytes / 1024L / 1024L);
         lst.add("ramBytesUsed", ramBytesUsed());
@@ -340,6 +344,8 @@ public class LRUCache<K,V> extends SolrCacheBase implements SolrCache<K,V>, Acco
       }
     }
     lst.add("warmupTime", warmupTime);
+    lst.add("warmupItems", warmResult.warmed);
+    lst.add("warmupSkippedItems", warmResult.skipped);
     
     long clookups = stats.lookups.longValue();
     long chits = stats.hits.longValue();
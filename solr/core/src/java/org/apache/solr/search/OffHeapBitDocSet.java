@@ -0,0 +1,354 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.solr.search;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.LongBuffer;
+import java.util.Collection;
+import java.util.Collections;
+
+import org.apache.lucene.search.DocIdSetIterator;
+import org.apache.lucene.store.AlreadyClosedException;
+import org.apache.lucene.util.Accountable;
+import org.apache.lucene.util.FixedBitSet;
+import org.apache.lucene.util.RamUsageEstimator;
+import org.apache.solr.util.DirectBufferCleaner;
+
+/**
+ * An immutable bit set of Lucene Document Ids that is stored outside of the Java heap, in a
+ * direct {@link ByteBuffer}. Set operations with {@link BitDocSet}s and other
+ * <code>OffHeapBitDocSet</code>s work word by word like those of {@link BitDocSet}, results
+ * are on-heap sets.
+ * <p>
+ * This is useful to cache large filters without putting pressure on the garbage collector.
+ * The off-heap memory is included in {@link #ramBytesUsed()} so that caches bounded by
+ * memory account for it. It is released when the set is {@link #close() closed}, which caches
+ * do when they are closed with their searcher, or otherwise when the set is garbage collected, as
+ * it is when the set is evicted. It is limited by the <code>-XX:MaxDirectMemorySize</code> JVM option.
+ *
+ * @lucene.experimental
+ */
+public class OffHeapBitDocSet extends DocSetBase {
+  private static final long BASE_RAM_BYTES_USED = RamUsageEstimator.shallowSizeOfInstance(OffHeapBitDocSet.class)
+      + RamUsageEstimator.shallowSizeOfInstance(ByteBuffer.class)
+      + RamUsageEstimator.shallowSizeOfInstance(LongBuffer.class);
+
+  private final ByteBuffer buffer;
+  private final LongBuffer words;
+  private final int numWords;
+  private final int numBits;
+  private final int size;
+  // checked before the words are read, so that a set that is used after it has been closed
+  // fails with an exception rather than reading freed memory
+  private volatile boolean closed;
+
+  /** Copies the bits of the given set off-heap. */
+  public OffHeapBitDocSet(BitDocSet set) {
+    final FixedBitSet bits = set.getBits();
+    this.numBits = bits.length();
+    this.numWords = FixedBitSet.bits2words(numBits);
+    this.size = set.size();
+    this.buffer = ByteBuffer.allocateDirect(numWords << 3).order(ByteOrder.nativeOrder());
+    final LongBuffer words = buffer.asLongBuffer();
+    words.put(bits.getBits(), 0, numWords);
+    words.flip();
+    this.words = words;
+  }
+
+  private void ensureOpen() {
+    if (closed) {
+      throw new AlreadyClosedException("this OffHeapBitDocSet was closed");
+    }
+  }
+
+  @Override
+  public int size() {
+    return size;
+  }
+
+  @Override
+  public boolean exists(int doc) {
+    ensureOpen();
+    return doc < numBits && (words.get(doc >> 6) & (1L << doc)) != 0;
+  }
+
+  /** Returns the index of the first set bit starting at <code>index</code>, or {@link DocIdSetIterator#NO_MORE_DOCS}. */
+  int nextSetBit(int index) {
+    ensureOpen();
+    if (index >= numBits) {
+      return DocIdSetIterator.NO_MORE_DOCS;
+    }
+    int i = index >> 6;
+    long word = words.get(i) >> index;  // skip all the bits to the right of index
+    if (word != 0) {
+      return index + Long.numberOfTrailingZeros(word);
+    }
+    while (++i < numWords) {
+      word = words.get(i);
+      if (word != 0) {
+        return (i << 6) + Long.numberOfTrailingZeros(word);
+      }
+    }
+    return DocIdSetIterator.NO_MORE_DOCS;
+  }
+
+  @Override
+  public DocIterator iterator() {
+    return new DocIterator() {
+      private int pos = nextSetBit(0);
+
+      @Override
+      public boolean hasNext() {
+        return pos != DocIdSetIterator.NO_MORE_DOCS;
+      }
+
+      @Override
+      public Integer next() {
+        return nextDoc();
+      }
+
+      @Override
+      public void remove() {
+        throw new UnsupportedOperationException();
+      }
+
+      @Override
+      public int nextDoc() {
+        int old = pos;
+        pos = nextSetBit(old + 1);
+        return old;
+      }
+
+      @Override
+      public float score() {
+        return 0.0f;
+      }
+    };
+  }
+
+  /**
+   * @return a new on-heap copy of the bits of this set
+   */
+  @Override
+  public FixedBitSet getBits() {
+    ensureOpen();
+    final long[] bits = new long[numWords];
+    words.duplicate().get(bits);
+    return new FixedBitSet(bits, numBits);
+  }
+
+  /** Returns the number of bits of this set, one past the largest doc it may contain. */
+  int getBitsLength() {
+    return numBits;
+  }
+
+  /** Clears the bits of this set in <code>bits</code>. */
+  void andNotFrom(FixedBitSet bits) {
+    ensureOpen();
+    final long[] target = bits.getBits();
+    final int n = Math.min(numWords, target.length);
+    for (int i = 0; i < n; i++) {
+      target[i] &= ~words.get(i);
+    }
+  }
+
+  /** Sets the bits of this set in <code>bits</code>, which must be large enough. */
+  void orInto(FixedBitSet bits) {
+    ensureOpen();
+    final long[] target = bits.getBits();
+    for (int i = 0; i < numWords; i++) {
+      target[i] |= words.get(i);
+    }
+  }
+
+  @Override
+  public int intersectionSize(DocSet other) {
+    if (other instanceof BitDocSet) {
+      ensureOpen();
+      final long[] otherWords = ((BitDocSet) other).bits.getBits();
+      final int n = Math.min(numWords, otherWords.length);
+      long count = 0;
+      for (int i = 0; i < n; i++) {
+        count += Long.bitCount(words.get(i) & otherWords[i]);
+      }
+      return (int) count;
+    } else if (other instanceof OffHeapBitDocSet) {
+      ensureOpen();
+      final OffHeapBitDocSet o = (OffHeapBitDocSet) other;
+      o.ensureOpen();
+      final int n = Math.min(numWords, o.numWords);
+      long count = 0;
+      for (int i = 0; i < n; i++) {
+        count += Long.bitCount(words.get(i) & o.words.get(i));
+      }
+      return (int) count;
+    } else {
+      // they had better not call us back!
+      return other.intersectionSize(this);
+    }
+  }
+
+  @Override
+  public boolean intersects(DocSet other) {
+    if (other instanceof BitDocSet) {
+      ensureOpen();
+      final long[] otherWords = ((BitDocSet) other).bits.getBits();
+      final int n = Math.min(numWords, otherWords.length);
+      for (int i = 0; i < n; i++) {
+        if ((words.get(i) & otherWords[i]) != 0) return true;
+      }
+      return false;
+    } else if (other instanceof OffHeapBitDocSet) {
+      ensureOpen();
+      final OffHeapBitDocSet o = (OffHeapBitDocSet) other;
+      o.ensureOpen();
+      final int n = Math.min(numWords, o.numWords);
+      for (int i = 0; i < n; i++) {
+        if ((words.get(i) & o.words.get(i)) != 0) return true;
+      }
+      return false;
+    } else {
+      // they had better not call us back!
+      return other.intersects(this);
+    }
+  }
+
+  @Override
+  public DocSet intersection(DocSet other) {
+    if (other instanceof BitDocSet) {
+      ensureOpen();
+      final long[] otherWords = ((BitDocSet) other).bits.getBits();
+      final long[] newWords = new long[numWords];
+      final int n = Math.min(numWords, otherWords.length);
+      for (int i = 0; i < n; i++) {
+        newWords[i] = words.get(i) & otherWords[i];
+      }
+      return new BitDocSet(new FixedBitSet(newWords, numBits));
+    } else if (other instanceof OffHeapBitDocSet) {
+      ensureOpen();
+      final OffHeapBitDocSet o = (OffHeapBitDocSet) other;
+      o.ensureOpen();
+      final long[] newWords = new long[numWords];
+      final int n = Math.min(numWords, o.numWords);
+      for (int i = 0; i < n; i++) {
+        newWords[i] = words.get(i) & o.words.get(i);
+      }
+      return new BitDocSet(new FixedBitSet(newWords, numBits));
+    } else {
+      // they had better not call us back!
+      return other.intersection(this);
+    }
+  }
+
+  @Override
+  public DocSet andNot(DocSet other) {
+    if (other instanceof BitDocSet) {
+      ensureOpen();
+      final long[] otherWords = ((BitDocSet) other).bits.getBits();
+      final long[] newWords = new long[numWords];
+      final int n = Math.min(numWords, otherWords.length);
+      for (int i = 0; i < n; i++) {
+        newWords[i] = words.get(i) & ~otherWords[i];
+      }
+      if (n < numWords) {
+        ((LongBuffer) words.duplicate().position(n)).get(newWords, n, numWords - n);
+      }
+      return new BitDocSet(new FixedBitSet(newWords, numBits));
+    }
+    final FixedBitSet newbits = getBits();
+    DocSetUtil.andNot(newbits, other);
+    return new BitDocSet(newbits);
+  }
+
+  @Override
+  public DocSet union(DocSet other) {
+    return new BitDocSet(DocSetUtil.or(getBits(), other));
+  }
+
+  @Override
+  public void addAllTo(DocSet target) {
+    if (target instanceof BitDocSet && ((BitDocSet) target).bits.length() >= numBits) {
+      orInto(((BitDocSet) target).bits);
+      ((BitDocSet) target).invalidateSize();
+    } else {
+      super.addAllTo(target);
+    }
+  }
+
+  @Override
+  public Filter getTopFilter() {
+    return DocSetUtil.getTopFilter(this, "OffHeapBitSetDocTopFilter", numBits, () -> new DocIdSetIterator() {
+      int doc = -1;
+
+      @Override
+      public int docID() {
+        return doc;
+      }
+
+      @Override
+      public int nextDoc() {
+        return advance(doc + 1);
+      }
+
+      @Override
+      public int advance(int target) {
+        return doc = nextSetBit(target);
+      }
+
+      @Override
+      public long cost() {
+        return size;
+      }
+    });
+  }
+
+  /** Includes the off-heap memory, see {@link #offHeapBytesUsed()}. */
+  @Override
+  public long ramBytesUsed() {
+    return BASE_RAM_BYTES_USED + offHeapBytesUsed();
+  }
+
+  @Override
+  public long offHeapBytesUsed() {
+    return (long) numWords << 3;
+  }
+
+  @Override
+  public Collection<Accountable> getChildResources() {
+    return Collections.emptyList();
+  }
+
+  /**
+   * Frees the off-heap memory of this set. This must only be called once no thread uses the set
+   * anymore, like when the searcher whose cache holds the set is closed: a read that races with
+   * closing may read freed memory. Later uses fail with an {@link AlreadyClosedException}.
+   */
+  @Override
+  public synchronized void close() {
+    if (closed) {
+      return;
+    }
+    closed = true;
+    try {
+      DirectBufferCleaner.free(buffer);
+    } catch (IOException e) {
+      // the buffer is left to the garbage collector
+    }
+  }
+}
@@ -37,6 +37,7 @@ public class QueryCommand {
   private int supersetMaxDoc;
   private int flags;
   private long timeAllowed = -1;
+  private int minExactCount = Integer.MAX_VALUE;
   private CursorMark cursorMark;
   
   public CursorMark getCursorMark() {
@@ -183,6 +184,19 @@ public class QueryCommand {
     return this;
   }
   
+  public int getMinExactCount() {
+    return minExactCount;
+  }
+
+  /**
+   * Sets the number of hits that must be counted accurately. Beyond that, non-competitive
+   * hits may be skipped when sorting by score, see {@link QueryResult#isNumFoundExact()}.
+   */
+  public QueryCommand setMinExactCount(int minExactCount) {
+    this.minExactCount = minExactCount;
+    return this;
+  }
+  
   public boolean isNeedDocSet() {
     return (flags & SolrIndexSearcher.GET_DOCSET) != 0;
   }
@@ -22,6 +22,7 @@ package org.apache.solr.search;
 public class QueryResult {
   
   private boolean partialResults;
+  private boolean numFoundExact = true;
   private Boolean segmentTerminatedEarly;
   private DocListAndSet docListAndSet;
   private CursorMark nextCursorMark;
@@ -57,6 +58,18 @@ public class QueryResult {
   public void setPartialResults(boolean partialResults) {
     this.partialResults = partialResults;
   }
+
+  /**
+   * Whether the number of matches of the doc list is exact, or only a lower bound
+   * because non-competitive hits were skipped.
+   */
+  public boolean isNumFoundExact() {
+    return numFoundExact;
+  }
+
+  public void setNumFoundExact(boolean numFoundExact) {
+    this.numFoundExact = numFoundExact;
+  }
   
   public Boolean getSegmentTerminatedEarly() {
     return segmentTerminatedEarly;
@@ -0,0 +1,485 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.solr.search;
+
+import java.util.Collection;
+import java.util.Collections;
+
+import org.apache.lucene.search.DocIdSetIterator;
+import org.apache.lucene.util.Accountable;
+import org.apache.lucene.util.FixedBitSet;
+import org.apache.lucene.util.RamUsageEstimator;
+
+/**
+ * An immutable set of Lucene Document Ids that is compressed like Lucene's
+ * {@link org.apache.lucene.util.RoaringDocIdSet}: the doc id space is split in blocks of
+ * 2<sup>16</sup> documents, sparse blocks store the sorted low 16 bits of their documents
+ * and dense blocks a bit set. Unlike <code>RoaringDocIdSet</code>, membership tests are
+ * random access, which Solr needs to intersect sets.
+ * <p>
+ * This is the most compact representation for filters that are too large for a
+ * {@link SortedIntDocSet} but match only a few percent of the index, where most of the
+ * memory of a {@link BitDocSet} would be zeros. See {@link DocSetUtil#compact}.
+ *
+ * @lucene.experimental
+ */
+public class RoaringDocSet extends DocSetBase {
+  private static final long BASE_RAM_BYTES_USED = RamUsageEstimator.shallowSizeOfInstance(RoaringDocSet.class);
+
+  private static final int BLOCK_SHIFT = 16;
+  private static final int BLOCK_WORDS = 1 << (BLOCK_SHIFT - 6);
+  // a block of more than this many docs takes less memory as a bit set
+  private static final int MAX_ARRAY_LENGTH = 1 << (BLOCK_SHIFT - 4);
+
+  private final short[][] arrays;  // sorted low bits of the docs of sparse blocks, or null
+  private final long[][] bitmaps;  // words of dense blocks, or null
+  private final int numBits;
+  private final int size;
+  private final long ramBytesUsed;
+
+  /** Compresses the bits of the given set. */
+  public RoaringDocSet(BitDocSet set) {
+    final FixedBitSet bits = set.getBits();
+    final long[] words = bits.getBits();
+    final int numWords = FixedBitSet.bits2words(bits.length());
+    this.numBits = bits.length();
+    final int numBlocks = (numBits + (1 << BLOCK_SHIFT) - 1) >>> BLOCK_SHIFT;
+    this.arrays = new short[numBlocks][];
+    this.bitmaps = new long[numBlocks][];
+
+    long ram = BASE_RAM_BYTES_USED + RamUsageEstimator.shallowSizeOf(arrays) + RamUsageEstimator.shallowSizeOf(bitmaps);
+    int size = 0;
+    for (int block = 0; block < numBlocks; block++) {
+      final int from = block * BLOCK_WORDS;
+      final int to = Math.min(from + BLOCK_WORDS, numWords);
+      int cardinality = 0;
+      for (int i = from; i < to; i++) {
+        cardinality += Long.bitCount(words[i]);
+      }
+      if (cardinality == 0) {
+        continue;
+      } else if (cardinality <= MAX_ARRAY_LENGTH) {
+        final short[] array = new short[cardinality];
+        int pos = 0;
+        for (int i = from; i < to; i++) {
+          long word = words[i];
+          while (word != 0) {
+            array[pos++] = (short) (((i - from) << 6) + Long.numberOfTrailingZeros(word));
+            word &= word - 1;
+          }
+        }
+        arrays[block] = array;
+        ram += RamUsageEstimator.sizeOf(array);
+      } else {
+        final long[] bitmap = new long[BLOCK_WORDS];
+        System.arraycopy(words, from, bitmap, 0, to - from);
+        bitmaps[block] = bitmap;
+        ram += RamUsageEstimator.sizeOf(bitmap);
+      }
+      size += cardinality;
+    }
+    this.size = size;
+    this.ramBytesUsed = ram;
+  }
+
+  @Override
+  public int size() {
+    return size;
+  }
+
+  @Override
+  public boolean exists(int doc) {
+    if (doc >= numBits) {
+      return false;
+    }
+    final int block = doc >>> BLOCK_SHIFT;
+    final short[] array = arrays[block];
+    if (array != null) {
+      return indexOf(array, doc & 0xFFFF) >= 0;
+    }
+    final long[] bitmap = bitmaps[block];
+    return bitmap != null && (bitmap[(doc >> 6) & (BLOCK_WORDS - 1)] & (1L << doc)) != 0;
+  }
+
+  /** Binary search for the given low bits, same contract as {@link java.util.Arrays#binarySearch}. */
+  private static int indexOf(short[] array, int low) {
+    int lo = 0;
+    int hi = array.length - 1;
+    while (lo <= hi) {
+      final int mid = (lo + hi) >>> 1;
+      final int midVal = array[mid] & 0xFFFF;
+      if (midVal < low) {
+        lo = mid + 1;
+      } else if (midVal > low) {
+        hi = mid - 1;
+      } else {
+        return mid;
+      }
+    }
+    return -(lo + 1);
+  }
+
+  /** Iterates over the docs in order, remembering the current block to make {@link #nextDoc()} cheap. */
+  private final class Cursor {
+    int block = -1;
+    int index;  // in the array of the current block
+    int doc = -1;
+
+    int nextDoc() {
+      if (doc == DocIdSetIterator.NO_MORE_DOCS) {
+        return doc;
+      }
+      if (block >= 0) {
+        final short[] array = arrays[block];
+        if (array != null && ++index < array.length) {
+          return doc = (block << BLOCK_SHIFT) | (array[index] & 0xFFFF);
+        }
+      }
+      return advance(doc + 1);
+    }
+
+    int advance(int target) {
+      if (target >= numBits) {
+        return doc = DocIdSetIterator.NO_MORE_DOCS;
+      }
+      int b = target >>> BLOCK_SHIFT;
+      int low = target & 0xFFFF;
+      for (; b < arrays.length; b++, low = 0) {
+        final short[] array = arrays[b];
+        if (array != null) {
+          int i = indexOf(array, low);
+          if (i < 0) i = -1 - i;
+          if (i < array.length) {
+            block = b;
+            index = i;
+            return doc = (b << BLOCK_SHIFT) | (array[i] & 0xFFFF);
+          }
+          continue;
+        }
+        final long[] bitmap = bitmaps[b];
+        if (bitmap != null) {
+          int w = low >> 6;
+          long word = bitmap[w] >> low;  // skip all the bits to the right of low
+          if (word != 0) {
+            block = b;
+            return doc = (b << BLOCK_SHIFT) + low + Long.numberOfTrailingZeros(word);
+          }
+          while (++w < BLOCK_WORDS) {
+            word = bitmap[w];
+            if (word != 0) {
+              block = b;
+              return doc = (b << BLOCK_SHIFT) + (w << 6) + Long.numberOfTrailingZeros(word);
+            }
+          }
+        }
+      }
+      return doc = DocIdSetIterator.NO_MORE_DOCS;
+    }
+  }
+
+  @Override
+  public DocIterator iterator() {
+    return new DocIterator() {
+      private final Cursor cursor = new Cursor();
+      private int next = cursor.nextDoc();
+
+      @Override
+      public boolean hasNext() {
+        return next != DocIdSetIterator.NO_MORE_DOCS;
+      }
+
+      @Override
+      public Integer next() {
+        return nextDoc();
+      }
+
+      @Override
+      public void remove() {
+        throw new UnsupportedOperationException();
+      }
+
+      @Override
+      public int nextDoc() {
+        int old = next;
+        next = cursor.nextDoc();
+        return old;
+      }
+
+      @Override
+      public float score() {
+        return 0.0f;
+      }
+    };
+  }
+
+  /**
+   * @return a new bit set with the docs of this set
+   */
+  @Override
+  public FixedBitSet getBits() {
+    final FixedBitSet bits = new FixedBitSet(numBits);
+    orInto(bits);
+    return bits;
+  }
+
+  /** Returns the number of bits of this set, one past the largest doc it may contain. */
+  int getBitsLength() {
+    return numBits;
+  }
+
+  /** Sets the bits of this set in <code>bits</code>, which must be large enough. */
+  void orInto(FixedBitSet bits) {
+    final long[] words = bits.getBits();
+    for (int block = 0; block < arrays.length; block++) {
+      final int base = block << BLOCK_SHIFT;
+      final short[] array = arrays[block];
+      if (array != null) {
+        for (short low : array) {
+          final int doc = base | (low & 0xFFFF);
+          words[doc >> 6] |= 1L << doc;
+        }
+      } else if (bitmaps[block] != null) {
+        final long[] bitmap = bitmaps[block];
+        final int from = block * BLOCK_WORDS;
+        for (int i = 0; i < BLOCK_WORDS && from + i < words.length; i++) {
+          words[from + i] |= bitmap[i];
+        }
+      }
+    }
+  }
+
+  /** Clears the bits of this set in <code>bits</code>. */
+  void andNotFrom(FixedBitSet bits) {
+    final long[] words = bits.getBits();
+    final int length = bits.length();
+    for (int block = 0; block < arrays.length; block++) {
+      final int base = block << BLOCK_SHIFT;
+      if (base >= length) {
+        break;
+      }
+      final short[] array = arrays[block];
+      if (array != null) {
+        for (short low : array) {
+          final int doc = base | (low & 0xFFFF);
+          if (doc >= length) break;
+          words[doc >> 6] &= ~(1L << doc);
+        }
+      } else if (bitmaps[block] != null) {
+        final long[] bitmap = bitmaps[block];
+        final int from = block * BLOCK_WORDS;
+        for (int i = 0; i < BLOCK_WORDS && from + i < words.length; i++) {
+          words[from + i] &= ~bitmap[i];
+        }
+      }
+    }
+  }
+
+  /** Counts the docs of one of our blocks that are also in the given bits. */
+  private static int intersectionCount(short[] array, long[] bitmap, int base, long[] words, int length) {
+    int count = 0;
+    if (array != null) {
+      for (short low : array) {
+        final int doc = base | (low & 0xFFFF);
+        if (doc >= length) break;
+        if ((words[doc >> 6] & (1L << doc)) != 0) count++;
+      }
+    } else if (bitmap != null) {
+      final int from = base >> 6;
+      for (int i = 0; i < BLOCK_WORDS && from + i < words.length; i++) {
+        count += Long.bitCount(bitmap[i] & words[from + i]);
+      }
+    }
+    return count;
+  }
+
+  /** Counts the docs that are in both blocks. */
+  private static int intersectionCount(short[] array1, long[] bitmap1, short[] array2, long[] bitmap2) {
+    int count = 0;
+    if (array1 != null && array2 != null) {
+      // merge the two sorted arrays
+      int i = 0, j = 0;
+      while (i < array1.length && j < array2.length) {
+        final int a = array1[i] & 0xFFFF;
+        final int b = array2[j] & 0xFFFF;
+        if (a < b) {
+          i++;
+        } else if (a > b) {
+          j++;
+        } else {
+          count++;
+          i++;
+          j++;
+        }
+      }
+    } else if (bitmap1 != null && bitmap2 != null) {
+      for (int i = 0; i < BLOCK_WORDS; i++) {
+        count += Long.bitCount(bitmap1[i] & bitmap2[i]);
+      }
+    } else if (array1 != null && bitmap2 != null) {
+      for (short low : array1) {
+        if ((bitmap2[(low & 0xFFFF) >> 6] & (1L << low)) != 0) count++;
+      }
+    } else if (bitmap1 != null && array2 != null) {
+      return intersectionCount(array2, bitmap2, array1, bitmap1);
+    }
+    return count;
+  }
+
+  @Override
+  public int intersectionSize(DocSet other) {
+    if (other instanceof BitDocSet) {
+      final FixedBitSet bits = ((BitDocSet) other).bits;
+      final long[] words = bits.getBits();
+      long count = 0;
+      for (int block = 0; block < arrays.length; block++) {
+        count += intersectionCount(arrays[block], bitmaps[block], block << BLOCK_SHIFT, words, bits.length());
+      }
+      return (int) count;
+    } else if (other instanceof RoaringDocSet) {
+      final RoaringDocSet o = (RoaringDocSet) other;
+      final int numBlocks = Math.min(arrays.length, o.arrays.length);
+      long count = 0;
+      for (int block = 0; block < numBlocks; block++) {
+        count += intersectionCount(arrays[block], bitmaps[block], o.arrays[block], o.bitmaps[block]);
+      }
+      return (int) count;
+    } else if (isSmall(other)) {
+      // they will test our docs with exists()
+      return other.intersectionSize(this);
+    } else {
+      int count = 0;
+      for (DocIterator iter = iterator(); iter.hasNext(); ) {
+        if (other.exists(iter.nextDoc())) count++;
+      }
+      return count;
+    }
+  }
+
+  @Override
+  public boolean intersects(DocSet other) {
+    if (other instanceof BitDocSet || other instanceof RoaringDocSet) {
+      return intersectionSize(other) > 0;
+    } else if (isSmall(other)) {
+      return other.intersects(this);
+    } else {
+      for (DocIterator iter = iterator(); iter.hasNext(); ) {
+        if (other.exists(iter.nextDoc())) return true;
+      }
+      return false;
+    }
+  }
+
+  @Override
+  public DocSet intersection(DocSet other) {
+    if (isSmall(other)) {
+      return other.intersection(this);
+    }
+    final int count = intersectionSize(other);
+    if (count == 0) {
+      return DocSet.EMPTY;
+    }
+    final DocIterator iter = iterator();
+    if (count <= DocSetUtil.smallSetSize(numBits)) {
+      final int[] docs = new int[count];
+      int pos = 0;
+      while (pos < count) {
+        final int doc = iter.nextDoc();
+        if (exists(other, doc)) docs[pos++] = doc;
+      }
+      return new SortedIntDocSet(docs);
+    }
+    final FixedBitSet bits = new FixedBitSet(numBits);
+    while (iter.hasNext()) {
+      final int doc = iter.nextDoc();
+      if (exists(other, doc)) bits.set(doc);
+    }
+    return new BitDocSet(bits, count);
+  }
+
+  /** Sets that answer intersections by testing the docs of the other set with {@link DocSet#exists}. */
+  private static boolean isSmall(DocSet other) {
+    return other instanceof SortedIntDocSet || other instanceof HashDocSet || other instanceof DocSlice;
+  }
+
+  private static boolean exists(DocSet set, int doc) {
+    if (set instanceof BitDocSet) {
+      // BitDocSet.exists must not be called beyond its length
+      final FixedBitSet bits = ((BitDocSet) set).bits;
+      return doc < bits.length() && bits.get(doc);
+    }
+    return set.exists(doc);
+  }
+
+  @Override
+  public DocSet andNot(DocSet other) {
+    final FixedBitSet newbits = getBits();
+    DocSetUtil.andNot(newbits, other);
+    return new BitDocSet(newbits);
+  }
+
+  @Override
+  public DocSet union(DocSet other) {
+    return new BitDocSet(DocSetUtil.or(getBits(), other));
+  }
+
+  @Override
+  public void addAllTo(DocSet target) {
+    if (target instanceof BitDocSet && ((BitDocSet) target).bits.length() >= numBits) {
+      orInto(((BitDocSet) target).bits);
+      ((BitDocSet) target).invalidateSize();
+    } else {
+      super.addAllTo(target);
+    }
+  }
+
+  @Override
+  public Filter getTopFilter() {
+    return DocSetUtil.getTopFilter(this, "RoaringDocSetTopFilter", numBits, () -> new DocIdSetIterator() {
+      final Cursor cursor = new Cursor();
+
+      @Override
+      public int docID() {
+        return cursor.doc;
+      }
+
+      @Override
+      public int nextDoc() {
+        return cursor.nextDoc();
+      }
+
+      @Override
+      public int advance(int target) {
+        return cursor.advance(target);
+      }
+
+      @Override
+      public long cost() {
+        return size;
+      }
+    });
+  }
+
+  @Override
+  public long ramBytesUsed() {
+    return ramBytesUsed;
+  }
+
+  @Override
+  public Collection<Accountable> getChildResources() {
+    return Collections.emptyList();
+  }
+}
@@ -0,0 +1,376 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.solr.search;
+
+import java.io.IOException;
+import java.net.URL;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.apache.lucene.index.LeafReader;
+import org.apache.lucene.index.LeafReaderContext;
+import org.apache.lucene.search.BooleanClause;
+import org.apache.lucene.search.BooleanQuery;
+import org.apache.lucene.search.BoostQuery;
+import org.apache.lucene.search.BulkScorer;
+import org.apache.lucene.search.ConstantScoreQuery;
+import org.apache.lucene.search.DocIdSet;
+import org.apache.lucene.search.DocIdSetIterator;
+import org.apache.lucene.search.LeafCollector;
+import org.apache.lucene.search.MatchAllDocsQuery;
+import org.apache.lucene.search.MultiPhraseQuery;
+import org.apache.lucene.search.MultiTermQuery;
+import org.apache.lucene.search.PhraseQuery;
+import org.apache.lucene.search.PointInSetQuery;
+import org.apache.lucene.search.PointRangeQuery;
+import org.apache.lucene.search.Query;
+import org.apache.lucene.search.Scorer;
+import org.apache.lucene.search.TermQuery;
+import org.apache.lucene.search.TopTermsRewrite;
+import org.apache.lucene.search.Weight;
+import org.apache.lucene.util.Accountable;
+import org.apache.lucene.util.BitDocIdSet;
+import org.apache.lucene.util.FixedBitSet;
+import org.apache.lucene.util.RamUsageEstimator;
+import org.apache.lucene.util.RoaringDocIdSet;
+import org.apache.solr.common.util.NamedList;
+import org.apache.solr.common.util.SimpleOrderedMap;
+import org.apache.solr.core.SolrCore;
+import org.apache.solr.core.SolrInfoMBean;
+
+/**
+ * A cache of the documents matching filter queries, per segment.
+ * <p>
+ * Unlike the filterCache of a {@link SolrIndexSearcher}, which holds top-level {@link DocSet}s
+ * and is rebuilt on every commit, this cache is owned by the {@link SolrCore} and keyed by
+ * segment core cache key, so that entries of segments that did not change survive commits.
+ * Entries ignore deleted documents, deletions are applied when the per-segment sets are
+ * assembled into the top-level {@link DocSet} of a searcher. Entries of a segment are removed
+ * when its core is closed.
+ * <p>
+ * Only queries whose matches in a segment do not depend on other segments are cached, see
+ * {@link #isCacheable(Query)}.
+ *
+ * @lucene.experimental
+ */
+public class SegmentFilterCache implements SolrInfoMBean, Accountable {
+
+  static final long BASE_RAM_BYTES_USED = RamUsageEstimator.shallowSizeOfInstance(SegmentFilterCache.class);
+
+  private final int maxSize;
+  private final long maxRamBytes;
+
+  // the following fields are guarded by this
+  private final Map<Key,DocIdSet> cache = new LinkedHashMap<>(16, 0.75f, true);
+  private final Map<Object,Set<Key>> keysByCore = new HashMap<>();
+  private long ramBytesUsed;
+  private long lookups;
+  private long hits;
+  private long inserts;
+  private long evictions;
+
+  private final LeafReader.CoreClosedListener purgeCore = this::purge;
+
+  /**
+   * @param maxSize maximum number of per-segment entries
+   * @param maxRamMB maximum memory used by the cache, or a negative value for no limit
+   */
+  public SegmentFilterCache(int maxSize, int maxRamMB) {
+    if (maxSize < 1) {
+      throw new IllegalArgumentException("maxSize must be at least 1, got " + maxSize);
+    }
+    this.maxSize = maxSize;
+    this.maxRamBytes = maxRamMB < 0 ? Long.MAX_VALUE : maxRamMB * 1024L * 1024L;
+  }
+
+  /**
+   * Whether the matches of <code>query</code> in a segment only depend on the segment, and can
+   * thus be cached per segment.
+   */
+  public static boolean isCacheable(Query query) {
+    if (query instanceof TermQuery
+        || query instanceof PointRangeQuery
+        || query instanceof PointInSetQuery
+        || query instanceof MatchAllDocsQuery
+        || query instanceof PhraseQuery
+        || query instanceof MultiPhraseQuery) {
+      return true;
+    } else if (query instanceof MultiTermQuery) {
+      // top terms rewrites pick terms across all segments
+      return ((MultiTermQuery) query).getRewriteMethod() instanceof TopTermsRewrite == false;
+    } else if (query instanceof BooleanQuery) {
+      for (BooleanClause clause : (BooleanQuery) query) {
+        if (isCacheable(clause.getQuery()) == false) {
+          return false;
+        }
+      }
+      return true;
+    } else if (query instanceof ConstantScoreQuery) {
+      return isCacheable(((ConstantScoreQuery) query).getQuery());
+    } else if (query instanceof BoostQuery) {
+      return isCacheable(((BoostQuery) query).getQuery());
+    } else if (query instanceof WrappedQuery) {
+      return isCacheable(((WrappedQuery) query).getWrappedQuery());
+    }
+    return false;
+  }
+
+  /**
+   * Returns the set of live documents of <code>searcher</code> that match <code>query</code>,
+   * only computing the matches of segments that are not cached yet.
+   * <code>query</code> must be positive and {@link #isCacheable(Query) cacheable}.
+   */
+  public DocSet getDocSet(SolrIndexSearcher searcher, Query query) throws IOException {
+    assert isCacheable(query) : query;
+    final List<LeafReaderContext> leaves = searcher.getTopReaderContext().leaves();
+    final DocIdSetIterator[] iterators = new DocIdSetIterator[leaves.size()];
+    Weight weight = null;
+    int maxCount = 0;
+    int firstReader = -1;
+    for (LeafReaderContext ctx : leaves) {
+      DocIdSet set = get(ctx.reader().getCoreCacheKey(), query);
+      if (set == null) {
+        if (weight == null) {
+          weight = searcher.createNormalizedWeight(query, false);
+        }
+        set = cacheImpl(weight.bulkScorer(ctx), ctx.reader().maxDoc());
+        put(ctx.reader(), query, set);
+      }
+      final DocIdSetIterator iterator = set.iterator();
+      if (iterator == null) continue;
+      iterators[ctx.ord] = iterator;
+      maxCount += iterator.cost();
+      if (firstReader < 0) firstReader = ctx.ord;
+    }
+
+    if (maxCount == 0) {
+      return DocSet.EMPTY;
+    }
+
+    final int maxDoc = searcher.maxDoc();
+    if (maxCount <= DocSetUtil.smallSetSize(maxDoc)) {
+      return DocSetUtil.createSmallSet(leaves, iterators, maxCount, firstReader);
+    }
+    return DocSetUtil.createBigSet(leaves, iterators, maxDoc, firstReader);
+  }
+
+  /**
+   * Same heuristic as Lucene's query cache: a {@link RoaringDocIdSet} for sets that have a
+   * density &lt; 1% and a {@link BitDocIdSet} otherwise. Deleted documents are included.
+   */
+  private static DocIdSet cacheImpl(BulkScorer scorer, int maxDoc) throws IOException {
+    if (scorer == null) {
+      return DocIdSet.EMPTY;
+    }
+    if (scorer.cost() * 100 >= maxDoc) {
+      final FixedBitSet bitSet = new FixedBitSet(maxDoc);
+      final long[] cardinality = new long[1];
+      scorer.score(new LeafCollector() {
+        @Override
+        public void setScorer(Scorer scorer) {}
+
+        @Override
+        public void collect(int doc) {
+          cardinality[0]++;
+          bitSet.set(doc);
+        }
+      }, null);
+      return new BitDocIdSet(bitSet, cardinality[0]);
+    } else {
+      final RoaringDocIdSet.Builder builder = new RoaringDocIdSet.Builder(maxDoc);
+      scorer.score(new LeafCollector() {
+        @Override
+        public void setScorer(Scorer scorer) {}
+
+        @Override
+        public void collect(int doc) {
+          builder.add(doc);
+        }
+      }, null);
+      return builder.build();
+    }
+  }
+
+  private synchronized DocIdSet get(Object coreKey, Query query) {
+    lookups++;
+    final DocIdSet set = cache.get(new Key(coreKey, query));
+    if (set != null) {
+      hits++;
+    }
+    return set;
+  }
+
+  private void put(LeafReader reader, Query query, DocIdSet set) {
+    final Object coreKey = reader.getCoreCacheKey();
+    final Key key = new Key(coreKey, query);
+    final boolean newCore;
+    synchronized (this) {
+      Set<Key> coreKeys = keysByCore.get(coreKey);
+      newCore = coreKeys == null;
+      if (newCore) {
+        coreKeys = new HashSet<>();
+        keysByCore.put(coreKey, coreKeys);
+      }
+      final DocIdSet old = cache.put(key, set);
+      if (old != null) {
+        ramBytesUsed -= ramBytesUsed(key, old);
+      } else {
+        coreKeys.add(key);
+      }
+      ramBytesUsed += ramBytesUsed(key, set);
+      inserts++;
+      evictIfNecessary();
+    }
+    if (newCore) {
+      // registered outside of the lock since closing the core calls back into the cache,
+      // registering it again after all entries of the core got evicted is a no-op
+      reader.addCoreClosedListener(purgeCore);
+    }
+  }
+
+  private void evictIfNecessary() {
+    assert Thread.holdsLock(this);
+    for (Iterator<Map.Entry<Key,DocIdSet>> it = cache.entrySet().iterator();
+         (cache.size() > maxSize || ramBytesUsed > maxRamBytes) && it.hasNext(); ) {
+      final Map.Entry<Key,DocIdSet> entry = it.next();
+      it.remove();
+      final Set<Key> coreKeys = keysByCore.get(entry.getKey().coreKey);
+      coreKeys.remove(entry.getKey());
+      if (coreKeys.isEmpty()) {
+        // the core closed listener stays registered, it is a no-op if the core has no entries
+        keysByCore.remove(entry.getKey().coreKey);
+      }
+      ramBytesUsed -= ramBytesUsed(entry.getKey(), entry.getValue());
+      evictions++;
+    }
+  }
+
+  private synchronized void purge(Object coreKey) {
+    final Set<Key> coreKeys = keysByCore.remove(coreKey);
+    if (coreKeys != null) {
+      for (Key key : coreKeys) {
+        final DocIdSet set = cache.remove(key);
+        ramBytesUsed -= ramBytesUsed(key, set);
+      }
+    }
+  }
+
+  /** Removes all entries. Core closed listeners that are still registered become no-ops. */
+  public synchronized void clear() {
+    cache.clear();
+    keysByCore.clear();
+    ramBytesUsed = 0;
+  }
+
+  private static long ramBytesUsed(Key key, DocIdSet set) {
+    final long queryRamBytesUsed = key.query instanceof Accountable
+        ? ((Accountable) key.query).ramBytesUsed()
+        : LRUCache.DEFAULT_RAM_BYTES_USED;
+    return queryRamBytesUsed + set.ramBytesUsed() + LRUCache.LINKED_HASHTABLE_RAM_BYTES_PER_ENTRY;
+  }
+
+  /** Returns the number of cached per-segment entries. */
+  public synchronized int size() {
+    return cache.size();
+  }
+
+  @Override
+  public synchronized long ramBytesUsed() {
+    return BASE_RAM_BYTES_USED + ramBytesUsed;
+  }
+
+  //////////////////////// SolrInfoMBeans methods //////////////////////
+
+  @Override
+  public String getName() {
+    return SegmentFilterCache.class.getName();
+  }
+
+  @Override
+  public String getVersion() {
+    return SolrCore.version;
+  }
+
+  @Override
+  public String getDescription() {
+    return "Per-segment filter cache(maxSize=" + maxSize
+        + (maxRamBytes != Long.MAX_VALUE ? ", maxRamMB=" + (maxRamBytes / 1024L / 1024L) : "") + ")";
+  }
+
+  @Override
+  public Category getCategory() {
+    return Category.CACHE;
+  }
+
+  @Override
+  public String getSource() {
+    return null;
+  }
+
+  @Override
+  public URL[] getDocs() {
+    return null;
+  }
+
+  @Override
+  public synchronized NamedList getStatistics() {
+    NamedList<Object> lst = new SimpleOrderedMap<>();
+    lst.add("lookups", lookups);
+    lst.add("hits", hits);
+    lst.add("hitratio", SolrCacheBase.calcHitRatio(lookups, hits));
+    lst.add("inserts", inserts);
+    lst.add("evictions", evictions);
+    lst.add("size", cache.size());
+    lst.add("segments", keysByCore.size());
+    lst.add("ramBytesUsed", ramBytesUsed());
+    return lst;
+  }
+
+  @Override
+  public String toString() {
+    return getDescription();
+  }
+
+  private static final class Key {
+    final Object coreKey;
+    final Query query;
+
+    Key(Object coreKey, Query query) {
+      this.coreKey = coreKey;
+      this.query = query;
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+      if (obj instanceof Key == false) {
+        return false;
+      }
+      final Key that = (Key) obj;
+      return coreKey == that.coreKey && query.equals(that.query);
+    }
+
+    @Override
+    public int hashCode() {
+      return 31 * System.identityHashCode(coreKey) + query.hashCode();
+    }
+  }
+}
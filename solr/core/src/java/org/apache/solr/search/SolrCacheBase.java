@@ -16,14 +16,21 @@
  */
 package org.apache.solr.search;
 
+import java.lang.invoke.MethodHandles;
 import java.math.BigDecimal;
 import java.math.RoundingMode;
 import java.net.URL;
 import java.util.Map;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
 
+import org.apache.solr.common.SolrException;
 import org.apache.solr.core.SolrCore;
 import org.apache.solr.core.SolrInfoMBean.Category;
 import org.apache.solr.search.SolrCache.State;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
 import static org.apache.solr.common.params.CommonParams.NAME;
 
@@ -31,6 +38,7 @@ import static org.apache.solr.common.params.CommonParams.NAME;
  * Common base class of reusable functionality for SolrCaches
  */
 public abstract class SolrCacheBase {
+  private static final Logger log = LoggerFactory.getLogger(MethodHandles.lookup().lookupClass());
    
   protected CacheRegenerator regenerator;
   
@@ -98,6 +106,24 @@ public abstract class SolrCacheBase {
             .floatValue();
   }
 
+  /**
+   * Returns the off-heap memory used by a cache value, if it is a {@link DocSet}.
+   */
+  protected static long offHeapBytesUsed(Object value) {
+    return value instanceof DocSet ? ((DocSet) value).offHeapBytesUsed() : 0;
+  }
+
+  /**
+   * Frees the off-heap memory of a value that is still cached when the cache is closed, which happens
+   * once no request uses the searcher anymore. Evicted values may still be used by requests that looked
+   * them up before, so they are left to the garbage collector.
+   */
+  protected static void release(Object value) {
+    if (value instanceof OffHeapBitDocSet) {
+      ((OffHeapBitDocSet) value).close();
+    }
+  }
+
   public String getVersion() {
     return SolrCore.version;
   }
@@ -118,6 +144,137 @@ public abstract class SolrCacheBase {
     
   }
   
+  /**
+   * Regenerates the given entries of <code>old</code> into <code>newCache</code> using
+   * <code>regenerator</code>. The entries are ordered from the least to the most valuable one, and
+   * are regenerated in that order so that the most valuable entries are put into the new cache last.
+   * If the searcher has an autowarm time budget, they are regenerated from the most valuable one
+   * instead, so that the entries that are skipped once the budget is exhausted are the least
+   * valuable ones. If the searcher is being warmed with more than one
+   * autowarm thread, entries are regenerated concurrently by the calling thread and the
+   * searcher's warming threads. Regeneration stops as soon as the regenerator returns false
+   * or the autowarm time budget of the searcher is exhausted, and the remaining entries are
+   * counted as skipped.
+   *
+   * @return the number of entries that were regenerated and skipped
+   */
+  public static WarmResult warmItems(CacheRegenerator regenerator, SolrIndexSearcher searcher,
+                                     SolrCache newCache, SolrCache old, Object[] keys, Object[] vals) {
+    final ItemWarmer warmer = new ItemWarmer(regenerator, searcher, newCache, old, keys, vals);
+    final Executor executor = searcher == null ? null : searcher.getWarmExecutor();
+    if (executor != null && keys.length > 1) {
+      final int helpers = Math.min(searcher.getAutowarmThreads(), keys.length - 1);
+      try {
+        for (int i = 0; i < helpers; i++) {
+          executor.execute(warmer::help);
+        }
+      } catch (RejectedExecutionException e) {
+        // the pool is shutting down, the calling thread warms what is left
+      }
+    }
+    warmer.run();
+    warmer.awaitHelpers();
+    return new WarmResult(warmer.warmed.get(), keys.length - Math.min(keys.length, warmer.next.get()));
+  }
+
+  /** Number of entries that were regenerated and skipped by a call to {@link #warmItems}. */
+  public static final class WarmResult {
+    public static final WarmResult EMPTY = new WarmResult(0, 0);
+
+    public final int warmed;
+    public final int skipped;
+
+    public WarmResult(int warmed, int skipped) {
+      this.warmed = warmed;
+      this.skipped = skipped;
+    }
+  }
+
+  /**
+   * Shared state of the threads that regenerate the entries of a cache. Threads claim entries
+   * by incrementing {@link #next}, and helpers that start after the calling thread is done
+   * return immediately so that the caller never waits on queued tasks.
+   */
+  private static final class ItemWarmer implements Runnable {
+    final CacheRegenerator regenerator;
+    final SolrIndexSearcher searcher;
+    final SolrCache newCache, old;
+    final Object[] keys, vals;
+    // whether the entries are regenerated from the end of the arrays
+    final boolean mostValuableFirst;
+    final AtomicInteger next = new AtomicInteger();
+    final AtomicInteger warmed = new AtomicInteger();
+    volatile boolean stop;
+    // guarded by this
+    int activeHelpers;
+    boolean done;
+
+    ItemWarmer(CacheRegenerator regenerator, SolrIndexSearcher searcher,
+               SolrCache newCache, SolrCache old, Object[] keys, Object[] vals) {
+      this.regenerator = regenerator;
+      this.searcher = searcher;
+      this.newCache = newCache;
+      this.old = old;
+      this.keys = keys;
+      this.vals = vals;
+      this.mostValuableFirst = searcher != null && searcher.hasWarmTimeBudget();
+    }
+
+    @Override
+    public void run() {
+      while (stop == false) {
+        if (searcher != null && searcher.isWarmTimeBudgetExhausted()) {
+          stop = true;
+          break;
+        }
+        final int n = next.getAndIncrement();
+        if (n >= keys.length) {
+          break;
+        }
+        final int i = mostValuableFirst ? keys.length - 1 - n : n;
+        try {
+          boolean continueRegen = regenerator.regenerateItem(searcher, newCache, old, keys[i], vals[i]);
+          warmed.incrementAndGet();
+          if (!continueRegen) stop = true;
+        } catch (Exception e) {
+          SolrException.log(log, "Error during auto-warming of key:" + keys[i], e);
+        }
+      }
+    }
+
+    void help() {
+      synchronized (this) {
+        if (done) return;
+        activeHelpers++;
+      }
+      try {
+        searcher.runWithWarmingRequest(this);
+      } finally {
+        synchronized (this) {
+          activeHelpers--;
+          notifyAll();
+        }
+      }
+    }
+
+    synchronized void awaitHelpers() {
+      done = true;
+      boolean interrupted = false;
+      while (activeHelpers > 0) {
+        try {
+          wait();
+        } catch (InterruptedException e) {
+          // helpers only need to finish the entry they are working on
+          stop = true;
+          interrupted = true;
+        }
+      }
+      if (interrupted) {
+        Thread.currentThread().interrupt();
+      }
+    }
+  }
+
   protected String getAutowarmDescription() {
     return "autowarmCount=" + autowarm + ", regenerator=" + regenerator;
   }
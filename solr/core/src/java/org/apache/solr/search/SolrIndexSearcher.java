@@ -33,6 +33,9 @@ import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicLong;
 
@@ -100,6 +103,7 @@ import org.apache.solr.common.SolrDocumentBase;
 import org.apache.solr.common.SolrException;
 import org.apache.solr.common.SolrException.ErrorCode;
 import org.apache.solr.common.params.ModifiableSolrParams;
+import org.apache.solr.common.util.ExecutorUtil;
 import org.apache.solr.common.util.NamedList;
 import org.apache.solr.common.util.SimpleOrderedMap;
 import org.apache.solr.core.DirectoryFactory;
@@ -125,6 +129,7 @@ import org.apache.solr.search.stats.StatsSource;
 import org.apache.solr.uninverting.UninvertingReader;
 import org.apache.solr.update.IndexFingerprint;
 import org.apache.solr.update.SolrIndexConfig;
+import org.apache.solr.util.DefaultSolrThreadFactory;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -163,6 +168,15 @@ public class SolrIndexSearcher extends IndexSearcher implements Closeable, SolrI
   private final int queryResultMaxDocsCached;
   private final boolean useFilterForSortedQuery;
   public final boolean enableLazyFieldLoading;
+  private final int autowarmThreads;
+  private final int autowarmTimeBudgetMillis;
+  private final boolean offHeapFilterCache;
+  private final boolean compressFilterCache;
+
+  // only set while this searcher is being warmed
+  private volatile ExecutorService warmExecutor;
+  private volatile long warmDeadlineNanos;
+  private volatile boolean warmHasDeadline;
 
   private final boolean cachingEnabled;
   private final SolrCache<Query,DocSet> filterCache;
@@ -322,6 +336,10 @@ public class SolrIndexSearcher extends IndexSearcher implements Closeable, SolrI
     this.queryResultMaxDocsCached = solrConfig.queryResultMaxDocsCached;
     this.useFilterForSortedQuery = solrConfig.useFilterForSortedQuery;
     this.enableLazyFieldLoading = solrConfig.enableLazyFieldLoading;
+    this.autowarmThreads = solrConfig.autowarmThreads;
+    this.autowarmTimeBudgetMillis = solrConfig.autowarmTimeBudgetMillis;
+    this.offHeapFilterCache = solrConfig.offHeapFilterCache;
+    this.compressFilterCache = solrConfig.compressFilterCache;
 
     this.cachingEnabled = enableCache;
     if (cachingEnabled) {
@@ -997,7 +1015,7 @@ public class SolrIndexSearcher extends IndexSearcher implements Closeable, SolrI
     // or OS disk cache.
     if (optionalAnswer != null) {
       if (filterCache != null) {
-        filterCache.put(query, optionalAnswer);
+        putInFilterCache(query, optionalAnswer);
       }
       return;
     }
@@ -1017,13 +1035,12 @@ public class SolrIndexSearcher extends IndexSearcher implements Closeable, SolrI
     }
 
     FixedBitSet bs = new FixedBitSet(maxDoc());
-    DocIterator iter = answer.iterator();
-    while (iter.hasNext()) {
-      bs.set(iter.nextDoc());
-    }
+    // word by word for off-heap and compressed sets
+    answer.addAllTo(new BitDocSet(bs));
 
     BitDocSet answerBits = new BitDocSet(bs, answer.size());
     if (filterCache != null) {
+      // sets that are needed as bits are cached as-is, so that they are only copied once
       filterCache.put(q, answerBits);
     }
     return answerBits;
@@ -1061,12 +1078,12 @@ public class SolrIndexSearcher extends IndexSearcher implements Closeable, SolrI
       }
     }
 
-    DocSet absAnswer = getDocSetNC(absQ, null);
+    DocSet absAnswer = filterCache != null ? getFilterDocSet(absQ) : getDocSetNC(absQ, null);
     DocSet answer = positive ? absAnswer : getLiveDocs().andNot(absAnswer);
 
     if (filterCache != null) {
       // cache negative queries as positive
-      filterCache.put(absQ, absAnswer);
+      putInFilterCache(absQ, absAnswer);
     }
 
     return answer;
@@ -1079,11 +1096,38 @@ public class SolrIndexSearcher extends IndexSearcher implements Closeable, SolrI
       answer = filterCache.get(q);
       if (answer != null) return answer;
     }
-    answer = getDocSetNC(q, null);
-    if (filterCache != null) filterCache.put(q, answer);
+    answer = filterCache != null ? getFilterDocSet(q) : getDocSetNC(q, null);
+    if (filterCache != null) putInFilterCache(q, answer);
     return answer;
   }
 
+  /**
+   * Puts a DocSet in the filterCache, compressing mid-density bit sets if the filterCache is
+   * configured with <code>compress="true"</code>, and copying the remaining bit sets off-heap if
+   * it is configured with <code>offHeap="true"</code>.
+   */
+  private void putInFilterCache(Query query, DocSet docSet) {
+    if (compressFilterCache) {
+      docSet = DocSetUtil.compact(docSet);
+    }
+    if (offHeapFilterCache && docSet instanceof BitDocSet) {
+      docSet = new OffHeapBitDocSet((BitDocSet) docSet);
+    }
+    filterCache.put(query, docSet);
+  }
+
+  /**
+   * Computes the DocSet of a positive query that missed the filterCache, reusing the matches of
+   * unchanged segments if the core has a {@link SegmentFilterCache}.
+   */
+  private DocSet getFilterDocSet(Query q) throws IOException {
+    final SegmentFilterCache segmentFilterCache = core.getSegmentFilterCache();
+    if (segmentFilterCache != null && SegmentFilterCache.isCacheable(q)) {
+      return segmentFilterCache.getDocSet(this, q);
+    }
+    return getDocSetNC(q, null);
+  }
+
   private static Query matchAllDocsQuery = new MatchAllDocsQuery();
   private BitDocSet liveDocs;
 
@@ -1393,7 +1437,7 @@ public class SolrIndexSearcher extends IndexSearcher implements Closeable, SolrI
     }
 
     if (useCache) {
-      filterCache.put(key, result);
+      putInFilterCache(key, result);
     }
 
     return result;
@@ -1436,8 +1480,8 @@ public class SolrIndexSearcher extends IndexSearcher implements Closeable, SolrI
     if (filterCache != null) {
       first = filterCache.get(absQ);
       if (first == null) {
-        first = getDocSetNC(absQ, null);
-        filterCache.put(absQ, first);
+        first = getFilterDocSet(absQ);
+        putInFilterCache(absQ, first);
       }
       return positive ? first.intersection(filter) : filter.andNot(first);
     }
@@ -1640,7 +1684,7 @@ public class SolrIndexSearcher extends IndexSearcher implements Closeable, SolrI
         // the base query and all filters.
         DocSet qDocSet = getDocListAndSetNC(qr, cmd);
         // cache the docSet matching the query w/o filtering
-        if (qDocSet != null && filterCache != null && !qr.isPartialResults()) filterCache.put(cmd.getQuery(), qDocSet);
+        if (qDocSet != null && filterCache != null && !qr.isPartialResults()) putInFilterCache(cmd.getQuery(), qDocSet);
       } else {
         getDocListNC(qr, cmd);
       }
@@ -1668,8 +1712,10 @@ public class SolrIndexSearcher extends IndexSearcher implements Closeable, SolrI
     }
 
     // lastly, put the superset in the cache if the size is less than or equal
-    // to queryResultMaxDocsCached
-    if (key != null && superset.size() <= queryResultMaxDocsCached && !qr.isPartialResults()) {
+    // to queryResultMaxDocsCached. Approximate hit counts are not cached since
+    // other requests might need exact ones.
+    if (key != null && superset.size() <= queryResultMaxDocsCached && !qr.isPartialResults()
+        && qr.isNumFoundExact()) {
       queryResultCache.put(key, superset);
     }
   }
@@ -1736,7 +1782,9 @@ public class SolrIndexSearcher extends IndexSearcher implements Closeable, SolrI
 
     if (null == cmd.getSort()) {
       assert null == cmd.getCursorMark() : "have cursor but no sort";
-      return TopScoreDocCollector.create(len);
+      // a DocSet needs all matches, so hits may only be skipped when it isn't requested
+      final int minExactCount = cmd.isNeedDocSet() ? Integer.MAX_VALUE : cmd.getMinExactCount();
+      return TopScoreDocCollector.create(len, null, minExactCount);
     } else {
       // we have a sort
       final boolean needScores = (cmd.getFlags() & GET_SCORES) != 0;
@@ -1828,6 +1876,7 @@ public class SolrIndexSearcher extends IndexSearcher implements Closeable, SolrI
       buildAndRunCollectorChain(qr, query, collector, cmd, pf.postFilter);
 
       totalHits = topCollector.getTotalHits();
+      qr.setNumFoundExact(topCollector.isTotalHitsExact());
       TopDocs topDocs = topCollector.topDocs(0, len);
       populateNextCursorMarkFromTopDocs(qr, cmd, topDocs);
 
@@ -2224,7 +2273,7 @@ public class SolrIndexSearcher extends IndexSearcher implements Closeable, SolrI
     }
 
     // bit of a hack to tell if a set is sorted - do it better in the future.
-    boolean inOrder = set instanceof BitDocSet || set instanceof SortedIntDocSet;
+    boolean inOrder = set instanceof BitDocSet || set instanceof OffHeapBitDocSet || set instanceof RoaringDocSet || set instanceof SortedIntDocSet;
 
     TopDocsCollector topCollector = buildTopDocsCollector(nDocs, cmd);
 
@@ -2347,46 +2396,121 @@ public class SolrIndexSearcher extends IndexSearcher implements Closeable, SolrI
 
   /**
    * Warm this searcher based on an old one (primarily for auto-cache warming).
+   * <p>
+   * With more than one autowarm thread, the filterCache is warmed first and the other caches
+   * are then warmed concurrently, each of them also regenerating its entries concurrently.
+   * With an autowarm time budget, the most valuable entries of each cache are regenerated first, and
+   * the entries that remain once the budget is exhausted are skipped.
    */
   public void warm(SolrIndexSearcher old) {
-    // Make sure this is first! filters can help queryResults execute!
     long warmingStartTime = System.nanoTime();
-    // warm the caches in order...
+    if (autowarmTimeBudgetMillis >= 0) {
+      warmDeadlineNanos = warmingStartTime + TimeUnit.MILLISECONDS.toNanos(autowarmTimeBudgetMillis);
+      warmHasDeadline = true;
+    }
+    if (autowarmThreads > 1 && cacheList.length > 0) {
+      warmExecutor = ExecutorUtil.newMDCAwareFixedThreadPool(autowarmThreads, new DefaultSolrThreadFactory("autowarm"));
+    }
+    try {
+      if (warmExecutor == null) {
+        // warm the caches in order...
+        for (int i = 0; i < cacheList.length; i++) {
+          warmCache(old, i);
+        }
+      } else {
+        // Make sure this is first! filters can help queryResults execute!
+        for (int i = 0; i < cacheList.length; i++) {
+          if (cacheList[i] == filterCache) {
+            warmCache(old, i);
+          }
+        }
+        final List<Future<?>> futures = new ArrayList<>(cacheList.length);
+        for (int i = 0; i < cacheList.length; i++) {
+          if (cacheList[i] != filterCache) {
+            final int cacheIndex = i;
+            futures.add(warmExecutor.submit(() -> warmCache(old, cacheIndex)));
+          }
+        }
+        for (Future<?> future : futures) {
+          try {
+            future.get();
+          } catch (ExecutionException e) {
+            SolrException.log(log, "Error during auto-warming of " + this, e.getCause());
+          }
+        }
+      }
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    } finally {
+      if (warmExecutor != null) {
+        ExecutorUtil.shutdownAndAwaitTermination(warmExecutor);
+        warmExecutor = null;
+      }
+      warmHasDeadline = false;
+    }
+    warmupTime = TimeUnit.MILLISECONDS.convert(System.nanoTime() - warmingStartTime, TimeUnit.NANOSECONDS);
+  }
+
+  private void warmCache(SolrIndexSearcher old, int i) {
+    if (log.isDebugEnabled()) {
+      log.debug("autowarming [{}] from [{}]\n\t{}", this, old, old.cacheList[i]);
+    }
+
+    runWithWarmingRequest(() -> cacheList[i].warm(this, old.cacheList[i]));
+
+    if (log.isDebugEnabled()) {
+      log.debug("autowarming result for [{}]\n\t{}", this, cacheList[i]);
+    }
+  }
+
+  /**
+   * Runs <code>task</code> with a local warming request on this searcher set as the
+   * {@link SolrRequestInfo} of the current thread.
+   */
+  void runWithWarmingRequest(Runnable task) {
     ModifiableSolrParams params = new ModifiableSolrParams();
     params.add("warming", "true");
-    for (int i = 0; i < cacheList.length; i++) {
-      if (log.isDebugEnabled()) {
-        log.debug("autowarming [{}] from [{}]\n\t{}", this, old, old.cacheList[i]);
+    final SolrQueryRequest req = new LocalSolrQueryRequest(core, params) {
+      @Override
+      public SolrIndexSearcher getSearcher() {
+        return SolrIndexSearcher.this;
       }
 
-      final SolrQueryRequest req = new LocalSolrQueryRequest(core, params) {
-        @Override
-        public SolrIndexSearcher getSearcher() {
-          return SolrIndexSearcher.this;
-        }
-
-        @Override
-        public void close() {}
-      };
+      @Override
+      public void close() {}
+    };
 
-      final SolrQueryResponse rsp = new SolrQueryResponse();
-      SolrRequestInfo.clearRequestInfo();
-      SolrRequestInfo.setRequestInfo(new SolrRequestInfo(req, rsp));
+    final SolrQueryResponse rsp = new SolrQueryResponse();
+    SolrRequestInfo.clearRequestInfo();
+    SolrRequestInfo.setRequestInfo(new SolrRequestInfo(req, rsp));
+    try {
+      task.run();
+    } finally {
       try {
-        cacheList[i].warm(this, old.cacheList[i]);
+        req.close();
       } finally {
-        try {
-          req.close();
-        } finally {
-          SolrRequestInfo.clearRequestInfo();
-        }
-      }
-
-      if (log.isDebugEnabled()) {
-        log.debug("autowarming result for [{}]\n\t{}", this, cacheList[i]);
+        SolrRequestInfo.clearRequestInfo();
       }
     }
-    warmupTime = TimeUnit.MILLISECONDS.convert(System.nanoTime() - warmingStartTime, TimeUnit.NANOSECONDS);
+  }
+
+  /** The executor that caches may use to regenerate entries concurrently, or null if warming is single-threaded. */
+  ExecutorService getWarmExecutor() {
+    return warmExecutor;
+  }
+
+  int getAutowarmThreads() {
+    return autowarmThreads;
+  }
+
+  /** Whether this searcher is being warmed with an autowarm time budget. */
+  boolean hasWarmTimeBudget() {
+    return warmHasDeadline;
+  }
+
+  /** Whether the autowarm time budget of this searcher has been used up. */
+  boolean isWarmTimeBudgetExhausted() {
+    return warmHasDeadline && System.nanoTime() - warmDeadlineNanos >= 0;
   }
 
   /**
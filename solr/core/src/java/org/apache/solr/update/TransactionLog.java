@@ -27,14 +27,17 @@ import java.nio.channels.Channels;
 import java.nio.channels.FileChannel;
 import java.nio.file.Files;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
 import java.util.HashMap;
 import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
 
 import org.apache.lucene.util.BytesRef;
+import org.apache.lucene.util.Constants;
 import org.apache.solr.common.SolrException;
 import org.apache.solr.common.SolrInputDocument;
 import org.apache.solr.common.util.DataInputInputStream;
@@ -42,6 +45,7 @@ import org.apache.solr.common.util.FastInputStream;
 import org.apache.solr.common.util.FastOutputStream;
 import org.apache.solr.common.util.JavaBinCodec;
 import org.apache.solr.common.util.ObjectReleaseTracker;
+import org.apache.solr.util.DirectBufferCleaner;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -69,6 +73,9 @@ public class TransactionLog implements Closeable {
 
   public final static String END_MESSAGE="SOLR_TLOG_END";
 
+  /** Whether readers and real-time get read logs through a memory mapping rather than through the file channel. */
+  static boolean useMmap = Constants.JRE_IS_64BIT && !Constants.WINDOWS;
+
   long id;
   File tlogFile;
   RandomAccessFile raf;
@@ -76,6 +83,7 @@ public class TransactionLog implements Closeable {
   OutputStream os;
   FastOutputStream fos;    // all accesses to this stream should be synchronized on "this" (The TransactionLog)
   int numRecords;
+  TransactionLogMapping mapping;  // readers read through this memory mapping when not null
 
   protected volatile boolean deleteOnClose = true;  // we can delete old tlogs since they are currently only used for real-time-get (and in the future, recovery)
 
@@ -86,6 +94,11 @@ public class TransactionLog implements Closeable {
   long snapshot_size;
   int snapshot_numRecords;
 
+  // group commit: fsyncs are serialized on syncLock, and a thread that finds its records already
+  // covered by a sync that completed while it was waiting does not need one of its own
+  private final Object syncLock = new Object();
+  private volatile long syncedPosition;
+
   // write a BytesRef as a byte array
   JavaBinCodec.ObjectResolver resolver = new JavaBinCodec.ObjectResolver() {
     @Override
@@ -160,6 +173,9 @@ public class TransactionLog implements Closeable {
       os = Channels.newOutputStream(channel);
       fos = new FastOutputStream(os, new byte[65536], 0);
       // fos = FastOutputStream.wrap(os);
+      if (useMmap) {
+        mapping = new TransactionLogMapping(channel);
+      }
 
       if (openExisting) {
         if (start > 0) {
@@ -223,7 +239,7 @@ public class TransactionLog implements Closeable {
     byte[] buf = new byte[ END_MESSAGE.length() ];
     long pos = size - END_MESSAGE.length() - 4;
     if (pos < 0) return false;
-    ChannelFastInputStream is = new ChannelFastInputStream(channel, pos);
+    ChannelFastInputStream is = new ChannelFastInputStream(channel, mapping, pos);
     is.read(buf);
     for (int i=0; i<buf.length; i++) {
       if (buf[i] != END_MESSAGE.charAt(i)) return false;
@@ -244,13 +260,21 @@ public class TransactionLog implements Closeable {
   // This could mess with any readers or reverse readers that are open, or anything that might try to do a log lookup.
   // This should only be used to roll back buffered updates, not actually applied updates.
   public void rollback(long pos) throws IOException {
-    synchronized (this) {
-      assert snapshot_size == pos;
-      fos.flush();
-      raf.setLength(pos);
-      fos.setWritten(pos);
-      assert fos.size() == pos;
-      numRecords = snapshot_numRecords;
+    synchronized (syncLock) {
+      synchronized (this) {
+        assert snapshot_size == pos;
+        fos.flush();
+        if (mapping != null) {
+          // readers must be kept off the mapped range before it is cut off the file
+          mapping.truncate(pos);
+        }
+        raf.setLength(pos);
+        fos.setWritten(pos);
+        assert fos.size() == pos;
+        numRecords = snapshot_numRecords;
+        // records written from now on reuse the positions that were rolled back
+        syncedPosition = Math.min(syncedPosition, pos);
+      }
     }
   }
 
@@ -269,7 +293,7 @@ public class TransactionLog implements Closeable {
 
   private void readHeader(FastInputStream fis) throws IOException {
     // read existing header
-    fis = fis != null ? fis : new ChannelFastInputStream(channel, 0);
+    fis = fis != null ? fis : new ChannelFastInputStream(channel, mapping, 0);
     LogCodec codec = new LogCodec(resolver);
     Map header = (Map)codec.unmarshal(fis);
 
@@ -480,6 +504,7 @@ public class TransactionLog implements Closeable {
       synchronized (this) {
         // TODO: optimize this by keeping track of what we have flushed up to
         fos.flushBuffer();
+        updateMapping();
         /***
          System.out.println("###flushBuffer to " + fos.size() + " raf.length()=" + raf.length() + " pos="+pos);
         if (fos.size() != raf.length() || pos >= fos.size() ) {
@@ -488,7 +513,7 @@ public class TransactionLog implements Closeable {
         ***/
       }
 
-      ChannelFastInputStream fis = new ChannelFastInputStream(channel, pos);
+      ChannelFastInputStream fis = new ChannelFastInputStream(channel, mapping, pos);
       LogCodec codec = new LogCodec(resolver);
       return codec.readVal(fis);
     } catch (IOException e) {
@@ -513,6 +538,13 @@ public class TransactionLog implements Closeable {
     }
   }
 
+  /** Maps what has been flushed of the log, if the mapping lags far enough behind. Callers must be synchronized on this. */
+  private void updateMapping() throws IOException {
+    if (mapping != null) {
+      mapping.extend(fos.size());
+    }
+  }
+
   /** returns the current position in the log file */
   public long position() {
     synchronized (this) {
@@ -523,15 +555,14 @@ public class TransactionLog implements Closeable {
   public void finish(UpdateLog.SyncLevel syncLevel) {
     if (syncLevel == UpdateLog.SyncLevel.NONE) return;
     try {
+      long pos;
       synchronized (this) {
         fos.flushBuffer();
+        pos = fos.size();
       }
 
       if (syncLevel == UpdateLog.SyncLevel.FSYNC) {
-        // Since fsync is outside of synchronized block, we can end up with a partial
-        // last record on power failure (which is OK, and does not represent an error...
-        // we just need to be aware of it when reading).
-        raf.getFD().sync();
+        sync(pos);
       }
 
     } catch (IOException e) {
@@ -539,6 +570,31 @@ public class TransactionLog implements Closeable {
     }
   }
 
+  /**
+   * Makes sure that everything written before <code>pos</code> is on disk.
+   * <p>
+   * Updating threads that finish while an fsync is in progress wait for it, and then the first of them
+   * syncs everything that has been written in the meantime. With many concurrent indexing clients, a
+   * single fsync therefore covers the records of a whole group of requests instead of just one.
+   */
+  private void sync(long pos) throws IOException {
+    if (syncedPosition >= pos) return;
+    synchronized (syncLock) {
+      if (syncedPosition >= pos) return;  // synced along with the previous group
+
+      long end;
+      synchronized (this) {
+        fos.flushBuffer();
+        end = fos.size();
+      }
+      // Since fsync is outside of the synchronized block, we can end up with a partial
+      // last record on power failure (which is OK, and does not represent an error...
+      // we just need to be aware of it when reading).
+      raf.getFD().sync();
+      syncedPosition = end;
+    }
+  }
+
   public void close() {
     try {
       if (debug) {
@@ -548,6 +604,10 @@ public class TransactionLog implements Closeable {
       synchronized (this) {
         fos.flush();
         fos.close();
+        if (mapping != null) {
+          mapping.close();
+          mapping = null;
+        }
       }
 
       if (deleteOnClose) {
@@ -603,7 +663,7 @@ public class TransactionLog implements Closeable {
 
     public LogReader(long startingPos) {
       incref();
-      fis = new ChannelFastInputStream(channel, startingPos);
+      fis = new ChannelFastInputStream(channel, mapping, startingPos);
     }
 
     // for classes that extend
@@ -627,6 +687,7 @@ public class TransactionLog implements Closeable {
         }
 
         fos.flushBuffer();
+        updateMapping();
       }
 
       if (pos == 0) {
@@ -715,9 +776,10 @@ public class TransactionLog implements Closeable {
         fos.flushBuffer();
         sz = fos.size();
         assert sz == channel.size();
+        updateMapping();
       }
 
-      fis = new ChannelFastInputStream(channel, 0);
+      fis = new ChannelFastInputStream(channel, mapping, 0);
       if (sz >=4) {
         // readHeader(fis);  // should not be needed
         prevPos = sz - 4;
@@ -792,16 +854,27 @@ public class TransactionLog implements Closeable {
 
 class ChannelFastInputStream extends FastInputStream {
   private FileChannel ch;
+  private TransactionLogMapping mapping;
 
   public ChannelFastInputStream(FileChannel ch, long chPosition) {
+    this(ch, null, chPosition);
+  }
+
+  public ChannelFastInputStream(FileChannel ch, TransactionLogMapping mapping, long chPosition) {
     // super(null, new byte[10],0,0);    // a small buffer size for testing purposes
     super(null);
     this.ch = ch;
+    this.mapping = mapping;
     super.readFromStream = chPosition;
   }
 
   @Override
   public int readWrappedStream(byte[] target, int offset, int len) throws IOException {
+    if (mapping != null) {
+      int ret = mapping.read(readFromStream, target, offset, len);
+      if (ret > 0) return ret;
+      // not mapped yet, read the tail of the log from the channel
+    }
     ByteBuffer bb = ByteBuffer.wrap(target, offset, len);
     int ret = ch.read(bb, readFromStream);
     return ret;
@@ -841,3 +914,123 @@ class ChannelFastInputStream extends FastInputStream {
 }
 
 
+/**
+ * A read-only memory mapping of a transaction log, which is extended as the log grows.
+ * <p>
+ * The log is mapped in chunks of 1GB so that logs larger than 2GB can be mapped. Remapping is amortized:
+ * the mapping is only extended once the unmapped tail reaches 1MB and 1/8th of what is mapped already,
+ * and reads of the tail go through the file channel in the meantime.
+ * <p>
+ * Reading a mapped range after it was cut off the file or unmapped crashes the JVM, so reads hold a read
+ * lock, and truncating, remapping and closing take the write lock before the affected buffers are dropped.
+ */
+class TransactionLogMapping {
+  static final int CHUNK_SIZE_POWER = 30;
+  static final long MIN_EXTENSION = 1L << 20;
+
+  private static final class Chunks {
+    final ByteBuffer[] buffers;
+    final long length;  // number of mapped bytes that can be read
+
+    Chunks(ByteBuffer[] buffers, long length) {
+      this.buffers = buffers;
+      this.length = length;
+    }
+  }
+
+  private static final Chunks EMPTY = new Chunks(new ByteBuffer[0], 0);
+
+  private final FileChannel ch;
+  private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+  private volatile Chunks chunks = EMPTY;
+  private boolean closed;  // guarded by the write lock
+
+  TransactionLogMapping(FileChannel ch) {
+    this.ch = ch;
+  }
+
+  /** Returns the number of bytes that are mapped from the start of the log. */
+  long length() {
+    return chunks.length;
+  }
+
+  /** Maps the log up to <code>size</code> if the mapping lags far enough behind. Callers must be synchronized on the log. */
+  void extend(long size) throws IOException {
+    Chunks current = chunks;
+    long length = current.length;
+    if (size - length < Math.max(MIN_EXTENSION, length >>> 3)) return;
+
+    int numChunks = (int) ((size - 1) >>> CHUNK_SIZE_POWER) + 1;
+    ByteBuffer[] buffers = Arrays.copyOf(current.buffers, numChunks);
+    // the last chunk is partial unless the mapping ends at a chunk boundary, so it is mapped again
+    int firstMapped = (int) (length >>> CHUNK_SIZE_POWER);
+    for (int i = firstMapped; i < numChunks; i++) {
+      long start = (long) i << CHUNK_SIZE_POWER;
+      buffers[i] = ch.map(FileChannel.MapMode.READ_ONLY, start, Math.min(1L << CHUNK_SIZE_POWER, size - start));
+    }
+
+    lock.writeLock().lock();
+    try {
+      if (closed) {
+        free(buffers, firstMapped, numChunks);
+        return;
+      }
+      chunks = new Chunks(buffers, size);
+      free(current.buffers, firstMapped, current.buffers.length);
+    } finally {
+      lock.writeLock().unlock();
+    }
+  }
+
+  /**
+   * Stops reading beyond <code>size</code>, this must be called before the log is truncated.
+   * Callers must be synchronized on the log.
+   */
+  void truncate(long size) {
+    lock.writeLock().lock();
+    try {
+      Chunks current = chunks;
+      if (size < current.length) {
+        chunks = new Chunks(current.buffers, size);
+      }
+    } finally {
+      lock.writeLock().unlock();
+    }
+  }
+
+  /** Unmaps the log, reads go through the file channel afterwards. Callers must be synchronized on the log. */
+  void close() throws IOException {
+    lock.writeLock().lock();
+    try {
+      Chunks current = chunks;
+      chunks = EMPTY;
+      closed = true;
+      free(current.buffers, 0, current.buffers.length);
+    } finally {
+      lock.writeLock().unlock();
+    }
+  }
+
+  private static void free(ByteBuffer[] buffers, int from, int to) throws IOException {
+    for (int i = from; i < to; i++) {
+      DirectBufferCleaner.free(buffers[i]);
+    }
+  }
+
+  /** Reads up to <code>len</code> bytes at <code>pos</code>, returns the number of bytes read or 0 if they are not mapped. */
+  int read(long pos, byte[] target, int offset, int len) {
+    lock.readLock().lock();
+    try {
+      Chunks current = chunks;
+      if (pos >= current.length) return 0;
+      ByteBuffer chunk = current.buffers[(int) (pos >>> CHUNK_SIZE_POWER)].duplicate();
+      int chunkPos = (int) (pos & ((1L << CHUNK_SIZE_POWER) - 1));
+      int ret = (int) Math.min(Math.min(len, chunk.limit() - chunkPos), current.length - pos);
+      chunk.position(chunkPos);
+      chunk.get(target, offset, ret);
+      return ret;
+    } finally {
+      lock.readLock().unlock();
+    }
+  }
+}
@@ -34,7 +34,10 @@ import java.util.List;
 import java.util.ListIterator;
 import java.util.Locale;
 import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
 import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Future;
 import java.util.concurrent.SynchronousQueue;
 import java.util.concurrent.ThreadPoolExecutor;
@@ -48,6 +51,7 @@ import org.apache.solr.common.SolrInputDocument;
 import org.apache.solr.common.params.ModifiableSolrParams;
 import org.apache.solr.common.params.SolrParams;
 import org.apache.solr.common.util.ExecutorUtil;
+import org.apache.solr.common.util.Hash;
 import org.apache.solr.core.PluginInfo;
 import org.apache.solr.core.SolrCore;
 import org.apache.solr.request.LocalSolrQueryRequest;
@@ -111,6 +115,9 @@ public class UpdateLog implements PluginInfoInitialized {
   public static final int FLAG_GAP = 0x10;
   public static final int OPERATION_MASK = 0x0f;  // mask off flags to get the operation
 
+  // number of commands queued per replay thread before they are applied
+  static final int REPLAY_BATCH_SIZE = 1000;
+
   public static class RecoveryInfo {
     public long positionOfStart;
 
@@ -146,6 +153,7 @@ public class UpdateLog implements PluginInfoInitialized {
   protected final int numDeletesToKeep = 1000;
   protected final int numDeletesByQueryToKeep = 100;
   protected int numRecordsToKeep;
+  protected int numReplayThreads;
   protected int maxNumLogsToKeep;
   protected int numVersionBuckets; // This should only be used to initialize VersionInfo... the actual number of buckets may be rounded up to a power of two.
   protected Long maxVersionFromIndex = null;
@@ -233,6 +241,10 @@ public class UpdateLog implements PluginInfoInitialized {
     return numVersionBuckets;
   }
 
+  public int getNumReplayThreads() {
+    return numReplayThreads;
+  }
+
   protected static int objToInt(Object obj, int def) {
     if (obj != null) {
       return Integer.parseInt(obj.toString());
@@ -251,9 +263,13 @@ public class UpdateLog implements PluginInfoInitialized {
     if (numVersionBuckets <= 0)
       throw new SolrException(SolrException.ErrorCode.SERVER_ERROR,
           "Number of version buckets must be greater than 0!");
+    numReplayThreads = objToInt(info.initArgs.get("numReplayThreads"), 1);
+    if (numReplayThreads <= 0)
+      throw new SolrException(SolrException.ErrorCode.SERVER_ERROR,
+          "Number of replay threads must be greater than 0!");
 
-    log.info("Initializing UpdateLog: dataDir={} defaultSyncLevel={} numRecordsToKeep={} maxNumLogsToKeep={} numVersionBuckets={}",
-        dataDir, defaultSyncLevel, numRecordsToKeep, maxNumLogsToKeep, numVersionBuckets);
+    log.info("Initializing UpdateLog: dataDir={} defaultSyncLevel={} numRecordsToKeep={} maxNumLogsToKeep={} numVersionBuckets={} numReplayThreads={}",
+        dataDir, defaultSyncLevel, numRecordsToKeep, maxNumLogsToKeep, numVersionBuckets, numReplayThreads);
   }
 
   /* Note, when this is called, uhandler is not completely constructed.
@@ -1239,15 +1255,26 @@ public class UpdateLog implements PluginInfoInitialized {
     private SolrQueryRequest req;
     private SolrQueryResponse rsp;
 
+    // applies the adds and deletes by id in parallel when numReplayThreads > 1
+    private ExecutorService replayExecutor;
+    private ReplayPartition[] partitions;
+    private int numPending;  // number of commands queued in partitions
 
-    @Override
-    public void run() {
+    private SolrQueryRequest newReplayRequest() {
       ModifiableSolrParams params = new ModifiableSolrParams();
       params.set(DISTRIB_UPDATE_PARAM, FROMLEADER.toString());
       params.set(DistributedUpdateProcessor.LOG_REPLAY, "true");
-      req = new LocalSolrQueryRequest(uhandler.core, params);
+      return new LocalSolrQueryRequest(uhandler.core, params);
+    }
+
+    @Override
+    public void run() {
+      req = newReplayRequest();
       rsp = new SolrQueryResponse();
       SolrRequestInfo.setRequestInfo(new SolrRequestInfo(req, rsp));    // setting request info will help logging
+      if (numReplayThreads > 1) {
+        replayExecutor = ExecutorUtil.newMDCAwareFixedThreadPool(numReplayThreads, new DefaultSolrThreadFactory("replayExecutor"));
+      }
 
       try {
         for(;;) {
@@ -1285,6 +1312,10 @@ public class UpdateLog implements PluginInfoInitialized {
           log.error("ERROR: didn't get to recover from tlog " + translog);
           translog.decref();
         }
+
+        if (replayExecutor != null) {
+          ExecutorUtil.shutdownAndAwaitTermination(replayExecutor);
+        }
       }
 
       loglog.warn("Log replay finished. recoveryInfo=" + recoveryInfo);
@@ -1306,6 +1337,12 @@ public class UpdateLog implements PluginInfoInitialized {
 
         UpdateRequestProcessorChain processorChain = req.getCore().getUpdateProcessingChain(null);
         UpdateRequestProcessor proc = processorChain.createProcessor(req, rsp);
+        if (replayExecutor != null) {
+          partitions = new ReplayPartition[numReplayThreads];
+          for (int i = 0; i < partitions.length; i++) {
+            partitions[i] = new ReplayPartition(processorChain);
+          }
+        }
 
         long commitVersion = 0;
         int operationAndFlags = 0;
@@ -1313,7 +1350,10 @@ public class UpdateLog implements PluginInfoInitialized {
 
         for (; ; ) {
           Object o = null;
-          if (cancelApplyBufferUpdate) break;
+          if (cancelApplyBufferUpdate) {
+            applyPending();
+            break;
+          }
           try {
             if (testing_logReplayHook != null) testing_logReplayHook.run();
             if (nextCount++ % 1000 == 0) {
@@ -1339,6 +1379,9 @@ public class UpdateLog implements PluginInfoInitialized {
                 // after we've finished this recovery.
                 // NOTE: our own updates won't be blocked since the thread holding a write lock can
                 // lock a read lock.
+                // The partitions are drained first since their threads would be blocked, and the
+                // few updates that snuck in are then applied on this thread.
+                applyPending();
                 versionInfo.blockUpdates();
                 finishing = true;
                 o = tlogReader.next();
@@ -1353,6 +1396,11 @@ public class UpdateLog implements PluginInfoInitialized {
                 // versionInfo.unblockUpdates();
               }
             }
+          } catch (SolrException e) {
+            if (e.code() == ErrorCode.SERVICE_UNAVAILABLE.code) {
+              throw e;
+            }
+            SolrException.log(log, e);
           } catch (Exception e) {
             SolrException.log(log, e);
           }
@@ -1380,7 +1428,11 @@ public class UpdateLog implements PluginInfoInitialized {
                 cmd.setFlags(UpdateCommand.REPLAY | UpdateCommand.IGNORE_AUTOCOMMIT);
                 if (debug) log.debug("add " + cmd);
 
-                proc.processAdd(cmd);
+                if (partitions != null && !finishing) {
+                  queue(cmd, cmd.getIndexedId());
+                } else {
+                  proc.processAdd(cmd);
+                }
                 break;
               }
               case UpdateLog.DELETE: {
@@ -1391,7 +1443,11 @@ public class UpdateLog implements PluginInfoInitialized {
                 cmd.setVersion(version);
                 cmd.setFlags(UpdateCommand.REPLAY | UpdateCommand.IGNORE_AUTOCOMMIT);
                 if (debug) log.debug("delete " + cmd);
-                proc.processDelete(cmd);
+                if (partitions != null && !finishing) {
+                  queue(cmd, cmd.getIndexedId());
+                } else {
+                  proc.processDelete(cmd);
+                }
                 break;
               }
 
@@ -1403,6 +1459,7 @@ public class UpdateLog implements PluginInfoInitialized {
                 cmd.setVersion(version);
                 cmd.setFlags(UpdateCommand.REPLAY | UpdateCommand.IGNORE_AUTOCOMMIT);
                 if (debug) log.debug("deleteByQuery " + cmd);
+                applyPending();  // may delete documents added before it
                 proc.processDelete(cmd);
                 break;
               }
@@ -1443,6 +1500,8 @@ public class UpdateLog implements PluginInfoInitialized {
           assert TestInjection.injectUpdateLogReplayRandomPause();
         }
 
+        applyPending();
+
         CommitUpdateCommand cmd = new CommitUpdateCommand(req, false);
         cmd.setVersion(commitVersion);
         cmd.softCommit = false;
@@ -1467,16 +1526,129 @@ public class UpdateLog implements PluginInfoInitialized {
 
         try {
           proc.finish();
+          if (partitions != null) {
+            for (ReplayPartition partition : partitions) {
+              partition.proc.finish();
+            }
+          }
         } catch (IOException ex) {
           recoveryInfo.errors++;
           loglog.error("Replay exception: finish()", ex);
         }
 
       } finally {
+        if (partitions != null) {
+          for (ReplayPartition partition : partitions) {
+            partition.req.close();
+          }
+          partitions = null;
+          numPending = 0;
+        }
         if (tlogReader != null) tlogReader.close();
         translog.decref();
       }
     }
+
+    /** Queues an add or delete by id to the partition that owns the id, so that updates of an id are applied in order. */
+    private void queue(UpdateCommand cmd, BytesRef indexedId) {
+      int hash = Hash.murmurhash3_x86_32(indexedId.bytes, indexedId.offset, indexedId.length, 0);
+      ReplayPartition partition = partitions[(hash & 0x7fffffff) % partitions.length];
+      cmd.setReq(partition.req);
+      partition.commands.add(cmd);
+      if (++numPending >= REPLAY_BATCH_SIZE * partitions.length) {
+        applyPending();
+      }
+    }
+
+    /** Applies the queued commands of all partitions in parallel and waits for them, as a barrier
+     * before any operation that depends on all previous updates. */
+    private void applyPending() {
+      if (numPending == 0) return;
+      numPending = 0;
+
+      List<Future<Integer>> futures = new ArrayList<>(partitions.length);
+      for (ReplayPartition partition : partitions) {
+        if (!partition.commands.isEmpty()) {
+          futures.add(replayExecutor.submit(partition));
+        }
+      }
+      // wait for all of them, even if one failed, since partitions must not be applied concurrently
+      SolrException exc = null;
+      boolean interrupted = false;
+      for (Future<Integer> future : futures) {
+        for (;;) {
+          try {
+            recoveryInfo.errors += future.get();
+            break;
+          } catch (InterruptedException e) {
+            interrupted = true;
+          } catch (ExecutionException e) {
+            if (exc == null) {
+              exc = e.getCause() instanceof SolrException ? (SolrException) e.getCause()
+                  : new SolrException(ErrorCode.SERVER_ERROR, e.getCause());
+            }
+            break;
+          }
+        }
+      }
+      if (interrupted) {
+        Thread.currentThread().interrupt();
+      }
+      if (exc != null) {
+        throw exc;
+      }
+    }
+
+    /** Applies the adds and deletes by id of the ids that hash to it, in the order of the log. */
+    private class ReplayPartition implements Callable<Integer> {
+      final SolrQueryRequest req = newReplayRequest();
+      final SolrQueryResponse rsp = new SolrQueryResponse();
+      final UpdateRequestProcessor proc;
+      final List<UpdateCommand> commands = new ArrayList<>();
+
+      ReplayPartition(UpdateRequestProcessorChain processorChain) {
+        proc = processorChain.createProcessor(req, rsp);
+      }
+
+      /** Returns the number of commands that failed. */
+      @Override
+      public Integer call() {
+        SolrRequestInfo.setRequestInfo(new SolrRequestInfo(req, rsp));
+        int errors = 0;
+        try {
+          for (UpdateCommand cmd : commands) {
+            try {
+              if (cmd instanceof AddUpdateCommand) {
+                proc.processAdd((AddUpdateCommand) cmd);
+              } else {
+                proc.processDelete((DeleteUpdateCommand) cmd);
+              }
+
+              if (rsp.getException() != null) {
+                loglog.error("REPLAY_ERR: Exception replaying log", rsp.getException());
+                throw rsp.getException();
+              }
+            } catch (IOException ex) {
+              errors++;
+              loglog.warn("REYPLAY_ERR: IOException reading log", ex);
+            } catch (SolrException ex) {
+              if (ex.code() == ErrorCode.SERVICE_UNAVAILABLE.code) {
+                throw ex;
+              }
+              errors++;
+              loglog.warn("REYPLAY_ERR: IOException reading log", ex);
+            } catch (Exception ex) {
+              errors++;
+              loglog.warn("REPLAY_ERR: Exception replaying log", ex);
+            }
+          }
+        } finally {
+          commands.clear();
+          SolrRequestInfo.clearRequestInfo();
+        }
+        return errors;
+      }
+    }
   }
 
   public void cancelApplyBufferedUpdates() {
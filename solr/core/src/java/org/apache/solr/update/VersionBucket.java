@@ -16,17 +16,44 @@
  */
 package org.apache.solr.update;
 
+import java.util.concurrent.atomic.AtomicLongFieldUpdater;
+
+import org.apache.lucene.util.BytesRef;
+
 // TODO: make inner?
 // TODO: store the highest possible in the index on a commit (but how to not block adds?)
 // TODO: could also store highest possible in the transaction log after a commit.
 // Or on a new index, just scan "version" for the max?
-/** @lucene.internal */
+/**
+ * The highest version seen for the ids that hash to this bucket, which lets replicas detect that
+ * updates were not reordered without looking up the version of each id.
+ * Updates are not synchronized on buckets anymore, see {@link VersionInfo#lockId(BytesRef)}, so
+ * the highest version is only ever raised atomically.
+ * @lucene.internal
+ */
 public class VersionBucket {
-  public long highest;
+  private static final AtomicLongFieldUpdater<VersionBucket> HIGHEST =
+      AtomicLongFieldUpdater.newUpdater(VersionBucket.class, "highest");
+
+  public volatile long highest;
 
   public void updateHighest(long val) {
-    if (highest != 0) {
-      highest = Math.max(highest, Math.abs(val));
+    val = Math.abs(val);
+    for (;;) {
+      long current = highest;
+      if (current == 0 || current >= val || HIGHEST.compareAndSet(this, current, val)) {
+        return;
+      }
+    }
+  }
+
+  /** Raises the highest version to <code>val</code>, even if it was not known yet. */
+  public void seedHighest(long val) {
+    for (;;) {
+      long current = highest;
+      if (current >= val || HIGHEST.compareAndSet(this, current, val)) {
+        return;
+      }
     }
   }
 }
@@ -19,7 +19,9 @@ package org.apache.solr.update;
 import java.io.IOException;
 import java.lang.invoke.MethodHandles;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantLock;
 import java.util.concurrent.locks.ReentrantReadWriteLock;
 
 import org.apache.lucene.index.LeafReader;
@@ -52,6 +54,18 @@ public class VersionInfo {
   private SchemaField versionField;
   private SchemaField idField;
   final ReadWriteLock lock = new ReentrantReadWriteLock(true);
+  // locks of the ids that are being updated, removed once nobody holds or waits for them
+  private final ConcurrentHashMap<BytesRef,IdLock> idLocks = new ConcurrentHashMap<>();
+
+  /** The lock of an id while it is being updated, see {@link #lockId(BytesRef)}. */
+  public static final class IdLock extends ReentrantLock {
+    private final BytesRef id;
+    private int users;  // only accessed in atomic operations on the idLocks map
+
+    private IdLock(BytesRef id) {
+      this.id = id;
+    }
+  }
 
   /**
    * Gets and returns the {@link #VERSION_FIELD} from the specified 
@@ -189,6 +203,32 @@ public class VersionInfo {
     return buckets[slot];
   }
 
+  /**
+   * Locks an id while an update of it is assigned a version and applied, so that updates of the same id
+   * are applied in the order of their versions and real-time get sees them in that order. Updates of
+   * different ids never wait for each other, unlike when they were synchronized on their version bucket.
+   * The returned lock must be released with {@link #unlockId(IdLock)}.
+   */
+  public IdLock lockId(BytesRef idBytes) {
+    IdLock idLock = idLocks.compute(BytesRef.deepCopyOf(idBytes), (id, current) -> {
+      IdLock l = current == null ? new IdLock(id) : current;
+      l.users++;
+      return l;
+    });
+    idLock.lock();
+    return idLock;
+  }
+
+  public void unlockId(IdLock idLock) {
+    idLock.unlock();
+    idLocks.computeIfPresent(idLock.id, (id, current) -> --current.users == 0 ? null : current);
+  }
+
+  /** Returns the number of ids that are currently locked or waited for, for testing. */
+  int numLockedIds() {
+    return idLocks.size();
+  }
+
   public Long lookupVersion(BytesRef idBytes) {
     return ulog.lookupVersion(idBytes);
   }
@@ -258,10 +298,7 @@ public class VersionInfo {
   public void seedBucketsWithHighestVersion(long highestVersion) {
     for (int i=0; i<buckets.length; i++) {
       // should not happen, but in case other threads are calling updateHighest on the version bucket
-      synchronized (buckets[i]) {
-        if (buckets[i].highest < highestVersion)
-          buckets[i].highest = highestVersion;
-      }
+      buckets[i].seedHighest(highestVersion);
     }
   }
 }
@@ -934,12 +934,12 @@ public class DistributedUpdateProcessor extends UpdateRequestProcessor {
   }
 
  
-  // must be synchronized by bucket
+  // must be called while holding the lock of the id
   private void doLocalAdd(AddUpdateCommand cmd) throws IOException {
     super.processAdd(cmd);
   }
 
-  // must be synchronized by bucket
+  // must be called while holding the lock of the id
   private void doLocalDelete(DeleteUpdateCommand cmd) throws IOException {
     super.processDelete(cmd);
   }
@@ -996,109 +996,109 @@ public class DistributedUpdateProcessor extends UpdateRequestProcessor {
     VersionBucket bucket = vinfo.bucket(bucketHash);
 
     vinfo.lockForUpdate();
+    VersionInfo.IdLock idLock = vinfo.lockId(idBytes);
     try {
-      synchronized (bucket) {
-        // we obtain the version when synchronized and then do the add so we can ensure that
-        // if version1 < version2 then version1 is actually added before version2.
+      // we obtain the version when holding the lock of the id and then do the add so we can ensure that
+      // if version1 < version2 then version1 is actually added before version2.
 
-        // even if we don't store the version field, synchronizing on the bucket
-        // will enable us to know what version happened first, and thus enable
-        // realtime-get to work reliably.
-        // TODO: if versions aren't stored, do we need to set on the cmd anyway for some reason?
-        // there may be other reasons in the future for a version on the commands
+      // even if we don't store the version field, locking the id
+      // will enable us to know what version happened first, and thus enable
+      // realtime-get to work reliably.
+      // TODO: if versions aren't stored, do we need to set on the cmd anyway for some reason?
+      // there may be other reasons in the future for a version on the commands
 
-        boolean checkDeleteByQueries = false;
+      boolean checkDeleteByQueries = false;
 
-        if (versionsStored) {
+      if (versionsStored) {
 
-          long bucketVersion = bucket.highest;
+        long bucketVersion = bucket.highest;
 
-          if (leaderLogic) {
+        if (leaderLogic) {
 
-            if (forwardedFromCollection && ulog.getState() == UpdateLog.State.ACTIVE) {
-              // forwarded from a collection but we are not buffering so strip original version and apply our own
-              // see SOLR-5308
-              log.info("Removing version field from doc: " + cmd.getPrintableId());
-              cmd.solrDoc.remove(VERSION_FIELD);
-              versionOnUpdate = 0;
-            }
+          if (forwardedFromCollection && ulog.getState() == UpdateLog.State.ACTIVE) {
+            // forwarded from a collection but we are not buffering so strip original version and apply our own
+            // see SOLR-5308
+            log.info("Removing version field from doc: " + cmd.getPrintableId());
+            cmd.solrDoc.remove(VERSION_FIELD);
+            versionOnUpdate = 0;
+          }
 
-            boolean updated = getUpdatedDocument(cmd, versionOnUpdate);
+          boolean updated = getUpdatedDocument(cmd, versionOnUpdate);
 
-            // leaders can also be in buffering state during "migrate" API call, see SOLR-5308
-            if (forwardedFromCollection && ulog.getState() != UpdateLog.State.ACTIVE
-                && (cmd.getFlags() & UpdateCommand.REPLAY) == 0) {
-              // we're not in an active state, and this update isn't from a replay, so buffer it.
-              log.info("Leader logic applied but update log is buffering: " + cmd.getPrintableId());
-              cmd.setFlags(cmd.getFlags() | UpdateCommand.BUFFERING);
-              ulog.add(cmd);
-              return true;
-            }
+          // leaders can also be in buffering state during "migrate" API call, see SOLR-5308
+          if (forwardedFromCollection && ulog.getState() != UpdateLog.State.ACTIVE
+              && (cmd.getFlags() & UpdateCommand.REPLAY) == 0) {
+            // we're not in an active state, and this update isn't from a replay, so buffer it.
+            log.info("Leader logic applied but update log is buffering: " + cmd.getPrintableId());
+            cmd.setFlags(cmd.getFlags() | UpdateCommand.BUFFERING);
+            ulog.add(cmd);
+            return true;
+          }
 
-            if (versionOnUpdate != 0) {
-              Long lastVersion = vinfo.lookupVersion(cmd.getIndexedId());
-              long foundVersion = lastVersion == null ? -1 : lastVersion;
-              if ( versionOnUpdate == foundVersion || (versionOnUpdate < 0 && foundVersion < 0) || (versionOnUpdate==1 && foundVersion > 0) ) {
-                // we're ok if versions match, or if both are negative (all missing docs are equal), or if cmd
-                // specified it must exist (versionOnUpdate==1) and it does.
-              } else {
-                throw new SolrException(ErrorCode.CONFLICT, "version conflict for " + cmd.getPrintableId() + " expected=" + versionOnUpdate + " actual=" + foundVersion);
-              }
+          if (versionOnUpdate != 0) {
+            Long lastVersion = vinfo.lookupVersion(cmd.getIndexedId());
+            long foundVersion = lastVersion == null ? -1 : lastVersion;
+            if ( versionOnUpdate == foundVersion || (versionOnUpdate < 0 && foundVersion < 0) || (versionOnUpdate==1 && foundVersion > 0) ) {
+              // we're ok if versions match, or if both are negative (all missing docs are equal), or if cmd
+              // specified it must exist (versionOnUpdate==1) and it does.
+            } else {
+              throw new SolrException(ErrorCode.CONFLICT, "version conflict for " + cmd.getPrintableId() + " expected=" + versionOnUpdate + " actual=" + foundVersion);
             }
+          }
 
 
-            long version = vinfo.getNewClock();
-            cmd.setVersion(version);
-            cmd.getSolrInputDocument().setField(VersionInfo.VERSION_FIELD, version);
-            bucket.updateHighest(version);
-          } else {
-            // The leader forwarded us this update.
-            cmd.setVersion(versionOnUpdate);
+          long version = vinfo.getNewClock();
+          cmd.setVersion(version);
+          cmd.getSolrInputDocument().setField(VersionInfo.VERSION_FIELD, version);
+          bucket.updateHighest(version);
+        } else {
+          // The leader forwarded us this update.
+          cmd.setVersion(versionOnUpdate);
+
+          if (ulog.getState() != UpdateLog.State.ACTIVE && (cmd.getFlags() & UpdateCommand.REPLAY) == 0) {
+            // we're not in an active state, and this update isn't from a replay, so buffer it.
+            cmd.setFlags(cmd.getFlags() | UpdateCommand.BUFFERING);
+            ulog.add(cmd);
+            return true;
+          }
 
-            if (ulog.getState() != UpdateLog.State.ACTIVE && (cmd.getFlags() & UpdateCommand.REPLAY) == 0) {
-              // we're not in an active state, and this update isn't from a replay, so buffer it.
-              cmd.setFlags(cmd.getFlags() | UpdateCommand.BUFFERING);
-              ulog.add(cmd);
+          // if we aren't the leader, then we need to check that updates were not re-ordered
+          if (bucketVersion != 0 && bucketVersion < versionOnUpdate) {
+            // we're OK... this update has a version higher than anything we've seen
+            // in this bucket so far, so we know that no reordering has yet occurred.
+            bucket.updateHighest(versionOnUpdate);
+          } else {
+            // there have been updates higher than the current update.  we need to check
+            // the specific version for this id.
+            Long lastVersion = vinfo.lookupVersion(cmd.getIndexedId());
+            if (lastVersion != null && Math.abs(lastVersion) >= versionOnUpdate) {
+              // This update is a repeat, or was reordered.  We need to drop this update.
+              log.debug("Dropping add update due to version {}", idBytes.utf8ToString());
               return true;
             }
 
-            // if we aren't the leader, then we need to check that updates were not re-ordered
-            if (bucketVersion != 0 && bucketVersion < versionOnUpdate) {
-              // we're OK... this update has a version higher than anything we've seen
-              // in this bucket so far, so we know that no reordering has yet occurred.
-              bucket.updateHighest(versionOnUpdate);
-            } else {
-              // there have been updates higher than the current update.  we need to check
-              // the specific version for this id.
-              Long lastVersion = vinfo.lookupVersion(cmd.getIndexedId());
-              if (lastVersion != null && Math.abs(lastVersion) >= versionOnUpdate) {
-                // This update is a repeat, or was reordered.  We need to drop this update.
-                log.debug("Dropping add update due to version {}", idBytes.utf8ToString());
-                return true;
-              }
-
-              // also need to re-apply newer deleteByQuery commands
-              checkDeleteByQueries = true;
-            }
+            // also need to re-apply newer deleteByQuery commands
+            checkDeleteByQueries = true;
           }
         }
-        
-        boolean willDistrib = isLeader && nodes != null && nodes.size() > 0;
-        
-        SolrInputDocument clonedDoc = null;
-        if (willDistrib) {
-          clonedDoc = cmd.solrDoc.deepCopy();
-        }
+      }
+      
+      boolean willDistrib = isLeader && nodes != null && nodes.size() > 0;
+      
+      SolrInputDocument clonedDoc = null;
+      if (willDistrib) {
+        clonedDoc = cmd.solrDoc.deepCopy();
+      }
 
-        // TODO: possibly set checkDeleteByQueries as a flag on the command?
-        doLocalAdd(cmd);
-        
-        if (willDistrib) {
-          cmd.solrDoc = clonedDoc;
-        }
+      // TODO: possibly set checkDeleteByQueries as a flag on the command?
+      doLocalAdd(cmd);
+      
+      if (willDistrib) {
+        cmd.solrDoc = clonedDoc;
+      }
 
-      }  // end synchronized (bucket)
     } finally {
+      vinfo.unlockId(idLock);
       vinfo.unlockForUpdate();
     }
     return false;
@@ -1525,78 +1525,78 @@ public class DistributedUpdateProcessor extends UpdateRequestProcessor {
     VersionBucket bucket = vinfo.bucket(bucketHash);
 
     vinfo.lockForUpdate();
+    VersionInfo.IdLock idLock = vinfo.lockId(idBytes);
     try {
 
-      synchronized (bucket) {
-        if (versionsStored) {
-          long bucketVersion = bucket.highest;
+      if (versionsStored) {
+        long bucketVersion = bucket.highest;
 
-          if (leaderLogic) {
+        if (leaderLogic) {
 
-            if (forwardedFromCollection && ulog.getState() == UpdateLog.State.ACTIVE) {
-              // forwarded from a collection but we are not buffering so strip original version and apply our own
-              // see SOLR-5308
-              log.info("Removing version field from doc: " + cmd.getId());
-              versionOnUpdate = signedVersionOnUpdate = 0;
-            }
+          if (forwardedFromCollection && ulog.getState() == UpdateLog.State.ACTIVE) {
+            // forwarded from a collection but we are not buffering so strip original version and apply our own
+            // see SOLR-5308
+            log.info("Removing version field from doc: " + cmd.getId());
+            versionOnUpdate = signedVersionOnUpdate = 0;
+          }
 
-            // leaders can also be in buffering state during "migrate" API call, see SOLR-5308
-            if (forwardedFromCollection && ulog.getState() != UpdateLog.State.ACTIVE
-                && (cmd.getFlags() & UpdateCommand.REPLAY) == 0) {
-              // we're not in an active state, and this update isn't from a replay, so buffer it.
-              log.info("Leader logic applied but update log is buffering: " + cmd.getId());
-              cmd.setFlags(cmd.getFlags() | UpdateCommand.BUFFERING);
-              ulog.delete(cmd);
-              return true;
-            }
+          // leaders can also be in buffering state during "migrate" API call, see SOLR-5308
+          if (forwardedFromCollection && ulog.getState() != UpdateLog.State.ACTIVE
+              && (cmd.getFlags() & UpdateCommand.REPLAY) == 0) {
+            // we're not in an active state, and this update isn't from a replay, so buffer it.
+            log.info("Leader logic applied but update log is buffering: " + cmd.getId());
+            cmd.setFlags(cmd.getFlags() | UpdateCommand.BUFFERING);
+            ulog.delete(cmd);
+            return true;
+          }
 
-            if (signedVersionOnUpdate != 0) {
-              Long lastVersion = vinfo.lookupVersion(cmd.getIndexedId());
-              long foundVersion = lastVersion == null ? -1 : lastVersion;
-              if ( (signedVersionOnUpdate == foundVersion) || (signedVersionOnUpdate < 0 && foundVersion < 0) || (signedVersionOnUpdate == 1 && foundVersion > 0) ) {
-                // we're ok if versions match, or if both are negative (all missing docs are equal), or if cmd
-                // specified it must exist (versionOnUpdate==1) and it does.
-              } else {
-                throw new SolrException(ErrorCode.CONFLICT, "version conflict for " + cmd.getId() + " expected=" + signedVersionOnUpdate + " actual=" + foundVersion);
-              }
+          if (signedVersionOnUpdate != 0) {
+            Long lastVersion = vinfo.lookupVersion(cmd.getIndexedId());
+            long foundVersion = lastVersion == null ? -1 : lastVersion;
+            if ( (signedVersionOnUpdate == foundVersion) || (signedVersionOnUpdate < 0 && foundVersion < 0) || (signedVersionOnUpdate == 1 && foundVersion > 0) ) {
+              // we're ok if versions match, or if both are negative (all missing docs are equal), or if cmd
+              // specified it must exist (versionOnUpdate==1) and it does.
+            } else {
+              throw new SolrException(ErrorCode.CONFLICT, "version conflict for " + cmd.getId() + " expected=" + signedVersionOnUpdate + " actual=" + foundVersion);
             }
+          }
 
-            long version = vinfo.getNewClock();
-            cmd.setVersion(-version);
-            bucket.updateHighest(version);
-          } else {
-            cmd.setVersion(-versionOnUpdate);
+          long version = vinfo.getNewClock();
+          cmd.setVersion(-version);
+          bucket.updateHighest(version);
+        } else {
+          cmd.setVersion(-versionOnUpdate);
 
-            if (ulog.getState() != UpdateLog.State.ACTIVE && (cmd.getFlags() & UpdateCommand.REPLAY) == 0) {
-              // we're not in an active state, and this update isn't from a replay, so buffer it.
-              cmd.setFlags(cmd.getFlags() | UpdateCommand.BUFFERING);
-              ulog.delete(cmd);
-              return true;
-            }
+          if (ulog.getState() != UpdateLog.State.ACTIVE && (cmd.getFlags() & UpdateCommand.REPLAY) == 0) {
+            // we're not in an active state, and this update isn't from a replay, so buffer it.
+            cmd.setFlags(cmd.getFlags() | UpdateCommand.BUFFERING);
+            ulog.delete(cmd);
+            return true;
+          }
 
-            // if we aren't the leader, then we need to check that updates were not re-ordered
-            if (bucketVersion != 0 && bucketVersion < versionOnUpdate) {
-              // we're OK... this update has a version higher than anything we've seen
-              // in this bucket so far, so we know that no reordering has yet occured.
-              bucket.updateHighest(versionOnUpdate);
-            } else {
-              // there have been updates higher than the current update.  we need to check
-              // the specific version for this id.
-              Long lastVersion = vinfo.lookupVersion(cmd.getIndexedId());
-              if (lastVersion != null && Math.abs(lastVersion) >= versionOnUpdate) {
-                // This update is a repeat, or was reordered.  We need to drop this update.
-                log.debug("Dropping delete update due to version {}", idBytes.utf8ToString());
-                return true;
-              }
+          // if we aren't the leader, then we need to check that updates were not re-ordered
+          if (bucketVersion != 0 && bucketVersion < versionOnUpdate) {
+            // we're OK... this update has a version higher than anything we've seen
+            // in this bucket so far, so we know that no reordering has yet occured.
+            bucket.updateHighest(versionOnUpdate);
+          } else {
+            // there have been updates higher than the current update.  we need to check
+            // the specific version for this id.
+            Long lastVersion = vinfo.lookupVersion(cmd.getIndexedId());
+            if (lastVersion != null && Math.abs(lastVersion) >= versionOnUpdate) {
+              // This update is a repeat, or was reordered.  We need to drop this update.
+              log.debug("Dropping delete update due to version {}", idBytes.utf8ToString());
+              return true;
             }
           }
         }
+      }
 
-        doLocalDelete(cmd);
-        return false;
-      }  // end synchronized (bucket)
+      doLocalDelete(cmd);
+      return false;
 
     } finally {
+      vinfo.unlockId(idLock);
       vinfo.unlockForUpdate();
     }
   }
@@ -15,14 +15,19 @@
  * limitations under the License.
  */
 package org.apache.solr.util;
+import org.apache.lucene.util.Accountable;
 import org.apache.lucene.util.PriorityQueue;
+import org.apache.lucene.util.RamUsageEstimator;
 import org.apache.solr.common.util.Cache;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collection;
 import java.util.Collections;
 import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.TreeSet;
 import java.util.concurrent.ConcurrentHashMap;
@@ -41,13 +46,31 @@ import java.lang.ref.WeakReference;
  * strategy. Instead it strives to remove least recently used items but when the initial
  * cleanup does not remove enough items to reach the 'acceptableWaterMark' limit, it can
  * remove more items forcefully regardless of access order.
+ * <p>
+ * The cache may also be bounded by the memory used by its entries, as reported by
+ * {@link Accountable#ramBytesUsed()}. When entries use more than the 'ramUpperWatermark',
+ * the least recently used ones are evicted until they use less than the 'ramLowerWatermark'.
+ * <p>
+ * Optionally, new entries are only admitted into a full cache if a {@link FrequencySketch}
+ * estimates that their keys are looked up at least as often as the key of the next entry
+ * to be evicted (TinyLFU admission). This protects popular entries from one-off lookups.
  *
  *
  * @since solr 1.4
  */
-public class ConcurrentLRUCache<K,V> implements Cache<K,V> {
+public class ConcurrentLRUCache<K,V> implements Cache<K,V>, Accountable {
   private static final Logger log = LoggerFactory.getLogger(MethodHandles.lookup().lookupClass());
 
+  private static final long BASE_RAM_BYTES_USED = RamUsageEstimator.shallowSizeOfInstance(ConcurrentLRUCache.class);
+
+  // memory usage of keys that are not Accountable, a simple term query
+  public static final long DEFAULT_RAM_BYTES_USED = 192;
+
+  public static final long HASHTABLE_RAM_BYTES_PER_ENTRY =
+      RamUsageEstimator.shallowSizeOfInstance(CacheEntry.class)
+      + 2 * RamUsageEstimator.NUM_BYTES_OBJECT_REF // key + value
+          * 2; // hash tables need to be oversized to avoid collisions, assume 2x capacity
+
   private final ConcurrentHashMap<Object, CacheEntry<K,V>> map;
   private final int upperWaterMark, lowerWaterMark;
   private final ReentrantLock markAndSweepLock = new ReentrantLock(true);
@@ -60,17 +83,42 @@ public class ConcurrentLRUCache<K,V> implements Cache<K,V> {
   private final EvictionListener<K,V> evictionListener;
   private CleanupThread cleanupThread ;
 
+  private final long ramUpperWatermark, ramLowerWatermark;
+  private final AtomicLong ramBytes = new AtomicLong();
+  private final FrequencySketch sketch;
+  // the least recently used entry after the last cleanup, that new entries compete with for admission
+  private volatile CacheEntry<K,V> victim;
+
   public ConcurrentLRUCache(int upperWaterMark, final int lowerWaterMark, int acceptableWatermark,
                             int initialSize, boolean runCleanupThread, boolean runNewThreadForCleanup,
                             EvictionListener<K,V> evictionListener) {
+    this(upperWaterMark, lowerWaterMark, acceptableWatermark, initialSize, Long.MAX_VALUE, Long.MAX_VALUE,
+        false, runCleanupThread, runNewThreadForCleanup, evictionListener);
+  }
+
+  /**
+   * @param ramUpperWatermark evict entries once they use more memory than this, {@link Long#MAX_VALUE} to disable
+   * @param ramLowerWatermark the memory usage to bring entries down to when evicting by memory usage
+   * @param tinyLfuAdmission whether to only admit new entries into a full cache if their keys are popular enough
+   */
+  public ConcurrentLRUCache(int upperWaterMark, final int lowerWaterMark, int acceptableWatermark,
+                            int initialSize, long ramUpperWatermark, long ramLowerWatermark, boolean tinyLfuAdmission,
+                            boolean runCleanupThread, boolean runNewThreadForCleanup,
+                            EvictionListener<K,V> evictionListener) {
     if (upperWaterMark < 1) throw new IllegalArgumentException("upperWaterMark must be > 0");
     if (lowerWaterMark >= upperWaterMark)
       throw new IllegalArgumentException("lowerWaterMark must be  < upperWaterMark");
+    if (ramUpperWatermark < 1) throw new IllegalArgumentException("ramUpperWatermark must be > 0");
+    if (ramLowerWatermark >= ramUpperWatermark && ramUpperWatermark != Long.MAX_VALUE)
+      throw new IllegalArgumentException("ramLowerWatermark must be < ramUpperWatermark");
     map = new ConcurrentHashMap<>(initialSize);
     newThreadForCleanup = runNewThreadForCleanup;
     this.upperWaterMark = upperWaterMark;
     this.lowerWaterMark = lowerWaterMark;
     this.acceptableWaterMark = acceptableWatermark;
+    this.ramUpperWatermark = ramUpperWatermark;
+    this.ramLowerWatermark = ramLowerWatermark;
+    this.sketch = tinyLfuAdmission ? new FrequencySketch(upperWaterMark == Integer.MAX_VALUE ? initialSize : upperWaterMark) : null;
     this.evictionListener = evictionListener;
     if (runCleanupThread) {
       cleanupThread = new CleanupThread(this);
@@ -89,6 +137,7 @@ public class ConcurrentLRUCache<K,V> implements Cache<K,V> {
 
   @Override
   public V get(K key) {
+    if (sketch != null && islive) sketch.increment(key);
     CacheEntry<K,V> e = map.get(key);
     if (e == null) {
       if (islive) stats.missCounter.increment();
@@ -103,6 +152,7 @@ public class ConcurrentLRUCache<K,V> implements Cache<K,V> {
     CacheEntry<K,V> cacheEntry = map.remove(key);
     if (cacheEntry != null) {
       stats.size.decrementAndGet();
+      ramBytes.addAndGet(-cacheEntry.ramBytesUsed);
       return cacheEntry.value;
     }
     return null;
@@ -111,7 +161,12 @@ public class ConcurrentLRUCache<K,V> implements Cache<K,V> {
   @Override
   public V put(K key, V val) {
     if (val == null) return null;
-    CacheEntry<K,V> e = new CacheEntry<>(key, val, stats.accessCounter.incrementAndGet());
+    long ramBytesUsed = ramUpperWatermark == Long.MAX_VALUE ? 0 : ramBytesUsed(key, val);
+    if (sketch != null && islive && !admit(key, ramBytesUsed)) {
+      stats.rejectedCounter.increment();
+      return null;
+    }
+    CacheEntry<K,V> e = new CacheEntry<>(key, val, stats.accessCounter.incrementAndGet(), ramBytesUsed);
     CacheEntry<K,V> oldCacheEntry = map.put(key, e);
     int currentSize;
     if (oldCacheEntry == null) {
@@ -119,6 +174,7 @@ public class ConcurrentLRUCache<K,V> implements Cache<K,V> {
     } else {
       currentSize = stats.size.get();
     }
+    long currentRamBytes = ramBytes.addAndGet(oldCacheEntry == null ? ramBytesUsed : ramBytesUsed - oldCacheEntry.ramBytesUsed);
     if (islive) {
       stats.putCounter.increment();
     } else {
@@ -135,7 +191,7 @@ public class ConcurrentLRUCache<K,V> implements Cache<K,V> {
     //
     // Thread safety note: isCleaning read is piggybacked (comes after) other volatile reads
     // in this method.
-    if (currentSize > upperWaterMark && !isCleaning) {
+    if ((currentSize > upperWaterMark || currentRamBytes > ramUpperWatermark) && !isCleaning) {
       if (newThreadForCleanup) {
         new Thread(this::markAndSweep).start();
       } else if (cleanupThread != null){
@@ -147,6 +203,99 @@ public class ConcurrentLRUCache<K,V> implements Cache<K,V> {
     return oldCacheEntry == null ? null : oldCacheEntry.value;
   }
 
+  /**
+   * Returns whether a new entry should be added: always while the cache has room for it, otherwise
+   * only if its key is estimated to be accessed at least as often as the key of the next victim.
+   */
+  private boolean admit(K key, long ramBytesUsed) {
+    if (stats.size.get() < upperWaterMark && ramBytes.get() + ramBytesUsed <= ramUpperWatermark) {
+      return true;
+    }
+    CacheEntry<K,V> victim = this.victim;
+    if (victim == null || map.get(victim.key) != victim || map.containsKey(key)) {
+      return true;
+    }
+    return sketch.frequency(key) >= sketch.frequency(victim.key);
+  }
+
+  private static long ramBytesUsed(Object key, Object value) {
+    long keySize = key instanceof Accountable ? ((Accountable) key).ramBytesUsed() : DEFAULT_RAM_BYTES_USED;
+    long valueSize = value instanceof Accountable ? ((Accountable) value).ramBytesUsed() : DEFAULT_RAM_BYTES_USED;
+    return keySize + valueSize + HASHTABLE_RAM_BYTES_PER_ENTRY;
+  }
+
+  /**
+   * Removes items from the cache to bring the number of entries and their memory usage
+   * back under the configured limits.
+   */
+  private void markAndSweep() {
+    if (!markAndSweepLock.tryLock()) return;
+    try {
+      long oldestEntry = this.oldestEntry;
+      isCleaning = true;
+      this.oldestEntry = oldestEntry;     // volatile write to make isCleaning visible
+
+      if (stats.size.get() > upperWaterMark) {
+        markAndSweepByCacheSize();
+      }
+      if (ramBytes.get() > ramUpperWatermark) {
+        markAndSweepByRamSize();
+      } else if (sketch != null) {
+        victim = leastRecentlyUsed();
+      }
+    } finally {
+      isCleaning = false;  // set before markAndSweep.unlock() for visibility
+      markAndSweepLock.unlock();
+    }
+  }
+
+  /**
+   * Evicts the least recently used items until the memory used by the
+   * remaining ones is under 'ramLowerWatermark'.
+   */
+  private void markAndSweepByRamSize() {
+    final long bytesToFree = ramBytes.get() - ramLowerWatermark;
+    if (bytesToFree <= 0) return;
+    // only keep the oldest entries that are needed to free enough memory, with the most
+    // recently accessed one on top, instead of sorting all entries
+    java.util.PriorityQueue<CacheEntry<K,V>> oldest = new java.util.PriorityQueue<>();
+    long oldestBytes = 0;
+    CacheEntry<K,V> next = null;  // the least recently used entry that is kept
+    for (CacheEntry<K,V> ce : map.values()) {
+      // set lastAccessedCopy to avoid more volatile reads while comparing
+      ce.lastAccessedCopy = ce.lastAccessed;
+      oldest.add(ce);
+      oldestBytes += ce.ramBytesUsed;
+      while (oldest.size() > 1 && oldestBytes - oldest.peek().ramBytesUsed >= bytesToFree) {
+        CacheEntry<K,V> kept = oldest.poll();
+        oldestBytes -= kept.ramBytesUsed;
+        if (next == null || kept.lastAccessedCopy < next.lastAccessedCopy) {
+          next = kept;
+        }
+      }
+    }
+
+    List<CacheEntry<K,V>> entries = new ArrayList<>(oldest);
+    Collections.sort(entries);  // most recently accessed first
+    int i = entries.size() - 1;
+    for (; i >= 0 && ramBytes.get() > ramLowerWatermark; i--) {
+      if (evictEntry(entries.get(i).key)) {
+        stats.ramEvictionCounter.increment();
+      }
+    }
+    victim = i >= 0 ? entries.get(i) : next;
+  }
+
+  private CacheEntry<K,V> leastRecentlyUsed() {
+    CacheEntry<K,V> lru = null;
+    for (CacheEntry<K,V> ce : map.values()) {
+      if (lru == null || ce.lastAccessed < lru.lastAccessed) {
+        lru = ce;
+      }
+    }
+    return lru;
+  }
+
   /**
    * Removes items from the cache to bring the size down
    * to an acceptable value ('acceptableWaterMark').
@@ -158,7 +307,7 @@ public class ConcurrentLRUCache<K,V> implements Cache<K,V> {
    * The second stage is more intensive and tries to bring down the cache size
    * to the 'lowerWaterMark' config parameter.
    */
-  private void markAndSweep() {
+  private void markAndSweepByCacheSize() {
     // if we want to keep at least 1000 entries, then timestamps of
     // current through current-1000 are guaranteed not to be the oldest (but that does
     // not mean there are 1000 entries in that group... it's actually anywhere between
@@ -167,189 +316,181 @@ public class ConcurrentLRUCache<K,V> implements Cache<K,V> {
     // oldestEntry through oldestEntry+500 are guaranteed to be
     // removed (however many there are there).
 
-    if (!markAndSweepLock.tryLock()) return;
-    try {
-      long oldestEntry = this.oldestEntry;
-      isCleaning = true;
-      this.oldestEntry = oldestEntry;     // volatile write to make isCleaning visible
-
-      long timeCurrent = stats.accessCounter.longValue();
-      int sz = stats.size.get();
-
-      int numRemoved = 0;
-      int numKept = 0;
-      long newestEntry = timeCurrent;
-      long newNewestEntry = -1;
-      long newOldestEntry = Long.MAX_VALUE;
-
-      int wantToKeep = lowerWaterMark;
-      int wantToRemove = sz - lowerWaterMark;
+    long oldestEntry = this.oldestEntry;
+
+    long timeCurrent = stats.accessCounter.longValue();
+    int sz = stats.size.get();
+
+    int numRemoved = 0;
+    int numKept = 0;
+    long newestEntry = timeCurrent;
+    long newNewestEntry = -1;
+    long newOldestEntry = Long.MAX_VALUE;
+
+    int wantToKeep = lowerWaterMark;
+    int wantToRemove = sz - lowerWaterMark;
+
+    @SuppressWarnings("unchecked") // generic array's are annoying
+    CacheEntry<K,V>[] eset = new CacheEntry[sz];
+    int eSize = 0;
+
+    // System.out.println("newestEntry="+newestEntry + " oldestEntry="+oldestEntry);
+    // System.out.println("items removed:" + numRemoved + " numKept=" + numKept + " esetSz="+ eSize + " sz-numRemoved=" + (sz-numRemoved));
+
+    for (CacheEntry<K,V> ce : map.values()) {
+      // set lastAccessedCopy to avoid more volatile reads
+      ce.lastAccessedCopy = ce.lastAccessed;
+      long thisEntry = ce.lastAccessedCopy;
+
+      // since the wantToKeep group is likely to be bigger than wantToRemove, check it first
+      if (thisEntry > newestEntry - wantToKeep) {
+        // this entry is guaranteed not to be in the bottom
+        // group, so do nothing.
+        numKept++;
+        newOldestEntry = Math.min(thisEntry, newOldestEntry);
+      } else if (thisEntry < oldestEntry + wantToRemove) { // entry in bottom group?
+        // this entry is guaranteed to be in the bottom group
+        // so immediately remove it from the map.
+        evictEntry(ce.key);
+        numRemoved++;
+      } else {
+        // This entry *could* be in the bottom group.
+        // Collect these entries to avoid another full pass... this is wasted
+        // effort if enough entries are normally removed in this first pass.
+        // An alternate impl could make a full second pass.
+        if (eSize < eset.length-1) {
+          eset[eSize++] = ce;
+          newNewestEntry = Math.max(thisEntry, newNewestEntry);
+          newOldestEntry = Math.min(thisEntry, newOldestEntry);
+        }
+      }
+    }
 
-      @SuppressWarnings("unchecked") // generic array's are annoying
-      CacheEntry<K,V>[] eset = new CacheEntry[sz];
-      int eSize = 0;
+    // System.out.println("items removed:" + numRemoved + " numKept=" + numKept + " esetSz="+ eSize + " sz-numRemoved=" + (sz-numRemoved));
+    // TODO: allow this to be customized in the constructor?
+    int numPasses=1; // maximum number of linear passes over the data
 
-      // System.out.println("newestEntry="+newestEntry + " oldestEntry="+oldestEntry);
-      // System.out.println("items removed:" + numRemoved + " numKept=" + numKept + " esetSz="+ eSize + " sz-numRemoved=" + (sz-numRemoved));
+    // if we didn't remove enough entries, then make more passes
+    // over the values we collected, with updated min and max values.
+    while (sz - numRemoved > acceptableWaterMark && --numPasses>=0) {
 
-      for (CacheEntry<K,V> ce : map.values()) {
-        // set lastAccessedCopy to avoid more volatile reads
-        ce.lastAccessedCopy = ce.lastAccessed;
+      oldestEntry = newOldestEntry == Long.MAX_VALUE ? oldestEntry : newOldestEntry;
+      newOldestEntry = Long.MAX_VALUE;
+      newestEntry = newNewestEntry;
+      newNewestEntry = -1;
+      wantToKeep = lowerWaterMark - numKept;
+      wantToRemove = sz - lowerWaterMark - numRemoved;
+
+      // iterate backward to make it easy to remove items.
+      for (int i=eSize-1; i>=0; i--) {
+        CacheEntry<K,V> ce = eset[i];
         long thisEntry = ce.lastAccessedCopy;
 
-        // since the wantToKeep group is likely to be bigger than wantToRemove, check it first
         if (thisEntry > newestEntry - wantToKeep) {
           // this entry is guaranteed not to be in the bottom
-          // group, so do nothing.
+          // group, so do nothing but remove it from the eset.
           numKept++;
+          // remove the entry by moving the last element to its position
+          eset[i] = eset[eSize-1];
+          eSize--;
+
           newOldestEntry = Math.min(thisEntry, newOldestEntry);
+          
         } else if (thisEntry < oldestEntry + wantToRemove) { // entry in bottom group?
+
           // this entry is guaranteed to be in the bottom group
           // so immediately remove it from the map.
           evictEntry(ce.key);
           numRemoved++;
+
+          // remove the entry by moving the last element to its position
+          eset[i] = eset[eSize-1];
+          eSize--;
         } else {
-          // This entry *could* be in the bottom group.
-          // Collect these entries to avoid another full pass... this is wasted
-          // effort if enough entries are normally removed in this first pass.
-          // An alternate impl could make a full second pass.
-          if (eSize < eset.length-1) {
-            eset[eSize++] = ce;
-            newNewestEntry = Math.max(thisEntry, newNewestEntry);
-            newOldestEntry = Math.min(thisEntry, newOldestEntry);
-          }
+          // This entry *could* be in the bottom group, so keep it in the eset,
+          // and update the stats.
+          newNewestEntry = Math.max(thisEntry, newNewestEntry);
+          newOldestEntry = Math.min(thisEntry, newOldestEntry);
         }
       }
-
       // System.out.println("items removed:" + numRemoved + " numKept=" + numKept + " esetSz="+ eSize + " sz-numRemoved=" + (sz-numRemoved));
-      // TODO: allow this to be customized in the constructor?
-      int numPasses=1; // maximum number of linear passes over the data
-
-      // if we didn't remove enough entries, then make more passes
-      // over the values we collected, with updated min and max values.
-      while (sz - numRemoved > acceptableWaterMark && --numPasses>=0) {
-
-        oldestEntry = newOldestEntry == Long.MAX_VALUE ? oldestEntry : newOldestEntry;
-        newOldestEntry = Long.MAX_VALUE;
-        newestEntry = newNewestEntry;
-        newNewestEntry = -1;
-        wantToKeep = lowerWaterMark - numKept;
-        wantToRemove = sz - lowerWaterMark - numRemoved;
-
-        // iterate backward to make it easy to remove items.
-        for (int i=eSize-1; i>=0; i--) {
-          CacheEntry<K,V> ce = eset[i];
-          long thisEntry = ce.lastAccessedCopy;
-
-          if (thisEntry > newestEntry - wantToKeep) {
-            // this entry is guaranteed not to be in the bottom
-            // group, so do nothing but remove it from the eset.
-            numKept++;
-            // remove the entry by moving the last element to its position
-            eset[i] = eset[eSize-1];
-            eSize--;
-
-            newOldestEntry = Math.min(thisEntry, newOldestEntry);
-            
-          } else if (thisEntry < oldestEntry + wantToRemove) { // entry in bottom group?
-
-            // this entry is guaranteed to be in the bottom group
-            // so immediately remove it from the map.
-            evictEntry(ce.key);
-            numRemoved++;
-
-            // remove the entry by moving the last element to its position
-            eset[i] = eset[eSize-1];
-            eSize--;
-          } else {
-            // This entry *could* be in the bottom group, so keep it in the eset,
-            // and update the stats.
-            newNewestEntry = Math.max(thisEntry, newNewestEntry);
-            newOldestEntry = Math.min(thisEntry, newOldestEntry);
-          }
-        }
-        // System.out.println("items removed:" + numRemoved + " numKept=" + numKept + " esetSz="+ eSize + " sz-numRemoved=" + (sz-numRemoved));
-      }
+    }
 
 
 
-      // if we still didn't remove enough entries, then make another pass while
-      // inserting into a priority queue
-      if (sz - numRemoved > acceptableWaterMark) {
-
-        oldestEntry = newOldestEntry == Long.MAX_VALUE ? oldestEntry : newOldestEntry;
-        newOldestEntry = Long.MAX_VALUE;
-        newestEntry = newNewestEntry;
-        newNewestEntry = -1;
-        wantToKeep = lowerWaterMark - numKept;
-        wantToRemove = sz - lowerWaterMark - numRemoved;
-
-        PQueue<K,V> queue = new PQueue<>(wantToRemove);
-
-        for (int i=eSize-1; i>=0; i--) {
-          CacheEntry<K,V> ce = eset[i];
-          long thisEntry = ce.lastAccessedCopy;
-
-          if (thisEntry > newestEntry - wantToKeep) {
-            // this entry is guaranteed not to be in the bottom
-            // group, so do nothing but remove it from the eset.
-            numKept++;
-            // removal not necessary on last pass.
-            // eset[i] = eset[eSize-1];
-            // eSize--;
-
-            newOldestEntry = Math.min(thisEntry, newOldestEntry);
-            
-          } else if (thisEntry < oldestEntry + wantToRemove) {  // entry in bottom group?
-            // this entry is guaranteed to be in the bottom group
-            // so immediately remove it.
-            evictEntry(ce.key);
-            numRemoved++;
-
-            // removal not necessary on last pass.
-            // eset[i] = eset[eSize-1];
-            // eSize--;
-          } else {
-            // This entry *could* be in the bottom group.
-            // add it to the priority queue
-
-            // everything in the priority queue will be removed, so keep track of
-            // the lowest value that ever comes back out of the queue.
-
-            // first reduce the size of the priority queue to account for
-            // the number of items we have already removed while executing
-            // this loop so far.
-            queue.myMaxSize = sz - lowerWaterMark - numRemoved;
-            while (queue.size() > queue.myMaxSize && queue.size() > 0) {
-              CacheEntry otherEntry = queue.pop();
-              newOldestEntry = Math.min(otherEntry.lastAccessedCopy, newOldestEntry);
-            }
-            if (queue.myMaxSize <= 0) break;
-
-            Object o = queue.myInsertWithOverflow(ce);
-            if (o != null) {
-              newOldestEntry = Math.min(((CacheEntry)o).lastAccessedCopy, newOldestEntry);
-            }
-          }
-        }
+    // if we still didn't remove enough entries, then make another pass while
+    // inserting into a priority queue
+    if (sz - numRemoved > acceptableWaterMark) {
+
+      oldestEntry = newOldestEntry == Long.MAX_VALUE ? oldestEntry : newOldestEntry;
+      newOldestEntry = Long.MAX_VALUE;
+      newestEntry = newNewestEntry;
+      newNewestEntry = -1;
+      wantToKeep = lowerWaterMark - numKept;
+      wantToRemove = sz - lowerWaterMark - numRemoved;
+
+      PQueue<K,V> queue = new PQueue<>(wantToRemove);
+
+      for (int i=eSize-1; i>=0; i--) {
+        CacheEntry<K,V> ce = eset[i];
+        long thisEntry = ce.lastAccessedCopy;
+
+        if (thisEntry > newestEntry - wantToKeep) {
+          // this entry is guaranteed not to be in the bottom
+          // group, so do nothing but remove it from the eset.
+          numKept++;
+          // removal not necessary on last pass.
+          // eset[i] = eset[eSize-1];
+          // eSize--;
 
-        // Now delete everything in the priority queue.
-        // avoid using pop() since order doesn't matter anymore
-        for (CacheEntry<K,V> ce : queue.getValues()) {
-          if (ce==null) continue;
+          newOldestEntry = Math.min(thisEntry, newOldestEntry);
+          
+        } else if (thisEntry < oldestEntry + wantToRemove) {  // entry in bottom group?
+          // this entry is guaranteed to be in the bottom group
+          // so immediately remove it.
           evictEntry(ce.key);
           numRemoved++;
+
+          // removal not necessary on last pass.
+          // eset[i] = eset[eSize-1];
+          // eSize--;
+        } else {
+          // This entry *could* be in the bottom group.
+          // add it to the priority queue
+
+          // everything in the priority queue will be removed, so keep track of
+          // the lowest value that ever comes back out of the queue.
+
+          // first reduce the size of the priority queue to account for
+          // the number of items we have already removed while executing
+          // this loop so far.
+          queue.myMaxSize = sz - lowerWaterMark - numRemoved;
+          while (queue.size() > queue.myMaxSize && queue.size() > 0) {
+            CacheEntry otherEntry = queue.pop();
+            newOldestEntry = Math.min(otherEntry.lastAccessedCopy, newOldestEntry);
+          }
+          if (queue.myMaxSize <= 0) break;
+
+          Object o = queue.myInsertWithOverflow(ce);
+          if (o != null) {
+            newOldestEntry = Math.min(((CacheEntry)o).lastAccessedCopy, newOldestEntry);
+          }
         }
+      }
 
-        // System.out.println("items removed:" + numRemoved + " numKept=" + numKept + " initialQueueSize="+ wantToRemove + " finalQueueSize=" + queue.size() + " sz-numRemoved=" + (sz-numRemoved));
+      // Now delete everything in the priority queue.
+      // avoid using pop() since order doesn't matter anymore
+      for (CacheEntry<K,V> ce : queue.getValues()) {
+        if (ce==null) continue;
+        evictEntry(ce.key);
+        numRemoved++;
       }
 
-      oldestEntry = newOldestEntry == Long.MAX_VALUE ? oldestEntry : newOldestEntry;
-      this.oldestEntry = oldestEntry;
-    } finally {
-      isCleaning = false;  // set before markAndSweep.unlock() for visibility
-      markAndSweepLock.unlock();
+      // System.out.println("items removed:" + numRemoved + " numKept=" + numKept + " initialQueueSize="+ wantToRemove + " finalQueueSize=" + queue.size() + " sz-numRemoved=" + (sz-numRemoved));
     }
+
+    oldestEntry = newOldestEntry == Long.MAX_VALUE ? oldestEntry : newOldestEntry;
+    this.oldestEntry = oldestEntry;
   }
 
   private static class PQueue<K,V> extends PriorityQueue<CacheEntry<K,V>> {
@@ -391,12 +532,14 @@ public class ConcurrentLRUCache<K,V> implements Cache<K,V> {
   }
 
 
-  private void evictEntry(K key) {
+  private boolean evictEntry(K key) {
     CacheEntry<K,V> o = map.remove(key);
-    if (o == null) return;
+    if (o == null) return false;
     stats.size.decrementAndGet();
+    ramBytes.addAndGet(-o.ramBytesUsed);
     stats.evictionCounter.incrementAndGet();
     if(evictionListener != null) evictionListener.evictedEntry(o.key,o.value);
+    return true;
   }
 
   /**
@@ -471,6 +614,23 @@ public class ConcurrentLRUCache<K,V> implements Cache<K,V> {
   @Override
   public void clear() {
     map.clear();
+    // entries that are concurrently added may be miscounted until the next clear()
+    ramBytes.set(0);
+    victim = null;
+  }
+
+  /**
+   * Returns the memory used by the entries of this cache, only tracked if it is bounded
+   * by memory usage.
+   */
+  @Override
+  public long ramBytesUsed() {
+    return BASE_RAM_BYTES_USED + ramBytes.get();
+  }
+
+  @Override
+  public Collection<Accountable> getChildResources() {
+    return Collections.emptyList();
   }
 
   public Map<Object, CacheEntry<K,V>> getMap() {
@@ -480,20 +640,30 @@ public class ConcurrentLRUCache<K,V> implements Cache<K,V> {
   public static class CacheEntry<K,V> implements Comparable<CacheEntry<K,V>> {
     K key;
     V value;
+    final long ramBytesUsed;  // only computed if the cache is bounded by memory usage
     volatile long lastAccessed = 0;
     long lastAccessedCopy = 0;
 
 
     public CacheEntry(K key, V value, long lastAccessed) {
+      this(key, value, lastAccessed, 0);
+    }
+
+    public CacheEntry(K key, V value, long lastAccessed, long ramBytesUsed) {
       this.key = key;
       this.value = value;
       this.lastAccessed = lastAccessed;
+      this.ramBytesUsed = ramBytesUsed;
     }
 
     public void setLastAccessed(long lastAccessed) {
       this.lastAccessed = lastAccessed;
     }
 
+    public V getValue() {
+      return value;
+    }
+
     @Override
     public int compareTo(CacheEntry<K,V> that) {
       if (this.lastAccessedCopy == that.lastAccessedCopy) return 0;
@@ -539,6 +709,8 @@ public class ConcurrentLRUCache<K,V> implements Cache<K,V> {
     private final LongAdder missCounter = new LongAdder();
     private final AtomicInteger size = new AtomicInteger();
     private AtomicLong evictionCounter = new AtomicLong();
+    private final LongAdder ramEvictionCounter = new LongAdder();
+    private final LongAdder rejectedCounter = new LongAdder();
 
     public long getCumulativeLookups() {
       return (accessCounter.longValue() - putCounter.longValue() - nonLivePutCounter.longValue()) + missCounter.longValue();
@@ -556,6 +728,16 @@ public class ConcurrentLRUCache<K,V> implements Cache<K,V> {
       return evictionCounter.get();
     }
 
+    /** Returns the number of evictions to bring the memory usage of entries under the limit. */
+    public long getCumulativeRamEvictions() {
+      return ramEvictionCounter.longValue();
+    }
+
+    /** Returns the number of new entries that were not admitted into the full cache. */
+    public long getCumulativeRejections() {
+      return rejectedCounter.longValue();
+    }
+
     public int getCurrentSize() {
       return size.get();
     }
@@ -574,6 +756,8 @@ public class ConcurrentLRUCache<K,V> implements Cache<K,V> {
       nonLivePutCounter.add(other.nonLivePutCounter.longValue());
       missCounter.add(other.missCounter.longValue());
       evictionCounter.addAndGet(other.evictionCounter.get());
+      ramEvictionCounter.add(other.ramEvictionCounter.longValue());
+      rejectedCounter.add(other.rejectedCounter.longValue());
       size.set(Math.max(size.get(), other.size.get()));
     }
   }
@@ -0,0 +1,398 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.solr.util;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+
+import org.apache.solr.common.util.Cache;
+
+/**
+ * A cache with the W-TinyLFU eviction policy, based upon ConcurrentHashMap.
+ * <p>
+ * New entries go to a small LRU window (1% of the cache). Entries that leave the window compete
+ * with the least recently used entry of the main cache, and only the one that a
+ * {@link FrequencySketch} estimates to be looked up more often is kept. The main cache is a
+ * segmented LRU: entries that are hit again are promoted from its probation segment to its
+ * protected segment (80% of the main cache). Popular entries are thus not flushed by a scan
+ * of keys that are looked up only once, and recency still matters for bursts of new keys.
+ * <p>
+ * Lookups never block: hits and misses are recorded in a lossy ring buffer, and writes in a
+ * queue, that are replayed against the sketch and the LRU lists by whichever thread gets the
+ * eviction lock with {@link ReentrantLock#tryLock()}. Eviction is thus amortized over all
+ * callers, and the cache may temporarily hold a few more entries than its maximum size.
+ *
+ * @lucene.experimental
+ */
+public class ConcurrentTinyLFUCache<K,V> implements Cache<K,V> {
+
+  private static final int READ_BUFFER_SIZE = 128;  // must be a power of 2
+  private static final int READ_BUFFER_DRAIN_THRESHOLD = 32;  // must be a power of 2
+
+  private static final int WINDOW = 0, PROBATION = 1, PROTECTED = 2;
+
+  private final ConcurrentHashMap<Object, Node<K,V>> map;
+  private final int maximumSize;
+  private final int maxWindow;
+  private final int maxProtected;
+
+  private final ReentrantLock evictionLock = new ReentrantLock();
+  private final AtomicReferenceArray<Object> readBuffer = new AtomicReferenceArray<>(READ_BUFFER_SIZE);
+  private final AtomicLong readCounter = new AtomicLong();
+  private final Queue<Runnable> writeBuffer = new ConcurrentLinkedQueue<>();
+
+  // guarded by evictionLock
+  private final FrequencySketch sketch;
+  private final AccessOrderDeque<K,V> window = new AccessOrderDeque<>();
+  private final AccessOrderDeque<K,V> probation = new AccessOrderDeque<>();
+  private final AccessOrderDeque<K,V> protectedDeque = new AccessOrderDeque<>();
+
+  private volatile boolean islive = true;
+  private final Stats stats = new Stats();
+
+  public ConcurrentTinyLFUCache(int maximumSize, int initialSize) {
+    if (maximumSize < 1) throw new IllegalArgumentException("maximumSize must be > 0");
+    this.maximumSize = maximumSize;
+    this.maxWindow = Math.max(1, maximumSize / 100);
+    this.maxProtected = (int) ((maximumSize - maxWindow) * 0.8);
+    this.map = new ConcurrentHashMap<>(initialSize);
+    this.sketch = new FrequencySketch(maximumSize);
+  }
+
+  public void setAlive(boolean live) {
+    islive = live;
+  }
+
+  @Override
+  public V get(K key) {
+    Node<K,V> node = map.get(key);
+    if (islive) {
+      // the sketch counts misses too, which is what tells new popular keys apart from one-off keys
+      afterRead(node == null ? key : node);
+      if (node == null) {
+        stats.missCounter.increment();
+      } else {
+        stats.hitCounter.increment();
+      }
+    }
+    return node == null ? null : node.value;
+  }
+
+  @Override
+  public V put(K key, V val) {
+    if (val == null) return null;
+    if (islive) {
+      stats.putCounter.increment();
+    } else {
+      stats.nonLivePutCounter.increment();
+    }
+    Node<K,V> node = new Node<>(key, val);
+    Node<K,V> prior = map.putIfAbsent(key, node);
+    if (prior == null) {
+      afterWrite(() -> onAdd(node));
+      return null;
+    }
+    V old = prior.value;
+    prior.value = val;
+    afterRead(prior);
+    return old;
+  }
+
+  @Override
+  public V remove(K key) {
+    Node<K,V> node = map.remove(key);
+    if (node == null) {
+      return null;
+    }
+    afterWrite(() -> unlink(node));
+    return node.value;
+  }
+
+  @Override
+  public void clear() {
+    evictionLock.lock();
+    try {
+      drainBuffers();
+      for (Node<K,V> node : map.values()) {
+        unlink(node);
+      }
+      map.clear();
+    } finally {
+      evictionLock.unlock();
+    }
+  }
+
+  public int size() {
+    return map.size();
+  }
+
+  public Stats getStats() {
+    return stats;
+  }
+
+  /** Records a hit on a node, or a miss on a key. Records may be dropped if the buffer is full. */
+  private void afterRead(Object nodeOrKey) {
+    long counter = readCounter.getAndIncrement();
+    readBuffer.lazySet((int) (counter & (READ_BUFFER_SIZE - 1)), nodeOrKey);
+    if ((counter & (READ_BUFFER_DRAIN_THRESHOLD - 1)) == 0) {
+      tryToDrain();
+    }
+  }
+
+  private void afterWrite(Runnable task) {
+    writeBuffer.add(task);
+    tryToDrain();
+  }
+
+  private void tryToDrain() {
+    while (evictionLock.tryLock()) {
+      try {
+        drainBuffers();
+        evictEntries();
+      } finally {
+        evictionLock.unlock();
+      }
+      // another thread may have added a task while we held the lock
+      if (writeBuffer.isEmpty()) {
+        return;
+      }
+    }
+  }
+
+  // guarded by evictionLock
+  @SuppressWarnings("unchecked")
+  private void drainBuffers() {
+    for (int i = 0; i < READ_BUFFER_SIZE; i++) {
+      Object nodeOrKey = readBuffer.getAndSet(i, null);
+      if (nodeOrKey instanceof Node) {
+        Node<K,V> node = (Node<K,V>) nodeOrKey;
+        sketch.increment(node.key);
+        onAccess(node);
+      } else if (nodeOrKey != null) {
+        sketch.increment(nodeOrKey);
+      }
+    }
+    Runnable task;
+    while ((task = writeBuffer.poll()) != null) {
+      task.run();
+    }
+  }
+
+  // guarded by evictionLock
+  private void onAdd(Node<K,V> node) {
+    if (map.get(node.key) != node) {
+      return;  // removed before we got there
+    }
+    node.queue = WINDOW;
+    window.add(node);
+  }
+
+  // guarded by evictionLock
+  private void onAccess(Node<K,V> node) {
+    if (node.queue == WINDOW) {
+      window.moveToBack(node);
+    } else if (node.queue == PROBATION) {
+      probation.remove(node);
+      node.queue = PROTECTED;
+      protectedDeque.add(node);
+      // demote the least recently used protected entries
+      while (protectedDeque.size > maxProtected) {
+        Node<K,V> demoted = protectedDeque.head;
+        protectedDeque.remove(demoted);
+        demoted.queue = PROBATION;
+        probation.add(demoted);
+      }
+    } else if (node.queue == PROTECTED) {
+      protectedDeque.moveToBack(node);
+    }
+    // else the node was removed, or its addition was not replayed yet
+  }
+
+  // guarded by evictionLock
+  private void unlink(Node<K,V> node) {
+    if (node.queue == WINDOW) {
+      window.remove(node);
+    } else if (node.queue == PROBATION) {
+      probation.remove(node);
+    } else if (node.queue == PROTECTED) {
+      protectedDeque.remove(node);
+    }
+    node.queue = -1;
+  }
+
+  // guarded by evictionLock
+  private void evictEntries() {
+    // entries that overflow the window become candidates for the main cache
+    Node<K,V> candidate = null;
+    while (window.size > maxWindow) {
+      Node<K,V> node = window.head;
+      window.remove(node);
+      node.queue = PROBATION;
+      probation.add(node);
+      if (candidate == null) candidate = node;
+    }
+
+    Node<K,V> victim = probation.head;
+    while (window.size + probation.size + protectedDeque.size > maximumSize) {
+      if (candidate == null) {
+        // no new entries, evict the least recently used one of the main cache
+        Node<K,V> lru = probation.head != null ? probation.head : protectedDeque.head != null ? protectedDeque.head : window.head;
+        if (lru == victim) victim = lru.next;
+        evict(lru);
+      } else if (victim == null || victim == candidate) {
+        Node<K,V> next = candidate.next;
+        if (victim == candidate) victim = next;
+        evict(candidate);
+        candidate = next;
+      } else if (sketch.frequency(candidate.key) > sketch.frequency(victim.key)) {
+        Node<K,V> next = victim.next;
+        evict(victim);
+        victim = next;
+      } else {
+        Node<K,V> next = candidate.next;
+        evict(candidate);
+        candidate = next;
+      }
+    }
+  }
+
+  // guarded by evictionLock
+  private void evict(Node<K,V> node) {
+    unlink(node);
+    if (map.remove(node.key, node)) {
+      stats.evictionCounter.increment();
+    }
+  }
+
+  /**
+   * Returns up to <code>n</code> entries, from the most to the least valuable one: protected
+   * entries first, then the window, then the entries on probation, each from the most recently
+   * used one.
+   */
+  public Map<K,V> getHottestItems(int n) {
+    Map<K,V> result = new LinkedHashMap<>();
+    if (n <= 0) return result;
+    evictionLock.lock();
+    try {
+      drainBuffers();
+      for (AccessOrderDeque<K,V> deque : new AccessOrderDeque[] {protectedDeque, window, probation}) {
+        for (Node<K,V> node = deque.tail; node != null && result.size() < n; node = node.prev) {
+          result.put(node.key, node.value);
+        }
+      }
+    } finally {
+      evictionLock.unlock();
+    }
+    return result;
+  }
+
+  private static final class Node<K,V> {
+    final K key;
+    volatile V value;
+    // guarded by evictionLock
+    int queue = -1;
+    Node<K,V> prev, next;
+
+    Node(K key, V value) {
+      this.key = key;
+      this.value = value;
+    }
+  }
+
+  /** A doubly-linked list of nodes, from the least to the most recently used one. */
+  private static final class AccessOrderDeque<K,V> {
+    Node<K,V> head, tail;
+    int size;
+
+    void add(Node<K,V> node) {
+      node.prev = tail;
+      node.next = null;
+      if (tail == null) {
+        head = node;
+      } else {
+        tail.next = node;
+      }
+      tail = node;
+      size++;
+    }
+
+    void remove(Node<K,V> node) {
+      if (node.prev == null) {
+        head = node.next;
+      } else {
+        node.prev.next = node.next;
+      }
+      if (node.next == null) {
+        tail = node.prev;
+      } else {
+        node.next.prev = node.prev;
+      }
+      node.prev = node.next = null;
+      size--;
+    }
+
+    void moveToBack(Node<K,V> node) {
+      if (node != tail) {
+        remove(node);
+        add(node);
+      }
+    }
+  }
+
+  public static class Stats {
+    private final LongAdder hitCounter = new LongAdder();
+    private final LongAdder missCounter = new LongAdder();
+    private final LongAdder putCounter = new LongAdder();
+    private final LongAdder nonLivePutCounter = new LongAdder();
+    private final LongAdder evictionCounter = new LongAdder();
+
+    public long getCumulativeLookups() {
+      return hitCounter.longValue() + missCounter.longValue();
+    }
+
+    public long getCumulativeHits() {
+      return hitCounter.longValue();
+    }
+
+    public long getCumulativePuts() {
+      return putCounter.longValue();
+    }
+
+    public long getCumulativeNonLivePuts() {
+      return nonLivePutCounter.longValue();
+    }
+
+    public long getCumulativeEvictions() {
+      return evictionCounter.longValue();
+    }
+
+    public void add(Stats other) {
+      hitCounter.add(other.hitCounter.longValue());
+      missCounter.add(other.missCounter.longValue());
+      putCounter.add(other.putCounter.longValue());
+      nonLivePutCounter.add(other.nonLivePutCounter.longValue());
+      evictionCounter.add(other.evictionCounter.longValue());
+    }
+  }
+}
@@ -0,0 +1,124 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.solr.util;
+
+import java.io.IOException;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.reflect.Method;
+import java.nio.ByteBuffer;
+import java.security.AccessController;
+import java.security.PrivilegedAction;
+import java.util.Objects;
+
+import org.apache.lucene.store.MMapDirectory;
+import org.apache.solr.common.util.SuppressForbidden;
+
+import static java.lang.invoke.MethodHandles.constant;
+import static java.lang.invoke.MethodHandles.dropArguments;
+import static java.lang.invoke.MethodHandles.filterReturnValue;
+import static java.lang.invoke.MethodHandles.guardWithTest;
+import static java.lang.invoke.MethodType.methodType;
+
+/**
+ * Frees the memory of direct and memory-mapped {@link ByteBuffer}s without waiting for the garbage
+ * collector, using the same private Java APIs as {@link MMapDirectory}.
+ * <p>
+ * Accessing a buffer after it has been freed crashes the JVM, callers must make sure that the
+ * buffer is not used anymore.
+ *
+ * @lucene.internal
+ */
+public final class DirectBufferCleaner {
+
+  /** <code>true</code> if buffers can be freed on this platform. */
+  public static final boolean SUPPORTED;
+
+  private static final MethodHandle CLEANER;
+
+  static {
+    final Object hack = AccessController.doPrivileged((PrivilegedAction<Object>) DirectBufferCleaner::cleanerHackImpl);
+    if (hack instanceof MethodHandle) {
+      CLEANER = (MethodHandle) hack;
+      SUPPORTED = true;
+    } else {
+      CLEANER = null;
+      SUPPORTED = false;
+    }
+  }
+
+  private DirectBufferCleaner() {}
+
+  /**
+   * Frees the memory of the given buffer if it is direct and freeing is {@link #SUPPORTED},
+   * otherwise the buffer is left to the garbage collector.
+   */
+  public static void free(ByteBuffer buffer) throws IOException {
+    if (CLEANER == null || buffer.isDirect() == false) {
+      return;
+    }
+    final Throwable error = AccessController.doPrivileged((PrivilegedAction<Throwable>) () -> {
+      try {
+        CLEANER.invokeExact(buffer);
+        return null;
+      } catch (Throwable t) {
+        return t;
+      }
+    });
+    if (error != null) {
+      throw new IOException("Unable to free the buffer", error);
+    }
+  }
+
+  @SuppressForbidden(reason = "Needs access to private APIs in DirectBuffer and sun.misc.Cleaner, like MMapDirectory")
+  private static Object cleanerHackImpl() {
+    final MethodHandles.Lookup lookup = MethodHandles.lookup();
+    try {
+      final Class<?> directBufferClass = Class.forName("java.nio.DirectByteBuffer");
+
+      final Method m = directBufferClass.getMethod("cleaner");
+      m.setAccessible(true);
+      MethodHandle directBufferCleanerMethod = lookup.unreflect(m);
+      Class<?> cleanerClass = directBufferCleanerMethod.type().returnType();
+
+      final MethodHandle cleanMethod;
+      if (Runnable.class.isAssignableFrom(cleanerClass)) {
+        // early Java 9 impl using Runnable
+        final SecurityManager sm = System.getSecurityManager();
+        if (sm != null) {
+          sm.checkPackageAccess("jdk.internal.ref");
+        }
+        directBufferCleanerMethod = directBufferCleanerMethod.asType(directBufferCleanerMethod.type().changeReturnType(Runnable.class));
+        cleanerClass = Runnable.class;
+        cleanMethod = lookup.findVirtual(cleanerClass, "run", methodType(void.class));
+      } else {
+        // either the old internal "sun.misc.Cleaner" or the Java 9 "java.lang.ref.Cleaner$Cleanable"
+        cleanMethod = lookup.findVirtual(cleanerClass, "clean", methodType(void.class));
+      }
+
+      final MethodHandle nonNullTest = lookup.findStatic(Objects.class, "nonNull", methodType(boolean.class, Object.class))
+          .asType(methodType(boolean.class, cleanerClass));
+      final MethodHandle noop = dropArguments(constant(Void.class, null).asType(methodType(void.class)), 0, cleanerClass);
+      // the buffer is cast to DirectByteBuffer by asType, callers check isDirect() first
+      return filterReturnValue(directBufferCleanerMethod, guardWithTest(nonNullTest, cleanMethod, noop))
+          .asType(methodType(void.class, ByteBuffer.class));
+    } catch (ReflectiveOperationException | RuntimeException e) {
+      // also catches SecurityException, and InaccessibleObjectException on Java 9+ without --add-opens
+      return e;
+    }
+  }
+}
@@ -0,0 +1,116 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.solr.util;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * A count-min sketch that estimates how often keys were seen recently, with 4-bit counters.
+ * Counters are halved once enough keys were recorded, so that the estimates favor recent
+ * popularity. This is the frequency filter of the TinyLFU admission policy: a new cache
+ * entry is only worth evicting another one if it is estimated to be accessed more often.
+ * <p>
+ * Counters are incremented with compare-and-set so that recording accesses does not need a
+ * lock. The sample count and halving are not synchronized, concurrent updates may make
+ * estimates slightly off, which is harmless for admission decisions.
+ *
+ * @lucene.internal
+ */
+public class FrequencySketch {
+  private static final long[] SEEDS = {0xc3a5c85c97cb3127L, 0xb492b66fbe98f273L, 0x9ae16a3b2f90404fL, 0xcbf29ce484222325L};
+  private static final long RESET_MASK = 0x7777777777777777L;
+  private static final long ONE_MASK = 0x1111111111111111L;
+
+  private final AtomicLongArray table;
+  private final int tableMask;
+  private final int sampleSize;
+  private int size;  // not volatile, see class javadocs
+
+  /**
+   * @param maximumSize the expected number of entries of the cache, the sketch takes 8 bytes
+   *                    per entry
+   */
+  public FrequencySketch(int maximumSize) {
+    if (maximumSize < 1) throw new IllegalArgumentException("maximumSize must be > 0");
+    int length = Integer.highestOneBit(Math.min(maximumSize, 1 << 30) - 1) << 1;
+    table = new AtomicLongArray(Math.max(length, 8));
+    tableMask = table.length() - 1;
+    sampleSize = (int) Math.min(10L * maximumSize, Integer.MAX_VALUE);
+  }
+
+  /** Returns the estimated number of times <code>key</code> was recorded, at most 15. */
+  public int frequency(Object key) {
+    int hash = spread(key.hashCode());
+    int start = (hash & 3) << 2;
+    int frequency = Integer.MAX_VALUE;
+    for (int i = 0; i < 4; i++) {
+      int index = indexOf(hash, i);
+      int count = (int) ((table.get(index) >>> ((start + i) << 2)) & 0xfL);
+      frequency = Math.min(frequency, count);
+    }
+    return frequency;
+  }
+
+  /** Records an access to <code>key</code>. */
+  public void increment(Object key) {
+    int hash = spread(key.hashCode());
+    int start = (hash & 3) << 2;
+    boolean added = false;
+    for (int i = 0; i < 4; i++) {
+      added |= incrementAt(indexOf(hash, i), start + i);
+    }
+    if (added && ++size >= sampleSize) {
+      reset();
+    }
+  }
+
+  private boolean incrementAt(int i, int j) {
+    int offset = j << 2;
+    long mask = 0xfL << offset;
+    long value;
+    do {
+      value = table.get(i);
+      if ((value & mask) == mask) {
+        return false;
+      }
+    } while (table.compareAndSet(i, value, value + (1L << offset)) == false);
+    return true;
+  }
+
+  /** Halves all counters. */
+  private void reset() {
+    int count = 0;
+    for (int i = 0; i < table.length(); i++) {
+      long value = table.get(i);
+      count += Long.bitCount(value & ONE_MASK);
+      table.set(i, (value >>> 1) & RESET_MASK);
+    }
+    size = Math.max(0, (size >>> 1) - (count >>> 2));
+  }
+
+  private int indexOf(int item, int i) {
+    long hash = (item + SEEDS[i]) * SEEDS[i];
+    hash += hash >>> 32;
+    return ((int) hash) & tableMask;
+  }
+
+  private static int spread(int x) {
+    x = ((x >>> 16) ^ x) * 0x45d9f3b;
+    x = ((x >>> 16) ^ x) * 0x45d9f3b;
+    return (x >>> 16) ^ x;
+  }
+}
@@ -146,6 +146,25 @@ public class DistributedQueryComponentOptimizationTest extends SolrCloudTestCase
 
   }
 
+  @Test
+  public void testDistribSinglePassMaxDocs() throws Exception {
+    // 3 shards * 5 rows are few enough docs to fetch in a single pass
+    QueryResponse rsp = queryWithAsserts("q", "*:*", "fl", "id,test_sS", "sort", "payload asc", "rows", "5",
+        ShardParams.DISTRIB_SINGLE_PASS_MAX_DOCS, "15");
+    assertFieldValues(rsp.getResults(), id, "7", "1", "6", "4", "2");
+    assertFieldValues(rsp.getResults(), "test_sS", "27", "21", "26", "24", "22");
+
+    // but not when paging further
+    rsp = queryWithAsserts("q", "*:*", "fl", "id,test_sS", "sort", "payload asc", "start", "1", "rows", "5",
+        ShardParams.DISTRIB_SINGLE_PASS_MAX_DOCS, "15");
+    assertFieldValues(rsp.getResults(), id, "1", "6", "4", "2", "10");
+    assertFieldValues(rsp.getResults(), "test_sS", "21", "26", "24", "22", "30");
+
+    // an explicit distrib.singlePass wins
+    queryWithAsserts("q", "*:*", "fl", "id,test_sS", "sort", "payload asc", "rows", "5",
+        ShardParams.DISTRIB_SINGLE_PASS_MAX_DOCS, "15", ShardParams.DISTRIB_SINGLE_PASS, "false");
+  }
+
   @Test
   public void testWildcardFieldList() throws Exception {
 
@@ -232,14 +251,23 @@ public class DistributedQueryComponentOptimizationTest extends SolrCloudTestCase
     int numRequests = getNumRequests(requests);
 
     boolean distribSinglePass = false;
+    String forceSinglePass = null;
+    int maxDocs = 0, start = 0, rows = 10;
 
     Set<String> fls = new HashSet<>();
     Set<String> sortFields = new HashSet<>();
     for (int i = 0; i < q.length; i += 2) {
-      if (ShardParams.DISTRIB_SINGLE_PASS.equals(q[i].toString()) && Boolean.parseBoolean(q[i + 1].toString())) {
-        assertTrue("distrib.singlePass=true made more requests than number of shards",
-            numRequests == sliceCount);
-        distribSinglePass = true;
+      if (ShardParams.DISTRIB_SINGLE_PASS.equals(q[i].toString())) {
+        forceSinglePass = q[i + 1];
+      }
+      if (ShardParams.DISTRIB_SINGLE_PASS_MAX_DOCS.equals(q[i].toString())) {
+        maxDocs = Integer.parseInt(q[i + 1]);
+      }
+      if (CommonParams.START.equals(q[i].toString())) {
+        start = Integer.parseInt(q[i + 1]);
+      }
+      if (CommonParams.ROWS.equals(q[i].toString())) {
+        rows = Integer.parseInt(q[i + 1]);
       }
       if (CommonParams.FL.equals(q[i].toString())) {
         fls.addAll(StrUtils.splitSmart(q[i + 1].toString(), ','));
@@ -251,6 +279,12 @@ public class DistributedQueryComponentOptimizationTest extends SolrCloudTestCase
       }
     }
 
+    if (forceSinglePass != null ? Boolean.parseBoolean(forceSinglePass) : (start + rows) * sliceCount <= maxDocs) {
+      assertTrue("distrib.singlePass=true made more requests than number of shards",
+          numRequests == sliceCount);
+      distribSinglePass = true;
+    }
+
     Set<String> idScoreFields = new HashSet<>(2);
     idScoreFields.add("id"); // id is always requested in GET_TOP_IDS phase
     // score is optional, requested only if sorted by score
@@ -0,0 +1,152 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.solr.handler.component;
+
+import java.io.IOException;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.solr.BaseDistributedSearchTestCase;
+import org.apache.solr.client.solrj.SolrClient;
+import org.apache.solr.client.solrj.response.QueryResponse;
+import org.apache.solr.common.params.ShardParams;
+import org.apache.solr.core.CoreContainer;
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+/**
+ * Tests backup requests and adaptive replica selection, as enabled in solr.xml, with a shard that has
+ * a slow replica.
+ */
+public class DistributedReplicaSelectionTest extends BaseDistributedSearchTestCase {
+
+  private static final int SLOW_MILLIS = 5000;
+
+  public DistributedReplicaSelectionTest() {
+    stress = 0;
+    configString = "solrconfig-slow-replica.xml";
+  }
+
+  @BeforeClass
+  public static void enableReplicaSelection() {
+    // read by the shardHandlerFactory of solr.xml
+    System.setProperty("adaptiveReplicaSelection", "true");
+    System.setProperty("hedgePercentile", "50");
+  }
+
+  @AfterClass
+  public static void disableReplicaSelection() {
+    System.clearProperty("adaptiveReplicaSelection");
+    System.clearProperty("hedgePercentile");
+  }
+
+  @Test
+  @ShardsFixed(num = 2)
+  public void test() throws Exception {
+    HttpShardHandlerFactory factory = (HttpShardHandlerFactory) controlJetty.getCoreContainer().getShardHandlerFactory();
+    assertTrue(factory.adaptiveReplicaSelection);
+    assertEquals(50, factory.hedgePercentile);
+
+    // both servers are replicas of a single shard
+    del("*:*");
+    for (int i = 0; i < 20; i++) {
+      for (SolrClient client : clients) {
+        indexDoc(client, null, sdoc(id, i));
+      }
+    }
+    commit();
+    String shard = shardsArr[0] + "|" + shardsArr[1];
+    CoreContainer slowReplica = jettys.get(1).getCoreContainer();
+
+    // until enough shard requests completed, it is not known what a slow response is
+    for (int i = 0; factory.getHedgeDelayMillis() < 0; i++) {
+      assertTrue("no hedge delay after " + i + " queries", i < ReplicaLatencyTracker.MIN_SAMPLES);
+      assertFastQuery(shard);
+    }
+
+    try {
+      SlowReplicaComponent.delays.put(slowReplica, SLOW_MILLIS);
+
+      // requests that go to the slow replica first are answered by the other one
+      factory.adaptiveReplicaSelection = false;
+      int before = SlowReplicaComponent.numShardRequests(slowReplica);
+      for (int i = 0; SlowReplicaComponent.numShardRequests(slowReplica) - before < 3; i++) {
+        assertTrue("the slow replica was not queried after " + i + " queries", i < 100);
+        assertFastQuery(shard);
+      }
+
+      // once it is known to be slow, or busy, the slow replica is not queried anymore
+      factory.adaptiveReplicaSelection = true;
+      factory.hedgePercentile = 0;
+      before = SlowReplicaComponent.numShardRequests(slowReplica);
+      for (int i = 0; i < 10; i++) {
+        assertFastQuery(shard);
+      }
+      assertEquals(before, SlowReplicaComponent.numShardRequests(slowReplica));
+    } finally {
+      SlowReplicaComponent.delays.clear();
+    }
+  }
+
+  private void assertFastQuery(String shard) throws Exception {
+    long start = System.nanoTime();
+    QueryResponse rsp = controlClient.query(params("q", "*:*", "rows", "5", ShardParams.SHARDS, shard));
+    long elapsedMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+    assertEquals(20, rsp.getResults().getNumFound());
+    assertTrue("the query waited for the slow replica: " + elapsedMillis + "ms", elapsedMillis < SLOW_MILLIS);
+  }
+
+  /** Delays the shard requests to the containers in {@link #delays}, and counts the shard requests of all containers. */
+  public static class SlowReplicaComponent extends SearchComponent {
+    static final Map<CoreContainer,Integer> delays = new ConcurrentHashMap<>();
+    static final Map<CoreContainer,AtomicInteger> shardRequests = new ConcurrentHashMap<>();
+
+    static int numShardRequests(CoreContainer container) {
+      AtomicInteger count = shardRequests.get(container);
+      return count == null ? 0 : count.get();
+    }
+
+    @Override
+    public void prepare(ResponseBuilder rb) throws IOException {
+    }
+
+    @Override
+    public void process(ResponseBuilder rb) throws IOException {
+      if (!rb.req.getParams().getBool(ShardParams.IS_SHARD, false)) {
+        return;
+      }
+      CoreContainer container = rb.req.getCore().getCoreContainer();
+      shardRequests.computeIfAbsent(container, k -> new AtomicInteger()).incrementAndGet();
+      Integer delay = delays.get(container);
+      if (delay != null) {
+        try {
+          Thread.sleep(delay);
+        } catch (InterruptedException e) {
+          Thread.currentThread().interrupt();
+        }
+      }
+    }
+
+    @Override
+    public String getDescription() {
+      return "Delays the shard requests of a replica";
+    }
+  }
+}
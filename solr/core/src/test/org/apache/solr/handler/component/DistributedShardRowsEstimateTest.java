@@ -0,0 +1,80 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.solr.handler.component;
+
+import org.apache.solr.BaseDistributedSearchTestCase;
+import org.apache.solr.client.solrj.response.QueryResponse;
+import org.apache.solr.common.SolrInputDocument;
+import org.apache.solr.common.params.ModifiableSolrParams;
+import org.apache.solr.common.params.ShardParams;
+import org.apache.solr.common.util.NamedList;
+import org.junit.Test;
+
+/**
+ * Tests that asking shards for fewer top documents with {@link ShardParams#SHARDS_ROWS_ESTIMATE}
+ * returns the same page as asking each of them for start+rows documents.
+ */
+public class DistributedShardRowsEstimateTest extends BaseDistributedSearchTestCase {
+
+  private static final String i1 = "a_i1";
+
+  public DistributedShardRowsEstimateTest() {
+    stress = 0;
+  }
+
+  @Test
+  @ShardsFixed(num = 3)
+  public void test() throws Exception {
+    del("*:*");
+    // the highest values are all in the first shard, which therefore has to be asked for more
+    for (int i = 0; i < 60; i++) {
+      index(id, i, i1, i, "a_t", i % 2 == 0 ? "even" : "odd");
+    }
+    for (int i = 60; i < 90; i++) {
+      SolrInputDocument doc = new SolrInputDocument();
+      doc.addField(id, i);
+      doc.addField(i1, i);
+      doc.addField("a_t", i % 2 == 0 ? "even" : "odd");
+      indexDoc(clients.get(0), null, doc);
+    }
+    commit();
+
+    QueryResponse rsp = query("q", "*:*", "fl", "id," + i1, "sort", i1 + " desc", "rows", "10",
+        ShardParams.SHARDS_ROWS_ESTIMATE, "true");
+    assertFieldValues(rsp.getResults(), i1, 89, 88, 87, 86, 85, 84, 83, 82, 81, 80);
+    query("q", "*:*", "fl", "id," + i1, "sort", i1 + " desc", "start", "20", "rows", "10",
+        ShardParams.SHARDS_ROWS_ESTIMATE, "true");
+    query("q", "*:*", "fl", "id," + i1, "sort", i1 + " desc", "start", "25", "rows", "10",
+        ShardParams.SHARDS_ROWS_ESTIMATE, "true", "facet", "true", "facet.field", "a_t");
+    query("q", "*:*", "fl", "id," + i1, "sort", i1 + " asc", "start", "10", "rows", "10",
+        ShardParams.SHARDS_ROWS_ESTIMATE, "true");
+    query("q", "a_t:odd", "fl", "id,a_t," + i1, "sort", i1 + " desc", "start", "5", "rows", "20",
+        ShardParams.SHARDS_ROWS_ESTIMATE, "true");
+    query("q", "*:*", "fl", "id," + i1, "sort", i1 + " desc", "start", "100", "rows", "10",
+        ShardParams.SHARDS_ROWS_ESTIMATE, "true");
+
+    // only the first shard was asked twice, and it is still listed once in shards.info
+    ModifiableSolrParams params = params("q", "*:*", "fl", "id,a_t", "sort", i1 + " desc", "rows", "10",
+        ShardParams.SHARDS_ROWS_ESTIMATE, "true", ShardParams.SHARDS_INFO, "true", "debug", "track");
+    setDistributedParams(params);
+    rsp = queryServer(params);
+    assertFieldValues(rsp.getResults(), id, 89, 88, 87, 86, 85, 84, 83, 82, 81, 80);
+    assertEquals(3, ((NamedList<?>) rsp.getResponse().get(ShardParams.SHARDS_INFO)).size());
+    NamedList<?> track = (NamedList<?>) rsp.getDebugMap().get("track");
+    assertEquals(4, ((NamedList<?>) track.get("EXECUTE_QUERY")).size());
+  }
+}
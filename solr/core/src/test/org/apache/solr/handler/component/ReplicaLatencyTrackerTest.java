@@ -0,0 +1,134 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.solr.handler.component;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.apache.lucene.util.LuceneTestCase;
+import org.junit.Test;
+
+public class ReplicaLatencyTrackerTest extends LuceneTestCase {
+
+  private static void respond(ReplicaLatencyTracker tracker, String url, long millis, int times) {
+    for (int i = 0; i < times; i++) {
+      tracker.requestStarted(url);
+      tracker.requestFinished(url, millis, false);
+    }
+  }
+
+  @Test
+  public void testPrefersFastReplicas() {
+    ReplicaLatencyTracker tracker = new ReplicaLatencyTracker();
+    respond(tracker, "http://slow", 500, 10);
+    respond(tracker, "http://fast", 5, 10);
+    respond(tracker, "http://medium", 50, 10);
+
+    List<String> urls = new ArrayList<>(Arrays.asList("http://slow", "http://medium", "http://fast"));
+    tracker.sort(urls);
+    assertEquals(Arrays.asList("http://fast", "http://medium", "http://slow"), urls);
+
+    // replicas that never responded are tried first
+    urls = new ArrayList<>(Arrays.asList("http://slow", "http://new", "http://fast"));
+    tracker.sort(urls);
+    assertEquals("http://new", urls.get(0));
+  }
+
+  @Test
+  public void testQueueDepth() {
+    ReplicaLatencyTracker tracker = new ReplicaLatencyTracker();
+    respond(tracker, "http://a", 10, 10);
+    respond(tracker, "http://b", 20, 10);
+    // a replica that has many requests in flight is avoided even if it was faster
+    for (int i = 0; i < 3; i++) {
+      tracker.requestStarted("http://a");
+    }
+    List<String> urls = new ArrayList<>(Arrays.asList("http://a", "http://b"));
+    tracker.sort(urls);
+    assertEquals("http://b", urls.get(0));
+    for (int i = 0; i < 3; i++) {
+      tracker.requestFinished("http://a", 10, false);
+    }
+    tracker.sort(urls);
+    assertEquals("http://a", urls.get(0));
+  }
+
+  @Test
+  public void testFailures() {
+    ReplicaLatencyTracker tracker = new ReplicaLatencyTracker();
+    respond(tracker, "http://a", 10, 10);
+    respond(tracker, "http://b", 20, 10);
+    tracker.requestStarted("http://a");
+    tracker.requestFinished("http://a", 1, true);
+    List<String> urls = new ArrayList<>(Arrays.asList("http://a", "http://b"));
+    tracker.sort(urls);
+    assertEquals("http://b", urls.get(0));
+  }
+
+  @Test
+  public void testRemoveIdleReplicas() throws InterruptedException {
+    ReplicaLatencyTracker tracker = new ReplicaLatencyTracker();
+    respond(tracker, "http://idle", 10, 1);
+    tracker.requestStarted("http://busy");
+    Thread.sleep(1);
+    long now = System.nanoTime();
+    Thread.sleep(1);
+    respond(tracker, "http://recent", 10, 1);
+    assertEquals(3, tracker.numReplicas());
+
+    // replicas with requests in flight are kept, however long ago they were sent
+    tracker.removeIdleReplicas(now);
+    assertEquals(Arrays.asList("http://busy", "http://recent"), trackedReplicas(tracker));
+    tracker.requestFinished("http://busy", 10, false);
+    tracker.removeIdleReplicas(now);
+    assertEquals(Arrays.asList("http://recent"), trackedReplicas(tracker));
+
+    // a forgotten replica ranks like a new one
+    List<String> urls = new ArrayList<>(Arrays.asList("http://recent", "http://idle"));
+    tracker.sort(urls);
+    assertEquals("http://idle", urls.get(0));
+  }
+
+  private static List<String> trackedReplicas(ReplicaLatencyTracker tracker) {
+    List<String> urls = new ArrayList<>();
+    for (String url : Arrays.asList("http://idle", "http://busy", "http://recent")) {
+      if (tracker.score(url) != 0) {
+        urls.add(url);
+      }
+    }
+    return urls;
+  }
+
+  @Test
+  public void testLatencyPercentile() {
+    ReplicaLatencyTracker tracker = new ReplicaLatencyTracker();
+    respond(tracker, "http://a", 10, ReplicaLatencyTracker.MIN_SAMPLES - 1);
+    assertEquals(-1, tracker.getLatencyPercentile(95));
+    for (int i = 1; i <= 100; i++) {
+      respond(tracker, "http://b", i, 1);
+    }
+    // 99 samples of 10ms and 1..100ms
+    assertEquals(10, tracker.getLatencyPercentile(50));
+    assertEquals(91, tracker.getLatencyPercentile(95));
+    assertEquals(100, tracker.getLatencyPercentile(100));
+
+    // only the latest samples count
+    respond(tracker, "http://c", 1000, ReplicaLatencyTracker.NUM_SAMPLES);
+    assertEquals(1000, tracker.getLatencyPercentile(50));
+  }
+}
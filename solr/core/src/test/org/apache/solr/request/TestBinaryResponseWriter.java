@@ -18,6 +18,9 @@ package org.apache.solr.request;
 
 import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.Locale;
 import java.util.Map;
 import java.util.UUID;
@@ -72,6 +75,45 @@ public class TestBinaryResponseWriter extends AbstractSolrTestCase {
     req.close();
   }
 
+  /**
+   * Tests that documents written straight from their stored fields are encoded exactly like the
+   * SolrDocuments built from them
+   */
+  public void testStoredFieldsWrittenLikeSolrDocuments() throws Exception {
+    assertU(adoc("id", "201", "a_t", "the quick brown fox", "title", "J\u00fcrgen's title", "uuid", UUID.randomUUID().toString(),
+        "a_i", "7", "a_l", "-8000000000", "a_f", "1.5", "a_d", "-2.25", "a_dt", "2016-07-04T12:00:00Z", "a_b", "true",
+        "a_is", "1", "a_is", "-200", "a_ss", "x", "a_ss", "y", "a_s", "z"));
+    assertU(adoc("id", "202", "a_i", "-1", "a_ss", "\ud83d\ude00"));
+    assertU(adoc("id", "203"));
+    assertU(commit());
+
+    BinaryQueryResponseWriter writer = (BinaryQueryResponseWriter) h.getCore().getQueryResponseWriter("javabin");
+    for (String fl : new String[] {"*", "id,a_i,a_ss,a_dt", "a_*", "id,a_t,title,uuid", "nosuchfield"}) {
+      LocalSolrQueryRequest req = lrf.makeRequest("q", "id:[201 TO 203]", "fl", fl, "sort", "id asc");
+      SolrQueryResponse rsp = h.queryAndResponse(req.getParams().get(CommonParams.QT), req);
+      ByteArrayOutputStream streamed = new ByteArrayOutputStream();
+      writer.write(streamed, req, rsp);
+
+      // documents are built first for subclasses of the codec
+      Resolver resolver = new Resolver(req, rsp.getReturnFields());
+      ByteArrayOutputStream built = new ByteArrayOutputStream();
+      new JavaBinCodec(resolver) {}.setWritableDocFields(resolver).marshal(rsp.getValues(), built);
+      assertArrayEquals("fl=" + fl, built.toByteArray(), streamed.toByteArray());
+
+      if (fl.equals("*")) {
+        NamedList res = (NamedList) new JavaBinCodec().unmarshal(new ByteArrayInputStream(streamed.toByteArray()));
+        SolrDocumentList docs = (SolrDocumentList) res.get("response");
+        assertEquals(3, docs.size());
+        assertEquals("J\u00fcrgen's title", docs.get(0).getFieldValue("title"));
+        assertEquals(-8000000000L, docs.get(0).getFieldValue("a_l"));
+        assertEquals(Arrays.asList(1, -200), docs.get(0).getFieldValue("a_is"));
+        assertEquals(Arrays.asList("\ud83d\ude00"), docs.get(1).getFieldValue("a_ss"));
+        assertEquals(Collections.singletonList("id"), new ArrayList<>(docs.get(2).getFieldNames()));
+      }
+      req.close();
+    }
+  }
+
   public void testResolverSolrDocumentPartialFields() throws Exception {
     LocalSolrQueryRequest req = lrf.makeRequest("q", "*:*",
                                                 "fl", "id,xxx,ddd_s"); 
@@ -0,0 +1,119 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.solr.search;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Random;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import org.apache.lucene.util.SuppressForbidden;
+
+/**
+ * Simulates the hit ratio of the SolrCache implementations on a recorded query log, or on a
+ * synthetic trace of popular queries interleaved with scans of one-off queries.
+ * <p>
+ * Usage: <code>CacheHitRatePerf [cacheSize] [logFile]</code>. Each line of the log is a
+ * lookup, keyed by the <code>params={...}</code> of Solr request log lines, or by the whole
+ * line otherwise. Every miss is followed by a put, like the queryResultCache does.
+ */
+public class CacheHitRatePerf {
+
+  private static final Pattern PARAMS = Pattern.compile("params=\\{(.*?)\\}");
+
+  /** Replays the keys against the cache and returns its hit ratio. */
+  public static double simulate(SolrCache<String,String> cache, List<String> keys) {
+    long hits = 0;
+    for (String key : keys) {
+      if (cache.get(key) != null) {
+        hits++;
+      } else {
+        cache.put(key, key);
+      }
+    }
+    return keys.isEmpty() ? 0 : (double) hits / keys.size();
+  }
+
+  /** Creates a live cache of the given class and size. */
+  @SuppressWarnings("unchecked")
+  public static SolrCache<String,String> newCache(Class<? extends SolrCache> clazz, int size) throws Exception {
+    SolrCache<String,String> cache = clazz.newInstance();
+    Map<String,String> args = new HashMap<>();
+    args.put("name", clazz.getSimpleName());
+    args.put("size", Integer.toString(size));
+    cache.init(args, null, null);
+    cache.setState(SolrCache.State.LIVE);
+    return cache;
+  }
+
+  /**
+   * Returns a trace of <code>numLookups</code> keys: most are drawn from a skewed distribution of
+   * <code>numPopular</code> queries, and every so often a scan of one-off queries comes in.
+   */
+  public static List<String> syntheticTrace(Random random, int numLookups, int numPopular, int scanLength) {
+    List<String> keys = new ArrayList<>(numLookups);
+    int oneOff = 0;
+    while (keys.size() < numLookups) {
+      if (random.nextInt(100) == 0) {
+        for (int i = 0; i < scanLength && keys.size() < numLookups; i++) {
+          keys.add("scan:" + oneOff++);
+        }
+      } else {
+        // roughly Zipfian: query i is about twice as likely as query 2*i
+        double u = random.nextDouble();
+        int rank = (int) Math.pow(numPopular, u);
+        keys.add("q:" + (rank - 1));
+      }
+    }
+    return keys;
+  }
+
+  static List<String> readLog(String file) throws IOException {
+    List<String> keys = new ArrayList<>();
+    try (BufferedReader reader = Files.newBufferedReader(Paths.get(file), StandardCharsets.UTF_8)) {
+      String line;
+      while ((line = reader.readLine()) != null) {
+        Matcher m = PARAMS.matcher(line);
+        keys.add(m.find() ? m.group(1) : line);
+      }
+    }
+    return keys;
+  }
+
+  @SuppressForbidden(reason = "No testcase, use of java.util.Random and System.out allowed")
+  public static void main(String[] args) throws Exception {
+    int size = args.length > 0 ? Integer.parseInt(args[0]) : 512;
+    List<String> keys = args.length > 1 ? readLog(args[1]) : syntheticTrace(new Random(), 1000000, 10000, 2000);
+
+    for (Class<? extends SolrCache> clazz : new Class[] {LRUCache.class, FastLRUCache.class, LFUCache.class, TinyLFUCache.class}) {
+      SolrCache<String,String> cache = newCache(clazz, size);
+      double hitRatio = simulate(cache, keys);
+      System.out.println(String.format(Locale.ROOT, "%-14s size=%d lookups=%d hitratio=%.4f",
+          clazz.getSimpleName(), size, keys.size(), hitRatio));
+      cache.close();
+    }
+  }
+}
@@ -39,10 +39,12 @@ import org.apache.lucene.index.StoredFieldVisitor;
 import org.apache.lucene.search.DocIdSet;
 import org.apache.lucene.search.DocIdSetIterator;
 import org.apache.lucene.search.Sort;
+import org.apache.lucene.store.AlreadyClosedException;
 import org.apache.lucene.util.BitSetIterator;
 import org.apache.lucene.util.Bits;
 import org.apache.lucene.util.FixedBitSet;
 import org.apache.lucene.util.LuceneTestCase;
+import org.apache.solr.common.SolrException;
 
 /**
  *
@@ -110,6 +112,14 @@ public class TestDocSet extends LuceneTestCase {
     return new BitDocSet(bs);
   }
 
+  public DocSet getOffHeapDocSet(FixedBitSet bs) {
+    return new OffHeapBitDocSet(new BitDocSet(bs));
+  }
+
+  public DocSet getRoaringDocSet(FixedBitSet bs) {
+    return new RoaringDocSet(new BitDocSet(bs));
+  }
+
   public DocSet getDocSlice(FixedBitSet bs) {
     int len = bs.cardinality();
     int[] arr = new int[len+5];
@@ -128,7 +138,7 @@ public class TestDocSet extends LuceneTestCase {
 
 
   public DocSet getDocSet(FixedBitSet bs) {
-    switch(rand.nextInt(10)) {
+    switch(rand.nextInt(12)) {
       case 0: return getHashDocSet(bs);
 
       case 1: return getBitDocSet(bs);
@@ -142,6 +152,10 @@ public class TestDocSet extends LuceneTestCase {
       case 8: return getIntDocSet(bs);
 
       case 9: return getDocSlice(bs);
+
+      case 10: return getOffHeapDocSet(bs);
+
+      case 11: return getRoaringDocSet(bs);
     }
     return null;
   }
@@ -529,7 +543,12 @@ public class TestDocSet extends LuceneTestCase {
     IndexReaderContext topLevelContext = reader.getContext();
     FixedBitSet bs = getRandomSet(reader.maxDoc(), rand.nextInt(reader.maxDoc()+1));
     DocSet a = new BitDocSet(bs);
-    DocSet b = getIntDocSet(bs);
+    DocSet b;
+    switch (rand.nextInt(3)) {
+      case 0: b = getIntDocSet(bs); break;
+      case 1: b = getOffHeapDocSet(bs); break;
+      default: b = getRoaringDocSet(bs);
+    }
 
     Filter fa = a.getTopFilter();
     Filter fb = b.getTopFilter();
@@ -562,6 +581,92 @@ public class TestDocSet extends LuceneTestCase {
     }
   }
 
+  public void testOffHeap() throws IOException {
+    FixedBitSet bs = getRandomSet(1000, rand.nextInt(1001));
+    DocSet offHeap = getOffHeapDocSet(bs);
+    checkEqual(bs, offHeap);
+    iter(new BitDocSet(bs), offHeap);
+    assertEquals(FixedBitSet.bits2words(1000) * 8L, offHeap.offHeapBytesUsed());
+    // caches that are bounded by memory usage must account for the off-heap memory
+    assertTrue(offHeap.ramBytesUsed() > offHeap.offHeapBytesUsed());
+    assertEquals(0, new BitDocSet(bs).offHeapBytesUsed());
+    expectThrows(SolrException.class, () -> offHeap.add(0));
+
+    // set operations don't need to copy the set to the heap first
+    FixedBitSet bs2 = getRandomSet(1000, rand.nextInt(1001));
+    for (DocSet other : new DocSet[] {getBitDocSet(bs2), getOffHeapDocSet(bs2), getIntDocSet(bs2)}) {
+      FixedBitSet expected = bs.clone();
+      expected.and(bs2);
+      checkEqual(expected, offHeap.intersection(other));
+      expected = bs.clone();
+      expected.andNot(bs2);
+      checkEqual(expected, offHeap.andNot(other));
+      expected = bs.clone();
+      expected.or(bs2);
+      checkEqual(expected, offHeap.union(other));
+    }
+
+    offHeap.close();
+    expectThrows(AlreadyClosedException.class, () -> offHeap.exists(0));
+    expectThrows(AlreadyClosedException.class, () -> offHeap.iterator());
+  }
+
+  public void testRoaring() {
+    // span several blocks, some sparse and some dense
+    int maxDoc = 200000 + rand.nextInt(100000);
+    FixedBitSet bs1 = getRandomSet(maxDoc, rand.nextInt(5000));
+    FixedBitSet bs2 = getRandomSet(maxDoc, rand.nextInt(5000));
+    for (int doc = rand.nextInt(65536); doc < maxDoc; doc += 1 + rand.nextInt(8)) {
+      bs1.set(doc);
+      if (doc > 131072) break;
+    }
+    for (int doc = rand.nextInt(maxDoc); doc < maxDoc; doc += 1 + rand.nextInt(4)) {
+      bs2.set(doc);
+    }
+
+    DocSet a = getRoaringDocSet(bs1);
+    checkEqual(bs1, a);
+    iter(new BitDocSet(bs1), a);
+    assertEquals(bs1, ((RoaringDocSet) a).getBits());
+    expectThrows(SolrException.class, () -> a.add(0));
+
+    for (DocSet b : new DocSet[] {getBitDocSet(bs2), getRoaringDocSet(bs2), getIntDocSet(bs2), getOffHeapDocSet(bs2)}) {
+      FixedBitSet and = bs1.clone();
+      and.and(bs2);
+      FixedBitSet or = bs1.clone();
+      or.or(bs2);
+      FixedBitSet andNot = bs1.clone();
+      andNot.andNot(bs2);
+
+      assertEquals(and.cardinality(), a.intersectionSize(b));
+      assertEquals(and.cardinality(), b.intersectionSize(a));
+      assertEquals(and.cardinality() > 0, a.intersects(b));
+      assertEquals(and.cardinality() > 0, b.intersects(a));
+      assertEquals(or.cardinality(), a.unionSize(b));
+      assertEquals(andNot.cardinality(), a.andNotSize(b));
+      iter(new BitDocSet(and), a.intersection(b));
+      iter(new BitDocSet(and), b.intersection(a));
+      iter(new BitDocSet(or), a.union(b));
+      iter(new BitDocSet(or), b.union(a));
+      iter(new BitDocSet(andNot), a.andNot(b));
+    }
+  }
+
+  public void testCompact() {
+    int maxDoc = 100000;
+    FixedBitSet bs = getRandomSet(maxDoc, DocSetUtil.smallSetSize(maxDoc) + 100 + rand.nextInt(maxDoc / 50));
+    DocSet compact = DocSetUtil.compact(new BitDocSet(bs));
+    assertTrue(compact instanceof RoaringDocSet);
+    assertTrue(compact.ramBytesUsed() < new BitDocSet(bs).ramBytesUsed());
+    iter(new BitDocSet(bs), compact);
+
+    // dense and small sets are left alone
+    DocSet dense = new BitDocSet(getRandomSet(maxDoc, maxDoc / 2));
+    assertSame(dense, DocSetUtil.compact(dense));
+    DocSet small = getIntDocSet(getRandomSet(maxDoc, 10));
+    assertSame(small, DocSetUtil.compact(small));
+  }
+
   public void testFilter() throws IOException {
     // keeping these numbers smaller help hit more edge cases
     int maxSeg=4;
@@ -16,7 +16,11 @@
  */
 package org.apache.solr.search;
 
+import org.apache.lucene.store.AlreadyClosedException;
+import org.apache.lucene.util.Accountable;
+import org.apache.lucene.util.FixedBitSet;
 import org.apache.lucene.util.LuceneTestCase;
+import org.apache.solr.common.SolrException;
 import org.apache.solr.common.util.NamedList;
 import org.apache.solr.util.ConcurrentLRUCache;
 import org.apache.solr.util.RTimer;
@@ -28,6 +32,9 @@ import java.util.Map;
 import java.util.Random;
 import java.util.concurrent.atomic.AtomicInteger;
 
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
 
 /**
  * Test for FastLRUCache
@@ -175,6 +182,41 @@ public class TestFastLRUCache extends LuceneTestCase {
     cacheNew.close();
   }
   
+  public void testAutowarmTimeBudget() throws IOException {
+    FastLRUCache<Object, Object> cache = new FastLRUCache<>();
+    Map<String, String> params = new HashMap<>();
+    params.put("size", "100");
+    params.put("autowarmCount", "10");
+    CacheRegenerator cr = new NoOpRegenerator();
+    Object o = cache.init(params, null, cr);
+    cache.setState(SolrCache.State.LIVE);
+    for (int i = 1; i <= 20; i++) {
+      cache.put(i, "" + i);
+    }
+    assertEquals("5", cache.get(5));
+
+    // the budget is exhausted once three entries were regenerated
+    SolrIndexSearcher searcher = mock(SolrIndexSearcher.class);
+    when(searcher.hasWarmTimeBudget()).thenReturn(true);
+    when(searcher.isWarmTimeBudgetExhausted()).thenReturn(false, false, false, true);
+    FastLRUCache<Object, Object> cacheNew = new FastLRUCache<>();
+    cacheNew.init(params, o, cr);
+    cacheNew.warm(searcher, cache);
+    cacheNew.setState(SolrCache.State.LIVE);
+    cache.close();
+
+    // the most recently used entries are warmed first, the least recently used ones are skipped
+    assertEquals("5", cacheNew.get(5));
+    assertEquals("20", cacheNew.get(20));
+    assertEquals("19", cacheNew.get(19));
+    assertEquals(null, cacheNew.get(18));
+    assertEquals(null, cacheNew.get(11));
+    NamedList<Serializable> nl = cacheNew.getStatistics();
+    assertEquals(3, nl.get("warmupItems"));
+    assertEquals(7, nl.get("warmupSkippedItems"));
+    cacheNew.close();
+  }
+
   public void testSimple() throws IOException {
     FastLRUCache sc = new FastLRUCache();
     Map l = new HashMap();
@@ -217,6 +259,109 @@ public class TestFastLRUCache extends LuceneTestCase {
     scNew.close();
   }
 
+  public void testMaxRamSize() throws Exception {
+    FastLRUCache<String, Accountable> cache = new FastLRUCache<>();
+    Map<String, String> params = new HashMap<>();
+    params.put("maxRamMB", "1");
+    CacheRegenerator cr = new NoOpRegenerator();
+    cache.init(params, null, cr);
+    cache.setState(SolrCache.State.LIVE);
+    long baseSize = cache.ramBytesUsed();
+    long entryOverhead = ConcurrentLRUCache.DEFAULT_RAM_BYTES_USED + ConcurrentLRUCache.HASHTABLE_RAM_BYTES_PER_ENTRY;
+    cache.put("1", () -> 512 * 1024);
+    assertEquals(1, cache.size());
+    assertEquals(baseSize + 512 * 1024 + entryOverhead, cache.ramBytesUsed());
+    cache.put("2", () -> 512 * 1024);
+    assertEquals(1, cache.size());
+    assertNull(cache.get("1"));
+    assertEquals(baseSize + 512 * 1024 + entryOverhead, cache.ramBytesUsed());
+    NamedList<Serializable> nl = cache.getStatistics();
+    assertEquals(1L, nl.get("evictions"));
+    assertEquals(1L, nl.get("evictionsRamUsage"));
+    cache.put("3", () -> 1024);
+    assertEquals(2, cache.size());
+    assertEquals(baseSize + 513 * 1024 + 2 * entryOverhead, cache.ramBytesUsed());
+    // the number of entries is not bounded
+    for (int i = 0; i < 1500; i++) {
+      cache.put("k" + i, () -> 8);
+    }
+    assertEquals(1502, cache.size());
+    nl = cache.getStatistics();
+    assertEquals(1L, nl.get("evictionsRamUsage"));
+    assertEquals(1L, nl.get("maxRamMB"));
+
+    cache.clear();
+    assertEquals(baseSize, cache.ramBytesUsed());
+    cache.close();
+  }
+
+  public void testOffHeapValues() throws Exception {
+    FastLRUCache<String, DocSet> cache = new FastLRUCache<>();
+    Map<String, String> params = new HashMap<>();
+    params.put("maxRamMB", "1");
+    cache.init(params, null, new NoOpRegenerator());
+    cache.setState(SolrCache.State.LIVE);
+    // 512KB of off-heap memory each
+    OffHeapBitDocSet set1 = new OffHeapBitDocSet(new BitDocSet(new FixedBitSet(4 * 1024 * 1024)));
+    OffHeapBitDocSet set2 = new OffHeapBitDocSet(new BitDocSet(new FixedBitSet(4 * 1024 * 1024)));
+    cache.put("1", set1);
+    cache.put("2", set2);
+    // the off-heap memory counts towards maxRamMB
+    assertEquals(1, cache.size());
+    assertNull(cache.get("1"));
+    // evicted sets may still be in use, they are left to the garbage collector
+    assertFalse(set1.exists(0));
+    assertFalse(set2.exists(0));
+    // sets that are cached when the cache is closed are freed
+    cache.close();
+    assertFalse(set1.exists(0));
+    expectThrows(AlreadyClosedException.class, () -> set2.exists(0));
+  }
+
+  public void testNonAccountableValues() throws Exception {
+    FastLRUCache<String, String> cache = new FastLRUCache<>();
+    Map<String, String> params = new HashMap<>();
+    params.put("size", "5");
+    params.put("maxRamMB", "1");
+    cache.init(params, null, new NoOpRegenerator());
+    expectThrows(SolrException.class, () -> cache.put("1", "1"));
+    cache.close();
+  }
+
+  public void testTinyLfuAdmission() {
+    ConcurrentLRUCache<Integer, String> cache = new ConcurrentLRUCache<>(10, 9, 9, 10, Long.MAX_VALUE, Long.MAX_VALUE,
+        true, false, false, null);
+    cache.setAlive(true);
+    for (int i = 0; i < 10; i++) {
+      for (int j = 0; j < 3; j++) {
+        cache.get(i);
+      }
+      cache.put(i, "" + i);
+    }
+    // the cache is full but does not know what it would evict yet
+    cache.put(10, "10");
+    assertEquals("10", cache.get(10));
+    assertEquals(0, cache.getStats().getCumulativeRejections());
+    assertEquals(9, cache.size());
+
+    cache.put(11, "11");
+    assertEquals(10, cache.size());
+    // a key that was never looked up does not replace popular entries
+    cache.put(12, "12");
+    assertEquals(1, cache.getStats().getCumulativeRejections());
+    assertNull(cache.get(12));
+    assertEquals(10, cache.size());
+
+    // but it does once it is looked up often enough
+    for (int i = 0; i < 5; i++) {
+      cache.get(12);
+    }
+    cache.put(12, "12");
+    assertEquals("12", cache.get(12));
+    assertEquals(1, cache.getStats().getCumulativeRejections());
+    cache.destroy();
+  }
+
   public void testOldestItems() {
     ConcurrentLRUCache<Integer, String> cache = new ConcurrentLRUCache<>(100, 90);
     for (int i = 0; i < 50; i++) {
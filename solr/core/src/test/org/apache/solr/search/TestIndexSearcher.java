@@ -31,8 +31,10 @@ import org.apache.lucene.index.IndexReaderContext;
 import org.apache.lucene.index.LeafReaderContext;
 import org.apache.lucene.index.LogDocMergePolicy;
 import org.apache.lucene.index.ReaderUtil;
+import org.apache.lucene.index.Term;
 import org.apache.lucene.queries.function.FunctionValues;
 import org.apache.lucene.queries.function.ValueSource;
+import org.apache.lucene.search.TermQuery;
 import org.apache.solr.SolrTestCaseJ4;
 import org.apache.solr.common.params.ModifiableSolrParams;
 import org.apache.solr.common.util.NamedList;
@@ -47,6 +49,7 @@ import org.apache.solr.request.SolrQueryRequest;
 import org.apache.solr.request.SolrRequestHandler;
 import org.apache.solr.schema.SchemaField;
 import org.apache.solr.servlet.DirectSolrConnection;
+import org.apache.solr.util.RefCounted;
 import org.apache.solr.util.plugin.SolrCoreAware;
 import org.junit.AfterClass;
 import org.junit.BeforeClass;
@@ -389,6 +392,97 @@ public class TestIndexSearcher extends SolrTestCaseJ4 {
     }
   }
 
+  public void testConcurrentAutowarm() throws Exception {
+    NamedList filterCacheStats = warmFilterCache("4", "-1");
+    assertEquals(2, filterCacheStats.get("warmupItems"));
+    assertEquals(0, filterCacheStats.get("warmupSkippedItems"));
+  }
+
+  public void testAutowarmTimeBudget() throws Exception {
+    NamedList filterCacheStats = warmFilterCache(random().nextBoolean() ? "1" : "4", "0");
+    assertEquals(0, filterCacheStats.get("warmupItems"));
+    assertEquals(2, filterCacheStats.get("warmupSkippedItems"));
+  }
+
+  public void testOffHeapFilterCache() throws Exception {
+    CoreContainer cores = h.getCoreContainer();
+    CoreDescriptor cd = h.getCore().getCoreDescriptor();
+    SolrCore newCore = null;
+    try {
+      System.setProperty("solr.filterCache.offHeap", "true");
+      newCore = cores.create("core1", cd.getInstanceDir(), ImmutableMap.of("config", "solrconfig.xml"));
+      assertTrue(newCore.getSolrConfig().offHeapFilterCache);
+
+      DirectSolrConnection connection = new DirectSolrConnection(newCore);
+      SolrRequestHandler handler = newCore.getRequestHandler("/update");
+      for (int i = 0; i < 200; i++) {
+        connection.request(handler, null, adoc("id", Integer.toString(i), "foo_s", i % 4 == 0 ? "a" : "b"));
+      }
+      connection.request(handler, null, commit());
+
+      ModifiableSolrParams params = new ModifiableSolrParams();
+      params.add("q", "*:*");
+      params.add("fq", "foo_s:b");
+      assertTrue(connection.request("/select", params, null).contains("numFound=\"150\""));
+      params.set("fq", "-foo_s:b");
+      assertTrue(connection.request("/select", params, null).contains("numFound=\"50\""));
+
+      RefCounted<SolrIndexSearcher> searcher = newCore.getSearcher();
+      try {
+        assertTrue(searcher.get().getFilterCache().get(new TermQuery(new Term("foo_s", "b"))) instanceof OffHeapBitDocSet);
+        assertTrue((Long) searcher.get().getFilterCache().getStatistics().get("offHeapBytesUsed") > 0);
+      } finally {
+        searcher.decref();
+      }
+    } finally {
+      System.clearProperty("solr.filterCache.offHeap");
+      if (newCore != null) {
+        cores.unload("core1");
+      }
+    }
+  }
+
+  /** Fills the filterCache of a new core and returns the filterCache statistics of the searcher that got warmed from it. */
+  private NamedList warmFilterCache(String autowarmThreads, String autowarmTimeBudgetMillis) throws Exception {
+    CoreContainer cores = h.getCoreContainer();
+    CoreDescriptor cd = h.getCore().getCoreDescriptor();
+    SolrCore newCore = null;
+    try {
+      System.setProperty("solr.autowarmThreads", autowarmThreads);
+      System.setProperty("solr.autowarmTimeBudgetMillis", autowarmTimeBudgetMillis);
+      newCore = cores.create("core1", cd.getInstanceDir(), ImmutableMap.of("config", "solrconfig.xml"));
+      assertEquals(Integer.parseInt(autowarmThreads), newCore.getSolrConfig().autowarmThreads);
+
+      DirectSolrConnection connection = new DirectSolrConnection(newCore);
+      SolrRequestHandler handler = newCore.getRequestHandler("/update");
+      for (int i = 0; i < 10; i++) {
+        connection.request(handler, null, adoc("id", Integer.toString(i), "foo_s", Integer.toString(i % 3)));
+      }
+      connection.request(handler, null, commit());
+      for (int i = 0; i < 3; i++) {
+        ModifiableSolrParams params = new ModifiableSolrParams();
+        params.add("q", "*:*");
+        params.add("fq", "foo_s:" + i);
+        assertTrue(connection.request("/select", params, null).contains("<int name=\"status\">0</int>"));
+      }
+
+      connection.request(handler, null, adoc("id", "10"));
+      connection.request(handler, null, commit());
+      RefCounted<SolrIndexSearcher> searcher = newCore.getSearcher();
+      try {
+        return searcher.get().getFilterCache().getStatistics();
+      } finally {
+        searcher.decref();
+      }
+    } finally {
+      System.clearProperty("solr.autowarmThreads");
+      System.clearProperty("solr.autowarmTimeBudgetMillis");
+      if (newCore != null) {
+        cores.unload("core1");
+      }
+    }
+  }
+
   private void addDummyDoc(SolrCore core) throws Exception {
     DirectSolrConnection connection = new DirectSolrConnection(core);
     SolrRequestHandler handler = core.getRequestHandler("/update");
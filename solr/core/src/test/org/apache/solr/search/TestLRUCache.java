@@ -21,12 +21,17 @@ import java.io.Serializable;
 import java.util.HashMap;
 import java.util.Map;
 
+import org.apache.lucene.store.AlreadyClosedException;
 import org.apache.lucene.util.Accountable;
+import org.apache.lucene.util.FixedBitSet;
 import org.apache.lucene.util.LuceneTestCase;
 import org.apache.lucene.util.RamUsageEstimator;
 import org.apache.solr.common.SolrException;
 import org.apache.solr.common.util.NamedList;
 
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
 /**
  * Test for <code>org.apache.solr.search.LRUCache</code>
  */
@@ -124,6 +129,75 @@ public class TestLRUCache extends LuceneTestCase {
     lruCacheNew.close();
   }
 
+  public void testWarmupStats() throws IOException {
+    LRUCache<Object, Object> lruCache = new LRUCache<>();
+    Map<String, String> params = new HashMap<>();
+    params.put("size", "100");
+    params.put("autowarmCount", "10");
+    // stops regenerating once it saw the 5th entry
+    CacheRegenerator cr = new CacheRegenerator() {
+      @Override
+      public boolean regenerateItem(SolrIndexSearcher newSearcher, SolrCache newCache, SolrCache oldCache, Object oldKey, Object oldVal) throws IOException {
+        newCache.put(oldKey, oldVal);
+        return ((Integer) oldKey) < 95;
+      }
+    };
+    Object o = lruCache.init(params, null, cr);
+    lruCache.setState(SolrCache.State.LIVE);
+    for (int i = 1; i <= 100; i++) {
+      lruCache.put(i, "" + i);
+    }
+    LRUCache<Object, Object> lruCacheNew = new LRUCache<>();
+    lruCacheNew.init(params, o, cr);
+    lruCacheNew.warm(null, lruCache);
+    lruCacheNew.setState(SolrCache.State.LIVE);
+    lruCache.close();
+
+    // oldest entries are warmed first
+    assertEquals("91", lruCacheNew.get(91));
+    assertEquals("95", lruCacheNew.get(95));
+    assertEquals(null, lruCacheNew.get(96));
+    NamedList<Serializable> nl = lruCacheNew.getStatistics();
+    assertEquals(5, nl.get("warmupItems"));
+    assertEquals(5, nl.get("warmupSkippedItems"));
+    lruCacheNew.close();
+  }
+
+  public void testAutowarmTimeBudget() throws IOException {
+    LRUCache<Object, Object> lruCache = new LRUCache<>();
+    Map<String, String> params = new HashMap<>();
+    params.put("size", "100");
+    params.put("autowarmCount", "10");
+    CacheRegenerator cr = new NoOpRegenerator();
+    Object o = lruCache.init(params, null, cr);
+    lruCache.setState(SolrCache.State.LIVE);
+    for (int i = 1; i <= 20; i++) {
+      lruCache.put(i, "" + i);
+    }
+    assertEquals("5", lruCache.get(5));
+
+    // the budget is exhausted once three entries were regenerated
+    SolrIndexSearcher searcher = mock(SolrIndexSearcher.class);
+    when(searcher.hasWarmTimeBudget()).thenReturn(true);
+    when(searcher.isWarmTimeBudgetExhausted()).thenReturn(false, false, false, true);
+    LRUCache<Object, Object> lruCacheNew = new LRUCache<>();
+    lruCacheNew.init(params, o, cr);
+    lruCacheNew.warm(searcher, lruCache);
+    lruCacheNew.setState(SolrCache.State.LIVE);
+    lruCache.close();
+
+    // the most recently used entries are warmed first, the least recently used ones are skipped
+    assertEquals("5", lruCacheNew.get(5));
+    assertEquals("20", lruCacheNew.get(20));
+    assertEquals("19", lruCacheNew.get(19));
+    assertEquals(null, lruCacheNew.get(18));
+    assertEquals(null, lruCacheNew.get(11));
+    NamedList<Serializable> nl = lruCacheNew.getStatistics();
+    assertEquals(3, nl.get("warmupItems"));
+    assertEquals(7, nl.get("warmupSkippedItems"));
+    lruCacheNew.close();
+  }
+
   public void testMaxRamSize() throws Exception {
     LRUCache<String, Accountable> accountableLRUCache = new LRUCache<>();
     Map<String, String> params = new HashMap<>();
@@ -168,6 +242,30 @@ public class TestLRUCache extends LuceneTestCase {
     assertEquals(RamUsageEstimator.shallowSizeOfInstance(LRUCache.class), accountableLRUCache.ramBytesUsed());
   }
 
+  public void testOffHeapValues() throws Exception {
+    LRUCache<String, DocSet> cache = new LRUCache<>();
+    Map<String, String> params = new HashMap<>();
+    params.put("size", "100");
+    params.put("maxRamMB", "1");
+    cache.init(params, null, new NoOpRegenerator());
+    // 512KB of off-heap memory each
+    OffHeapBitDocSet set1 = new OffHeapBitDocSet(new BitDocSet(new FixedBitSet(4 * 1024 * 1024)));
+    OffHeapBitDocSet set2 = new OffHeapBitDocSet(new BitDocSet(new FixedBitSet(4 * 1024 * 1024)));
+    assertTrue(set1.ramBytesUsed() > 512 * 1024);
+    cache.put("1", set1);
+    cache.put("2", set2);
+    // the off-heap memory counts towards maxRamMB
+    assertEquals(1, cache.size());
+    assertNull(cache.get("1"));
+    // evicted sets may still be in use, they are left to the garbage collector
+    assertFalse(set1.exists(0));
+    assertFalse(set2.exists(0));
+    // sets that are cached when the cache is closed are freed
+    cache.close();
+    assertFalse(set1.exists(0));
+    expectThrows(AlreadyClosedException.class, () -> set2.exists(0));
+  }
+
   public void testNonAccountableValues() throws Exception {
     LRUCache<String, String> cache = new LRUCache<>();
     Map<String, String> params = new HashMap<>();
@@ -0,0 +1,95 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.solr.search;
+
+
+import org.apache.solr.SolrTestCaseJ4;
+import org.apache.solr.common.SolrException;
+import org.apache.solr.common.params.CommonParams;
+import org.apache.solr.request.SolrQueryRequest;
+import org.apache.solr.response.ResultContext;
+import org.apache.solr.response.SolrQueryResponse;
+import org.junit.BeforeClass;
+
+public class TestMinExactCount extends SolrTestCaseJ4 {
+
+  private static final int NUM_DOCS = 1000;
+
+  @BeforeClass
+  public static void beforeClass() throws Exception {
+    initCore("solrconfig.xml", "schema15.xml");
+    for (int i = 0; i < NUM_DOCS; i++) {
+      assertU(adoc("id", Integer.toString(i), "text", i % 100 == 0 ? "common rare" : "common other"));
+      if (random().nextInt(200) == 0) {
+        assertU(commit());
+      }
+    }
+    assertU(commit());
+  }
+
+  public void testExactByDefault() throws Exception {
+    assertNumFound(true, NUM_DOCS, "q", "text:common text:rare", "rows", "10");
+    assertNumFound(true, NUM_DOCS, "q", "text:common text:rare", "rows", "10",
+        CommonParams.MIN_EXACT_COUNT, Integer.toString(NUM_DOCS));
+  }
+
+  public void testApproximate() throws Exception {
+    final int minExactCount = random().nextInt(NUM_DOCS);
+    SolrQueryResponse rsp = query("q", "text:common text:rare", "rows", "10",
+        CommonParams.MIN_EXACT_COUNT, Integer.toString(minExactCount));
+    final int numFound = ((ResultContext) rsp.getResponse()).getDocList().matches();
+    if (Boolean.FALSE.equals(rsp.getResponseHeader().get(SolrQueryResponse.RESPONSE_HEADER_NUM_FOUND_EXACT_KEY))) {
+      assertTrue(numFound > minExactCount);
+      assertTrue(numFound <= NUM_DOCS);
+    } else {
+      assertEquals(NUM_DOCS, numFound);
+    }
+
+    // approximate counts must not be served from the query result cache
+    assertNumFound(true, NUM_DOCS, "q", "text:common text:rare", "rows", "10");
+  }
+
+  public void testSortedQueriesAreExact() throws Exception {
+    assertNumFound(true, NUM_DOCS, "q", "text:common text:rare", "rows", "10", "sort", "id asc",
+        CommonParams.MIN_EXACT_COUNT, "0");
+  }
+
+  public void testInvalidMinExactCount() throws Exception {
+    SolrException e = expectThrows(SolrException.class, () -> query("q", "text:common",
+        CommonParams.MIN_EXACT_COUNT, "-1"));
+    assertEquals(SolrException.ErrorCode.BAD_REQUEST.code, e.code());
+  }
+
+  private static void assertNumFound(boolean exact, int numFound, String... params) throws Exception {
+    SolrQueryResponse rsp = query(params);
+    assertEquals(exact, rsp.getResponseHeader().get(SolrQueryResponse.RESPONSE_HEADER_NUM_FOUND_EXACT_KEY) == null);
+    assertEquals(numFound, ((ResultContext) rsp.getResponse()).getDocList().matches());
+  }
+
+  private static SolrQueryResponse query(String... params) throws Exception {
+    SolrQueryRequest req = req(params);
+    try {
+      SolrQueryResponse rsp = h.queryAndResponse("standard", req);
+      if (rsp.getException() != null) {
+        throw rsp.getException();
+      }
+      return rsp;
+    } finally {
+      req.close();
+    }
+  }
+}
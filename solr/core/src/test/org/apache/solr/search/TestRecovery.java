@@ -60,11 +60,13 @@ public class TestRecovery extends SolrTestCaseJ4 {
   public static void beforeClass() throws Exception {
     savedFactory = System.getProperty("solr.DirectoryFactory");
     System.setProperty("solr.directoryFactory", "org.apache.solr.core.MockFSDirectoryFactory");
+    System.setProperty("solr.ulog.numReplayThreads", random().nextBoolean() ? "1" : Integer.toString(2 + random().nextInt(3)));
     initCore("solrconfig-tlog.xml","schema15.xml");
   }
   
   @AfterClass
   public static void afterClass() {
+    System.clearProperty("solr.ulog.numReplayThreads");
     if (savedFactory == null) {
       System.clearProperty("solr.directoryFactory");
     } else {
@@ -182,6 +184,54 @@ public class TestRecovery extends SolrTestCaseJ4 {
 
   }
 
+  @Test
+  public void testLogReplayManyUpdates() throws Exception {
+    try {
+      DirectUpdateHandler2.commitOnClose = false;
+      final Semaphore logReplayFinish = new Semaphore(0);
+      UpdateLog.testing_logReplayFinishHook = logReplayFinish::release;
+
+      clearIndex();
+      assertU(commit());
+
+      // updates of the same ids must be replayed in order, and deletes by query after what precedes them
+      int numIds = 300;
+      boolean[] exists = new boolean[numIds];
+      for (int i = 0; i < 3000; i++) {
+        int id = random().nextInt(numIds);
+        if (random().nextInt(5) == 0) {
+          deleteAndGetVersion("M" + id, null);
+          exists[id] = false;
+        } else {
+          addAndGetVersion(sdoc("id", "M" + id, "val_i", Integer.toString(i)), null);
+          exists[id] = true;
+        }
+        if (i == 2000) {
+          deleteByQueryAndGetVersion("id:M1*", null);
+          for (int j = 0; j < numIds; j++) {
+            if (Integer.toString(j).startsWith("1")) exists[j] = false;
+          }
+        }
+      }
+      int numExisting = 0;
+      for (boolean e : exists) {
+        if (e) numExisting++;
+      }
+
+      h.close();
+      createCore();
+      assertTrue(logReplayFinish.tryAcquire(timeout, TimeUnit.SECONDS));
+
+      assertJQ(req("q","*:*") ,"/response/numFound==" + numExisting);
+      for (int j = 0; j < numIds; j += 7) {
+        assertJQ(req("q","id:M" + j), "/response/numFound==" + (exists[j] ? 1 : 0));
+      }
+    } finally {
+      DirectUpdateHandler2.commitOnClose = true;
+      UpdateLog.testing_logReplayFinishHook = null;
+    }
+  }
+
   @Test
   public void testBuffering() throws Exception {
 
@@ -0,0 +1,220 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.solr.search;
+
+import org.apache.lucene.index.LogDocMergePolicy;
+import org.apache.lucene.index.Term;
+import org.apache.lucene.search.BooleanClause;
+import org.apache.lucene.search.BooleanQuery;
+import org.apache.lucene.search.FuzzyQuery;
+import org.apache.lucene.search.MatchAllDocsQuery;
+import org.apache.lucene.search.Query;
+import org.apache.lucene.search.TermQuery;
+import org.apache.lucene.search.TermRangeQuery;
+import org.apache.solr.SolrTestCaseJ4;
+import org.apache.solr.common.util.NamedList;
+import org.apache.solr.index.LogDocMergePolicyFactory;
+import org.apache.solr.util.RefCounted;
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+
+public class TestSegmentFilterCache extends SolrTestCaseJ4 {
+
+  @BeforeClass
+  public static void beforeClass() throws Exception {
+    // segments must not be merged behind our back
+    systemSetPropertySolrTestsMergePolicy(LogDocMergePolicy.class.getName());
+    systemSetPropertySolrTestsMergePolicyFactory(LogDocMergePolicyFactory.class.getName());
+    System.setProperty("solr.segmentFilterCache.size", "1000");
+    initCore("solrconfig.xml", "schema.xml");
+  }
+
+  @AfterClass
+  public static void afterClass() {
+    systemClearPropertySolrTestsMergePolicy();
+    systemClearPropertySolrTestsMergePolicyFactory();
+    System.clearProperty("solr.segmentFilterCache.size");
+  }
+
+  @Override
+  public void setUp() throws Exception {
+    super.setUp();
+    assertU(delQ("*:*"));
+    assertU(commit());
+    h.getCore().getSegmentFilterCache().clear();
+  }
+
+  public void testOnlyNewSegmentsAreComputed() throws Exception {
+    SegmentFilterCache cache = h.getCore().getSegmentFilterCache();
+    assertNotNull(cache);
+    // a value that is not in the filterCache, so that warming doesn't populate the segment cache
+    final String value = "v" + random().nextLong();
+    final Query query = new TermQuery(new Term("foo_s", value));
+
+    for (int i = 0; i < 10; i++) {
+      assertU(adoc("id", Integer.toString(i), "foo_s", i % 2 == 0 ? value : "odd"));
+    }
+    assertU(commit());
+    for (int i = 10; i < 20; i++) {
+      assertU(adoc("id", Integer.toString(i), "foo_s", i % 2 == 0 ? value : "odd"));
+    }
+    assertU(commit());
+
+    long inserts = (Long) getStat(cache, "inserts");
+    long hits = (Long) getStat(cache, "hits");
+    assertEquals(10, getDocSet(cache, query).size());
+    assertEquals(inserts + 2, getStat(cache, "inserts"));
+
+    // a new segment, only the new segment is computed
+    assertU(adoc("id", "20", "foo_s", value));
+    assertU(commit());
+    inserts = (Long) getStat(cache, "inserts");
+    hits = (Long) getStat(cache, "hits");
+    assertEquals(11, getDocSet(cache, query).size());
+    assertEquals(inserts + 1, getStat(cache, "inserts"));
+    assertEquals(hits + 2, getStat(cache, "hits"));
+
+    // deletions are applied on top of the cached sets of existing segments
+    assertU(delI("0"));
+    assertU(delI("12"));
+    assertU(commit());
+    inserts = (Long) getStat(cache, "inserts");
+    hits = (Long) getStat(cache, "hits");
+    assertEquals(9, getDocSet(cache, query).size());
+    assertEquals(inserts, getStat(cache, "inserts"));
+    assertEquals(hits + 3, getStat(cache, "hits"));
+
+    // and through the filterCache of the searcher
+    assertJQ(req("q", "*:*", "fq", "foo_s:" + value), "/response/numFound==9");
+    assertJQ(req("q", "*:*", "fq", "-foo_s:" + value), "/response/numFound==10");
+  }
+
+  public void testFilteredDocSet() throws Exception {
+    SegmentFilterCache cache = h.getCore().getSegmentFilterCache();
+    final String value = "v" + random().nextLong();
+    for (int i = 0; i < 10; i++) {
+      assertU(adoc("id", Integer.toString(i), "foo_s", i % 2 == 0 ? value : "odd"));
+    }
+    assertU(commit());
+
+    RefCounted<SolrIndexSearcher> ref = h.getCore().getSearcher();
+    try {
+      SolrIndexSearcher searcher = ref.get();
+      DocSet filter = searcher.getDocSet(new TermQuery(new Term("id", "0")));
+      long inserts = (Long) getStat(cache, "inserts");
+      // misses of the filterCache go through the per-segment cache too
+      assertEquals(1, searcher.getDocSet(new TermQuery(new Term("foo_s", value)), filter).size());
+      assertTrue((Long) getStat(cache, "inserts") > inserts);
+    } finally {
+      ref.decref();
+    }
+  }
+
+  private static DocSet getDocSet(SegmentFilterCache cache, Query query) throws Exception {
+    RefCounted<SolrIndexSearcher> ref = h.getCore().getSearcher();
+    try {
+      return cache.getDocSet(ref.get(), query);
+    } finally {
+      ref.decref();
+    }
+  }
+
+  public void testSameAsUncached() throws Exception {
+    SegmentFilterCache cache = h.getCore().getSegmentFilterCache();
+    final int numDocs = atLeast(200);
+    for (int i = 0; i < numDocs; i++) {
+      assertU(adoc("id", Integer.toString(i), "foo_s", Integer.toString(random().nextInt(20))));
+      if (random().nextInt(30) == 0) {
+        assertU(commit());
+      }
+      if (random().nextInt(20) == 0) {
+        assertU(delI(Integer.toString(random().nextInt(i + 1))));
+      }
+    }
+    assertU(commit());
+
+    RefCounted<SolrIndexSearcher> ref = h.getCore().getSearcher();
+    try {
+      SolrIndexSearcher searcher = ref.get();
+      for (int iter = 0; iter < 50; iter++) {
+        Query q = randomQuery();
+        assertTrue(SegmentFilterCache.isCacheable(q));
+        DocSet expected = searcher.getDocSetNC(q, null);
+        // twice, the second time entirely from the cache
+        assertTrue(q.toString(), DocSetUtil.equals(expected, cache.getDocSet(searcher, q)));
+        assertTrue(q.toString(), DocSetUtil.equals(expected, cache.getDocSet(searcher, q)));
+      }
+    } finally {
+      ref.decref();
+    }
+  }
+
+  private Query randomQuery() {
+    switch (random().nextInt(4)) {
+      case 0:
+        return new TermQuery(new Term("foo_s", Integer.toString(random().nextInt(20))));
+      case 1:
+        return TermRangeQuery.newStringRange("foo_s", Integer.toString(random().nextInt(20)), Integer.toString(random().nextInt(20)),
+            random().nextBoolean(), random().nextBoolean());
+      case 2:
+        return new MatchAllDocsQuery();
+      default:
+        return new BooleanQuery.Builder()
+            .add(new MatchAllDocsQuery(), BooleanClause.Occur.MUST)
+            .add(new TermQuery(new Term("foo_s", Integer.toString(random().nextInt(20)))), BooleanClause.Occur.MUST_NOT)
+            .build();
+    }
+  }
+
+  public void testIsCacheable() {
+    Query term = new TermQuery(new Term("foo_s", "a"));
+    assertTrue(SegmentFilterCache.isCacheable(term));
+    assertTrue(SegmentFilterCache.isCacheable(new BooleanQuery.Builder().add(term, BooleanClause.Occur.FILTER).build()));
+    // top terms are picked across all segments
+    Query fuzzy = new FuzzyQuery(new Term("foo_s", "a"));
+    assertFalse(SegmentFilterCache.isCacheable(fuzzy));
+    assertFalse(SegmentFilterCache.isCacheable(new BooleanQuery.Builder()
+        .add(term, BooleanClause.Occur.SHOULD).add(fuzzy, BooleanClause.Occur.SHOULD).build()));
+  }
+
+  public void testEvictionRemovesEmptySegments() throws Exception {
+    final SegmentFilterCache cache = new SegmentFilterCache(1, -1);
+    for (int i = 0; i < 10; i++) {
+      assertU(adoc("id", Integer.toString(i), "foo_s", "a"));
+    }
+    assertU(commit());
+    for (int i = 10; i < 20; i++) {
+      assertU(adoc("id", Integer.toString(i), "foo_s", "a"));
+    }
+    assertU(commit());
+
+    assertEquals(20, getDocSet(cache, new TermQuery(new Term("foo_s", "a"))).size());
+    // the entry of the first segment got evicted when the second segment was cached
+    assertEquals(1, getStat(cache, "size"));
+    assertEquals(1, getStat(cache, "segments"));
+    assertEquals(1L, getStat(cache, "evictions"));
+  }
+
+  public void testInvalidSize() {
+    expectThrows(IllegalArgumentException.class, () -> new SegmentFilterCache(0, -1));
+  }
+
+  private static Object getStat(SegmentFilterCache cache, String name) {
+    NamedList stats = cache.getStatistics();
+    return stats.get(name);
+  }
+}
@@ -0,0 +1,168 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.solr.search;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+
+import org.apache.solr.SolrTestCaseJ4;
+import org.apache.solr.common.util.ExecutorUtil;
+import org.apache.solr.common.util.NamedList;
+import org.apache.solr.util.ConcurrentTinyLFUCache;
+import org.apache.solr.util.DefaultSolrThreadFactory;
+import org.apache.solr.util.RefCounted;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+/**
+ * Test for TinyLFUCache
+ *
+ * @see org.apache.solr.search.TinyLFUCache
+ */
+public class TestTinyLFUCache extends SolrTestCaseJ4 {
+
+  @BeforeClass
+  public static void beforeClass() throws Exception {
+    initCore("solrconfig-caching.xml", "schema.xml");
+  }
+
+  @Test
+  public void testConfig() throws Exception {
+    RefCounted<SolrIndexSearcher> holder = h.getCore().getSearcher();
+    try {
+      SolrCache cache = holder.get().getCache("tinyLfuCache");
+      assertTrue(cache instanceof TinyLFUCache);
+      assertTrue(cache.getDescription(), cache.getDescription().contains("maxSize=10"));
+    } finally {
+      holder.decref();
+    }
+  }
+
+  @Test
+  public void testSimple() throws Exception {
+    TinyLFUCache<Integer, String> cache = new TinyLFUCache<>();
+    Map<String, String> params = new HashMap<>();
+    params.put("size", "100");
+    params.put("autowarmCount", "25");
+    CacheRegenerator cr = new NoOpRegenerator();
+    Object o = cache.init(params, null, cr);
+    cache.setState(SolrCache.State.LIVE);
+    for (int i = 0; i < 101; i++) {
+      assertNull(cache.get(i));
+      cache.put(i, "" + i);
+    }
+    assertEquals("25", cache.get(25));
+    assertEquals(100, cache.size());
+    NamedList<Serializable> nl = cache.getStatistics();
+    assertEquals(102L, nl.get("lookups"));
+    assertEquals(1L, nl.get("hits"));
+    assertEquals(101L, nl.get("inserts"));
+    assertEquals(1L, nl.get("evictions"));
+
+    TinyLFUCache<Integer, String> cacheNew = new TinyLFUCache<>();
+    cacheNew.init(params, o, cr);
+    cacheNew.warm(null, cache);
+    cacheNew.setState(SolrCache.State.LIVE);
+    cache.close();
+    assertEquals(25, cacheNew.size());
+    // the entry that was hit is the most valuable one
+    assertEquals("25", cacheNew.get(25));
+    nl = cacheNew.getStatistics();
+    assertEquals(1L, nl.get("lookups"));
+    assertEquals(25, nl.get("warmupItems"));
+    assertEquals(103L, nl.get("cumulative_lookups"));
+    assertEquals(2L, nl.get("cumulative_hits"));
+    cacheNew.close();
+  }
+
+  @Test
+  public void testScanResistance() throws Exception {
+    ConcurrentTinyLFUCache<String, String> cache = new ConcurrentTinyLFUCache<>(100, 100);
+    for (int j = 0; j < 5; j++) {
+      for (int i = 0; i < 50; i++) {
+        if (cache.get("hot" + i) == null) {
+          cache.put("hot" + i, "v");
+        }
+      }
+    }
+    // a scan of one-off keys, many more than the cache can hold
+    for (int i = 0; i < 1000; i++) {
+      assertNull(cache.get("scan" + i));
+      cache.put("scan" + i, "v");
+    }
+    for (int i = 0; i < 50; i++) {
+      assertNotNull("hot" + i + " was flushed by the scan", cache.get("hot" + i));
+    }
+    assertTrue(cache.size() <= 100);
+  }
+
+  @Test
+  public void testHitRatio() throws Exception {
+    List<String> keys = CacheHitRatePerf.syntheticTrace(random(), 100000, 5000, 1000);
+    SolrCache<String, String> lru = CacheHitRatePerf.newCache(FastLRUCache.class, 200);
+    SolrCache<String, String> tinyLfu = CacheHitRatePerf.newCache(TinyLFUCache.class, 200);
+    double lruHitRatio = CacheHitRatePerf.simulate(lru, keys);
+    double tinyLfuHitRatio = CacheHitRatePerf.simulate(tinyLfu, keys);
+    assertTrue("TinyLFU hit ratio " + tinyLfuHitRatio + " is not better than LRU " + lruHitRatio,
+        tinyLfuHitRatio > lruHitRatio);
+    lru.close();
+    tinyLfu.close();
+  }
+
+  @Test
+  public void testConcurrentAccess() throws Exception {
+    final int maxSize = 50;
+    ConcurrentTinyLFUCache<Integer, Integer> cache = new ConcurrentTinyLFUCache<>(maxSize, 16);
+    ExecutorService executor = ExecutorUtil.newMDCAwareFixedThreadPool(4, new DefaultSolrThreadFactory("testConcurrentAccess"));
+    try {
+      List<Future<?>> futures = new ArrayList<>();
+      for (int t = 0; t < 4; t++) {
+        final long seed = random().nextLong();
+        futures.add(executor.submit(() -> {
+          java.util.Random r = new java.util.Random(seed);
+          for (int i = 0; i < 20000; i++) {
+            int key = r.nextInt(200);
+            Integer value = cache.get(key);
+            if (value == null) {
+              cache.put(key, key);
+            } else {
+              assertEquals(key, value.intValue());
+            }
+            if (r.nextInt(100) == 0) {
+              cache.remove(r.nextInt(200));
+            }
+          }
+        }));
+      }
+      for (Future<?> future : futures) {
+        future.get();
+      }
+    } finally {
+      ExecutorUtil.shutdownAndAwaitTermination(executor);
+    }
+    // a last write drains the buffers of all threads
+    cache.put(-1, -1);
+    assertTrue("size=" + cache.size(), cache.size() <= maxSize);
+    cache.clear();
+    assertEquals(0, cache.size());
+  }
+}
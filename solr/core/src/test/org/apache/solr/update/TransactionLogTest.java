@@ -0,0 +1,143 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.solr.update;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+
+import org.apache.lucene.util.TestUtil;
+import org.apache.solr.SolrTestCaseJ4;
+import org.apache.solr.common.SolrInputDocument;
+import org.apache.solr.common.util.ExecutorUtil;
+import org.apache.solr.util.DefaultSolrThreadFactory;
+import org.junit.Test;
+
+public class TransactionLogTest extends SolrTestCaseJ4 {
+
+  @Test
+  public void testConcurrentWritesWithFsync() throws Exception {
+    File tlogFile = new File(createTempDir().toFile(), UpdateLog.TLOG_NAME + ".0000000000000000001");
+    TransactionLog tlog = new TransactionLog(tlogFile, new ArrayList<>());
+    final int numThreads = 4;
+    final int numDocsPerThread = atLeast(50);
+
+    ExecutorService executor = ExecutorUtil.newMDCAwareFixedThreadPool(numThreads, new DefaultSolrThreadFactory("testConcurrentWritesWithFsync"));
+    try {
+      List<Future<?>> futures = new ArrayList<>();
+      for (int t = 0; t < numThreads; t++) {
+        final int thread = t;
+        futures.add(executor.submit(() -> {
+          for (int i = 0; i < numDocsPerThread; i++) {
+            AddUpdateCommand cmd = new AddUpdateCommand(null);
+            cmd.solrDoc = new SolrInputDocument();
+            cmd.solrDoc.addField("id", thread + "_" + i);
+            cmd.setVersion(thread * numDocsPerThread + i + 1);
+            tlog.write(cmd, 0);
+            tlog.finish(UpdateLog.SyncLevel.FSYNC);
+          }
+        }));
+      }
+      for (Future<?> future : futures) {
+        future.get();
+      }
+    } finally {
+      ExecutorUtil.shutdownAndAwaitTermination(executor);
+    }
+
+    // every record must be complete and readable
+    Set<Long> versions = new HashSet<>();
+    TransactionLog.LogReader reader = tlog.getReader(0);
+    try {
+      Object o;
+      while ((o = reader.next()) != null) {
+        List entry = (List) o;
+        assertEquals(UpdateLog.ADD, (int) entry.get(0) & UpdateLog.OPERATION_MASK);
+        assertTrue(versions.add((Long) entry.get(1)));
+      }
+    } finally {
+      reader.close();
+    }
+    assertEquals(numThreads * numDocsPerThread, versions.size());
+    assertEquals(tlogFile.length(), tlog.position());
+
+    tlog.deleteOnClose = true;
+    tlog.decref();
+    assertFalse(tlogFile.exists());
+  }
+
+  @Test
+  public void testMappedReads() throws Exception {
+    assumeTrue("memory mapped tlogs are disabled on this platform", TransactionLog.useMmap);
+    File tlogFile = new File(createTempDir().toFile(), UpdateLog.TLOG_NAME + ".0000000000000000001");
+    TransactionLog tlog = new TransactionLog(tlogFile, new ArrayList<>());
+    String value = TestUtil.randomSimpleString(random(), 1000, 1000);
+    int numDocs = 3000;  // about 3MB, enough to be mapped
+    long[] positions = new long[numDocs];
+    for (int i = 0; i < numDocs; i++) {
+      if (i == numDocs / 2) {
+        tlog.snapshot();
+      }
+      positions[i] = tlog.write(newAdd(i, value), 0);
+    }
+
+    TransactionLog.LogReader reader = tlog.getReader(0);
+    try {
+      for (int i = 0; i < numDocs; i++) {
+        assertEquals(i + 1L, ((List) reader.next()).get(1));
+      }
+      assertNull(reader.next());
+    } finally {
+      reader.close();
+    }
+    assertTrue(tlog.mapping.length() > TransactionLogMapping.MIN_EXTENSION);
+    for (int i = 0; i < numDocs; i += 1 + random().nextInt(100)) {
+      List entry = (List) tlog.lookup(positions[i]);
+      assertEquals(i + 1L, entry.get(1));
+      SolrInputDocument doc = (SolrInputDocument) entry.get(2);
+      assertEquals(value, doc.getFieldValue("val_s"));
+    }
+
+    // records written after a rollback must be read from the file again, not from the stale mapping
+    tlog.rollback(positions[numDocs / 2]);
+    assertTrue(tlog.mapping.length() <= positions[numDocs / 2]);
+    long pos = tlog.write(newAdd(numDocs, "rolled back"), 0);
+    assertEquals(positions[numDocs / 2], pos);
+    assertEquals("rolled back", ((SolrInputDocument) ((List) tlog.lookup(pos)).get(2)).getFieldValue("val_s"));
+
+    // closing the log unmaps it, and nothing can be read through the mapping anymore
+    TransactionLogMapping mapping = tlog.mapping;
+    tlog.deleteOnClose = true;
+    tlog.decref();
+    assertNull(tlog.mapping);
+    assertEquals(0, mapping.length());
+    assertEquals(0, mapping.read(0, new byte[1], 0, 1));
+  }
+
+  private static AddUpdateCommand newAdd(int i, String value) {
+    AddUpdateCommand cmd = new AddUpdateCommand(null);
+    cmd.solrDoc = new SolrInputDocument();
+    cmd.solrDoc.addField("id", Integer.toString(i));
+    cmd.solrDoc.addField("val_s", value);
+    cmd.setVersion(i + 1);
+    return cmd;
+  }
+}
@@ -16,11 +16,18 @@
  */
 package org.apache.solr.update;
 
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
 import org.apache.lucene.util.BytesRef;
 import org.apache.solr.SolrTestCaseJ4;
+import org.apache.solr.common.util.ExecutorUtil;
 import org.apache.solr.common.util.Hash;
 import org.apache.solr.core.CoreContainer;
 import org.apache.solr.request.SolrQueryRequest;
+import org.apache.solr.util.DefaultSolrThreadFactory;
 import org.junit.Test;
 
 public class VersionInfoTest extends SolrTestCaseJ4 {
@@ -45,6 +52,60 @@ public class VersionInfoTest extends SolrTestCaseJ4 {
     }
   }
 
+  @Test
+  public void testIdLocks() throws Exception {
+    initCore("solrconfig-tlog.xml", "schema-version-indexed.xml");
+    ExecutorService executor = ExecutorUtil.newMDCAwareCachedThreadPool(new DefaultSolrThreadFactory("testIdLocks"));
+    try {
+      VersionInfo vInfo = h.getCore().getUpdateHandler().getUpdateLog().getVersionInfo();
+      VersionInfo.IdLock lockA = vInfo.lockId(new BytesRef("A"));
+
+      // an unrelated id is not blocked, even if it falls in the same version bucket
+      VersionBucket bucketA = vInfo.bucket(bucketHash(new BytesRef("A")));
+      BytesRef idB = null;
+      for (int i = 0; idB == null; i++) {
+        BytesRef candidate = new BytesRef("B" + i);
+        if (vInfo.bucket(bucketHash(candidate)) == bucketA) {
+          idB = candidate;
+        }
+      }
+      final BytesRef sameBucketId = idB;
+      Future<?> other = executor.submit(() -> vInfo.unlockId(vInfo.lockId(sameBucketId)));
+      other.get(30, TimeUnit.SECONDS);
+
+      // the same id is, until it is unlocked
+      Future<?> same = executor.submit(() -> vInfo.unlockId(vInfo.lockId(new BytesRef("A"))));
+      expectThrows(TimeoutException.class, () -> same.get(100, TimeUnit.MILLISECONDS));
+      assertEquals(1, vInfo.numLockedIds());
+      // locks are reentrant
+      vInfo.unlockId(vInfo.lockId(new BytesRef("A")));
+      vInfo.unlockId(lockA);
+      same.get(30, TimeUnit.SECONDS);
+      assertEquals(0, vInfo.numLockedIds());
+    } finally {
+      ExecutorUtil.shutdownAndAwaitTermination(executor);
+      deleteCore();
+    }
+  }
+
+  /** Hashes an id like DistributedUpdateProcessor does to pick its version bucket. */
+  private static int bucketHash(BytesRef idBytes) {
+    return Hash.murmurhash3_x86_32(idBytes.bytes, idBytes.offset, idBytes.length, 0);
+  }
+
+  @Test
+  public void testUpdateHighest() throws Exception {
+    VersionBucket bucket = new VersionBucket();
+    bucket.updateHighest(10);
+    assertEquals("unknown highest versions are not updated", 0, bucket.highest);
+    bucket.seedHighest(10);
+    bucket.updateHighest(-20);
+    bucket.updateHighest(15);
+    assertEquals(20, bucket.highest);
+    bucket.seedHighest(5);
+    assertEquals(20, bucket.highest);
+  }
+
   protected void testMaxVersionLogic(SolrQueryRequest req) throws Exception {
     UpdateHandler uhandler = req.getCore().getUpdateHandler();
     UpdateLog ulog = uhandler.getUpdateLog();
@@ -157,6 +157,14 @@ public interface CommonParams {
   public static final String SEGMENT_TERMINATE_EARLY = "segmentTerminateEarly";
   public static final boolean SEGMENT_TERMINATE_EARLY_DEFAULT = false;
 
+  /**
+   * The number of hits to count accurately when sorting by score. Once more hits
+   * have been found, documents that can't make it to the top hits may be skipped
+   * and <code>numFound</code> is only a lower bound of the number of matches.
+   * If not set, hits are always counted accurately.
+   */
+  public static final String MIN_EXACT_COUNT = "minExactCount";
+
   /**
    * Timeout value in milliseconds.  If not set, or the value is &gt;= 0, there is no timeout.
    */
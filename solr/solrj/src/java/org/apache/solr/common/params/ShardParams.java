@@ -46,6 +46,13 @@ public interface ShardParams {
   /** Request detailed match info for each shard (true/false) */
   public static final String SHARDS_INFO = "shards.info";
 
+  /**
+   * Ask each shard for only as many top documents as it is statistically likely to contribute to the
+   * page, and then for more from the shards whose last document still made it into the top start+rows?
+   * (true/false)
+   */
+  public static final String SHARDS_ROWS_ESTIMATE = "shards.rows.estimate";
+
   /** Should things fail if there is an error? (true/false) */
   public static final String SHARDS_TOLERANT = "shards.tolerant";
   
@@ -56,4 +63,11 @@ public interface ShardParams {
 
   /** Force a single-pass distributed query? (true/false) */
   public static final String DISTRIB_SINGLE_PASS = "distrib.singlePass";
+
+  /**
+   * Do a distributed query in a single pass if the number of documents it would fetch from all shards
+   * together (start+rows times the number of shards) is at most this many, unless
+   * {@link #DISTRIB_SINGLE_PASS} is set explicitly. Defaults to 0, i.e. never.
+   */
+  public static final String DISTRIB_SINGLE_PASS_MAX_DOCS = "distrib.singlePass.maxDocs";
 }
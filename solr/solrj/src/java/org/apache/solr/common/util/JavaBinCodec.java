@@ -362,6 +362,14 @@ public class JavaBinCodec {
     daos.write(arr, offset, len);
   }
 
+  /**
+   * Writes bytes that already are JavaBin encoded, such as values that had to be encoded before the
+   * size of their container was known. The bytes must not refer to extern strings.
+   */
+  public void writeEncoded(byte[] bytes, int offset, int len) throws IOException {
+    daos.write(bytes, offset, len);
+  }
+
   public byte[] readByteArray(DataInputInputStream dis) throws IOException {
     byte[] arr = new byte[readVInt(dis)];
     dis.readFully(arr);